@@ -22,6 +22,8 @@ import org.eclim.plugin.AbstractPluginResources;
 
 import org.eclim.plugin.cdt.project.CProjectManager;
 
+import org.eclim.plugin.core.command.validate.ValidateFilesCommand;
+
 import org.eclim.plugin.core.project.ProjectManagement;
 import org.eclim.plugin.core.project.ProjectNatureFactory;
 
@@ -64,6 +66,11 @@ public class PluginResources
         CProjectNature.C_NATURE_ID, new CProjectManager());
     ProjectManagement.addProjectManager(
         CCProjectNature.CC_NATURE_ID, new CProjectManager());
+    ValidateFilesCommand.addValidator(
+        CCProjectNature.CC_NATURE_ID, "c_src_update", true,
+        "cpp", "cc", "cxx", "c++", "hpp", "hh", "hxx", "h", "c");
+    ValidateFilesCommand.addValidator(
+        CProjectNature.C_NATURE_ID, "c_src_update", true, "c", "h");
   }
 
   @Override
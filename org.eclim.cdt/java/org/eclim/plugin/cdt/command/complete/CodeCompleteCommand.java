@@ -72,7 +72,8 @@ import org.eclipse.ui.part.FileEditorInput;
     "REQUIRED f file ARG," +
     "REQUIRED o offset ARG," +
     "REQUIRED e encoding ARG," +
-    "REQUIRED l layout ARG"
+    "REQUIRED l layout ARG," +
+    "OPTIONAL i lazyinfo NOARG"
 )
 public class CodeCompleteCommand
   extends AbstractCodeCompleteCommand
@@ -32,7 +32,7 @@ function! eclim#c#complete#CodeComplete(findstart, base) " {{{
   endif
   return eclim#lang#CodeComplete(
     \ s:complete_command, a:findstart, a:base,
-    \ {'temp': 0, 'layout': g:EclimCCompleteLayout})
+    \ {'temp': 0, 'layout': g:EclimCCompleteLayout, 'lazyinfo': 1})
 endfunction " }}}
 
 " vim:ft=vim:fdm=marker
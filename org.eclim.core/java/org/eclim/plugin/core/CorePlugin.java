@@ -19,6 +19,11 @@ package org.eclim.plugin.core;
 import java.io.File;
 import java.io.FilenameFilter;
 
+import java.util.Collections;
+import java.util.Set;
+
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.eclim.Services;
 
 import org.eclim.eclipse.EclimDaemon;
@@ -27,12 +32,24 @@ import org.eclim.logging.Logger;
 
 import org.eclim.plugin.Plugin;
 
+import org.eclim.plugin.core.command.problems.ProblemsStore;
+
+import org.eclim.plugin.core.project.ProjectChangeTracker;
+
+import org.eclim.plugin.core.util.DocumentCache;
+import org.eclim.plugin.core.util.VimChannelServer;
+
 import org.eclipse.core.resources.IResourceChangeEvent;
 import org.eclipse.core.resources.IResourceChangeListener;
 import org.eclipse.core.resources.ResourcesPlugin;
 
 import org.eclipse.core.runtime.Platform;
 
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.IJobManager;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleException;
@@ -50,7 +67,32 @@ public class CorePlugin
   private static final Logger logger = Logger.getLogger(CorePlugin.class);
 
   private String[] plugins;
-  private boolean building;
+
+  // build state, tracked via the PRE_BUILD/POST_BUILD resource events along
+  // with any scheduled build jobs, with waiters notified through buildLock on
+  // every change.
+  private final Object buildLock = new Object();
+  private volatile boolean building;
+  private final Set<Job> buildJobs =
+    Collections.newSetFromMap(new ConcurrentHashMap<Job,Boolean>());
+  private final JobChangeAdapter buildJobListener = new JobChangeAdapter(){
+    @Override
+    public void scheduled(IJobChangeEvent event)
+    {
+      if (isBuildJob(event.getJob())){
+        buildJobs.add(event.getJob());
+        buildStateChanged();
+      }
+    }
+
+    @Override
+    public void done(IJobChangeEvent event)
+    {
+      if (buildJobs.remove(event.getJob())){
+        buildStateChanged();
+      }
+    }
+  };
 
   //The shared instance.
   private static CorePlugin plugin;
@@ -115,8 +157,24 @@ public class CorePlugin
       }
     }
 
+    IJobManager jobManager = Job.getJobManager();
+    jobManager.addJobChangeListener(buildJobListener);
+    for (Job job : jobManager.find(null)){
+      if (isBuildJob(job)){
+        buildJobs.add(job);
+      }
+    }
+
     ResourcesPlugin.getWorkspace().addResourceChangeListener(
         this, IResourceChangeEvent.PRE_BUILD | IResourceChangeEvent.POST_BUILD);
+    ResourcesPlugin.getWorkspace().addResourceChangeListener(
+        ProblemsStore.getInstance(),
+        IResourceChangeEvent.POST_CHANGE |
+        IResourceChangeEvent.PRE_CLOSE |
+        IResourceChangeEvent.PRE_DELETE);
+    ResourcesPlugin.getWorkspace().addResourceChangeListener(
+        ProjectChangeTracker.getInstance(),
+        IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
 
     logger.info("Plugins loaded.");
     EclimDaemon.getInstance().frameworkEvent(
@@ -139,6 +197,14 @@ public class CorePlugin
     }
 
     ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+    Job.getJobManager().removeJobChangeListener(buildJobListener);
+    ResourcesPlugin.getWorkspace().removeResourceChangeListener(
+        ProblemsStore.getInstance());
+    ResourcesPlugin.getWorkspace().removeResourceChangeListener(
+        ProjectChangeTracker.getInstance());
+    ProjectChangeTracker.getInstance().stop();
+    DocumentCache.clear();
+    VimChannelServer.getInstance().stop();
   }
 
   @Override
@@ -152,10 +218,58 @@ public class CorePlugin
       logger.debug("Received POST_BUILD event.");
       building = false;
     }
+    buildStateChanged();
   }
 
+  /**
+   * Determines if a build is currently running or scheduled to run.
+   *
+   * @return true if a build is running or pending, false otherwise.
+   */
   public boolean isBuildRunning()
   {
-    return building;
+    return building || !buildJobs.isEmpty();
+  }
+
+  /**
+   * Blocks until any running or scheduled build has completed, or the supplied
+   * timeout has elapsed.
+   *
+   * @param timeout The max number of milliseconds to wait.
+   * @return true if no build is running, false if the timeout elapsed (or the
+   * wait was interrupted) while a build was still running.
+   */
+  public boolean waitOnBuild(long timeout)
+  {
+    long end = System.currentTimeMillis() + timeout;
+    synchronized(buildLock){
+      while (isBuildRunning()){
+        long remaining = end - System.currentTimeMillis();
+        if (remaining <= 0){
+          logger.debug("Timed out waiting on build.");
+          return false;
+        }
+        try{
+          buildLock.wait(remaining);
+        }catch(InterruptedException ie){
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private boolean isBuildJob(Job job)
+  {
+    return job.belongsTo(ResourcesPlugin.FAMILY_AUTO_BUILD) ||
+      job.belongsTo(ResourcesPlugin.FAMILY_MANUAL_BUILD);
+  }
+
+  private void buildStateChanged()
+  {
+    synchronized(buildLock){
+      buildLock.notifyAll();
+    }
   }
 }
@@ -45,7 +45,8 @@ public class PluginResources
       "General org.eclim.user.name\n" +
       "General org.eclim.user.email\n" +
       "General/Project org.eclim.project.version 1.0\n" +
-      "General/Project org.eclim.project.copyright"
+      "General/Project org.eclim.project.copyright\n" +
+      "General/Completion org.eclim.completion.max_results 0 (\\d+)"
     );
   }
 
@@ -16,6 +16,8 @@
  */
 package org.eclim.plugin.core.command;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 
 import java.util.Arrays;
@@ -30,6 +32,8 @@ import org.eclim.plugin.core.preference.Preferences;
 
 import org.eclim.plugin.core.util.ProjectUtils;
 
+import org.eclim.util.IOUtils;
+
 import org.eclim.util.file.FileUtils;
 
 import org.eclipse.core.resources.IProject;
@@ -47,6 +51,7 @@ public abstract class AbstractCommand
   private static final Logger logger = Logger.getLogger(AbstractCommand.class);
 
   private NGContext context;
+  private byte[] stdin;
 
   /**
    * Gets the preferences.
@@ -92,11 +97,66 @@ public abstract class AbstractCommand
     }
     String file = commandLine.getValue(Options.FILE_OPTION);
     String encoding = commandLine.getValue(Options.ENCODING_OPTION);
+
+    // the offset is relative to the unsaved contents when supplied.
+    byte[] bytes = getStdin(commandLine);
+    if (bytes != null){
+      return FileUtils.byteOffsetToCharOffset(
+          new ByteArrayInputStream(bytes), offset, encoding);
+    }
+
     file = ProjectUtils.getFilePath(project, file);
 
     return FileUtils.byteOffsetToCharOffset(file, offset, encoding);
   }
 
+  /**
+   * Gets the unsaved contents of the file being processed, which the client
+   * sends on stdin when the stdin option is supplied, allowing the command to
+   * operate on the current buffer without it first being written to disk.
+   *
+   * @param commandLine The command line instance.
+   * @return The contents or null if the client didn't send any.
+   */
+  public String getStdinContents(CommandLine commandLine)
+  {
+    byte[] bytes = getStdin(commandLine);
+    if (bytes == null){
+      return null;
+    }
+
+    String encoding = commandLine.getValue(Options.ENCODING_OPTION);
+    try{
+      return new String(bytes, encoding != null ? encoding : FileUtils.UTF8);
+    }catch(Exception e){
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Reads the raw bytes sent by the client on stdin (only read once, so it is
+   * safe to call this multiple times for the same command).
+   *
+   * @param commandLine The command line instance.
+   * @return The bytes or null if the client didn't send any.
+   */
+  private byte[] getStdin(CommandLine commandLine)
+  {
+    if (stdin == null &&
+        context != null &&
+        commandLine.hasOption(Options.STDIN_OPTION))
+    {
+      try{
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copy(context.in, out);
+        stdin = out.toByteArray();
+      }catch(Exception e){
+        throw new RuntimeException(e);
+      }
+    }
+    return stdin;
+  }
+
   @Override
   public NGContext getContext()
   {
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.admin;
+
+import java.util.Map;
+
+import org.eclim.annotation.Command;
+
+import org.eclim.command.CommandLine;
+
+import org.eclim.plugin.core.command.AbstractCommand;
+
+import org.eclim.util.Metrics;
+
+/**
+ * Command which returns the current values of eclim's internal counters
+ * (cache hit rates, etc), optionally resetting them.
+ *
+ * @author Eric Van Dewoestine
+ */
+@Command(
+  name = "metrics",
+  options = "OPTIONAL r reset NOARG"
+)
+public class MetricsCommand
+  extends AbstractCommand
+{
+  private static final String RESET_OPTION = "r";
+
+  @Override
+  public Object execute(CommandLine commandLine)
+    throws Exception
+  {
+    Map<String,Long> metrics = Metrics.getAll();
+    if (commandLine.hasOption(RESET_OPTION)){
+      Metrics.reset();
+    }
+    return metrics;
+  }
+}
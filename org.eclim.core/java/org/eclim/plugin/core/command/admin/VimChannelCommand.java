@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.admin;
+
+import java.util.HashMap;
+
+import org.eclim.annotation.Command;
+
+import org.eclim.command.CommandLine;
+import org.eclim.command.Options;
+
+import org.eclim.plugin.core.command.AbstractCommand;
+
+import org.eclim.plugin.core.util.VimChannelServer;
+import org.eclim.plugin.core.util.VimClient;
+
+/**
+ * Command which starts, if necessary, the server vim instances connect their
+ * channels to, returning the port and token vim needs to connect and
+ * register.
+ * <p/>
+ * When an expression is supplied, it is instead evaluated in the vim instance
+ * with the supplied name and the result returned (primarily for testing and
+ * troubleshooting a vim instance's channel).
+ *
+ * @author Eric Van Dewoestine
+ */
+@Command(
+  name = "vim_channel",
+  options =
+    "OPTIONAL v vim_instance_name ARG," +
+    "OPTIONAL e expression ARG"
+)
+public class VimChannelCommand
+  extends AbstractCommand
+{
+  @Override
+  public Object execute(CommandLine commandLine)
+    throws Exception
+  {
+    VimChannelServer server = VimChannelServer.getInstance();
+    String expression = commandLine.getValue(Options.EXPRESSION_OPTION);
+    if (expression != null){
+      String name = commandLine.getValue(Options.VIM_INSTANCE_OPTION);
+      return new VimClient(name).remoteExpr(expression);
+    }
+
+    HashMap<String,Object> result = new HashMap<String,Object>();
+    result.put("port", server.start());
+    result.put("token", server.getToken());
+    return result;
+  }
+}
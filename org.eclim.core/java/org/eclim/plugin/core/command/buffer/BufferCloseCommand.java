@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.buffer;
+
+import java.io.File;
+
+import org.eclim.annotation.Command;
+
+import org.eclim.command.CommandLine;
+import org.eclim.command.Options;
+
+import org.eclim.plugin.core.command.AbstractCommand;
+
+import org.eclim.plugin.core.command.complete.CodeCompleteCache;
+
+import org.eclim.plugin.core.util.DocumentCache;
+import org.eclim.plugin.core.util.ProjectUtils;
+
+/**
+ * Command which notifies eclim that the client has closed the supplied file,
+ * releasing the document and any other per file state held for it.
+ *
+ * @author Eric Van Dewoestine
+ */
+@Command(
+  name = "buffer_close",
+  options =
+    "REQUIRED p project ARG," +
+    "REQUIRED f file ARG"
+)
+public class BufferCloseCommand
+  extends AbstractCommand
+{
+  @Override
+  public Object execute(CommandLine commandLine)
+    throws Exception
+  {
+    String file = commandLine.getValue(Options.FILE_OPTION);
+    String project = commandLine.getValue(Options.PROJECT_OPTION);
+
+    DocumentCache.release(new File(ProjectUtils.getFilePath(project, file)));
+    CodeCompleteCache.remove(project, file);
+    return null;
+  }
+}
@@ -17,7 +17,8 @@
 package org.eclim.plugin.core.command.complete;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
@@ -33,6 +34,10 @@ import org.eclim.plugin.core.command.complete.CodeCompleteResult;
 
 import org.eclim.plugin.core.util.ProjectUtils;
 
+import org.eclipse.core.resources.IProject;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.ITextViewer;
 
 import org.eclipse.jface.text.contentassist.ICompletionProposal;
@@ -51,6 +56,18 @@ public abstract class AbstractCodeCompleteCommand
   private static String COMPACT = "compact";
   //private static String STANDARD = "standard";
 
+  private static final String MAX_RESULTS = "org.eclim.completion.max_results";
+
+  private static final Comparator<CodeCompleteResult> NATURAL_COMPARATOR =
+    new Comparator<CodeCompleteResult>(){
+      public int compare(CodeCompleteResult r1, CodeCompleteResult r2)
+      {
+        return r1.compareTo(r2);
+      }
+    };
+
+  private boolean lazyInfo;
+
   @Override
   public Object execute(final CommandLine commandLine)
     throws Exception
@@ -58,23 +75,145 @@ public abstract class AbstractCodeCompleteCommand
     String project = commandLine.getValue(Options.PROJECT_OPTION);
     String file = commandLine.getValue(Options.FILE_OPTION);
     int offset = getOffset(commandLine);
+    lazyInfo = commandLine.hasOption(Options.LAZY_INFO_OPTION);
+
+    // while the user is typing an identifier we can usually reuse the results
+    // of the previous request, filtered by the now longer prefix.
+    CharSequence contents = getContents(commandLine, project, file);
+    List<CodeCompleteResult> results = null;
+    if (contents != null){
+      results =
+        CodeCompleteCache.get(project, file, contents, offset, lazyInfo);
+    }
 
-    List<CodeCompleteResult> results =
-      getCompletionResults(commandLine, project, file, offset);
+    if (results == null){
+      CodeCompleteProposals.newSession();
+      results = getCompletionResults(commandLine, project, file, offset);
+      if (contents != null){
+        if (isCacheable(results)){
+          CodeCompleteCache.put(
+              project, file, contents, offset, lazyInfo, results);
+        }else{
+          CodeCompleteCache.remove(project, file);
+        }
+      }
+    }
+
+    // rank the results once, before compacting them, since compact relies on
+    // overloaded results being adjacent to each other.
+    results = rank(results, getMaxResults(project));
 
     String layout = commandLine.getValue(Options.LAYOUT_OPTION);
     if(COMPACT.equals(layout) && results.size() > 0){
       results = compact(results);
     }
-    Collections.sort(results);
+
+    // only the proposals of the results actually being returned (after
+    // duplicates were removed and the results ranked and truncated) need a
+    // handle.
+    for (CodeCompleteResult result : results){
+      if (result.getHandle() == null && result.getProposal() != null){
+        result.setHandle(CodeCompleteProposals.add(result.getProposal()));
+      }
+    }
     return getResponse(results);
   }
 
+  /**
+   * Gets the comparator used to rank the completion results.
+   *
+   * @return The Comparator.
+   */
+  protected Comparator<CodeCompleteResult> getComparator()
+  {
+    return NATURAL_COMPARATOR;
+  }
+
+  /**
+   * Sorts the supplied results, keeping only the best max results when there
+   * are more than that. Results which compare as equal retain their original
+   * relative order.
+   *
+   * @param results The completion results.
+   * @param max The maximum number of results to keep (0 for no limit).
+   * @return The ranked results.
+   */
+  protected List<CodeCompleteResult> rank(
+      List<CodeCompleteResult> results, int max)
+  {
+    return CodeCompleteRanking.rank(results, getComparator(), max);
+  }
+
+  private int getMaxResults(String project)
+  {
+    try{
+      IProject iproject = ProjectUtils.getProject(project);
+      return getPreferences().getIntValue(
+          iproject.exists() ? iproject : null, MAX_RESULTS);
+    }catch(Exception e){
+      return 0;
+    }
+  }
+
   protected Object getResponse(List<CodeCompleteResult> results)
   {
     return results;
   }
 
+  /**
+   * Determines if the client requested that the info for each result be
+   * omitted, to be resolved later for individual results via their handle
+   * (see {@link CodeCompleteProposals}).
+   *
+   * @return true if info should be resolved lazily, false otherwise.
+   */
+  protected boolean isLazyInfo()
+  {
+    return lazyInfo;
+  }
+
+  /**
+   * Determines if the supplied results, freshly computed by
+   * {@link #getCompletionResults}, can be reused to answer subsequent requests
+   * where the user has only typed more of the same identifier. Commands whose
+   * response includes more than just the results (errors, etc) should
+   * return false when those are present.
+   *
+   * @param results The completion results.
+   * @return true if the results can be cached, false otherwise.
+   */
+  protected boolean isCacheable(List<CodeCompleteResult> results)
+  {
+    return true;
+  }
+
+  /**
+   * Gets the current contents of the file being completed, used to determine
+   * if previously cached completion results are still valid. Unless the client
+   * supplied the contents, they are read from the file's (cached) document
+   * rather than from disk.
+   *
+   * @param commandLine The current command line.
+   * @param project The project name.
+   * @param file  The project relative file name.
+   * @return The file contents or null if they could not be read.
+   */
+  protected CharSequence getContents(
+      CommandLine commandLine, String project, String file)
+  {
+    String contents = getStdinContents(commandLine);
+    if (contents != null){
+      return contents;
+    }
+
+    try{
+      IDocument document = ProjectUtils.getDocument(project, file);
+      return document != null ? new DocumentContents(document) : null;
+    }catch(Exception e){
+      return null;
+    }
+  }
+
   /**
    * Gets the list of CodeCompletionResult objects.
    *
@@ -90,19 +229,20 @@ public abstract class AbstractCodeCompleteCommand
     ICompletionProposal[] proposals =
       getCompletionProposals(commandLine, project, file, offset);
 
-    ArrayList<CodeCompleteResult> results = new ArrayList<CodeCompleteResult>();
+    LinkedHashSet<CodeCompleteResult> results =
+      new LinkedHashSet<CodeCompleteResult>();
 
     if(proposals != null){
       for (ICompletionProposal proposal : proposals){
         if(acceptProposal(proposal)){
           CodeCompleteResult ccresult = createCodeCompletionResult(proposal);
-          if(ccresult != null && !results.contains(ccresult)){
+          if(ccresult != null){
             results.add(ccresult);
           }
         }
       }
     }
-    return results;
+    return new ArrayList<CodeCompleteResult>(results);
   }
 
   /**
@@ -178,8 +318,26 @@ public abstract class AbstractCodeCompleteCommand
   protected CodeCompleteResult createCodeCompletionResult(
       ICompletionProposal proposal)
   {
-    return new CodeCompleteResult(
-        getCompletion(proposal), getMenu(proposal), getInfo(proposal));
+    CodeCompleteResult result = new CodeCompleteResult(
+        getCompletion(proposal),
+        getMenu(proposal),
+        lazyInfo ? StringUtils.EMPTY : getInfo(proposal));
+    result.setProposal(getProposalInfo(proposal));
+    return result;
+  }
+
+  /**
+   * Gets the resolver used to lazily obtain the info for the supplied
+   * proposal, which is registered with the current completion session (see
+   * {@link CodeCompleteProposals}) if the result is returned to the client.
+   *
+   * @param proposal The ICompletionProposal.
+   * @return The proposal info or null if the info can't be resolved lazily.
+   */
+  protected CodeCompleteProposals.Info getProposalInfo(
+      ICompletionProposal proposal)
+  {
+    return new ProposalInfo(proposal);
   }
 
   /**
@@ -221,6 +379,17 @@ public abstract class AbstractCodeCompleteCommand
     return info;
   }
 
+  /**
+   * Get the javadoc URI for the proposal, if the language supports it.
+   *
+   * @param proposal The ICompletionProposal.
+   * @return The javadoc URI.
+   */
+  protected String getJavaDocURI(ICompletionProposal proposal)
+  {
+    return StringUtils.EMPTY;
+  }
+
   /**
    * Compact overloaded methods into one completion result.
    *
@@ -273,10 +442,85 @@ public abstract class AbstractCodeCompleteCommand
       info.append(o.getMenu());
     }
 
-    return new CodeCompleteResult(
+    CodeCompleteResult result = new CodeCompleteResult(
         r.getCompletion(),
         "Overloaded, see preview...",
         info.toString(),
         r.getType());
+    // the info (a summary of each overload) is already included.
+    return result;
+  }
+
+  /**
+   * Lazily resolves the info for a proposal using this command.
+   */
+  private class ProposalInfo
+    implements CodeCompleteProposals.Info
+  {
+    private ICompletionProposal proposal;
+
+    public ProposalInfo(ICompletionProposal proposal)
+    {
+      this.proposal = proposal;
+    }
+
+    @Override
+    public String getInfo()
+    {
+      return AbstractCodeCompleteCommand.this.getInfo(proposal);
+    }
+
+    @Override
+    public String getJavaDocURI()
+    {
+      return AbstractCodeCompleteCommand.this.getJavaDocURI(proposal);
+    }
+  }
+
+  /**
+   * Read only view of a document as a CharSequence, so that checking the
+   * completion cache doesn't require copying the document's contents.
+   */
+  private static class DocumentContents
+    implements CharSequence
+  {
+    private IDocument document;
+
+    public DocumentContents(IDocument document)
+    {
+      this.document = document;
+    }
+
+    @Override
+    public int length()
+    {
+      return document.getLength();
+    }
+
+    @Override
+    public char charAt(int index)
+    {
+      try{
+        return document.getChar(index);
+      }catch(BadLocationException ble){
+        throw new IndexOutOfBoundsException(String.valueOf(index));
+      }
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+      try{
+        return document.get(start, end - start);
+      }catch(BadLocationException ble){
+        throw new IndexOutOfBoundsException(start + "," + end);
+      }
+    }
+
+    @Override
+    public String toString()
+    {
+      return document.get();
+    }
   }
 }
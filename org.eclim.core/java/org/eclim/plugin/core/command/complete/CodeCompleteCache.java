@@ -0,0 +1,254 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.complete;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclim.util.Metrics;
+
+/**
+ * Short lived, per file cache of the last set of completion results.
+ * <p/>
+ * While the user is typing an identifier, vim issues a new completion request
+ * for every keystroke. As long as the only thing that changed in the file is
+ * the identifier being typed, the results of the previous request are a
+ * superset of the new results, so they can simply be filtered by the longer
+ * prefix instead of running the completion engine again.
+ * <p/>
+ * An entry is keyed by project and file and holds the start offset of the
+ * token being completed, the length of the document outside of that token, and
+ * a hash of all the text outside of that token. Extending the token with
+ * identifier characters keeps the entry, while any other change to the file,
+ * including one that leaves its length unchanged, drops it. Hashing the file
+ * is linear in its size, but still far cheaper than running the completion
+ * engine. Entries are also dropped once a new completion session has been
+ * started elsewhere, since the proposal handles of the cached results would
+ * no longer resolve.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class CodeCompleteCache
+{
+  private static final long TTL = 30 * 1000;
+
+  private static final Map<String,Entry> entries =
+    new ConcurrentHashMap<String,Entry>();
+
+  private CodeCompleteCache()
+  {
+  }
+
+  /**
+   * Gets the cached results for the supplied completion request, filtered by
+   * the current prefix, if the cached entry is still valid.
+   *
+   * @param project The project name.
+   * @param file The project relative file path.
+   * @param contents The current contents of the file.
+   * @param offset The offset completion was requested at.
+   * @param lazy Whether the results are requested without their info.
+   * @return The filtered results or null if no valid entry exists.
+   */
+  public static List<CodeCompleteResult> get(
+      String project, String file, CharSequence contents, int offset,
+      boolean lazy)
+  {
+    String key = getKey(project, file);
+    Entry entry = entries.get(key);
+    if (entry == null){
+      Metrics.increment("completion.cache.miss");
+      return null;
+    }
+
+    int start = getTokenStart(contents, offset);
+    String prefix = contents.subSequence(start, offset).toString();
+    if (System.currentTimeMillis() - entry.created > TTL ||
+        entry.session != CodeCompleteProposals.getSession() ||
+        entry.lazy != lazy ||
+        start != entry.start ||
+        !prefix.startsWith(entry.prefix) ||
+        entry.length != contents.length() - (offset - start) ||
+        entry.hash != hash(contents, start, offset))
+    {
+      entries.remove(key);
+      Metrics.increment("completion.cache.invalidated");
+      Metrics.increment("completion.cache.miss");
+      return null;
+    }
+
+    Metrics.increment("completion.cache.hit");
+    return filter(entry.results, prefix);
+  }
+
+  /**
+   * Caches the supplied results.
+   *
+   * @param project The project name.
+   * @param file The project relative file path.
+   * @param contents The contents of the file the results were computed for.
+   * @param offset The offset completion was requested at.
+   * @param lazy Whether the results were created without their info.
+   * @param results The completion results.
+   */
+  public static void put(
+      String project, String file, CharSequence contents, int offset,
+      boolean lazy, List<CodeCompleteResult> results)
+  {
+    int start = getTokenStart(contents, offset);
+    Entry entry = new Entry();
+    entry.start = start;
+    entry.prefix = contents.subSequence(start, offset).toString();
+    entry.length = contents.length() - (offset - start);
+    entry.hash = hash(contents, start, offset);
+    entry.results = new ArrayList<CodeCompleteResult>(results);
+    entry.created = System.currentTimeMillis();
+    entry.session = CodeCompleteProposals.getSession();
+    entry.lazy = lazy;
+    entries.put(getKey(project, file), entry);
+  }
+
+  /**
+   * Removes any cached results for the supplied file.
+   *
+   * @param project The project name.
+   * @param file The project relative file path.
+   */
+  public static void remove(String project, String file)
+  {
+    entries.remove(getKey(project, file));
+  }
+
+  private static String getKey(String project, String file)
+  {
+    return project + ':' + file;
+  }
+
+  private static int getTokenStart(CharSequence contents, int offset)
+  {
+    int start = offset;
+    while (start > 0 &&
+        Character.isJavaIdentifierPart(contents.charAt(start - 1)))
+    {
+      start--;
+    }
+    return start;
+  }
+
+  /**
+   * Computes a hash of all the text before the token start and after the
+   * completion offset.
+   */
+  private static long hash(CharSequence contents, int start, int offset)
+  {
+    long hash = 17;
+    for (int ii = 0; ii < start; ii++){
+      hash = 31 * hash + contents.charAt(ii);
+    }
+    int end = contents.length();
+    for (int ii = offset; ii < end; ii++){
+      hash = 31 * hash + contents.charAt(ii);
+    }
+    return hash;
+  }
+
+  private static List<CodeCompleteResult> filter(
+      List<CodeCompleteResult> results, String prefix)
+  {
+    ArrayList<CodeCompleteResult> exact = new ArrayList<CodeCompleteResult>();
+    ArrayList<CodeCompleteResult> other = new ArrayList<CodeCompleteResult>();
+    for (CodeCompleteResult result : results){
+      String text = getMatchText(result.getCompletion());
+      if (text.startsWith(prefix)){
+        exact.add(result);
+      }else if (text.regionMatches(true, 0, prefix, 0, prefix.length()) ||
+          camelCaseMatch(prefix, text) ||
+          text.toLowerCase().indexOf(prefix.toLowerCase()) != -1)
+      {
+        other.add(result);
+      }
+    }
+    // case sensitive prefix matches first, followed by the looser matches
+    // (case insensitive, camel case, and substring matches, mirroring what
+    // eclipse's completion engines return).
+    exact.addAll(other);
+    return exact;
+  }
+
+  /**
+   * Gets the portion of a completion that the typed prefix is matched against
+   * (package and qualified completions only match on the last segment).
+   */
+  private static String getMatchText(String completion)
+  {
+    String text = completion;
+    int paren = text.indexOf('(');
+    if (paren != -1){
+      text = text.substring(0, paren);
+    }
+    int dot = text.lastIndexOf('.');
+    if (dot != -1){
+      text = text.substring(dot + 1);
+    }
+    return text;
+  }
+
+  /**
+   * Simple camel case match where each upper case character of the pattern
+   * must start a new word in the name (Ex. NPE matches NullPointerException).
+   */
+  private static boolean camelCaseMatch(String pattern, String name)
+  {
+    if (pattern.length() == 0 || name.length() == 0 ||
+        pattern.charAt(0) != name.charAt(0))
+    {
+      return false;
+    }
+
+    int ni = 1;
+    for (int pi = 1; pi < pattern.length(); pi++){
+      char pc = pattern.charAt(pi);
+      if (Character.isUpperCase(pc)){
+        while (ni < name.length() && name.charAt(ni) != pc){
+          ni++;
+        }
+        if (ni == name.length()){
+          return false;
+        }
+      }else if (ni >= name.length() || name.charAt(ni) != pc){
+        return false;
+      }
+      ni++;
+    }
+    return true;
+  }
+
+  private static class Entry
+  {
+    public int start;
+    public String prefix;
+    public int length;
+    public long hash;
+    public long created;
+    public long session;
+    public boolean lazy;
+    public List<CodeCompleteResult> results;
+  }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.complete;
+
+import java.util.ArrayList;
+
+/**
+ * Store of the proposals from the most recent completion session, allowing the
+ * (potentially expensive) info and javadoc for a single proposal to be
+ * resolved on demand via the handle returned with each completion result.
+ * <p/>
+ * Only the proposals for the results actually returned to the client are
+ * registered (after duplicates are removed and the results are ranked and
+ * truncated), and no more than a fixed number of them regardless of the
+ * configured max results (which may be unlimited), so the results past that
+ * cap are returned without a handle. Starting a new completion session
+ * discards all the handles from the previous one, and a session which has
+ * gone unused for a few minutes is discarded as well so the proposals (and
+ * the editor state they reference) aren't held on to indefinitely.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class CodeCompleteProposals
+{
+  private static final long TTL = 5 * 60 * 1000;
+
+  private static final int MAX_PROPOSALS = 1000;
+
+  private static long session;
+  private static long accessed;
+  private static final ArrayList<Info> proposals = new ArrayList<Info>();
+
+  private CodeCompleteProposals()
+  {
+  }
+
+  /**
+   * Starts a new completion session, discarding all existing handles.
+   *
+   * @return The new session id.
+   */
+  public static synchronized long newSession()
+  {
+    proposals.clear();
+    accessed = System.currentTimeMillis();
+    return ++session;
+  }
+
+  /**
+   * Gets the id of the current completion session.
+   *
+   * @return The session id.
+   */
+  public static synchronized long getSession()
+  {
+    return session;
+  }
+
+  /**
+   * Adds a proposal to the current session.
+   *
+   * @param info The info resolver for the proposal.
+   * @return The handle for the proposal or null if the session is full.
+   */
+  public static synchronized String add(Info info)
+  {
+    expire();
+    if (proposals.size() >= MAX_PROPOSALS){
+      return null;
+    }
+    proposals.add(info);
+    return session + "-" + (proposals.size() - 1);
+  }
+
+  /**
+   * Gets the proposal info for the supplied handle.
+   *
+   * @param handle The proposal handle.
+   * @return The Info or null if the handle is invalid or has been discarded.
+   */
+  public static synchronized Info get(String handle)
+  {
+    expire();
+    int index = handle != null ? handle.indexOf('-') : -1;
+    if (index == -1){
+      return null;
+    }
+
+    try{
+      long handleSession = Long.parseLong(handle.substring(0, index));
+      int position = Integer.parseInt(handle.substring(index + 1));
+      if (handleSession != session ||
+          position < 0 || position >= proposals.size())
+      {
+        return null;
+      }
+      return proposals.get(position);
+    }catch(NumberFormatException nfe){
+      return null;
+    }
+  }
+
+  /**
+   * Discards the proposals of the current session if it has gone unused for
+   * longer than the TTL. The session is ended as well so that any cached
+   * results holding its handles are no longer used.
+   */
+  private static void expire()
+  {
+    long now = System.currentTimeMillis();
+    if (now - accessed > TTL){
+      proposals.clear();
+      session++;
+    }
+    accessed = now;
+  }
+
+  /**
+   * Resolves the details of a single completion proposal.
+   */
+  public interface Info
+  {
+    /**
+     * Gets the info details for the proposal.
+     *
+     * @return The info.
+     */
+    public String getInfo();
+
+    /**
+     * Gets the javadoc URI for the proposal, if any.
+     *
+     * @return The javadoc URI or an empty string.
+     */
+    public String getJavaDocURI();
+  }
+}
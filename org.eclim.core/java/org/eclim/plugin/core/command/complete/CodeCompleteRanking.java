@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.complete;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Ranks completion results, optionally keeping only the best n of them.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class CodeCompleteRanking
+{
+  private CodeCompleteRanking()
+  {
+  }
+
+  /**
+   * Sorts the supplied results, keeping only the best max results when there
+   * are more than that. Results which compare as equal retain their original
+   * relative order.
+   *
+   * @param results The completion results.
+   * @param comparator The comparator used to order the results.
+   * @param max The maximum number of results to keep (0 for no limit).
+   * @return The ranked results.
+   */
+  public static List<CodeCompleteResult> rank(
+      List<CodeCompleteResult> results,
+      Comparator<CodeCompleteResult> comparator,
+      int max)
+  {
+    if (max <= 0 || results.size() <= max){
+      ArrayList<CodeCompleteResult> ranked =
+        new ArrayList<CodeCompleteResult>(results);
+      Collections.sort(ranked, comparator);
+      return ranked;
+    }
+
+    // bounded heap holding the current best max results, with the worst of
+    // those at the head.
+    PriorityQueue<CodeCompleteResult> best =
+      new PriorityQueue<CodeCompleteResult>(
+          max + 1, Collections.reverseOrder(comparator));
+    for (CodeCompleteResult result : results){
+      if (best.size() < max){
+        best.add(result);
+      }else if (comparator.compare(result, best.peek()) < 0){
+        best.poll();
+        best.add(result);
+      }
+    }
+
+    // collect the selected results in their original order so that the
+    // (stable) sort keeps equal results, like overloaded methods, in order.
+    IdentityHashMap<CodeCompleteResult,Boolean> selected =
+      new IdentityHashMap<CodeCompleteResult,Boolean>(max);
+    for (CodeCompleteResult result : best){
+      selected.put(result, Boolean.TRUE);
+    }
+    ArrayList<CodeCompleteResult> ranked =
+      new ArrayList<CodeCompleteResult>(max);
+    for (CodeCompleteResult result : results){
+      if (selected.containsKey(result)){
+        ranked.add(result);
+      }
+    }
+    Collections.sort(ranked, comparator);
+    return ranked;
+  }
+}
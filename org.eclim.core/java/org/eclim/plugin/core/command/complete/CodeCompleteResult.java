@@ -39,6 +39,7 @@ public class CodeCompleteResult
   private static final Pattern FIRST_LINE =
     Pattern.compile("(\\.\\s|\\.<|<br|<BR|<p|<P)");
   private static final int MAX_SHORT_DESCRIPTION_LENGTH = 74;
+  private static final Collator COLLATOR = Collator.getInstance(Locale.US);
 
   public static final String VARIABLE = "v";
   public static final String FUNCTION = "f";
@@ -52,6 +53,8 @@ public class CodeCompleteResult
   private Integer offset = null;
   private int relevance;
   private String javaDocURI = "";
+  private String handle;
+  private transient CodeCompleteProposals.Info proposal;
 
   /**
    * Constructs a new instance.
@@ -225,6 +228,51 @@ public class CodeCompleteResult
     this.javaDocURI = javaDocURI;
   }
 
+  /**
+   * Gets the handle which can be used to lazily resolve the info for this
+   * completion (see {@link CodeCompleteProposals}).
+   *
+   * @return The handle or null if none.
+   */
+  public String getHandle()
+  {
+    return handle;
+  }
+
+  /**
+   * Sets the handle which can be used to lazily resolve the info for this
+   * completion.
+   *
+   * @param handle The handle.
+   */
+  public void setHandle(String handle)
+  {
+    this.handle = handle;
+  }
+
+  /**
+   * Gets the resolver for the info of the proposal this result was created
+   * from, which is registered to obtain a handle if this result is returned
+   * to the client.
+   *
+   * @return The proposal info or null if none.
+   */
+  public CodeCompleteProposals.Info getProposal()
+  {
+    return proposal;
+  }
+
+  /**
+   * Sets the resolver for the info of the proposal this result was created
+   * from.
+   *
+   * @param proposal The proposal info.
+   */
+  public void setProposal(CodeCompleteProposals.Info proposal)
+  {
+    this.proposal = proposal;
+  }
+
   /**
    * Creates the menu text based on the supplied text info.
    *
@@ -290,7 +338,6 @@ public class CodeCompleteResult
   @Override
   public int compareTo(CodeCompleteResult o)
   {
-    return Collator.getInstance(Locale.US)
-      .compare(getCompletion(), o.getCompletion());
+    return COLLATOR.compare(getCompletion(), o.getCompletion());
   }
 }
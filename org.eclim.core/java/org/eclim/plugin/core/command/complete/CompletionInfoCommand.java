@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.complete;
+
+import java.util.HashMap;
+
+import org.apache.commons.lang.StringUtils;
+
+import org.eclim.Services;
+
+import org.eclim.annotation.Command;
+
+import org.eclim.command.CommandLine;
+
+import org.eclim.plugin.core.command.AbstractCommand;
+
+/**
+ * Command which resolves the info and javadoc for a single completion result
+ * returned by one of the language completion commands, using the result's
+ * handle.
+ *
+ * @author Eric Van Dewoestine
+ */
+@Command(
+  name = "completion_info",
+  options = "REQUIRED h handle ARG"
+)
+public class CompletionInfoCommand
+  extends AbstractCommand
+{
+  private static final String HANDLE_OPTION = "h";
+
+  @Override
+  public Object execute(CommandLine commandLine)
+    throws Exception
+  {
+    String handle = commandLine.getValue(HANDLE_OPTION);
+    CodeCompleteProposals.Info proposal = CodeCompleteProposals.get(handle);
+    if (proposal == null){
+      return Services.getMessage("completion.handle.expired", handle);
+    }
+
+    String info = proposal.getInfo();
+    info = info != null ? info.trim() : StringUtils.EMPTY;
+    String javaDocURI = proposal.getJavaDocURI();
+
+    HashMap<String,String> result = new HashMap<String,String>();
+    result.put("info", StringUtils.replace(info, "\n", "<br/>"));
+    result.put("javaDocURI",
+        javaDocURI != null ? javaDocURI : StringUtils.EMPTY);
+    return result;
+  }
+}
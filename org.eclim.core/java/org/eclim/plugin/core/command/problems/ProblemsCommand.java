@@ -16,19 +16,10 @@
  */
 package org.eclim.plugin.core.command.problems;
 
-import java.io.File;
-
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-
-import java.text.Collator;
-
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.HashMap;
 
 import java.util.regex.Pattern;
 
@@ -44,27 +35,7 @@ import org.eclim.plugin.core.command.AbstractCommand;
 
 import org.eclim.plugin.core.util.ProjectUtils;
 
-import org.eclim.util.CollectionUtils;
-
-import org.eclim.util.file.FileUtils;
-
-import org.eclipse.core.internal.resources.ResourceException;
-
-import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
-import org.eclipse.core.resources.IResource;
-
-import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.NullProgressMonitor;
-
-import org.eclipse.ui.IPageLayout;
-
-import org.eclipse.ui.internal.views.markers.CachedMarkerBuilder;
-import org.eclipse.ui.internal.views.markers.ExtendedMarkersView;
-import org.eclipse.ui.internal.views.markers.MarkerContentGenerator;
-
-import org.eclipse.ui.views.markers.internal.ContentGeneratorDescriptor;
-import org.eclipse.ui.views.markers.internal.MarkerSupportRegistry;
 
 /**
  * Command to retrieve a list of global eclipse problems.
@@ -75,131 +46,130 @@ import org.eclipse.ui.views.markers.internal.MarkerSupportRegistry;
   name = "problems",
   options =
     "REQUIRED p project ARG," +
-    "OPTIONAL e errors NOARG"
+    "OPTIONAL e errors NOARG," +
+    "OPTIONAL s since ANY"
 )
 public class ProblemsCommand
   extends AbstractCommand
 {
+  private static final long BUILD_TIMEOUT = 3000;
+
   @Override
-  @SuppressWarnings("rawtypes")
   public Object execute(CommandLine commandLine)
     throws Exception
   {
-    waitOnBuild();
+    // when the build doesn't complete in time, return what we have, but let
+    // the client know the results may be stale.
+    boolean stale = !CorePlugin.getDefault().waitOnBuild(BUILD_TIMEOUT);
 
     String name = commandLine.getValue(Options.PROJECT_OPTION);
     boolean errorsOnly = commandLine.hasOption(Options.ERRORS_OPTION);
     IProject project = ProjectUtils.getProject(name);
 
-    ContentGeneratorDescriptor descriptor =
-      MarkerSupportRegistry.getInstance().getDefaultContentGenDescriptor();
-
-    ExtendedMarkersView view = new ExtendedMarkersView(descriptor.getId());
-    String viewId = IPageLayout.ID_PROBLEM_VIEW;
-    MarkerContentGenerator generator = new MarkerContentGenerator(
-        descriptor, new CachedMarkerBuilder(view), viewId);
-
-    // hack to disable loading the gui configured filters
-    Field enabledFilters = MarkerContentGenerator.class
-      .getDeclaredField("enabledFilters");
-    enabledFilters.setAccessible(true);
-    enabledFilters.set(generator, new HashSet());
-
-    Method gatherMarkers = MarkerContentGenerator.class
-      .getDeclaredMethod("gatherMarkers",
-          String[].class, Boolean.TYPE, Collection.class, IProgressMonitor.class);
-    gatherMarkers.setAccessible(true);
-
-    ArrayList markers = new ArrayList();
-    gatherMarkers.invoke(generator,
-        generator.getTypes(), true, markers, new NullProgressMonitor());
-
-    ArrayList<Error> problems = new ArrayList<Error>();
-    if (markers.size() == 0){
-      return problems;
-    }
+    ProblemsStore store = ProblemsStore.getInstance();
 
     ArrayList<IProject> projects = new ArrayList<IProject>();
     projects.add(project);
-    CollectionUtils.addAll(projects, project.getReferencedProjects());
-    CollectionUtils.addAll(projects, project.getReferencingProjects());
-
-    Method getMarker = null;
-    for (Object markerEntry : markers){
-      if (getMarker == null){
-        getMarker = markerEntry.getClass().getDeclaredMethod("getMarker");
-        getMarker.setAccessible(true);
+    for (IProject other : project.getReferencedProjects()){
+      if (!projects.contains(other)){
+        projects.add(other);
       }
-      try{
-        IMarker marker = (IMarker)getMarker.invoke(markerEntry);
-        Map<String,Object> attributes = marker.getAttributes();
-        int severity = attributes.containsKey("severity") ?
-          ((Integer)attributes.get("severity")).intValue() :
-          IMarker.SEVERITY_WARNING;
-
-        // would be more correct to use eclipse marker filter groups, but
-        // setting those may be more trouble than they're worth. look into them
-        // though if this doesn't prove to be fast enough.
-        if(errorsOnly && severity != IMarker.SEVERITY_ERROR){
-          continue;
-        }
+    }
+    for (IProject other : project.getReferencingProjects()){
+      if (!projects.contains(other)){
+        projects.add(other);
+      }
+    }
 
-        IResource resource = marker.getResource();
-        if (resource == null || resource.getRawLocation() == null){
-          continue;
+    // each project's changes are tracked against the version of that project
+    // the client last received (a version without a project name applies to
+    // all of them).
+    HashMap<String,Long> versions = new HashMap<String,Long>();
+    if (commandLine.hasOption(Options.SINCE_OPTION)){
+      HashMap<String,Long> since =
+        parseVersions(commandLine.getValues(Options.SINCE_OPTION));
+      ArrayList<Error> added = new ArrayList<Error>();
+      ArrayList<Error> removed = new ArrayList<Error>();
+      for (IProject other : projects){
+        Long version = since.get(other.getName());
+        if (version == null){
+          version = since.get(null);
         }
-
-        if (!projects.contains(resource.getProject())){
-          continue;
+        ProblemsStore.Changes changes = store.getChanges(
+            other, version != null ? version.longValue() : -1, errorsOnly);
+        if (changes.isSnapshot()){
+          // fall back to a full snapshot of all the projects.
+          added = null;
+          break;
         }
+        added.addAll(changes.getAdded());
+        removed.addAll(changes.getRemoved());
+        versions.put(other.getName(), changes.getVersion());
+      }
 
-        int offset = attributes.containsKey("charStart") ?
-          ((Integer)attributes.get("charStart")).intValue() : 1;
-        int line = attributes.containsKey("lineNumber") ?
-          ((Integer)attributes.get("lineNumber")).intValue() : 1;
-        int[] pos = {1, 1};
-
-        String message = (String)attributes.get("message");
-        String path = resource.getLocation().toOSString().replace('\\', '/');
-        File file = new File(path);
-        if (file.isFile() && file.exists() && offset > 0){
-          pos = FileUtils.offsetToLineColumn(path, offset);
-        }
-        problems.add(new Error(
-              message,
-              path,
-              Math.max(pos[0], line),
-              pos[1],
-              severity != IMarker.SEVERITY_ERROR));
-      }catch(ResourceException ignore){
-        // race condition, i think, where we are attempting to obtain a
-        // marker that has been removed since obtaining our list.
+      if (added != null){
+        HashMap<String,Object> result = new HashMap<String,Object>();
+        result.put("versions", versions);
+        result.put("stale", stale);
+        result.put("added", added);
+        result.put("removed", removed);
+        return result;
+      }
+    }
+
+    // the store returns each project's problems already sorted, so only the
+    // problems from any related projects need to be sorted here.
+    ArrayList<Error> problems = new ArrayList<Error>();
+    ArrayList<Error> related = new ArrayList<Error>();
+    for (IProject other : projects){
+      ProblemsStore.Changes changes = store.getChanges(other, -1, errorsOnly);
+      if (other.equals(project)){
+        problems.addAll(changes.getProblems());
+      }else{
+        related.addAll(changes.getProblems());
       }
+      versions.put(other.getName(), changes.getVersion());
     }
 
-    Collections.sort(problems, new ProblemComparator(project));
+    if (related.size() > 0){
+      Collections.sort(related, new ProblemComparator(project));
+      problems.addAll(related);
+    }
 
-    return problems;
+    HashMap<String,Object> result = new HashMap<String,Object>();
+    result.put("versions", versions);
+    result.put("stale", stale);
+    result.put("problems", problems);
+    return result;
   }
 
-  private void waitOnBuild()
+  /**
+   * Parses the supplied versions, each of the form project=version, or just a
+   * version to apply to any project not otherwise listed.
+   */
+  private HashMap<String,Long> parseVersions(String[] values)
   {
-    CorePlugin plugin = CorePlugin.getDefault();
-    int tries = 0;
-    while(tries < 30 && plugin.isBuildRunning()){
+    HashMap<String,Long> versions = new HashMap<String,Long>();
+    if (values == null){
+      return versions;
+    }
+    for (String value : values){
+      int index = value.lastIndexOf('=');
       try{
-        Thread.sleep(100);
-      }catch(Exception ignore){
+        versions.put(
+            index != -1 ? value.substring(0, index) : null,
+            Long.valueOf(value.substring(index + 1)));
+      }catch(NumberFormatException nfe){
+        // unknown version, so that project gets a snapshot.
       }
-      tries++;
     }
+    return versions;
   }
 
   private static class ProblemComparator
     implements Comparator<Error>
   {
     private Pattern projectPattern;
-    private Collator collator = Collator.getInstance();
 
     /**
      * Constructs a new instance.
@@ -230,7 +200,7 @@ public class ProblemsCommand
         return 1;
       }
 
-      int result = collator.compare(ef1, ef2);
+      int result = ProblemsStore.PATH_COMPARATOR.compare(ef1, ef2);
       if (result == 0){
         result = e1.getLine() - e2.getLine();
       }
@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.problems;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclim.command.Error;
+
+/**
+ * Accumulates the problems added and removed across one or more updates,
+ * netting out problems which were added and then removed again (or vice
+ * versa).
+ * <p/>
+ * Problems are compared by file, position, message, and severity, and are
+ * treated as a multiset: a problem reported twice at the same position (by
+ * two different builders, for example) is counted twice rather than collapsed
+ * into one, so that removing one of them is reported as such.
+ *
+ * @author Eric Van Dewoestine
+ */
+class ProblemsDiff
+{
+  private LinkedHashMap<Key,LinkedList<Error>> added =
+    new LinkedHashMap<Key,LinkedList<Error>>();
+  private LinkedHashMap<Key,LinkedList<Error>> removed =
+    new LinkedHashMap<Key,LinkedList<Error>>();
+
+  /**
+   * Computes the problems added and removed going from the previous to the
+   * current list of problems.
+   *
+   * @param previous The previous problems (may be null).
+   * @param current The current problems (may be null).
+   * @param added List to add the added problems to.
+   * @param removed List to add the removed problems to.
+   */
+  public static void diff(
+      List<Error> previous,
+      List<Error> current,
+      List<Error> added,
+      List<Error> removed)
+  {
+    HashMap<Key,int[]> counts = new HashMap<Key,int[]>();
+    if (previous != null){
+      for (Error problem : previous){
+        Key key = new Key(problem);
+        int[] count = counts.get(key);
+        if (count == null){
+          counts.put(key, new int[]{1});
+        }else{
+          count[0]++;
+        }
+      }
+    }
+
+    if (current != null){
+      for (Error problem : current){
+        int[] count = counts.get(new Key(problem));
+        if (count != null && count[0] > 0){
+          count[0]--;
+        }else{
+          added.add(problem);
+        }
+      }
+    }
+
+    // whatever is left over from the previous problems was removed.
+    if (previous != null){
+      for (Error problem : previous){
+        int[] count = counts.get(new Key(problem));
+        if (count[0] > 0){
+          count[0]--;
+          removed.add(problem);
+        }
+      }
+    }
+  }
+
+  /**
+   * Applies the changes of the next update.
+   *
+   * @param added The problems added by the update.
+   * @param removed The problems removed by the update.
+   */
+  public void apply(List<Error> added, List<Error> removed)
+  {
+    for (Error problem : removed){
+      if (take(this.added, problem) == null){
+        put(this.removed, problem);
+      }
+    }
+    for (Error problem : added){
+      if (take(this.removed, problem) == null){
+        put(this.added, problem);
+      }
+    }
+  }
+
+  /**
+   * Gets the net problems added.
+   *
+   * @return List of problems.
+   */
+  public List<Error> getAdded()
+  {
+    return values(added);
+  }
+
+  /**
+   * Gets the net problems removed.
+   *
+   * @return List of problems.
+   */
+  public List<Error> getRemoved()
+  {
+    return values(removed);
+  }
+
+  private static Error take(Map<Key,LinkedList<Error>> map, Error problem)
+  {
+    Key key = new Key(problem);
+    LinkedList<Error> problems = map.get(key);
+    if (problems == null){
+      return null;
+    }
+    Error taken = problems.removeFirst();
+    if (problems.size() == 0){
+      map.remove(key);
+    }
+    return taken;
+  }
+
+  private static void put(Map<Key,LinkedList<Error>> map, Error problem)
+  {
+    Key key = new Key(problem);
+    LinkedList<Error> problems = map.get(key);
+    if (problems == null){
+      problems = new LinkedList<Error>();
+      map.put(key, problems);
+    }
+    problems.add(problem);
+  }
+
+  private static List<Error> values(Map<Key,LinkedList<Error>> map)
+  {
+    ArrayList<Error> values = new ArrayList<Error>();
+    for (LinkedList<Error> problems : map.values()){
+      values.addAll(problems);
+    }
+    return values;
+  }
+
+  /**
+   * Key for comparing problems which, unlike Error.equals, also takes the
+   * severity into account.
+   */
+  private static class Key
+  {
+    private Error problem;
+
+    public Key(Error problem)
+    {
+      this.problem = problem;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+      if (!(other instanceof Key)){
+        return false;
+      }
+      Error error = ((Key)other).problem;
+      return problem.equals(error) && problem.isWarning() == error.isWarning();
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return problem.hashCode() * 31 + (problem.isWarning() ? 1 : 0);
+    }
+  }
+}
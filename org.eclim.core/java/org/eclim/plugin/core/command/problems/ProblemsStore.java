@@ -0,0 +1,589 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.problems;
+
+import java.io.File;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclim.command.Error;
+
+import org.eclim.logging.Logger;
+
+import org.eclim.util.Metrics;
+
+import org.eclim.util.file.FileOffsets;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IMarkerDelta;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Per project store of problem markers backing the problems command.
+ * <p/>
+ * The first request for a project gathers all of its problem markers, after
+ * which the store is kept current by marker deltas: the deltas only flag the
+ * affected resources, and the next request re-reads the markers of just those
+ * resources. Line and column numbers are computed when a file's markers are
+ * read, using a line table which is cached with the file and only recompiled
+ * when the file has been modified, so retrieving the problems for a project
+ * does not touch the file system at all unless something changed.
+ * <p/>
+ * Every update which changes a project's problems is assigned a new version,
+ * and a bounded log of the problems added and removed by each update is kept
+ * so that clients can request just the changes since the version they last
+ * saw. Clients track a version per project, but versions are drawn from a
+ * single counter, seeded from the clock, so that a version handed out by a
+ * previous eclimd instance (or for another project) is never mistaken for a
+ * valid starting point. The seed is the time in seconds masked to 30 bits, so
+ * versions fit in the 32 bit ints of clients (vim without +num64, gson's
+ * getAsInt) long after the counter starts.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class ProblemsStore
+  implements IResourceChangeListener
+{
+  private static final Logger logger = Logger.getLogger(ProblemsStore.class);
+
+  private static final ProblemsStore instance = new ProblemsStore();
+
+  private static final int MAX_CHANGES = 100;
+
+  private static final AtomicLong versions =
+    new AtomicLong((System.currentTimeMillis() / 1000) & 0x3fffffff);
+
+  /**
+   * Orders file paths by unicode code point, which (unlike a Collator) is the
+   * same order clients get comparing the utf-8 bytes of the paths, so that
+   * they can merge changes into a previous list of problems and end up with
+   * the same order as a full snapshot.
+   */
+  static final Comparator<String> PATH_COMPARATOR =
+    new Comparator<String>(){
+      public int compare(String s1, String s2)
+      {
+        int i1 = 0;
+        int i2 = 0;
+        while (i1 < s1.length() && i2 < s2.length()){
+          int c1 = s1.codePointAt(i1);
+          int c2 = s2.codePointAt(i2);
+          if (c1 != c2){
+            return c1 < c2 ? -1 : 1;
+          }
+          i1 += Character.charCount(c1);
+          i2 += Character.charCount(c2);
+        }
+        return (s1.length() - i1) - (s2.length() - i2);
+      }
+    };
+
+  private static final Comparator<Error> POSITION_COMPARATOR =
+    new Comparator<Error>(){
+      public int compare(Error e1, Error e2)
+      {
+        int result = e1.getLine() - e2.getLine();
+        if (result == 0){
+          result = e1.getColumn() - e2.getColumn();
+        }
+        return result;
+      }
+    };
+
+  private final Map<String,ProjectProblems> projects =
+    new ConcurrentHashMap<String,ProjectProblems>();
+
+  private ProblemsStore()
+  {
+  }
+
+  /**
+   * Gets the shared instance.
+   *
+   * @return The ProblemsStore.
+   */
+  public static ProblemsStore getInstance()
+  {
+    return instance;
+  }
+
+  /**
+   * Gets the problems for the resources of the supplied project, ordered by
+   * file name and then by position within the file.
+   *
+   * @param project The project.
+   * @param errorsOnly true to only include errors, false to include warnings
+   * as well.
+   * @return List of problems.
+   */
+  public List<Error> getProblems(IProject project, boolean errorsOnly)
+    throws CoreException
+  {
+    return getChanges(project, -1, errorsOnly).getProblems();
+  }
+
+  /**
+   * Gets the problems added and removed for the resources of the supplied
+   * project since the supplied version. If the changes since that version are
+   * no longer available (or the version is unknown), a full snapshot of the
+   * project's problems is returned instead.
+   *
+   * @param project The project.
+   * @param since The version to get the changes since, or -1 to get a full
+   * snapshot.
+   * @param errorsOnly true to only include errors, false to include warnings
+   * as well.
+   * @return The Changes.
+   */
+  public Changes getChanges(IProject project, long since, boolean errorsOnly)
+    throws CoreException
+  {
+    if (!project.isOpen()){
+      return new Changes(versions.get(), new ArrayList<Error>());
+    }
+
+    ProjectProblems store = getProjectProblems(project);
+    synchronized(store){
+      store.update();
+
+      if (since >= store.base && since <= versions.get()){
+        Metrics.increment("problems.store.delta");
+        ProblemsDiff diff = new ProblemsDiff();
+        for (Change change : store.changes){
+          if (change.version > since){
+            diff.apply(change.added, change.removed);
+          }
+        }
+        return new Changes(
+            store.version,
+            filter(diff.getAdded(), errorsOnly),
+            filter(diff.getRemoved(), errorsOnly));
+      }
+
+      Metrics.increment("problems.store.snapshot");
+      ArrayList<Error> problems = new ArrayList<Error>();
+      for (FileProblems file : store.files.values()){
+        if (errorsOnly){
+          if (file.errors > 0){
+            problems.addAll(filter(file.problems, true));
+          }
+        }else{
+          problems.addAll(file.problems);
+        }
+      }
+      return new Changes(store.version, problems);
+    }
+  }
+
+  /**
+   * Discards all stored problems.
+   */
+  public void clear()
+  {
+    projects.clear();
+  }
+
+  @Override
+  public void resourceChanged(IResourceChangeEvent event)
+  {
+    int type = event.getType();
+    if (type == IResourceChangeEvent.PRE_CLOSE ||
+        type == IResourceChangeEvent.PRE_DELETE)
+    {
+      IResource resource = event.getResource();
+      if (resource != null){
+        projects.remove(resource.getName());
+      }
+      return;
+    }
+
+    IMarkerDelta[] deltas = event.findMarkerDeltas(IMarker.PROBLEM, true);
+    for (IMarkerDelta delta : deltas){
+      IProject project = delta.getResource().getProject();
+      ProjectProblems store =
+        project != null ? projects.get(project.getName()) : null;
+      if (store != null){
+        synchronized(store){
+          store.dirty.add(delta.getResource());
+        }
+      }
+    }
+  }
+
+  private ProjectProblems getProjectProblems(IProject project)
+  {
+    String name = project.getName();
+    ProjectProblems store = projects.get(name);
+    if (store == null){
+      synchronized(projects){
+        store = projects.get(name);
+        if (store == null){
+          store = new ProjectProblems(project);
+          projects.put(name, store);
+        }
+      }
+    }
+    return store;
+  }
+
+  private static List<Error> filter(
+      Collection<Error> problems, boolean errorsOnly)
+  {
+    if (!errorsOnly){
+      return new ArrayList<Error>(problems);
+    }
+
+    ArrayList<Error> errors = new ArrayList<Error>();
+    for (Error problem : problems){
+      if (!problem.isWarning()){
+        errors.add(problem);
+      }
+    }
+    return errors;
+  }
+
+  private static String getPath(IResource resource)
+  {
+    IPath location = resource.getLocation();
+    if (location == null || resource.getRawLocation() == null){
+      return null;
+    }
+    return location.toOSString().replace('\\', '/');
+  }
+
+  private static class ProjectProblems
+  {
+    private IProject project;
+    private boolean loaded;
+    private HashSet<IResource> dirty = new HashSet<IResource>();
+
+    // the current version and the oldest version from which the change log
+    // can produce the changes.
+    private long version;
+    private long base;
+    private LinkedList<Change> changes = new LinkedList<Change>();
+
+    // keyed by the absolute file path, sorted the same way the problems are
+    // presented.
+    private TreeMap<String,FileProblems> files =
+      new TreeMap<String,FileProblems>(PATH_COMPARATOR);
+
+    public ProjectProblems(IProject project)
+    {
+      this.project = project;
+    }
+
+    /**
+     * Brings the store up to date, either by loading all the project's
+     * markers, or by re-reading the markers of any resources flagged by
+     * marker deltas since the last update.
+     */
+    public void update()
+      throws CoreException
+    {
+      if (!loaded){
+        load();
+        return;
+      }
+
+      if (dirty.size() == 0){
+        Metrics.increment("problems.store.hit");
+        return;
+      }
+
+      Metrics.increment("problems.store.update");
+      ArrayList<Error> added = new ArrayList<Error>();
+      ArrayList<Error> removed = new ArrayList<Error>();
+      for (IResource resource : dirty){
+        String path = getPath(resource);
+        if (path == null){
+          continue;
+        }
+
+        IMarker[] markers = resource.exists() ?
+          resource.findMarkers(IMarker.PROBLEM, true, IResource.DEPTH_ZERO) :
+          new IMarker[0];
+        FileProblems previous = files.remove(path);
+        FileProblems current = null;
+        if (markers.length > 0){
+          current = new FileProblems(path, markers, previous);
+          files.put(path, current);
+        }
+        diff(previous, current, added, removed);
+      }
+      dirty.clear();
+
+      // builds frequently replace markers with identical ones, which doesn't
+      // warrant a new version.
+      if (added.size() > 0 || removed.size() > 0){
+        version = versions.incrementAndGet();
+        changes.add(new Change(version, added, removed));
+        if (changes.size() > MAX_CHANGES){
+          base = changes.removeFirst().version;
+        }
+      }
+    }
+
+    private void diff(
+        FileProblems previous,
+        FileProblems current,
+        List<Error> added,
+        List<Error> removed)
+    {
+      ProblemsDiff.diff(
+          previous != null ? previous.problems : null,
+          current != null ? current.problems : null,
+          added, removed);
+    }
+
+    private void load()
+      throws CoreException
+    {
+      logger.debug("Loading problems for project: {}", project.getName());
+      Metrics.increment("problems.store.load");
+
+      HashMap<IResource,List<IMarker>> byResource =
+        new HashMap<IResource,List<IMarker>>();
+      IMarker[] markers =
+        project.findMarkers(IMarker.PROBLEM, true, IResource.DEPTH_INFINITE);
+      for (IMarker marker : markers){
+        IResource resource = marker.getResource();
+        List<IMarker> list = byResource.get(resource);
+        if (list == null){
+          list = new ArrayList<IMarker>();
+          byResource.put(resource, list);
+        }
+        list.add(marker);
+      }
+
+      files.clear();
+      for (Map.Entry<IResource,List<IMarker>> entry : byResource.entrySet()){
+        String path = getPath(entry.getKey());
+        if (path == null){
+          continue;
+        }
+        List<IMarker> list = entry.getValue();
+        files.put(path, new FileProblems(
+              path, list.toArray(new IMarker[list.size()]), null));
+      }
+      dirty.clear();
+      loaded = true;
+
+      // a fresh load has no history to produce changes from.
+      version = versions.incrementAndGet();
+      base = version;
+      changes.clear();
+    }
+  }
+
+  private static class FileProblems
+  {
+    private ArrayList<Error> problems;
+    private int errors;
+
+    private long modified;
+    private long length;
+    private FileOffsets offsets;
+
+    public FileProblems(String path, IMarker[] markers, FileProblems previous)
+    {
+      problems = new ArrayList<Error>(markers.length);
+      for (IMarker marker : markers){
+        Map<String,Object> attributes = null;
+        try{
+          attributes = marker.getAttributes();
+        }catch(CoreException ce){
+          // marker removed since obtaining our list, a following delta will
+          // flag the resource again.
+          continue;
+        }
+
+        int severity = attributes.containsKey("severity") ?
+          ((Integer)attributes.get("severity")).intValue() :
+          IMarker.SEVERITY_WARNING;
+        int offset = attributes.containsKey("charStart") ?
+          ((Integer)attributes.get("charStart")).intValue() : 1;
+        int line = attributes.containsKey("lineNumber") ?
+          ((Integer)attributes.get("lineNumber")).intValue() : 1;
+        int[] pos = {1, 1};
+
+        if (offset > 0){
+          FileOffsets offsets = getOffsets(path, previous);
+          if (offsets != null){
+            pos = offsets.offsetToLineColumn(offset);
+          }
+        }
+
+        boolean warning = severity != IMarker.SEVERITY_ERROR;
+        if (!warning){
+          errors++;
+        }
+        problems.add(new Error(
+              (String)attributes.get("message"),
+              path,
+              Math.max(pos[0], line),
+              pos[1],
+              warning));
+      }
+      Collections.sort(problems, POSITION_COMPARATOR);
+
+      if (offsets == null && previous != null){
+        offsets = previous.offsets;
+        modified = previous.modified;
+        length = previous.length;
+      }
+    }
+
+    /**
+     * Gets the line table for the file, reusing the previous one when the file
+     * has not been modified since it was compiled.
+     */
+    private FileOffsets getOffsets(String path, FileProblems previous)
+    {
+      if (offsets != null){
+        return offsets;
+      }
+
+      File file = new File(path);
+      if (!file.isFile()){
+        return null;
+      }
+
+      modified = file.lastModified();
+      length = file.length();
+      if (previous != null && previous.offsets != null &&
+          previous.modified == modified &&
+          previous.length == length)
+      {
+        offsets = previous.offsets;
+      }else{
+        Metrics.increment("problems.store.lines.compiled");
+        offsets = FileOffsets.compile(path);
+      }
+      return offsets;
+    }
+  }
+
+  private static class Change
+  {
+    private long version;
+    private List<Error> added;
+    private List<Error> removed;
+
+    public Change(long version, List<Error> added, List<Error> removed)
+    {
+      this.version = version;
+      this.added = added;
+      this.removed = removed;
+    }
+  }
+
+  /**
+   * The problems of a project at a given version, either as a full snapshot
+   * or as the problems added and removed since a previous version.
+   */
+  public static class Changes
+  {
+    private long version;
+    private List<Error> problems;
+    private List<Error> added;
+    private List<Error> removed;
+
+    private Changes(long version, List<Error> problems)
+    {
+      this.version = version;
+      this.problems = problems;
+    }
+
+    private Changes(long version, List<Error> added, List<Error> removed)
+    {
+      this.version = version;
+      this.added = added;
+      this.removed = removed;
+    }
+
+    /**
+     * Gets the version of the project's problems these changes bring the
+     * client up to.
+     *
+     * @return The version.
+     */
+    public long getVersion()
+    {
+      return version;
+    }
+
+    /**
+     * Determines if this is a full snapshot rather than a set of changes.
+     *
+     * @return true if a snapshot, false otherwise.
+     */
+    public boolean isSnapshot()
+    {
+      return problems != null;
+    }
+
+    /**
+     * Gets the full list of problems when this is a snapshot.
+     *
+     * @return The problems or null if not a snapshot.
+     */
+    public List<Error> getProblems()
+    {
+      return problems;
+    }
+
+    /**
+     * Gets the problems added since the requested version.
+     *
+     * @return The added problems or null if a snapshot.
+     */
+    public List<Error> getAdded()
+    {
+      return added;
+    }
+
+    /**
+     * Gets the problems removed since the requested version.
+     *
+     * @return The removed problems or null if a snapshot.
+     */
+    public List<Error> getRemoved()
+    {
+      return removed;
+    }
+  }
+}
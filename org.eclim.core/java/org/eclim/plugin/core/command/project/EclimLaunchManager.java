@@ -16,11 +16,19 @@
  */
 package org.eclim.plugin.core.command.project;
 
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
+import java.util.concurrent.ConcurrentHashMap;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.debug.core.DebugEvent;
 import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.DebugPlugin;
+import org.eclipse.debug.core.IDebugEventSetListener;
 import org.eclipse.debug.core.ILaunch;
+import org.eclipse.debug.core.ILaunchesListener2;
 import org.eclipse.debug.core.IStreamListener;
 
 import org.eclipse.debug.core.model.IProcess;
@@ -28,51 +36,84 @@ import org.eclipse.debug.core.model.IStreamMonitor;
 
 /**
  * Manages Launches started by ProjectRunCommand
+ * <p/>
+ * Launches are removed, and their output handler notified, as soon as the
+ * debug plugin reports that they have terminated. The registry is a
+ * concurrent map, so status queries never wait on other launches. Once
+ * notified, an output handler is left to send whatever output it still has
+ * queued and is no longer tracked. Output handlers whose launch is removed
+ * from the launch manager without having terminated are closed.
  */
-public class EclimLaunchManager implements Runnable
+public class EclimLaunchManager
+  implements ILaunchesListener2, IDebugEventSetListener
 {
-  private static HashMap<String, LaunchSet> sLaunches =
-    new HashMap<String, LaunchSet>();
-  private static Thread thread;
+  private static final Map<String, LaunchSet> sLaunches =
+    new ConcurrentHashMap<String, LaunchSet>();
+  private static final Map<ILaunch, OutputHandler> sOutputs =
+    new ConcurrentHashMap<ILaunch, OutputHandler>();
+  private static volatile boolean listening;
 
   @Override
-  public void run()
+  public void launchesTerminated(ILaunch[] launches)
   {
-    while (true) {
-      try {
-        Thread.sleep(500);
-      } catch (InterruptedException e) {
-        // we're probably done
-        thread = null;
-        break;
-      }
+    for (ILaunch launch : launches) {
+      cleanLaunch(launch);
+    }
+  }
 
-      cleanLaunches();
+  @Override
+  public void launchesRemoved(ILaunch[] launches)
+  {
+    for (ILaunch launch : launches) {
+      cleanLaunch(launch);
+      OutputHandler output = sOutputs.remove(launch);
+      if (output != null) {
+        output.close();
+      }
     }
   }
 
-  private static synchronized void cleanLaunches()
+  @Override
+  public void launchesAdded(ILaunch[] launches)
   {
-    Iterator<LaunchSet> iter = sLaunches.values().iterator();
-    while (iter.hasNext()) {
-      final LaunchSet set = iter.next();
-      if (set == null) {
-        continue;
+  }
+
+  @Override
+  public void launchesChanged(ILaunch[] launches)
+  {
+  }
+
+  @Override
+  public void handleDebugEvents(DebugEvent[] events)
+  {
+    for (DebugEvent event : events) {
+      if (event.getKind() == DebugEvent.TERMINATE &&
+          event.getSource() instanceof IProcess)
+      {
+        ILaunch launch = ((IProcess)event.getSource()).getLaunch();
+        if (launch != null && launch.isTerminated()) {
+          cleanLaunch(launch);
+        }
       }
+    }
+  }
 
-      if (set.launch.isTerminated()) {
-        iter.remove();
-        set.output.sendTerminated();
+  private static void cleanLaunch(ILaunch launch)
+  {
+    for (Map.Entry<String, LaunchSet> entry : sLaunches.entrySet()) {
+      LaunchSet set = entry.getValue();
+      if (set.launch == launch && sLaunches.remove(entry.getKey(), set)) {
+        set.terminated();
       }
     }
   }
 
-  public static synchronized boolean isRunning(final String launchId)
+  public static boolean isRunning(final String launchId)
   {
     return sLaunches.containsKey(launchId);
   }
 
-  public static synchronized boolean terminate(final String launchId)
+  public static boolean terminate(final String launchId)
     throws DebugException
   {
     LaunchSet set = sLaunches.remove(launchId);
@@ -89,24 +130,34 @@ public class EclimLaunchManager implements Runnable
   {
     if (set.launch.isTerminated()) {
       // already terminated... consider success?
+      set.terminated();
       return;
     }
 
     set.launch.terminate();
-    set.output.sendTerminated();
+    set.terminated();
   }
 
-  public static synchronized void terminateAll()
+  public static void terminateAll()
   {
     Iterator<LaunchSet> iter = sLaunches.values().iterator();
     while (iter.hasNext()) {
       LaunchSet set = iter.next();
+      iter.remove();
       try {
         terminate(set);
       } catch (DebugException e) {
         // just keep moving
       }
-      iter.remove();
+    }
+
+    // the terminated launches' outputs are left to flush the terminated
+    // notification, so only orphaned outputs remain to be closed.
+    Iterator<OutputHandler> outputs = sOutputs.values().iterator();
+    while (outputs.hasNext()) {
+      OutputHandler output = outputs.next();
+      outputs.remove();
+      output.close();
     }
   }
 
@@ -118,7 +169,7 @@ public class EclimLaunchManager implements Runnable
    *  to perform it. The original exception can be retreived
    *  from #getCause()
    */
-  public static synchronized void manage(
+  public static void manage(
       final ILaunch launch,
       final OutputHandler output)
     throws IllegalArgumentException
@@ -129,6 +180,8 @@ public class EclimLaunchManager implements Runnable
       return;
     }
 
+    listen();
+
     // attach NOW so we don't miss anything
     IStreamListener errListener = new IStreamListener()
     {
@@ -167,13 +220,16 @@ public class EclimLaunchManager implements Runnable
       stderr.addListener(errListener);
     }
 
-    final String id = allocateId(launch);
+    final LaunchSet set = new LaunchSet(launch, output);
+    final String id = allocateId(set);
+    sOutputs.put(launch, output);
 
     // procs remaining; prepare the output
     try {
       output.prepare(id);
     } catch (final Exception e) {
-      remove(id);
+      sLaunches.remove(id, set);
+      sOutputs.remove(launch);
       try {
         launch.terminate();
       } catch (final DebugException e2) {
@@ -185,39 +241,42 @@ public class EclimLaunchManager implements Runnable
           "OutputHandler does not support async output", e);
     }
 
-    sLaunches.put(id, new LaunchSet(launch, output));
+    // the launch may have finished before we were listening for it.
+    if (launch.isTerminated()) {
+      cleanLaunch(launch);
+    }
+  }
 
-    if (thread == null) {
-      thread = new Thread(new EclimLaunchManager());
-      thread.setDaemon(true);
-      thread.start();
+  private static void listen()
+  {
+    if (!listening) {
+      synchronized (EclimLaunchManager.class) {
+        if (!listening) {
+          EclimLaunchManager manager = new EclimLaunchManager();
+          DebugPlugin plugin = DebugPlugin.getDefault();
+          plugin.getLaunchManager().addLaunchListener(manager);
+          plugin.addDebugEventListener(manager);
+          listening = true;
+        }
+      }
     }
   }
 
-  private static synchronized String allocateId(ILaunch launch)
+  private static String allocateId(LaunchSet set)
   {
-    final String name = launch.getLaunchConfiguration().getName();
-    if (!sLaunches.containsKey(name)) {
-      // reserve
-      sLaunches.put(name, null);
+    final String name = set.launch.getLaunchConfiguration().getName();
+    if (sLaunches.putIfAbsent(name, set) == null) {
       return name;
     }
 
-    final int token = 1;
+    int token = 1;
     String id;
     do {
-      id = String.format("%s:%d", name, token);
-    } while (sLaunches.containsKey(id));
-
-    sLaunches.put(id, null);
+      id = String.format("%s:%d", name, token++);
+    } while (sLaunches.putIfAbsent(id, set) != null);
     return id;
   }
 
-  private static synchronized void remove(String id)
-  {
-    sLaunches.remove(id);
-  }
-
   public interface OutputHandler
   {
     /**
@@ -231,17 +290,36 @@ public class EclimLaunchManager implements Runnable
     public void sendErr(String line);
     public void sendOut(String line);
     public void sendTerminated();
+
+    /**
+     * Called once the launch has been removed from the launch manager, after
+     * which any output not yet sent may be discarded.
+     */
+    public void close();
   }
 
   private static class LaunchSet
   {
     final ILaunch launch;
     final OutputHandler output;
+    final AtomicBoolean terminated = new AtomicBoolean();
 
     LaunchSet(ILaunch launch, OutputHandler output)
     {
       this.launch = launch;
       this.output = output;
     }
+
+    /**
+     * Notifies the output handler that the launch has terminated and stops
+     * tracking it (only the first call has any effect).
+     */
+    void terminated()
+    {
+      if (terminated.compareAndSet(false, true)) {
+        sOutputs.remove(launch, output);
+        output.sendTerminated();
+      }
+    }
   }
 }
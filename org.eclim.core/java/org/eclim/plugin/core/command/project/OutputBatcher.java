@@ -0,0 +1,277 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.project;
+
+import java.util.LinkedList;
+
+import org.eclim.util.Metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Queues the output of a launch, in the order received from stdout and
+ * stderr, and sends it from a flusher thread in batches.
+ * <p/>
+ * Whatever has accumulated is sent every flush interval, or sooner once a
+ * full batch is ready. Each batch is sent as a json list of [type, line] pairs
+ * escaped for use in a vim double quoted string, and is capped on that
+ * escaped length (output too large to fit in one batch is split, on line
+ * boundaries where possible). If the receiver can't keep up and the backlog
+ * reaches its maximum number of entries, further output is dropped until it
+ * drains, at which point an entry noting how many were dropped is sent in
+ * their place.
+ * <p/>
+ * The flusher thread exits once the terminated entry has been sent, when
+ * {@link #close()} is called, or after several consecutive sends have failed
+ * (vim has most likely exited).
+ *
+ * @author Eric Van Dewoestine
+ */
+public abstract class OutputBatcher
+  implements Runnable
+{
+  public static final String TERMINATED = "terminated";
+
+  private static final int MAX_FAILURES = 3;
+
+  private static final Gson GSON =
+    new GsonBuilder().disableHtmlEscaping().create();
+
+  private final long interval;
+  private final int maxBacklog;
+  private final int maxBatchChars;
+  private final int maxEntryChars;
+  private final LinkedList<Entry> backlog = new LinkedList<Entry>();
+
+  private int backlogChars;
+  private int dropped;
+  private int failures;
+  private boolean terminated;
+  private boolean closed;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param interval The number of milliseconds between flushes.
+   * @param maxBacklog The maximum number of entries to queue.
+   * @param maxBatchChars The maximum escaped length of a batch.
+   */
+  public OutputBatcher(long interval, int maxBacklog, int maxBatchChars)
+  {
+    this.interval = interval;
+    this.maxBacklog = maxBacklog;
+    this.maxBatchChars = maxBatchChars;
+    // escaping a character produces at most 7 (\u0000 -> \\u0000), so this
+    // keeps any single entry within a batch.
+    this.maxEntryChars = (maxBatchChars - 16) / 8;
+  }
+
+  /**
+   * Starts the flusher thread.
+   *
+   * @param name The thread name.
+   */
+  public void start(String name)
+  {
+    Thread thread = new Thread(this, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Queues the supplied output.
+   *
+   * @param type The output type (out, err).
+   * @param text The output text.
+   */
+  public synchronized void queue(String type, String text)
+  {
+    if (terminated || closed) {
+      return;
+    }
+
+    boolean terminating = TERMINATED.equals(type);
+    if (backlog.size() >= maxBacklog && !terminating) {
+      dropped++;
+      Metrics.increment("project.run.output.dropped");
+      return;
+    }
+
+    if (dropped > 0) {
+      add("err", "<" + dropped + " lines dropped>");
+      dropped = 0;
+    }
+    add(type, text);
+    terminated = terminating;
+
+    if (terminated || backlogChars >= maxBatchChars) {
+      notifyAll();
+    }
+  }
+
+  /**
+   * Queues the terminated entry, after which no more output is accepted and
+   * the flusher thread exits once the backlog has been sent.
+   */
+  public void terminate()
+  {
+    queue(TERMINATED, "");
+  }
+
+  /**
+   * Discards any output not yet sent and stops the flusher thread.
+   */
+  public synchronized void close()
+  {
+    closed = true;
+    backlog.clear();
+    backlogChars = 0;
+    notifyAll();
+  }
+
+  /**
+   * Determines if this batcher has been closed.
+   *
+   * @return true if closed, false otherwise.
+   */
+  public synchronized boolean isClosed()
+  {
+    return closed;
+  }
+
+  @Override
+  public void run()
+  {
+    while (true) {
+      StringBuilder batch = new StringBuilder("[");
+      int lines = 0;
+      synchronized(this) {
+        try {
+          if (!closed && !terminated && backlogChars < maxBatchChars) {
+            wait(interval);
+          }
+        } catch (InterruptedException ie) {
+          return;
+        }
+
+        if (closed || (terminated && backlog.isEmpty())) {
+          return;
+        }
+
+        while (!backlog.isEmpty() &&
+            (lines == 0 ||
+             batch.length() + backlog.getFirst().json.length() + 2 <=
+             maxBatchChars))
+        {
+          Entry entry = backlog.removeFirst();
+          if (lines > 0) {
+            batch.append(',');
+          }
+          batch.append(entry.json);
+          backlogChars -= entry.json.length();
+          lines++;
+        }
+      }
+
+      if (lines == 0) {
+        continue;
+      }
+
+      batch.append(']');
+      boolean sent;
+      try {
+        sent = send(batch.toString());
+      } catch (Exception e) {
+        sent = false;
+      }
+
+      if (sent) {
+        failures = 0;
+        Metrics.increment("project.run.output.batches");
+        Metrics.add("project.run.output.lines", lines);
+      } else {
+        failures++;
+        Metrics.increment("project.run.output.failed");
+        if (failures >= MAX_FAILURES) {
+          close();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Sends a batch of output.
+   *
+   * @param json The json list of [type, line] pairs, already escaped for use
+   * in a vim double quoted string.
+   * @return true if the batch was sent, false otherwise.
+   */
+  protected abstract boolean send(String json);
+
+  /**
+   * Escapes the supplied value for use in a vim double quoted string.
+   *
+   * @param value The value to escape.
+   * @return The escaped value.
+   */
+  public static String escape(String value)
+  {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+
+  private void add(String type, String text)
+  {
+    // vim splits the line on carriage returns.
+    String clean = text.trim()
+      .replace("\r\n", "\n")
+      .replace('\n', '\r')
+      .replace("\t", "    ");
+
+    // split anything too large for a single batch, on line boundaries where
+    // possible.
+    while (clean.length() > maxEntryChars) {
+      int index = clean.lastIndexOf('\r', maxEntryChars);
+      if (index > 0) {
+        addEntry(type, clean.substring(0, index));
+        clean = clean.substring(index + 1);
+      } else {
+        addEntry(type, clean.substring(0, maxEntryChars));
+        clean = clean.substring(maxEntryChars);
+      }
+    }
+    addEntry(type, clean);
+  }
+
+  private void addEntry(String type, String text)
+  {
+    Entry entry = new Entry(escape(GSON.toJson(new String[]{type, text})));
+    backlog.add(entry);
+    backlogChars += entry.json.length();
+  }
+
+  private static class Entry
+  {
+    final String json;
+
+    Entry(String json)
+    {
+      this.json = json;
+    }
+  }
+}
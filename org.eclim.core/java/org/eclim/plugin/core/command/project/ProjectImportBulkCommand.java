@@ -0,0 +1,368 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.project;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclim.Services;
+
+import org.eclim.annotation.Command;
+
+import org.eclim.command.CommandLine;
+import org.eclim.command.Options;
+
+import org.eclim.logging.Logger;
+
+import org.eclim.plugin.core.command.AbstractCommand;
+
+import org.eclim.plugin.core.util.WorkerPool;
+
+import org.eclim.util.Metrics;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceDescription;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.resources.WorkspaceJob;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+
+import com.google.gson.Gson;
+
+/**
+ * Command to import all the projects (folders containing a .project file)
+ * found under a directory.
+ * <p/>
+ * The .project files are located and loaded in parallel, then all the
+ * projects are created and opened in a single workspace operation with auto
+ * building disabled, so that importing a large checkout triggers one build at
+ * the end instead of one per project.
+ * <p/>
+ * Note that auto building is a workspace wide setting, so while the import is
+ * running no other project is auto built either. The setting is restored once
+ * the projects have been created (even if the import fails), and bulk imports
+ * are run one at a time so that one import can't observe the setting disabled
+ * by another and leave it off. Unlike :ProjectImport, the client's nature
+ * specific import hooks are not run for the imported projects.
+ * <p/>
+ * The result is the list of projects found along with how each import went
+ * and the time taken. When the stream option is supplied, each project's
+ * result is also written, as a line of json, as soon as it has been imported.
+ *
+ * @author Eric Van Dewoestine
+ */
+@Command(
+  name = "project_import_bulk",
+  options =
+    "REQUIRED f folder ARG," +
+    "OPTIONAL l stream NOARG"
+)
+public class ProjectImportBulkCommand
+  extends AbstractCommand
+{
+  private static final Logger logger =
+    Logger.getLogger(ProjectImportBulkCommand.class);
+
+  private static final String DOT_PROJECT = ".project";
+
+  // serializes bulk imports, which temporarily disable workspace auto building.
+  private static final Object LOCK = new Object();
+
+  @Override
+  public Object execute(CommandLine commandLine)
+    throws Exception
+  {
+    String folder = commandLine.getValue(Options.FOLDER_OPTION);
+    File root = new File(folder);
+    if (!root.isDirectory()){
+      return Services.getMessage("project.directory.missing", folder);
+    }
+
+    long start = System.currentTimeMillis();
+    ArrayList<File> dotprojects = new ArrayList<File>();
+    scan(root.getCanonicalFile(), dotprojects);
+    Collections.sort(dotprojects);
+    logger.info("Found {} projects under {}", dotprojects.size(), folder);
+
+    final IWorkspace workspace = ResourcesPlugin.getWorkspace();
+    final List<Result> results = load(workspace, dotprojects);
+
+    Gson gson =
+      commandLine.hasOption(Options.STREAM_OPTION) ? new Gson() : null;
+    int imported;
+    synchronized(LOCK){
+      imported = importProjects(workspace, results, gson);
+    }
+
+    long millis = System.currentTimeMillis() - start;
+    Metrics.add("project.import.bulk.millis", millis);
+    logger.info(Services.getMessage("project.import.bulk",
+          imported, results.size(), millis));
+
+    return results;
+  }
+
+  /**
+   * Creates and opens the loaded projects in a single workspace operation
+   * with auto building disabled, followed by one build if auto building was
+   * enabled.
+   *
+   * @return The number of projects imported.
+   */
+  private int importProjects(
+      final IWorkspace workspace, final List<Result> results, final Gson gson)
+    throws CoreException
+  {
+    IWorkspaceDescription description = workspace.getDescription();
+    boolean autobuild = description.isAutoBuilding();
+    if (autobuild){
+      description.setAutoBuilding(false);
+      workspace.setDescription(description);
+    }
+
+    final AtomicInteger imported = new AtomicInteger();
+    try{
+      workspace.run(new IWorkspaceRunnable(){
+        public void run(IProgressMonitor monitor)
+        {
+          int index = 0;
+          for (Result result : results){
+            index++;
+            if (result.description != null){
+              create(workspace, result);
+              if (Result.IMPORTED.equals(result.status)){
+                imported.incrementAndGet();
+              }
+            }
+            logger.info("[{}/{}] {}: {} ({}ms)",
+                index, results.size(), result.project,
+                result.status, result.millis);
+            if (gson != null){
+              getContext().out.println(gson.toJson(result));
+              getContext().out.flush();
+            }
+          }
+        }
+      }, workspace.getRoot(), IWorkspace.AVOID_UPDATE, null);
+    }finally{
+      if (autobuild){
+        description = workspace.getDescription();
+        description.setAutoBuilding(true);
+        workspace.setDescription(description);
+      }
+    }
+
+    if (autobuild && imported.get() > 0){
+      build(workspace);
+    }
+    return imported.get();
+  }
+
+  /**
+   * Recursively locates the .project files under the supplied directory,
+   * skipping hidden directories (vcs metadata, etc.) and symlinks.
+   */
+  private void scan(File dir, List<File> dotprojects)
+    throws IOException
+  {
+    File dotproject = new File(dir, DOT_PROJECT);
+    if (dotproject.isFile()){
+      dotprojects.add(dotproject);
+    }
+
+    File[] children = dir.listFiles();
+    if (children == null){
+      return;
+    }
+    for (File child : children){
+      if (child.isDirectory() &&
+          !child.getName().startsWith(".") &&
+          child.getCanonicalFile().equals(child.getAbsoluteFile()))
+      {
+        scan(child, dotprojects);
+      }
+    }
+  }
+
+  /**
+   * Loads the project descriptions in parallel (reading and parsing each
+   * .project file doesn't require any workspace locks).
+   */
+  private List<Result> load(final IWorkspace workspace, List<File> dotprojects)
+    throws Exception
+  {
+    ArrayList<Result> results = new ArrayList<Result>();
+    if (dotprojects.size() == 0){
+      return results;
+    }
+
+    if (WorkerPool.isWorker()){
+      for (File dotproject : dotprojects){
+        results.add(load(workspace, dotproject));
+      }
+      return results;
+    }
+
+    ExecutorService executor = WorkerPool.getExecutor();
+    ArrayList<Future<Result>> futures = new ArrayList<Future<Result>>();
+    try{
+      for (final File dotproject : dotprojects){
+        futures.add(executor.submit(new Callable<Result>(){
+          public Result call()
+          {
+            return load(workspace, dotproject);
+          }
+        }));
+      }
+      for (Future<Result> future : futures){
+        try{
+          results.add(future.get());
+        }catch(ExecutionException ee){
+          Throwable cause = ee.getCause();
+          if (cause instanceof Exception){
+            throw (Exception)cause;
+          }
+          throw ee;
+        }
+      }
+    }finally{
+      for (Future<Result> future : futures){
+        future.cancel(true);
+      }
+    }
+    return results;
+  }
+
+  private Result load(IWorkspace workspace, File dotproject)
+  {
+    long start = System.currentTimeMillis();
+    Result result = new Result();
+    result.folder = dotproject.getParent().replace('\\', '/');
+    try{
+      IProjectDescription description =
+        workspace.loadProjectDescription(new Path(dotproject.getPath()));
+      result.project = description.getName();
+
+      IProject project = workspace.getRoot().getProject(result.project);
+      if (project.exists()){
+        result.status = Result.EXISTS;
+        result.message = Services.getMessage(
+            "project.name.exists", result.project, result.folder);
+      }else{
+        // projects located directly in the workspace root don't record a
+        // location.
+        IPath location = new Path(dotproject.getParent());
+        if (workspace.getRoot().getLocation().isPrefixOf(location) &&
+            location.segmentCount() ==
+            workspace.getRoot().getLocation().segmentCount() + 1)
+        {
+          location = null;
+        }
+        description.setLocation(location);
+        result.description = description;
+      }
+    }catch(CoreException ce){
+      logger.error("Unable to load project description: " + dotproject, ce);
+      result.project = dotproject.getParentFile().getName();
+      result.status = Result.FAILED;
+      result.message = ce.getMessage();
+    }
+    result.millis = System.currentTimeMillis() - start;
+    return result;
+  }
+
+  private void create(IWorkspace workspace, Result result)
+  {
+    long start = System.currentTimeMillis();
+    IProject project = workspace.getRoot().getProject(result.project);
+    try{
+      if (project.exists()){
+        // another .project under the folder declared the same name.
+        result.status = Result.EXISTS;
+        result.message = Services.getMessage(
+            "project.name.exists", result.project, result.folder);
+      }else{
+        project.create(result.description, new NullProgressMonitor());
+        project.open(new NullProgressMonitor());
+        result.status = Result.IMPORTED;
+        result.message =
+          Services.getMessage("project.imported", result.project);
+      }
+    }catch(CoreException ce){
+      logger.error("Unable to import project: " + result.folder, ce);
+      result.status = Result.FAILED;
+      result.message = Services.getMessage(
+          "project.import.failed", result.project);
+    }
+    result.description = null;
+    result.millis += System.currentTimeMillis() - start;
+  }
+
+  /**
+   * Runs a single incremental build of the workspace in the background.
+   */
+  private void build(final IWorkspace workspace)
+  {
+    WorkspaceJob job = new WorkspaceJob("eclim project_import_bulk build"){
+      public IStatus runInWorkspace(IProgressMonitor monitor)
+        throws CoreException
+      {
+        workspace.build(IncrementalProjectBuilder.INCREMENTAL_BUILD, monitor);
+        return Status.OK_STATUS;
+      }
+    };
+    job.setRule(workspace.getRuleFactory().buildRule());
+    job.schedule();
+  }
+
+  private static class Result
+  {
+    private static final String IMPORTED = "imported";
+    private static final String EXISTS = "exists";
+    private static final String FAILED = "failed";
+
+    private String project;
+    private String folder;
+    private String status;
+    private String message;
+    private long millis;
+
+    // only needed until the project is created, so excluded from the json.
+    private transient IProjectDescription description;
+  }
+}
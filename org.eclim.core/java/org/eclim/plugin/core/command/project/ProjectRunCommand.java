@@ -424,22 +424,39 @@ public class ProjectRunCommand
 
     @Override
     public void sendTerminated() {}
+
+    @Override
+    public void close() {}
   }
 
+  /**
+   * Output handler which sends the launch's output to vim.
+   * <p/>
+   * Each vim remote call may spawn a new vim process, so rather than sending a
+   * call per line, the output is batched (see {@link OutputBatcher}), with each
+   * batch sent in a single call.
+   */
   private static class VimOutputHandler
+    extends OutputBatcher
     implements OutputHandler
   {
+    private static final String CALLBACK = "eclim#project#run#onOutputBatch";
+    private static final long FLUSH_INTERVAL = 50;
+    private static final int MAX_BACKLOG = 10000;
+    // keep each call (including the callback name and buffer number) under
+    // the limit of a vim --remote-expr argument.
+    private static final int MAX_BATCH_CHARS = 8000;
+
     private final VimClient client;
     private final String projectName;
     private final String configName;
-    private final ArrayList<PendingOutput> pendingOutput =
-      new ArrayList<PendingOutput>();
 
     private String bufNo;
 
     public VimOutputHandler(
         VimClient client, String projectName, String configName)
     {
+      super(FLUSH_INTERVAL, MAX_BACKLOG, MAX_BATCH_CHARS);
       this.client = client;
       this.projectName = projectName;
       this.configName = configName;
@@ -456,62 +473,44 @@ public class ProjectRunCommand
 
       bufNo = rawResult.trim();
 
-      for (PendingOutput output : pendingOutput) {
-        sendLine(output.type, output.line);
-      }
-      pendingOutput.clear();
+      // any output received before now is already queued.
+      start("eclim project_run output: " + configName);
     }
 
     @Override
     public void sendErr(String line)
     {
-      sendLine("err", line);
+      queue("err", line);
     }
 
     @Override
     public void sendOut(String line)
     {
-      sendLine("out", line);
+      queue("out", line);
     }
 
     @Override
     public void sendTerminated()
     {
-      sendLine("terminated", "");
+      terminate();
     }
 
-    private void sendLine(String type, String line)
+    @Override
+    protected boolean send(String json)
     {
-      if (bufNo == null) {
-        // not prepared yet; queue for later
-        pendingOutput.add(new PendingOutput(type, line));
-        return;
-      }
       try {
-        final String clean = line.trim()
-          .replaceAll("\n", "\\\\r")
-          .replaceAll("\t", "    ");
-        logger.debug("Sending cleaned: ``{}''", clean);
-        logger.debug("original: ``{}''", line);
-
-        // functionExpr is safer, in case they're in input mode
-        client.remoteFunctionExpr("eclim#project#run#onOutput", bufNo, type, clean);
+        logger.debug("Sending {} chars", json.length());
+        String result = client.remoteExpr(
+            CALLBACK + "(\"" + bufNo + "\", \"" + json + "\")");
+        // the callback returns 1 once the lines have been appended.
+        if (result != null && "1".equals(result.trim())) {
+          return true;
+        }
+        logger.debug("Unable to send output: {}", result);
       } catch (Exception e) {
-        logger.error("error", e);
-        // no worries
-      }
-    }
-
-    private static final class PendingOutput
-    {
-      private final String type;
-      private final String line;
-
-      public PendingOutput(String type, String line)
-      {
-        this.type = type;
-        this.line = line;
+        logger.debug("Unable to send output", e);
       }
+      return false;
     }
   }
 
@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.validate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.Future;
+
+import org.eclim.annotation.Command;
+
+import org.eclim.command.CommandLine;
+import org.eclim.command.Error;
+import org.eclim.command.Options;
+
+import org.eclim.logging.Logger;
+
+import org.eclim.plugin.core.command.AbstractCommand;
+
+import org.eclim.plugin.core.util.ProjectUtils;
+import org.eclim.plugin.core.util.VimClient;
+import org.eclim.plugin.core.util.WorkerPool;
+
+import org.eclim.util.Metrics;
+
+import org.eclipse.core.resources.IProject;
+
+import com.google.gson.Gson;
+
+/**
+ * Command which schedules the validation of a file which was just saved and
+ * returns immediately. The validation runs in the background and the results
+ * are pushed to the vim instance with the supplied server name once
+ * available. Validations run on the shared {@link WorkerPool}.
+ * <p/>
+ * Only the results of the latest save of a file are delivered: when a file is
+ * saved again before the previous validation has run, that validation is
+ * cancelled, and if it was already running, its results are discarded.
+ * <p/>
+ * Returns false if no validator is registered for the file, in which case the
+ * client should fall back to validating synchronously.
+ *
+ * @author Eric Van Dewoestine
+ */
+@Command(
+  name = "validate_async",
+  options =
+    "REQUIRED p project ARG," +
+    "REQUIRED f file ARG," +
+    "REQUIRED v vim_instance_name ARG," +
+    "OPTIONAL x vim_executable ARG"
+)
+public class ValidateAsyncCommand
+  extends AbstractCommand
+{
+  private static final Logger logger =
+    Logger.getLogger(ValidateAsyncCommand.class);
+
+  private static final String CALLBACK = "eclim#lang#ValidateAsyncResults";
+
+  private static final Map<String,Run> runs = new HashMap<String,Run>();
+
+  @Override
+  public Object execute(CommandLine commandLine)
+    throws Exception
+  {
+    String projectName = commandLine.getValue(Options.PROJECT_OPTION);
+    String file = commandLine.getValue(Options.FILE_OPTION);
+    String instanceId = commandLine.getValue(Options.VIM_INSTANCE_OPTION);
+    String executable = commandLine.getValue(Options.VIM_EXECUTABLE_OPTION);
+
+    IProject project = ProjectUtils.getProject(projectName);
+    ValidateFilesCommand.Validator validator =
+      ValidateFilesCommand.getValidator(project, file);
+    if (validator == null){
+      return Boolean.FALSE;
+    }
+
+    VimClient client = executable != null ?
+      new VimClient(executable, instanceId) : new VimClient(instanceId);
+    schedule(new Run(client, project, file, validator));
+    return Boolean.TRUE;
+  }
+
+  private static synchronized void schedule(Run run)
+  {
+    Run previous = runs.put(run.key, run);
+    if (previous != null){
+      // don't interrupt a running validation (interrupting eclipse code
+      // performing io can close shared file channels), just discard its
+      // results once it completes.
+      if (previous.future.cancel(false)){
+        Metrics.increment("validate.async.cancelled");
+      }
+    }
+    run.future = WorkerPool.getExecutor().submit(run);
+  }
+
+  /**
+   * Determines if the supplied run is still the latest for its file, removing
+   * it when it is complete.
+   */
+  private static synchronized boolean isCurrent(Run run, boolean complete)
+  {
+    if (runs.get(run.key) != run){
+      return false;
+    }
+    if (complete){
+      runs.remove(run.key);
+    }
+    return true;
+  }
+
+  private static class Run
+    implements Runnable
+  {
+    private VimClient client;
+    private IProject project;
+    private String file;
+    private ValidateFilesCommand.Validator validator;
+    private String key;
+    private Future<?> future;
+
+    public Run(
+        VimClient client,
+        IProject project,
+        String file,
+        ValidateFilesCommand.Validator validator)
+    {
+      this.client = client;
+      this.project = project;
+      this.file = file;
+      this.validator = validator;
+      this.key = client.getId() + ':' + project.getName() + ':' + file;
+    }
+
+    @Override
+    public void run()
+    {
+      if (!isCurrent(this, false)){
+        return;
+      }
+
+      ValidateFilesCommand.Result result =
+        ValidateFilesCommand.validate(project, file, validator);
+
+      if (!isCurrent(this, true)){
+        logger.debug("Discarding superseded validation: {}", file);
+        Metrics.increment("validate.async.discarded");
+        return;
+      }
+
+      try{
+        client.remoteExpr(CALLBACK + "(" +
+            quote(project.getName()) + ", " +
+            quote(file) + ", " +
+            quote(toJson(result.errors)) + ")");
+        Metrics.increment("validate.async.delivered");
+      }catch(Exception e){
+        logger.error("Unable to send validation results to vim: " + file, e);
+      }
+    }
+
+    /**
+     * Serializes the errors for vim (which has no boolean type).
+     */
+    private String toJson(List<Error> errors)
+    {
+      ArrayList<Map<String,Object>> results =
+        new ArrayList<Map<String,Object>>();
+      for (Error error : errors){
+        HashMap<String,Object> result = new HashMap<String,Object>();
+        result.put("message", error.getMessage());
+        result.put("filename", error.getFilename());
+        result.put("line", error.getLine());
+        result.put("column", error.getColumn());
+        result.put("endLine", error.getEndLine());
+        result.put("endColumn", error.getEndColumn());
+        result.put("warning", error.isWarning() ? 1 : 0);
+        results.add(result);
+      }
+      return new Gson().toJson(results);
+    }
+
+    /**
+     * Quotes the supplied value as a vim double quoted string.
+     */
+    private String quote(String value)
+    {
+      return '"' + value
+        .replace("\\", "\\\\")
+        .replace("\"", "\\\"")
+        .replace("\n", "\\n") + '"';
+    }
+  }
+}
@@ -0,0 +1,416 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.validate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.eclim.Services;
+
+import org.eclim.annotation.Command;
+
+import org.eclim.command.CommandLine;
+import org.eclim.command.Error;
+import org.eclim.command.Options;
+
+import org.eclim.logging.Logger;
+
+import org.eclim.plugin.core.command.AbstractCommand;
+
+import org.eclim.plugin.core.util.ProjectUtils;
+import org.eclim.plugin.core.util.WorkerPool;
+
+import org.eclim.util.StringUtils;
+
+import org.eclipse.core.resources.IProject;
+
+import org.eclipse.core.runtime.CoreException;
+
+import org.eclipse.swt.widgets.Display;
+
+import com.google.gson.Gson;
+
+/**
+ * Command which validates a list of project relative files in one request.
+ * <p/>
+ * Each file is dispatched to the src update command registered for its
+ * extension and one of the project's natures, and the files are validated in
+ * parallel on eclimd's shared {@link WorkerPool}. Validators which can't
+ * safely run concurrently against the same project are serialized per
+ * project.
+ * <p/>
+ * By default the errors for all the files are merged into a single list, but
+ * the results can instead be streamed, one json object per line, as each file
+ * completes.
+ *
+ * @author Eric Van Dewoestine
+ */
+@Command(
+  name = "validate_files",
+  options =
+    "REQUIRED p project ARG," +
+    "OPTIONAL s stdin NOARG," +
+    "OPTIONAL l stream NOARG," +
+    "OPTIONAL f files ANY"
+)
+public class ValidateFilesCommand
+  extends AbstractCommand
+{
+  private static final Logger logger =
+    Logger.getLogger(ValidateFilesCommand.class);
+
+  private static final ArrayList<Validator> validators =
+    new ArrayList<Validator>();
+
+  private static final Map<String,Object> locks =
+    new ConcurrentHashMap<String,Object>();
+
+  /**
+   * Registers the src update command used to validate files with the supplied
+   * extensions in projects with the supplied nature.
+   *
+   * @param nature The project nature.
+   * @param command The name of the src update command, which must support the
+   * -p, -f, and -v options.
+   * @param locked true if the command can only validate one file at a time per
+   * project.
+   * @param extensions The file extensions (without the '.').
+   */
+  public static synchronized void addValidator(
+      String nature, String command, boolean locked, String... extensions)
+  {
+    logger.debug("add validator: nature: {} command: {}", nature, command);
+    validators.add(new Validator(nature, command, locked, extensions));
+  }
+
+  @Override
+  public Object execute(CommandLine commandLine)
+    throws Exception
+  {
+    String projectName = commandLine.getValue(Options.PROJECT_OPTION);
+    final IProject project = ProjectUtils.getProject(projectName);
+    boolean stream = commandLine.hasOption(Options.STREAM_OPTION);
+
+    // files may be supplied as args and/or one per line via stdin (allowing
+    // for more files than would fit on a command line).
+    LinkedHashSet<String> files = new LinkedHashSet<String>();
+    String[] values = commandLine.getValues(Options.FILE_OPTION);
+    if (values != null){
+      for (String value : values){
+        files.add(value);
+      }
+    }
+    String contents = getStdinContents(commandLine);
+    if (contents != null){
+      for (String line : StringUtils.split(contents, "\r\n")){
+        if (line.trim().length() > 0){
+          files.add(line.trim());
+        }
+      }
+    }
+
+    ArrayList<String> toValidate = new ArrayList<String>();
+    final HashMap<String,Validator> byFile = new HashMap<String,Validator>();
+    for (String file : files){
+      Validator validator = getValidator(project, file);
+      if (validator == null){
+        logger.debug("No validator found for file: {}", file);
+        continue;
+      }
+      toValidate.add(file);
+      byFile.put(file, validator);
+    }
+
+    if (toValidate.size() == 0){
+      return stream ? null : new ArrayList<Error>();
+    }
+
+    HashMap<String,List<Error>> results = new HashMap<String,List<Error>>();
+
+    final Display display = Display.getCurrent();
+    Gson gson = stream ? new Gson() : null;
+
+    // already running on a worker (invoked by another command), so validate
+    // inline rather than waiting on the pool we're a part of.
+    if (WorkerPool.isWorker()){
+      for (String file : toValidate){
+        Result result = validate(project, file, byFile.get(file));
+        if (stream){
+          print(gson, result);
+        }else{
+          results.put(result.file, result.errors);
+        }
+      }
+      return stream ? null : merge(toValidate, results);
+    }
+
+    // files whose validator can only validate one file at a time per project
+    // are validated in sequence by a single task, rather than tying up a
+    // worker per file just to wait on the lock.
+    LinkedHashMap<String,List<String>> groups =
+      new LinkedHashMap<String,List<String>>();
+    for (String file : toValidate){
+      Validator validator = byFile.get(file);
+      String key = validator.locked ?
+        getLockKey(project, validator) : "file:" + file;
+      List<String> group = groups.get(key);
+      if (group == null){
+        group = new ArrayList<String>();
+        groups.put(key, group);
+      }
+      group.add(file);
+    }
+
+    final LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+    ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+    try{
+      ExecutorService executor = WorkerPool.getExecutor();
+      for (final List<String> group : groups.values()){
+        futures.add(executor.submit(new Runnable(){
+          public void run()
+          {
+            try{
+              for (String file : group){
+                if (Thread.currentThread().isInterrupted()){
+                  return;
+                }
+                queue.add(validate(project, file, byFile.get(file)));
+                wake(display);
+              }
+            }catch(Throwable t){
+              queue.add(t);
+              wake(display);
+            }
+          }
+        }));
+      }
+
+      for (int ii = 0; ii < toValidate.size(); ii++){
+        Result result = take(queue, display);
+        if (stream){
+          print(gson, result);
+        }else{
+          results.put(result.file, result.errors);
+        }
+      }
+    }finally{
+      // the pool is shared, so only cancel our own outstanding files (if
+      // we failed part way through).
+      for (Future<?> future : futures){
+        future.cancel(true);
+      }
+    }
+
+    return stream ? null : merge(toValidate, results);
+  }
+
+  /**
+   * Streams the supplied result to the client as a single line of json.
+   */
+  private void print(Gson gson, Result result)
+  {
+    HashMap<String,Object> line = new HashMap<String,Object>();
+    line.put("file", result.file);
+    line.put("errors", result.errors);
+    getContext().out.println(gson.toJson(line));
+    getContext().out.flush();
+  }
+
+  /**
+   * Merges the results in the order the files were supplied.
+   */
+  private List<Error> merge(
+      List<String> files, Map<String,List<Error>> results)
+  {
+    ArrayList<Error> errors = new ArrayList<Error>();
+    for (String file : files){
+      errors.addAll(results.get(file));
+    }
+    return errors;
+  }
+
+  /**
+   * Wakes the ui thread if it is waiting on a result.
+   */
+  private static void wake(Display display)
+  {
+    if (display != null && !display.isDisposed()){
+      display.wake();
+    }
+  }
+
+  /**
+   * Waits on the next completed result. When invoked on the ui thread, ui
+   * events continue to be dispatched while waiting, so that validators which
+   * need to run code on the ui thread can do so.
+   */
+  private Result take(BlockingQueue<Object> queue, Display display)
+    throws Exception
+  {
+    Object next = null;
+    if (display == null){
+      next = queue.take();
+    }else{
+      while ((next = queue.poll()) == null){
+        if (!display.readAndDispatch()){
+          display.sleep();
+        }
+      }
+    }
+
+    if (next instanceof Exception){
+      throw (Exception)next;
+    }
+    if (next instanceof java.lang.Error){
+      throw (java.lang.Error)next;
+    }
+    return (Result)next;
+  }
+
+  /**
+   * Validates the supplied file using the supplied validator.
+   *
+   * @param project The project.
+   * @param file The project relative file path.
+   * @param validator The validator for the file.
+   * @return The validation Result.
+   */
+  @SuppressWarnings("unchecked")
+  static Result validate(IProject project, String file, Validator validator)
+  {
+    Result result = new Result();
+    result.file = file;
+
+    String[] args = new String[]{
+      "-command", validator.command,
+      "-p", project.getName(),
+      "-f", file,
+      "-v",
+    };
+    org.eclim.command.Command command = Services.getCommand(validator.command);
+    CommandLine commandLine = null;
+    try{
+      commandLine = new Options().parse(args);
+      Object lock = validator.locked ? getLock(project, validator) : null;
+      Object errors = null;
+      if (lock != null){
+        synchronized(lock){
+          errors = command.execute(commandLine);
+        }
+      }else{
+        errors = command.execute(commandLine);
+      }
+      result.errors = errors instanceof List ?
+        (List<Error>)errors : new ArrayList<Error>();
+    }catch(Exception e){
+      logger.error("Failed to validate file: " + file, e);
+      result.errors = new ArrayList<Error>();
+      result.errors.add(new Error(
+            e.getMessage() != null ? e.getMessage() : e.toString(),
+            file, 1, 1, false));
+    }finally{
+      if (commandLine != null){
+        command.cleanup(commandLine);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Gets the validator registered for the supplied file.
+   *
+   * @param project The project containing the file.
+   * @param file The project relative file path.
+   * @return The Validator or null if none is registered for the file.
+   */
+  static Validator getValidator(IProject project, String file)
+    throws CoreException
+  {
+    int index = file.lastIndexOf('.');
+    if (index == -1){
+      return null;
+    }
+
+    String ext = file.substring(index + 1).toLowerCase();
+    synchronized(ValidateFilesCommand.class){
+      for (Validator validator : validators){
+        if (validator.extensions.contains(ext) &&
+            project.hasNature(validator.nature))
+        {
+          return validator;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String getLockKey(IProject project, Validator validator)
+  {
+    return project.getName() + ':' + validator.nature;
+  }
+
+  private static Object getLock(IProject project, Validator validator)
+  {
+    String key = getLockKey(project, validator);
+    Object lock = locks.get(key);
+    if (lock == null){
+      synchronized(locks){
+        lock = locks.get(key);
+        if (lock == null){
+          lock = new Object();
+          locks.put(key, lock);
+        }
+      }
+    }
+    return lock;
+  }
+
+  static class Validator
+  {
+    private String nature;
+    private String command;
+    private boolean locked;
+    private LinkedHashSet<String> extensions = new LinkedHashSet<String>();
+
+    public Validator(
+        String nature, String command, boolean locked, String[] extensions)
+    {
+      this.nature = nature;
+      this.command = command;
+      this.locked = locked;
+      for (String ext : extensions){
+        this.extensions.add(ext.toLowerCase());
+      }
+    }
+  }
+
+  static class Result
+  {
+    public String file;
+    public List<Error> errors;
+  }
+}
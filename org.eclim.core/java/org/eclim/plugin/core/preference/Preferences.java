@@ -17,19 +17,29 @@
 package org.eclim.plugin.core.preference;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.apache.commons.lang.ArrayUtils;
 
 import org.eclim.Services;
 
 import org.eclim.logging.Logger;
 
+import org.eclim.util.Metrics;
+
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.ProjectScope;
+import org.eclipse.core.resources.ResourcesPlugin;
 
 import org.eclipse.core.runtime.CoreException;
 
@@ -37,6 +47,11 @@ import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.IScopeContext;
 import org.eclipse.core.runtime.preferences.InstanceScope;
 
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.INodeChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.NodeChangeEvent;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
+
 import org.osgi.service.prefs.BackingStoreException;
 
 import com.google.gson.Gson;
@@ -49,6 +64,14 @@ import com.google.gson.reflect.TypeToken;
  * This class uses the word 'option' for a built in eclipse options (like the
  * jdt compiler source version), and the word 'preference' for eclim provided
  * key values.
+ * <p/>
+ * The merged option/preference values for the workspace and for each project
+ * are cached as immutable snapshots, which also hold the parsed form of any
+ * typed (int, array, set, map) values requested from them. Snapshots are
+ * discarded when a change is reported to one of the underlying eclipse
+ * preference nodes (or when a project's description changes, since the
+ * available options depend on the project's natures), so lookups can be
+ * served concurrently without re-reading or re-parsing anything.
  *
  * @author Eric Van Dewoestine
  */
@@ -66,19 +89,29 @@ public class Preferences
   private static final String CORE = "core";
   private static final String GLOBAL = "_global_";
 
+  private static final Gson GSON = new Gson();
+
   private static Preferences instance = new Preferences();
   private static Map<String, OptionHandler> optionHandlers =
-    new HashMap<String, OptionHandler>();
-
-  private Map<String, Preference> preferences = new HashMap<String, Preference>();
-  private Map<String, Option> options = new HashMap<String, Option>();
-
-  // cache preference values
-  private Map<String, Map<String, String>> preferenceValues =
-    new HashMap<String, Map<String, String>>();
-  // cache option values
-  private Map<String, Map<String, String>> optionValues =
-    new HashMap<String, Map<String, String>>();
+    new ConcurrentHashMap<String, OptionHandler>();
+
+  private Map<String, Preference> preferences =
+    new ConcurrentHashMap<String, Preference>();
+  private Map<String, Option> options = new ConcurrentHashMap<String, Option>();
+
+  // cached snapshots of the merged option/preference values by project name
+  // (or GLOBAL).
+  private Map<String, Snapshot> snapshots =
+    new ConcurrentHashMap<String, Snapshot>();
+  // incremented (while holding the snapshots lock) on every invalidation, so
+  // that a snapshot built from values which have since changed is never
+  // published.
+  private long generation;
+
+  // scopes (project name or GLOBAL) whose preference nodes we are listening to
+  private Set<String> listening =
+    Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private boolean listeningToResources;
 
   private Preferences() {}
 
@@ -135,7 +168,7 @@ public class Preferences
   public void addPreference(Preference preference)
   {
     preferences.put(preference.getName(), preference);
-    preferenceValues.clear();
+    invalidate(null);
   }
 
   /**
@@ -156,7 +189,7 @@ public class Preferences
   public void addOption(Option option)
   {
     options.put(option.getName(), option);
-    optionValues.clear();
+    invalidate(null);
   }
 
   /**
@@ -171,13 +204,15 @@ public class Preferences
 
   /**
    * Clear cached option/preference values.
+   * <p/>
+   * Changes to the underlying preferences are detected automatically, so this
+   * is only needed when something else the values depend on has changed.
    *
    * @param project The project.
    */
   public void clearProjectValueCache(IProject project)
   {
-    preferenceValues.remove(project.getName());
-    optionValues.remove(project.getName());
+    invalidate(project.getName());
   }
 
   /**
@@ -194,63 +229,64 @@ public class Preferences
    * Gets a map of all options/preferences.
    *
    * @param project The current project.
-   * @return A map of key values.
+   * @return An unmodifiable map of key values.
    */
   public Map<String, String> getValues(IProject project)
   {
-    try{
-      String cacheKey = project != null ? project.getName() : GLOBAL;
-
-      // eclim preferences
-      Map<String, String> prefVals = preferenceValues.get(cacheKey);
-      if(prefVals == null){
-        prefVals = new HashMap<String, String>();
-        preferenceValues.put(cacheKey, prefVals);
+    return getSnapshot(project).values;
+  }
 
-        IScopeContext context = InstanceScope.INSTANCE;
+  private Snapshot getSnapshot(IProject project)
+  {
+    String cacheKey = project != null ? project.getName() : GLOBAL;
+    Snapshot snapshot = snapshots.get(cacheKey);
+    if (snapshot != null){
+      Metrics.increment("preferences.snapshot.hit");
+      return snapshot;
+    }
 
-        // global
-        IEclipsePreferences globalPrefs = context.getNode(NODE_NAME);
-        initializeDefaultPreferences(globalPrefs);
-        for(String key : globalPrefs.keys()){
-          prefVals.put(key, globalPrefs.get(key, null));
-        }
+    Metrics.increment("preferences.snapshot.miss");
+    listen(project);
+    long built = getGeneration();
+    try{
+      Map<String, String> all = new HashMap<String, String>();
 
-        // project
-        if (project != null){
-          context = new ProjectScope(project);
-          IEclipsePreferences projectPrefs = context.getNode(NODE_NAME);
-          for(String key : projectPrefs.keys()){
-            prefVals.put(key, projectPrefs.get(key, null));
+      // eclipse options
+      for(OptionHandler handler : new HashSet<OptionHandler>(
+            optionHandlers.values()))
+      {
+        String nature = handler.getNature();
+        if (CORE.equals(nature) ||
+            project == null ||
+            project.getNature(nature) != null)
+        {
+          Map<String, String> ops = project == null ?
+            handler.getValues() : handler.getValues(project);
+          if (ops != null){
+            all.putAll(ops);
           }
         }
       }
 
-      // eclipse option
-      Map<String, String> optVals = optionValues.get(cacheKey);
-      if(optVals == null){
-        optVals = new HashMap<String, String>();
-        optionValues.put(cacheKey, optVals);
-        for(OptionHandler handler : optionHandlers.values()){
-          String nature = handler.getNature();
-          if (CORE.equals(nature) ||
-              project == null ||
-              project.getNature(nature) != null)
-          {
-            Map<String, String> ops = project == null ?
-              handler.getValues() : handler.getValues(project);
-            if (ops != null){
-              optVals.putAll(ops);
-            }
-          }
+      // eclim preferences (global then project)
+      IScopeContext context = InstanceScope.INSTANCE;
+      IEclipsePreferences globalPrefs = context.getNode(NODE_NAME);
+      initializeDefaultPreferences(globalPrefs);
+      for(String key : globalPrefs.keys()){
+        all.put(key, globalPrefs.get(key, null));
+      }
+
+      if (project != null){
+        context = new ProjectScope(project);
+        IEclipsePreferences projectPrefs = context.getNode(NODE_NAME);
+        for(String key : projectPrefs.keys()){
+          all.put(key, projectPrefs.get(key, null));
         }
       }
 
-      Map<String, String> all =
-        new HashMap<String, String>(preferenceValues.size() + optionValues.size());
-      all.putAll(optVals);
-      all.putAll(prefVals);
-      return all;
+      snapshot = new Snapshot(all);
+      publish(cacheKey, snapshot, built);
+      return snapshot;
     }catch(BackingStoreException bse){
       throw new RuntimeException(bse);
     }catch(CoreException ce){
@@ -301,8 +337,18 @@ public class Preferences
    */
   public int getIntValue(IProject project, String name)
   {
-    String value = getValues(project).get(name);
-    return value != null ? Integer.parseInt(value) : -1;
+    Snapshot snapshot = getSnapshot(project);
+    String value = snapshot.values.get(name);
+    if (value == null){
+      return -1;
+    }
+
+    Integer parsed = (Integer)snapshot.parsed.get("int:" + name);
+    if (parsed == null){
+      parsed = Integer.valueOf(value);
+      snapshot.parsed.put("int:" + name, parsed);
+    }
+    return parsed.intValue();
   }
 
   /**
@@ -325,9 +371,16 @@ public class Preferences
    */
   public String[] getArrayValue(IProject project, String name)
   {
-    String value = getValues(project).get(name);
+    Snapshot snapshot = getSnapshot(project);
+    String value = snapshot.values.get(name);
     if (value != null && value.trim().length() != 0){
-      return new Gson().fromJson(value, String[].class);
+      String[] parsed = (String[])snapshot.parsed.get("array:" + name);
+      if (parsed == null){
+        parsed = GSON.fromJson(value, String[].class);
+        snapshot.parsed.put("array:" + name, parsed);
+      }
+      // callers are free to modify the result.
+      return parsed.clone();
     }
     return ArrayUtils.EMPTY_STRING_ARRAY;
   }
@@ -353,10 +406,16 @@ public class Preferences
   @SuppressWarnings("unchecked")
   public Set<String> getSetValue(IProject project, String name)
   {
-    String value = getValues(project).get(name);
+    Snapshot snapshot = getSnapshot(project);
+    String value = snapshot.values.get(name);
     if (value != null && value.trim().length() != 0){
-      return (Set<String>)new Gson().fromJson(
-          value, new TypeToken<Set<String>>(){}.getType());
+      Set<String> parsed = (Set<String>)snapshot.parsed.get("set:" + name);
+      if (parsed == null){
+        parsed = (Set<String>)GSON.fromJson(
+            value, new TypeToken<Set<String>>(){}.getType());
+        snapshot.parsed.put("set:" + name, parsed);
+      }
+      return new HashSet<String>(parsed);
     }
     return new HashSet<String>();
   }
@@ -382,10 +441,17 @@ public class Preferences
   @SuppressWarnings("unchecked")
   public Map<String,String> getMapValue(IProject project, String name)
   {
-    String value = getValues(project).get(name);
+    Snapshot snapshot = getSnapshot(project);
+    String value = snapshot.values.get(name);
     if (value != null && value.trim().length() != 0){
-      return (Map<String,String>)new Gson().fromJson(
-          value, new TypeToken<Map<String,String>>(){}.getType());
+      Map<String,String> parsed =
+        (Map<String,String>)snapshot.parsed.get("map:" + name);
+      if (parsed == null){
+        parsed = (Map<String,String>)GSON.fromJson(
+            value, new TypeToken<Map<String,String>>(){}.getType());
+        snapshot.parsed.put("map:" + name, parsed);
+      }
+      return new HashMap<String,String>(parsed);
     }
     return new HashMap<String,String>();
   }
@@ -516,7 +582,9 @@ public class Preferences
         }else{
           handler.setOption(project, name, value);
         }
-        optionValues.clear();
+        // not all option handlers are backed by preference nodes we listen
+        // to.
+        invalidate(null);
       }else{
         logger.warn("No handler found for option '{}'", name);
       }
@@ -571,7 +639,7 @@ public class Preferences
     }catch(BackingStoreException bse){
       throw new RuntimeException(bse);
     }
-    preferenceValues.clear();
+    invalidate(null);
   }
 
   /**
@@ -596,6 +664,104 @@ public class Preferences
     }
   }
 
+  /**
+   * Registers listeners on the preference nodes backing the values for the
+   * supplied project (or the workspace if null), if not already registered.
+   * A project's values include the workspace's (instance scope) values, so
+   * listening for a project also listens to the workspace.
+   *
+   * @param project The project or null.
+   */
+  private void listen(IProject project)
+  {
+    if (project != null){
+      listen(null);
+    }
+
+    synchronized(listening){
+      if (!listeningToResources){
+        ResourcesPlugin.getWorkspace().addResourceChangeListener(
+            new DescriptionListener(), IResourceChangeEvent.POST_CHANGE);
+        listeningToResources = true;
+      }
+    }
+
+    String scope = project != null ? project.getName() : GLOBAL;
+    if (!listening.add(scope)){
+      return;
+    }
+
+    IScopeContext context = project != null ?
+      new ProjectScope(project) : InstanceScope.INSTANCE;
+    IEclipsePreferences root = (IEclipsePreferences)
+      context.getNode(NODE_NAME).parent();
+    NodeListener listener = new NodeListener(project != null ? scope : null);
+    root.addNodeChangeListener(listener);
+    try{
+      for (String name : root.childrenNames()){
+        if (isWatchedNode(name)){
+          ((IEclipsePreferences)root.node(name))
+            .addPreferenceChangeListener(listener);
+        }
+      }
+    }catch(BackingStoreException bse){
+      logger.warn("Unable to list preference nodes: " + scope, bse);
+    }
+  }
+
+  /**
+   * Determines if the preference node with the supplied name may hold any of
+   * our options/preferences.
+   */
+  private boolean isWatchedNode(String name)
+  {
+    if (name.equals(NODE_NAME)){
+      return true;
+    }
+    for (String prefix : optionHandlers.keySet()){
+      if (name.startsWith(prefix)){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private long getGeneration()
+  {
+    synchronized(snapshots){
+      return generation;
+    }
+  }
+
+  /**
+   * Caches the supplied snapshot unless the values have been invalidated
+   * since the snapshot started being built.
+   */
+  private void publish(String cacheKey, Snapshot snapshot, long built)
+  {
+    synchronized(snapshots){
+      if (generation == built){
+        snapshots.put(cacheKey, snapshot);
+      }else{
+        Metrics.increment("preferences.snapshot.discarded");
+      }
+    }
+  }
+
+  private void invalidate(String project)
+  {
+    Metrics.increment("preferences.snapshot.invalidated");
+    synchronized(snapshots){
+      generation++;
+      if (project == null){
+        // project values include the global values.
+        snapshots.clear();
+      }else{
+        snapshots.remove(project);
+      }
+    }
+  }
+
   /**
    * Validates that the supplied value is valid for the specified
    * option/preference.
@@ -619,4 +785,95 @@ public class Preferences
     throw new IllegalArgumentException(
         Services.getMessage("setting.not.found", name));
   }
+
+  /**
+   * Immutable snapshot of the merged values for a scope, along with the
+   * parsed form of any of those values requested as a typed value.
+   */
+  private static class Snapshot
+  {
+    private final Map<String, String> values;
+    private final Map<String, Object> parsed =
+      new ConcurrentHashMap<String, Object>();
+
+    public Snapshot(Map<String, String> values)
+    {
+      this.values = Collections.unmodifiableMap(values);
+    }
+  }
+
+  /**
+   * Invalidates the snapshots for a scope when one of its preference nodes
+   * changes or when a node is added to / removed from the scope.
+   */
+  private class NodeListener
+    implements IPreferenceChangeListener, INodeChangeListener
+  {
+    private String project;
+
+    public NodeListener(String project)
+    {
+      this.project = project;
+    }
+
+    @Override
+    public void preferenceChange(PreferenceChangeEvent event)
+    {
+      invalidate(project);
+    }
+
+    @Override
+    public void added(NodeChangeEvent event)
+    {
+      String name = event.getChild().name();
+      if (isWatchedNode(name)){
+        ((IEclipsePreferences)event.getChild())
+          .addPreferenceChangeListener(this);
+        invalidate(project);
+      }
+    }
+
+    @Override
+    public void removed(NodeChangeEvent event)
+    {
+      if (isWatchedNode(event.getChild().name())){
+        invalidate(project);
+      }
+    }
+  }
+
+  /**
+   * Invalidates a project's snapshot when its natures may have changed (the
+   * options available depend on them), and stops tracking removed projects.
+   */
+  private class DescriptionListener
+    implements IResourceChangeListener
+  {
+    @Override
+    public void resourceChanged(IResourceChangeEvent event)
+    {
+      IResourceDelta delta = event.getDelta();
+      if (delta == null){
+        return;
+      }
+      for (IResourceDelta child : delta.getAffectedChildren()){
+        IResource resource = child.getResource();
+        if (resource.getType() != IResource.PROJECT){
+          continue;
+        }
+        String name = resource.getName();
+        if (child.getKind() == IResourceDelta.REMOVED){
+          invalidate(name);
+          listening.remove(name);
+        }else if ((child.getFlags() & IResourceDelta.OPEN) != 0){
+          // closing a project discards its preference nodes, along with our
+          // listeners, so listen again once it is next used.
+          invalidate(name);
+          listening.remove(name);
+        }else if ((child.getFlags() & IResourceDelta.DESCRIPTION) != 0){
+          invalidate(name);
+        }
+      }
+    }
+  }
 }
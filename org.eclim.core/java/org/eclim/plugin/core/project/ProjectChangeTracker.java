@@ -0,0 +1,485 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.project;
+
+import java.io.IOException;
+
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import java.nio.file.attribute.BasicFileAttributes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclim.logging.Logger;
+
+import org.eclim.util.Metrics;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Tracks which files have changed on disk, for each open project, so that a
+ * project refresh only needs to refresh the resources that actually changed
+ * instead of walking the whole project tree.
+ * <p/>
+ * A project's tracker is started the first time the project is refreshed and
+ * watches every directory of the project using a {@link WatchService}, other
+ * than vcs metadata directories, node_modules directories, and the folders
+ * eclipse has marked as derived (build output written by eclipse's builders,
+ * which eclipse already knows about). Output folders that aren't marked
+ * derived (a maven target directory holding generated sources, etc.) are
+ * watched like any other directory. Whenever the
+ * tracker can't vouch for having seen every change (while it is still
+ * registering the project's directories, or after the watch service reports
+ * an overflow) the next refresh falls back to a full refresh of the project.
+ * <p/>
+ * Projects which can't be watched at all (the directories can't all be
+ * registered, usually due to the os limit on the number of watches, or the
+ * platform's watch service just polls the file system) are always fully
+ * refreshed, until they are closed and reopened. Linked resources, which may
+ * live outside of the project's directory, are always fully refreshed as
+ * well.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class ProjectChangeTracker
+  implements IResourceChangeListener
+{
+  private static final Logger logger =
+    Logger.getLogger(ProjectChangeTracker.class);
+
+  // directories ignored wherever they are found.
+  private static final String[] IGNORE =
+    {".git", ".hg", ".svn", "node_modules"};
+
+  private static ProjectChangeTracker instance = new ProjectChangeTracker();
+
+  private Map<String,Watcher> watchers =
+    new ConcurrentHashMap<String,Watcher>();
+
+  private ProjectChangeTracker()
+  {
+  }
+
+  /**
+   * Gets the ProjectChangeTracker instance.
+   *
+   * @return The ProjectChangeTracker singleton.
+   */
+  public static ProjectChangeTracker getInstance()
+  {
+    return instance;
+  }
+
+  /**
+   * Refreshes the supplied project, only refreshing the resources which have
+   * changed since the last refresh when possible.
+   *
+   * @param project The project to refresh.
+   */
+  public void refresh(IProject project)
+    throws CoreException
+  {
+    Map<Path,Integer> changes = null;
+    Watcher watcher = getWatcher(project);
+    if (watcher != null){
+      changes = watcher.drain();
+    }
+
+    if (changes == null){
+      Metrics.increment("project.refresh.full");
+      project.refreshLocal(IResource.DEPTH_INFINITE, null);
+      return;
+    }
+
+    Metrics.increment("project.refresh.incremental");
+    refresh(project, watcher.root, changes);
+    refreshLinked(project);
+  }
+
+  /**
+   * Stops tracking all projects.
+   */
+  public void stop()
+  {
+    for (Watcher watcher : watchers.values()){
+      watcher.close();
+    }
+    watchers.clear();
+  }
+
+  @Override
+  public void resourceChanged(IResourceChangeEvent event)
+  {
+    IResource resource = event.getResource();
+    if (resource != null && resource.getType() == IResource.PROJECT){
+      Watcher watcher = watchers.remove(resource.getName());
+      if (watcher != null){
+        watcher.close();
+      }
+    }
+  }
+
+  private Watcher getWatcher(IProject project)
+    throws CoreException
+  {
+    IPath location = project.getLocation();
+    if (!project.isOpen() || location == null){
+      return null;
+    }
+
+    Path root = Paths.get(location.toOSString());
+    Watcher watcher = watchers.get(project.getName());
+    if (watcher != null && watcher.root.equals(root)){
+      // a project that can't be watched stays that way until it is reopened,
+      // rather than walking the whole project again on every refresh.
+      if (watcher.failed){
+        return null;
+      }
+      if (!watcher.closed){
+        return watcher;
+      }
+    }
+
+    synchronized(this){
+      watcher = watchers.get(project.getName());
+      if (watcher != null && watcher.root.equals(root) && watcher.failed){
+        return null;
+      }
+      if (watcher == null || watcher.closed || !watcher.root.equals(root)){
+        if (watcher != null){
+          watcher.close();
+        }
+        watcher = new Watcher(project.getName(), root, getDerived(project));
+        watchers.put(project.getName(), watcher);
+        if (watcher.failed){
+          return null;
+        }
+        watcher.start();
+      }
+    }
+    return watcher;
+  }
+
+  private void refresh(IProject project, Path root, Map<Path,Integer> changes)
+    throws CoreException
+  {
+    // refresh parents before their children so that newly created
+    // directories exist as resources by the time we get to them.
+    List<Path> paths = new ArrayList<Path>(changes.keySet());
+    Collections.sort(paths, new Comparator<Path>(){
+      public int compare(Path p1, Path p2){
+        return p1.getNameCount() - p2.getNameCount();
+      }
+    });
+
+    int refreshed = 0;
+    for (Path path : paths){
+      String relative = root.relativize(path).toString().replace('\\', '/');
+      IResource resource = relative.length() == 0 ?
+        project : project.findMember(relative);
+      if (resource == null){
+        // deleted or filtered, either way the parent's refresh covers it.
+        continue;
+      }
+
+      int depth = changes.get(path).intValue();
+      if (resource.getType() == IResource.FILE){
+        depth = IResource.DEPTH_ZERO;
+      }
+      resource.refreshLocal(depth, null);
+      refreshed++;
+    }
+    Metrics.add("project.refresh.resources", refreshed);
+  }
+
+  /**
+   * Gets the locations of the project's derived folders, which eclipse's own
+   * builders write to, so they don't need to be watched.
+   */
+  private Set<Path> getDerived(IProject project)
+    throws CoreException
+  {
+    final HashSet<Path> derived = new HashSet<Path>();
+    project.accept(new IResourceProxyVisitor(){
+      public boolean visit(IResourceProxy proxy)
+      {
+        if (proxy.getType() == IResource.FILE || proxy.isLinked()){
+          return false;
+        }
+        if (proxy.getType() == IResource.FOLDER && proxy.isDerived()){
+          IPath location = proxy.requestResource().getLocation();
+          if (location != null){
+            derived.add(Paths.get(location.toOSString()));
+          }
+          return false;
+        }
+        return true;
+      }
+    }, IResource.NONE);
+    return derived;
+  }
+
+  /**
+   * Fully refreshes the project's linked resources, which the project's
+   * watcher may not cover.
+   */
+  private void refreshLinked(IProject project)
+    throws CoreException
+  {
+    final ArrayList<IResource> linked = new ArrayList<IResource>();
+    project.accept(new IResourceProxyVisitor(){
+      public boolean visit(IResourceProxy proxy)
+      {
+        if (proxy.isLinked()){
+          linked.add(proxy.requestResource());
+          return false;
+        }
+        return proxy.getType() != IResource.FILE;
+      }
+    }, IResource.NONE);
+
+    for (IResource resource : linked){
+      resource.refreshLocal(IResource.DEPTH_INFINITE, null);
+    }
+    Metrics.add("project.refresh.linked", linked.size());
+  }
+
+  /**
+   * Watches the directories of a single project.
+   */
+  private static class Watcher
+    implements Runnable
+  {
+    private String name;
+    private Path root;
+    private Set<Path> derived;
+    private WatchService service;
+    private Map<WatchKey,Path> keys = new ConcurrentHashMap<WatchKey,Path>();
+
+    // changed paths to the depth they should be refreshed to.
+    private HashMap<Path,Integer> changes = new HashMap<Path,Integer>();
+    private boolean ready;
+    private boolean fullRefresh = true;
+    private volatile boolean closed;
+    private volatile boolean failed;
+
+    public Watcher(String name, Path root, Set<Path> derived)
+    {
+      this.name = name;
+      this.root = root;
+      this.derived = derived;
+      try{
+        service = FileSystems.getDefault().newWatchService();
+        // a polling watch service (mac os) would stat every file in the
+        // project every few seconds, which costs more than it saves.
+        if (service.getClass().getName().endsWith(".PollingWatchService")){
+          logger.debug("Not watching project {}: polling watch service", name);
+          fail();
+        }
+      }catch(IOException ioe){
+        logger.warn("Unable to watch project: " + name, ioe);
+        fail();
+      }
+    }
+
+    private void fail()
+    {
+      Metrics.increment("project.watch.failed");
+      failed = true;
+      close();
+    }
+
+    public void start()
+    {
+      Thread thread = new Thread(this, "eclim project watcher: " + name);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    /**
+     * Gets and clears the changes recorded since the last call.
+     *
+     * @return The changed paths mapped to the depth to refresh them to, or
+     * null if a full refresh is required.
+     */
+    public synchronized Map<Path,Integer> drain()
+    {
+      if (!ready || fullRefresh){
+        // still required after this refresh if we aren't ready yet, since
+        // changes may occur in directories not yet registered.
+        fullRefresh = !ready;
+        changes.clear();
+        return null;
+      }
+      Map<Path,Integer> drained = new HashMap<Path,Integer>(changes);
+      changes.clear();
+      return drained;
+    }
+
+    public void close()
+    {
+      closed = true;
+      if (service == null){
+        return;
+      }
+      try{
+        service.close();
+      }catch(IOException ioe){
+        logger.debug("Error closing watch service: " + name, ioe);
+      }
+    }
+
+    @Override
+    public void run()
+    {
+      try{
+        register(root);
+        synchronized(this){
+          ready = true;
+        }
+        logger.debug("Watching project {} ({} directories)", name, keys.size());
+
+        while (!closed){
+          WatchKey key = service.take();
+          Path dir = keys.get(key);
+          for (WatchEvent<?> event : key.pollEvents()){
+            process(dir, event);
+          }
+          if (!key.reset()){
+            keys.remove(key);
+          }
+        }
+      }catch(ClosedWatchServiceException cwse){
+        // closed
+      }catch(InterruptedException ie){
+        // stopped
+      }catch(IOException ioe){
+        // most likely the os limit on the number of watches was reached.
+        logger.warn("Unable to watch project: " + name, ioe);
+        fail();
+      }finally{
+        close();
+      }
+    }
+
+    private void process(Path dir, WatchEvent<?> event)
+      throws IOException
+    {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null){
+        Metrics.increment("project.watch.overflow");
+        synchronized(this){
+          fullRefresh = true;
+        }
+        return;
+      }
+
+      Path path = dir.resolve((Path)event.context());
+      if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY){
+        record(path, IResource.DEPTH_ZERO);
+        return;
+      }
+
+      // created or deleted, so the parent's members have changed.
+      record(dir, IResource.DEPTH_ONE);
+      if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE &&
+          Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS) &&
+          !isIgnored(path))
+      {
+        // anything created in the new directory before we started watching
+        // it would be missed, so refresh all of it.
+        register(path);
+        record(path, IResource.DEPTH_INFINITE);
+      }
+    }
+
+    private boolean isIgnored(Path dir)
+    {
+      String name = String.valueOf(dir.getFileName());
+      for (String ignore : IGNORE){
+        if (ignore.equals(name)){
+          return true;
+        }
+      }
+      return derived.contains(dir);
+    }
+
+    private synchronized void record(Path path, int depth)
+    {
+      Integer current = changes.get(path);
+      if (current == null || current.intValue() < depth){
+        changes.put(path, Integer.valueOf(depth));
+      }
+    }
+
+    private void register(Path start)
+      throws IOException
+    {
+      Files.walkFileTree(start, new SimpleFileVisitor<Path>(){
+        @Override
+        public FileVisitResult preVisitDirectory(
+            Path dir, BasicFileAttributes attrs)
+          throws IOException
+        {
+          if (isIgnored(dir)){
+            return FileVisitResult.SKIP_SUBTREE;
+          }
+          WatchKey key = dir.register(service,
+              StandardWatchEventKinds.ENTRY_CREATE,
+              StandardWatchEventKinds.ENTRY_DELETE,
+              StandardWatchEventKinds.ENTRY_MODIFY);
+          keys.put(key, dir);
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException ioe)
+        {
+          // deleted while walking, etc.
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    }
+  }
+}
@@ -50,7 +50,6 @@ import org.eclim.util.CollectionUtils;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IProjectDescription;
-import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.ResourcesPlugin;
 
@@ -408,7 +407,9 @@ public class ProjectManagement
     ProjectUtils.assertExists(project);
 
     try{
-      project.refreshLocal(IResource.DEPTH_INFINITE, null);
+      // only refreshes what changed on disk since the last refresh, falling
+      // back to a full refresh when that can't be determined.
+      ProjectChangeTracker.getInstance().refresh(project);
 
       if (refreshNatures){
         for (String nature : managers.keySet()){
@@ -421,7 +422,5 @@ public class ProjectManagement
     }catch(CoreException ce){
       throw new RuntimeException(ce);
     }
-
-    Preferences.getInstance().clearProjectValueCache(project);
   }
 }
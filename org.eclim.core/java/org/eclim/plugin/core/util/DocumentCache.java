@@ -0,0 +1,379 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.util;
+
+import java.io.File;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclim.logging.Logger;
+
+import org.eclim.util.Metrics;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
+import org.eclipse.core.filebuffers.LocationKind;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * Keeps the text file buffers of the files open in the client connected, so
+ * that requests against those files (code completion, etc.) can reuse the
+ * already decoded document instead of reading the file from disk each time.
+ * <p/>
+ * A buffer stays connected until the client notifies eclim that the file has
+ * been closed (see the buffer_close command), the buffer has gone unused for
+ * longer than the idle timeout, or the cached documents exceed the memory cap,
+ * in which case the least recently used are released first. Before a cached
+ * document is returned it is reverted to the file's contents if the file has
+ * changed on disk since it was loaded.
+ * <p/>
+ * Callers are handed a read only snapshot of the cached document which is
+ * shared by every request until the file changes, so a hit doesn't copy the
+ * file's contents. Callers that need to modify the document must copy it
+ * first. Each file is synced under its own lock, so a slow revert of one file
+ * doesn't hold up requests for another.
+ * <p/>
+ * Temp files written by the client (__eclim_temp_*) are deleted after each
+ * command, so their buffers are never kept.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class DocumentCache
+{
+  private static final Logger logger = Logger.getLogger(DocumentCache.class);
+
+  private static final String TEMP_PREFIX = "__eclim_temp_";
+
+  private static final long IDLE_TIMEOUT = 30 * 60 * 1000;
+
+  // rough cap on the memory used by cached documents (2 bytes per char).
+  private static final long MAX_MEMORY = 32 * 1024 * 1024;
+
+  private static final ConcurrentHashMap<String,Entry> entries =
+    new ConcurrentHashMap<String,Entry>();
+
+  private DocumentCache()
+  {
+  }
+
+  /**
+   * Gets the document for the supplied file, connecting and caching its text
+   * file buffer if necessary.
+   *
+   * @param file The file.
+   * @return A read only IDocument or null if the file doesn't exist.
+   */
+  public static IDocument getDocument(File file)
+  {
+    if (!file.exists()){
+      release(file);
+      return null;
+    }
+
+    evictIdle();
+
+    String key = file.getAbsolutePath();
+    if (file.getName().startsWith(TEMP_PREFIX)){
+      return getTempDocument(new Path(key));
+    }
+
+    while (true){
+      Entry entry = entries.get(key);
+      if (entry == null){
+        Entry created = new Entry(key);
+        entry = entries.putIfAbsent(key, created);
+        if (entry == null){
+          entry = created;
+        }
+      }
+
+      boolean miss;
+      IDocument document;
+      synchronized(entry){
+        if (entry.released){
+          // evicted or released while we were waiting on it.
+          continue;
+        }
+
+        miss = entry.buffer == null;
+        if (miss){
+          Metrics.increment("document.cache.miss");
+          boolean connected = false;
+          try{
+            connected = entry.connect(file);
+          }finally{
+            if (!connected){
+              entries.remove(key, entry);
+              entry.release();
+            }
+          }
+          if (!connected){
+            return null;
+          }
+        }else{
+          Metrics.increment("document.cache.hit");
+          entry.sync(file);
+        }
+        entry.accessed = System.currentTimeMillis();
+        document = entry.getSnapshot();
+      }
+
+      if (miss){
+        evictOverCapacity(entry);
+      }
+      return document;
+    }
+  }
+
+  /**
+   * Releases the cached buffer, if any, for the supplied file.
+   *
+   * @param file The file.
+   */
+  public static void release(File file)
+  {
+    Entry entry = entries.remove(file.getAbsolutePath());
+    if (entry != null){
+      logger.debug("Releasing document: {}", entry.location);
+      entry.release();
+    }
+  }
+
+  /**
+   * Releases all cached buffers.
+   */
+  public static void clear()
+  {
+    for (String key : new ArrayList<String>(entries.keySet())){
+      Entry entry = entries.remove(key);
+      if (entry != null){
+        entry.release();
+      }
+    }
+  }
+
+  private static IDocument getTempDocument(IPath location)
+  {
+    ITextFileBufferManager manager = FileBuffers.getTextFileBufferManager();
+    try{
+      manager.connect(
+          location, LocationKind.LOCATION, new NullProgressMonitor());
+    }catch(CoreException ce){
+      throw new RuntimeException(ce);
+    }
+
+    try{
+      // the copy remains valid after the buffer is disconnected.
+      ITextFileBuffer buffer =
+        manager.getTextFileBuffer(location, LocationKind.LOCATION);
+      return buffer != null ? new Document(buffer.getDocument().get()) : null;
+    }finally{
+      disconnect(location);
+    }
+  }
+
+  private static void evictIdle()
+  {
+    long now = System.currentTimeMillis();
+    for (Map.Entry<String,Entry> item : entries.entrySet()){
+      Entry entry = item.getValue();
+      if (now - entry.accessed > IDLE_TIMEOUT &&
+          entries.remove(item.getKey(), entry))
+      {
+        logger.debug("Evicting idle document: {}", entry.location);
+        Metrics.increment("document.cache.evicted");
+        entry.release();
+      }
+    }
+  }
+
+  private static void evictOverCapacity(Entry keep)
+  {
+    ArrayList<Entry> values = new ArrayList<Entry>(entries.values());
+    long memory = 0;
+    for (Entry entry : values){
+      memory += entry.memory;
+    }
+    if (memory <= MAX_MEMORY){
+      return;
+    }
+
+    // release the least recently used first, but always keep the one just
+    // requested.
+    Collections.sort(values, new Comparator<Entry>(){
+      public int compare(Entry e1, Entry e2)
+      {
+        return e1.accessed < e2.accessed ? -1 :
+          (e1.accessed == e2.accessed ? 0 : 1);
+      }
+    });
+    for (Entry entry : values){
+      if (memory <= MAX_MEMORY){
+        break;
+      }
+      if (entry == keep || !entries.remove(entry.key, entry)){
+        continue;
+      }
+      memory -= entry.memory;
+      logger.debug("Evicting document: {}", entry.location);
+      Metrics.increment("document.cache.evicted");
+      entry.release();
+    }
+  }
+
+  private static void disconnect(IPath location)
+  {
+    try{
+      FileBuffers.getTextFileBufferManager().disconnect(
+          location, LocationKind.LOCATION, new NullProgressMonitor());
+    }catch(Exception e){
+      logger.debug("Error disconnecting buffer: " + location, e);
+    }
+  }
+
+  /**
+   * Document handed out to callers, which may be shared by several concurrent
+   * requests, so any attempt to modify its contents fails.
+   */
+  private static class ReadOnlyDocument
+    extends Document
+  {
+    public ReadOnlyDocument(String contents)
+    {
+      super(contents);
+    }
+
+    @Override
+    public void replace(int offset, int length, String text)
+    {
+      throw new UnsupportedOperationException("read only document");
+    }
+
+    @Override
+    public void replace(
+        int offset, int length, String text, long modificationStamp)
+    {
+      throw new UnsupportedOperationException("read only document");
+    }
+
+    @Override
+    public void set(String text)
+    {
+      throw new UnsupportedOperationException("read only document");
+    }
+
+    @Override
+    public void set(String text, long modificationStamp)
+    {
+      throw new UnsupportedOperationException("read only document");
+    }
+  }
+
+  /**
+   * A cached buffer, guarded by its own monitor.
+   */
+  private static class Entry
+  {
+    public final String key;
+    public final IPath location;
+    public ITextFileBuffer buffer;
+    public IDocument snapshot;
+    public boolean released;
+    public FileStamp stamp;
+    public volatile long accessed = System.currentTimeMillis();
+    public volatile long memory;
+
+    public Entry(String key)
+    {
+      this.key = key;
+      this.location = new Path(key);
+    }
+
+    public boolean connect(File file)
+    {
+      ITextFileBufferManager manager = FileBuffers.getTextFileBufferManager();
+      try{
+        manager.connect(
+            location, LocationKind.LOCATION, new NullProgressMonitor());
+      }catch(CoreException ce){
+        throw new RuntimeException(ce);
+      }
+      buffer = manager.getTextFileBuffer(location, LocationKind.LOCATION);
+      if (buffer == null){
+        disconnect(location);
+        return false;
+      }
+      stamp = new FileStamp(file);
+      return true;
+    }
+
+    public IDocument getSnapshot()
+    {
+      if (snapshot == null){
+        snapshot = new ReadOnlyDocument(buffer.getDocument().get());
+        // the buffer's document and the snapshot (2 bytes per char each).
+        memory = snapshot.getLength() * 4L;
+      }
+      return snapshot;
+    }
+
+    public synchronized void release()
+    {
+      released = true;
+      snapshot = null;
+      if (buffer != null){
+        buffer = null;
+        disconnect(location);
+      }
+    }
+
+    /**
+     * Reverts the buffer to the file's contents if the file has been modified
+     * since the buffer was last synced with it.
+     */
+    public void sync(File file)
+    {
+      if (!stamp.changed(file)){
+        return;
+      }
+
+      if (!buffer.isDirty()){
+        logger.debug("Refreshing stale document: {}", location);
+        Metrics.increment("document.cache.refresh");
+        try{
+          buffer.revert(new NullProgressMonitor());
+        }catch(CoreException ce){
+          throw new RuntimeException(ce);
+        }
+        snapshot = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,604 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.eclim.Services;
+
+import org.eclim.logging.Logger;
+
+import org.eclim.util.IOUtils;
+import org.eclim.util.Metrics;
+
+import org.eclim.util.file.FileUtils;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Cache of remote xml entities (dtds, xsds, etc.) used when validating xml
+ * files.
+ * <p/>
+ * Downloaded entities are stored on disk under ~/.eclim/cache/entities (in a
+ * versioned directory, so that the layout can change without reading stale
+ * entries) and the most recently used are also held in memory, up to a fixed
+ * number of bytes. Cached entities are downloaded again once they are a day
+ * old (falling back to the cached copy if that fails). Concurrent requests
+ * for the same entity wait on a single download, and failed downloads are
+ * remembered for a short time so that a missing or unreachable entity doesn't
+ * stall every validation.
+ * <p/>
+ * An optional xml catalog (~/.eclim/resources/core/xml/catalog.xml) can map
+ * public ids, system ids, or system id prefixes to alternate locations,
+ * allowing common schemas to be resolved without network access.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class EntityCache
+{
+  private static final Logger logger = Logger.getLogger(EntityCache.class);
+
+  private static final String VERSION = "v1";
+
+  private static final long MAX_MEMORY_BYTES = 8 * 1024 * 1024;
+  private static final long MAX_DISK_BYTES = 64 * 1024 * 1024;
+  private static final long MISSING_TTL = 5 * 60 * 1000;
+  private static final long MAX_AGE = 24 * 60 * 60 * 1000;
+
+  private static final Pattern HOST_PORT = Pattern.compile("^(.*)_(\\d+)$");
+
+  private static final File ROOT =
+    new File(FileUtils.concat(Services.DOT_ECLIM, "cache/entities"));
+  private static final File DIR = new File(ROOT, VERSION);
+  private static final File CATALOG = new File(
+      FileUtils.concat(Services.DOT_ECLIM, "resources/core/xml/catalog.xml"));
+
+  /**
+   * The file url prefix of cached entities as seen by xml parsers.
+   */
+  public static final String PREFIX =
+    "file://" + FileUtils.separatorsToUnix(DIR.getAbsolutePath());
+
+  private static final LinkedHashMap<String,Entity> memory =
+    new LinkedHashMap<String,Entity>(16, .75f, true);
+  private static long memoryBytes;
+
+  private static final Map<String,Missing> missing =
+    new ConcurrentHashMap<String,Missing>();
+
+  // downloads are serialized on a fixed set of locks striped by url.
+  private static final Object[] locks = new Object[32];
+  static {
+    for (int ii = 0; ii < locks.length; ii++){
+      locks[ii] = new Object();
+    }
+  }
+
+  private static final Object catalogLock = new Object();
+  private static volatile Catalog catalog;
+  private static boolean initialized;
+
+  private EntityCache()
+  {
+  }
+
+  /**
+   * Gets the contents of the entity at the supplied url, downloading it if it
+   * is not already cached.
+   *
+   * @param url The entity's url.
+   * @return The entity contents.
+   * @throws IOException If the entity could not be downloaded, or a previous
+   * attempt to download it failed recently.
+   */
+  public static byte[] get(String url)
+    throws IOException
+  {
+    Entity entity = getFromMemory(url);
+    if (entity != null && !entity.isStale()){
+      Metrics.increment("xml.entity.memory.hit");
+      return entity.bytes;
+    }
+
+    Missing miss = missing.get(url);
+    if (miss != null){
+      if (miss.expires > System.currentTimeMillis()){
+        Metrics.increment("xml.entity.missing.hit");
+        throw miss.exception;
+      }
+      missing.remove(url);
+    }
+
+    synchronized(getLock(url)){
+      // another thread may have loaded it, or failed to, while we were
+      // waiting.
+      entity = getFromMemory(url);
+      if (entity != null && !entity.isStale()){
+        Metrics.increment("xml.entity.memory.hit");
+        return entity.bytes;
+      }
+      miss = missing.get(url);
+      if (miss != null && miss.expires > System.currentTimeMillis()){
+        Metrics.increment("xml.entity.missing.hit");
+        throw miss.exception;
+      }
+
+      init();
+      File file = getFile(url);
+      boolean cached = file.isFile() && file.length() > 0;
+      byte[] bytes = null;
+      long fetched = System.currentTimeMillis();
+      if (cached && !isStale(file)){
+        Metrics.increment("xml.entity.disk.hit");
+        bytes = IOUtils.toByteArray(file);
+        fetched = file.lastModified();
+      }else{
+        try{
+          bytes = download(url, file);
+        }catch(IOException ioe){
+          if (entity == null && !cached){
+            logger.warn(ioe.getMessage());
+            missing.put(url, new Missing(ioe));
+            throw ioe;
+          }
+
+          // keep using the copy we have until the next attempt to refresh it.
+          logger.warn("Unable to refresh entity: " + ioe.getMessage());
+          Metrics.increment("xml.entity.stale");
+          bytes = entity != null ? entity.bytes : IOUtils.toByteArray(file);
+          file.setLastModified(fetched);
+        }
+      }
+      putInMemory(url, bytes, fetched);
+      return bytes;
+    }
+  }
+
+  /**
+   * Gets the file which holds, or will hold, the cached copy of the entity at
+   * the supplied url.
+   * <p/>
+   * The file's path mirrors the url, but any dot segments left after
+   * normalizing the url (leading ones, or ones that were percent encoded) are
+   * dropped, as are any separators hidden in a segment, so that no url can
+   * map to a file outside of the cache directory.
+   *
+   * @param url The entity's url.
+   * @return The cache file.
+   */
+  public static File getFile(String url)
+  {
+    try{
+      URI uri = new URI(url).normalize();
+      String host = uri.getHost() != null ? uri.getHost() : "localhost";
+      if (uri.getPort() != -1){
+        host += "_" + uri.getPort();
+      }
+      String scheme = uri.getScheme() != null ? uri.getScheme() : "other";
+
+      StringBuilder path = new StringBuilder();
+      String uriPath = uri.getPath() != null ? uri.getPath() : "";
+      for (String segment : uriPath.split("/")){
+        if (segment.length() == 0 ||
+            segment.equals(".") ||
+            segment.equals(".."))
+        {
+          continue;
+        }
+        path.append('/').append(segment.replace('\\', '_').replace(':', '_'));
+      }
+      if (path.length() == 0 || uriPath.endsWith("/")){
+        path.append("/index");
+      }
+      if (uri.getQuery() != null){
+        path.append('_').append(Integer.toHexString(uri.getQuery().hashCode()));
+      }
+      return new File(FileUtils.concat(
+            DIR.getAbsolutePath(), scheme, host, path.toString()));
+    }catch(URISyntaxException use){
+      return new File(FileUtils.concat(DIR.getAbsolutePath(),
+            "other", Integer.toHexString(url.hashCode())));
+    }
+  }
+
+  /**
+   * Determines if the cached copy of the entity at the supplied url is due to
+   * be downloaded again.
+   *
+   * @param url The entity's url.
+   * @return true if the entity is cached and due to be refreshed, false
+   * otherwise.
+   */
+  public static boolean isStale(String url)
+  {
+    File file = getFile(url);
+    return file.isFile() && isStale(file);
+  }
+
+  /**
+   * Given the file url of a cached entity, or of an entity relative to one
+   * (as resolved by the xml parser), gets the url of the remote entity.
+   *
+   * @param location The file url.
+   * @return The remote url or null if the location is not within the cache.
+   */
+  public static String getUrl(String location)
+  {
+    if (!location.startsWith(PREFIX + '/')){
+      return null;
+    }
+
+    // <scheme>/<host>[_<port>]/<path>
+    String path = location.substring(PREFIX.length() + 1);
+    int schemeEnd = path.indexOf('/');
+    int hostEnd = schemeEnd != -1 ? path.indexOf('/', schemeEnd + 1) : -1;
+    if (hostEnd == -1){
+      return null;
+    }
+    String host = path.substring(schemeEnd + 1, hostEnd);
+    Matcher matcher = HOST_PORT.matcher(host);
+    if (matcher.matches()){
+      host = matcher.group(1) + ':' + matcher.group(2);
+    }
+    return path.substring(0, schemeEnd) + "://" + host +
+      path.substring(hostEnd);
+  }
+
+  /**
+   * Looks up the supplied entity in the user's xml catalog, if any.
+   *
+   * @param publicId The entity's public id (may be null).
+   * @param systemId The entity's system id (may be null).
+   * @return The catalog's location for the entity or null if the catalog has
+   * no entry for it.
+   */
+  public static String resolve(String publicId, String systemId)
+  {
+    Catalog catalog = getCatalog();
+    return catalog != null ? catalog.resolve(publicId, systemId) : null;
+  }
+
+  private static boolean isStale(File file)
+  {
+    return file.lastModified() + MAX_AGE < System.currentTimeMillis();
+  }
+
+  private static Entity getFromMemory(String url)
+  {
+    synchronized(memory){
+      return memory.get(url);
+    }
+  }
+
+  private static void putInMemory(String url, byte[] bytes, long fetched)
+  {
+    synchronized(memory){
+      Entity previous = memory.put(url, new Entity(bytes, fetched));
+      if (previous != null){
+        memoryBytes -= previous.bytes.length;
+      }
+      memoryBytes += bytes.length;
+
+      Iterator<Map.Entry<String,Entity>> iterator =
+        memory.entrySet().iterator();
+      while (memoryBytes > MAX_MEMORY_BYTES && iterator.hasNext()){
+        Map.Entry<String,Entity> eldest = iterator.next();
+        if (eldest.getKey().equals(url)){
+          break;
+        }
+        memoryBytes -= eldest.getValue().bytes.length;
+        iterator.remove();
+      }
+    }
+  }
+
+  private static byte[] download(String url, File file)
+    throws IOException
+  {
+    logger.debug("Downloading entity: {}", url);
+    Metrics.increment("xml.entity.download");
+
+    InputStream in = null;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try{
+      URLConnection conn = new URL(url).openConnection();
+      conn.setConnectTimeout(3000);
+      conn.setReadTimeout(5000);
+      conn.connect();
+      in = conn.getInputStream();
+      IOUtils.copy(in, bytes);
+    }catch(IOException ioe){
+      throw ioe;
+    }catch(Exception e){
+      IOException ex = new IOException(e.getMessage());
+      ex.initCause(e);
+      throw ex;
+    }finally{
+      IOUtils.closeQuietly(in);
+    }
+
+    // write to a temp file first so that a partial write is never mistaken
+    // for a cached entity.
+    File temp = new File(file.getPath() + ".part");
+    OutputStream out = null;
+    try{
+      file.getParentFile().mkdirs();
+      out = new FileOutputStream(temp);
+      out.write(bytes.toByteArray());
+      out.close();
+      out = null;
+      if (!temp.renameTo(file)){
+        file.delete();
+        if (!temp.renameTo(file)){
+          logger.warn("Unable to cache entity: " + file);
+        }
+      }
+    }catch(IOException ioe){
+      // still usable from memory.
+      logger.warn("Unable to cache entity: " + file, ioe);
+    }finally{
+      IOUtils.closeQuietly(out);
+      temp.delete();
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Object getLock(String url)
+  {
+    return locks[(url.hashCode() & 0x7fffffff) % locks.length];
+  }
+
+  /**
+   * One time cleanup of the on disk store: removes the stores of other cache
+   * versions and trims the current store to its max size by removing the
+   * least recently modified entities.
+   */
+  private static synchronized void init()
+  {
+    if (initialized){
+      return;
+    }
+    initialized = true;
+
+    File[] versions = ROOT.listFiles();
+    if (versions != null){
+      for (File version : versions){
+        if (!version.getName().equals(VERSION)){
+          logger.debug("Removing old entity cache: {}", version);
+          FileUtils.deleteDirectory(version);
+        }
+      }
+    }
+
+    ArrayList<File> files = new ArrayList<File>();
+    long size = listFiles(DIR, files);
+    if (size <= MAX_DISK_BYTES){
+      return;
+    }
+
+    Collections.sort(files, new Comparator<File>(){
+      public int compare(File f1, File f2){
+        long m1 = f1.lastModified();
+        long m2 = f2.lastModified();
+        return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+      }
+    });
+    for (File file : files){
+      if (size <= MAX_DISK_BYTES){
+        break;
+      }
+      size -= file.length();
+      file.delete();
+    }
+  }
+
+  private static long listFiles(File dir, List<File> files)
+  {
+    long size = 0;
+    File[] children = dir.listFiles();
+    if (children != null){
+      for (File child : children){
+        if (child.isDirectory()){
+          size += listFiles(child, files);
+        }else{
+          files.add(child);
+          size += child.length();
+        }
+      }
+    }
+    return size;
+  }
+
+  private static Catalog getCatalog()
+  {
+    long modified = CATALOG.lastModified();
+    if (modified == 0){
+      return null;
+    }
+
+    Catalog current = catalog;
+    if (current != null && current.modified == modified){
+      return current;
+    }
+
+    synchronized(catalogLock){
+      current = catalog;
+      if (current == null || current.modified != modified){
+        try{
+          current = new Catalog(CATALOG);
+        }catch(Exception e){
+          // remember the failure until the catalog is modified again.
+          logger.error("Unable to load xml catalog: " + CATALOG, e);
+          current = new Catalog(modified);
+        }
+        catalog = current;
+      }
+      return current;
+    }
+  }
+
+  private static class Entity
+  {
+    private byte[] bytes;
+    private long fetched;
+
+    public Entity(byte[] bytes, long fetched)
+    {
+      this.bytes = bytes;
+      this.fetched = fetched;
+    }
+
+    public boolean isStale()
+    {
+      return fetched + MAX_AGE < System.currentTimeMillis();
+    }
+  }
+
+  private static class Missing
+  {
+    private IOException exception;
+    private long expires;
+
+    public Missing(IOException exception)
+    {
+      this.exception = exception;
+      this.expires = System.currentTimeMillis() + MISSING_TTL;
+    }
+  }
+
+  /**
+   * Minimal oasis xml catalog supporting the public, system, and
+   * rewriteSystem entries.
+   */
+  private static class Catalog
+  {
+    private long modified;
+    private HashMap<String,String> publicIds = new HashMap<String,String>();
+    private HashMap<String,String> systemIds = new HashMap<String,String>();
+    private LinkedHashMap<String,String> rewrites =
+      new LinkedHashMap<String,String>();
+
+    public Catalog(long modified)
+    {
+      this.modified = modified;
+    }
+
+    public Catalog(File file)
+      throws Exception
+    {
+      logger.debug("Loading xml catalog: {}", file);
+      modified = file.lastModified();
+
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      DocumentBuilder builder = factory.newDocumentBuilder();
+      Document document = builder.parse(file);
+      URI base = file.toURI();
+
+      NodeList nodes = document.getElementsByTagNameNS("*", "public");
+      for (int ii = 0; ii < nodes.getLength(); ii++){
+        Element element = (Element)nodes.item(ii);
+        publicIds.put(
+            element.getAttribute("publicId"),
+            resolve(base, element.getAttribute("uri")));
+      }
+
+      nodes = document.getElementsByTagNameNS("*", "system");
+      for (int ii = 0; ii < nodes.getLength(); ii++){
+        Element element = (Element)nodes.item(ii);
+        systemIds.put(
+            element.getAttribute("systemId"),
+            resolve(base, element.getAttribute("uri")));
+      }
+
+      nodes = document.getElementsByTagNameNS("*", "rewriteSystem");
+      for (int ii = 0; ii < nodes.getLength(); ii++){
+        Element element = (Element)nodes.item(ii);
+        rewrites.put(
+            element.getAttribute("systemIdStartString"),
+            resolve(base, element.getAttribute("rewritePrefix")));
+      }
+    }
+
+    public String resolve(String publicId, String systemId)
+    {
+      if (systemId != null){
+        String location = systemIds.get(systemId);
+        if (location != null){
+          return location;
+        }
+
+        // longest matching prefix wins.
+        String prefix = null;
+        for (String start : rewrites.keySet()){
+          if (systemId.startsWith(start) &&
+              (prefix == null || start.length() > prefix.length()))
+          {
+            prefix = start;
+          }
+        }
+        if (prefix != null){
+          return rewrites.get(prefix) + systemId.substring(prefix.length());
+        }
+      }
+
+      if (publicId != null){
+        return publicIds.get(publicId);
+      }
+      return null;
+    }
+
+    private String resolve(URI base, String uri)
+    {
+      String resolved = base.resolve(uri).toString();
+      // keep file urls in the file://<path> form used elsewhere.
+      if (resolved.startsWith("file:/") && !resolved.startsWith("file://")){
+        resolved = "file://" + resolved.substring("file:".length());
+      }
+      return resolved;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.util.zip.CRC32;
+
+import org.eclim.util.IOUtils;
+
+/**
+ * Records the state of a file on disk (modification time, length, and a
+ * checksum of its contents) to later determine whether the file has changed.
+ * <p/>
+ * The modification time may only have a resolution of a second or more (fat,
+ * some network file systems), so a same length write within that window of
+ * when the stamp was last taken is detected by comparing a checksum of the
+ * file's contents. Outside of that window the modification time and length
+ * alone are trusted, so the file is only read when it was written recently.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class FileStamp
+{
+  // the coarsest file modification time resolution we expect.
+  private static final long MTIME_GRANULARITY = 2000;
+
+  private long modified;
+  private long length;
+  private long checksum;
+  private long synced;
+
+  /**
+   * Constructs a new stamp of the supplied file's current state.
+   *
+   * @param file The file.
+   */
+  public FileStamp(File file)
+  {
+    modified = file.lastModified();
+    length = file.length();
+    checksum = checksum(file);
+    synced = System.currentTimeMillis();
+  }
+
+  /**
+   * Determines if the supplied file has changed since this stamp was taken
+   * (or last updated), updating the stamp to the file's current state.
+   *
+   * @param file The file.
+   * @return true if the file has changed, false otherwise.
+   */
+  public synchronized boolean changed(File file)
+  {
+    long modified = file.lastModified();
+    long length = file.length();
+    if (modified == this.modified && length == this.length){
+      if (modified + MTIME_GRANULARITY < synced){
+        return false;
+      }
+      long checksum = checksum(file);
+      synced = System.currentTimeMillis();
+      if (checksum == this.checksum && checksum != -1){
+        return false;
+      }
+      this.checksum = checksum;
+    }else{
+      this.checksum = checksum(file);
+    }
+
+    this.modified = modified;
+    this.length = length;
+    this.synced = System.currentTimeMillis();
+    return true;
+  }
+
+  private static long checksum(File file)
+  {
+    InputStream in = null;
+    try{
+      in = new FileInputStream(file);
+      CRC32 crc = new CRC32();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1){
+        crc.update(buffer, 0, read);
+      }
+      return crc.getValue();
+    }catch(IOException ioe){
+      // force the file to be considered changed on the next check.
+      return -1;
+    }finally{
+      IOUtils.closeQuietly(in);
+    }
+  }
+}
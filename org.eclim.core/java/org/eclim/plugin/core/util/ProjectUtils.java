@@ -21,16 +21,16 @@ import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.eclim.Services;
 
 import org.eclim.plugin.core.project.ProjectManagement;
 import org.eclim.plugin.core.project.ProjectManager;
 import org.eclim.plugin.core.project.ProjectNatureFactory;
 
-import org.eclipse.core.filebuffers.FileBuffers;
-import org.eclipse.core.filebuffers.ITextFileBuffer;
-import org.eclipse.core.filebuffers.ITextFileBufferManager;
-import org.eclipse.core.filebuffers.LocationKind;
+import org.eclim.util.Metrics;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
@@ -39,8 +39,6 @@ import org.eclipse.core.resources.ResourcesPlugin;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
-import org.eclipse.core.runtime.NullProgressMonitor;
-import org.eclipse.core.runtime.Path;
 
 import org.eclipse.jface.text.IDocument;
 
@@ -51,6 +49,20 @@ import org.eclipse.jface.text.IDocument;
  */
 public class ProjectUtils
 {
+  private static final int MAX_STAMPS = 1000;
+
+  // the state of the most recently refreshed files when they were refreshed.
+  private static final Map<String,FileStamp> stamps =
+    new LinkedHashMap<String,FileStamp>(16, .75f, true){
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String,FileStamp> eldest)
+      {
+        return size() > MAX_STAMPS;
+      }
+    };
+
   /**
    * Gets the path on disk to the directory of the supplied project.
    *
@@ -244,11 +256,7 @@ public class ProjectUtils
     //String file = file.substring(path.length());
 
     IFile ifile = project.getFile(file);
-    try{
-      ifile.refreshLocal(IResource.DEPTH_INFINITE, null);
-    }catch(CoreException ce){
-      throw new RuntimeException(ce);
-    }
+    refresh(ifile);
 
     // invoke any nature specific file refreshing
     String[] natures = ProjectNatureFactory.getProjectNatures(project);
@@ -262,6 +270,55 @@ public class ProjectUtils
     return ifile;
   }
 
+  /**
+   * Refreshes the supplied file unless the file is unchanged on disk since the
+   * last refresh (a single client action may result in several commands each
+   * requesting the same file). Only the most recently refreshed files are
+   * tracked, so others are simply refreshed again.
+   *
+   * @param ifile The file.
+   * @see FileStamp
+   */
+  private static void refresh(IFile ifile)
+  {
+    IPath location = ifile.getLocation();
+    File local = location != null ? location.toFile() : null;
+    String key = local != null ? location.toOSString() : null;
+    FileStamp stamp = null;
+    if (local != null){
+      synchronized(stamps){
+        stamp = stamps.get(key);
+      }
+      if (stamp != null &&
+          !stamp.changed(local) &&
+          ifile.exists() == local.exists())
+      {
+        Metrics.increment("file.refresh.skipped");
+        return;
+      }
+      if (stamp == null){
+        stamp = new FileStamp(local);
+      }
+    }
+
+    Metrics.increment("file.refresh");
+    try{
+      ifile.refreshLocal(IResource.DEPTH_INFINITE, null);
+    }catch(CoreException ce){
+      if (key != null){
+        synchronized(stamps){
+          stamps.remove(key);
+        }
+      }
+      throw new RuntimeException(ce);
+    }
+    if (key != null){
+      synchronized(stamps){
+        stamps.put(key, stamp);
+      }
+    }
+  }
+
   /**
    * Gets the IDocument instance for the given file.
    * <p>Borrowed from org.eclipse.ant.internal.ui.AntUtil</p>
@@ -276,8 +333,9 @@ public class ProjectUtils
   }
 
   /**
-   * Gets the IDocument instance for the given file.
-   * <p>Borrowed from org.eclipse.ant.internal.ui.AntUtil</p>
+   * Gets the IDocument instance for the given file. The document's buffer is
+   * kept connected until the file is closed by the client (see
+   * {@link DocumentCache}).
    *
    * @param project The project.
    * @param file The file.
@@ -290,41 +348,7 @@ public class ProjectUtils
     // break ant code completion and validation.
     //IFile thefile = getFile(project, file);
     File thefile = new File(getFilePath(project, file));
-    if(!thefile.exists()){
-      return null;
-    }
-
-    ITextFileBufferManager manager = FileBuffers.getTextFileBufferManager();
-    //IPath location = thefile.getFullPath();
-    IPath location = new Path(thefile.getAbsolutePath());
-    boolean connected = false;
-    try {
-      ITextFileBuffer buffer =
-        manager.getTextFileBuffer(location, LocationKind.LOCATION);
-      if (buffer == null) {
-        //no existing file buffer..create one
-        try{
-          manager.connect(
-              location, LocationKind.LOCATION, new NullProgressMonitor());
-        }catch(CoreException ce){
-          throw new RuntimeException(ce);
-        }
-        connected = true;
-        buffer = manager.getTextFileBuffer(location, LocationKind.LOCATION);
-        if (buffer == null) {
-          return null;
-        }
-      }
-      return buffer.getDocument();
-    } finally {
-      if (connected) {
-        try {
-          manager.disconnect(
-              location, LocationKind.LOCATION, new NullProgressMonitor());
-        }catch(Exception e){
-        }
-      }
-    }
+    return DocumentCache.getDocument(thefile);
   }
 
   /**
@@ -0,0 +1,397 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import java.util.Map;
+import java.util.UUID;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclim.logging.Logger;
+
+import org.eclim.util.Metrics;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Server accepting long lived channels from vim instances (vim's json channel
+ * mode), allowing eclimd to send requests to vim without spawning a new vim
+ * process (vim --remote-expr, etc.) for every request.
+ * <p/>
+ * Vim obtains the port and a token using the vim_channel command, connects,
+ * and registers the name it wants to be addressed by (its servername when it
+ * has one):
+ * <pre>
+ *   [1, ["register", "&lt;name&gt;", "&lt;token&gt;"]]
+ * </pre>
+ * Each message is a json array terminated by a newline. Requests to vim use
+ * vim's channel commands, where an expression is tagged with a negative id
+ * that vim echoes back along with the result:
+ * <pre>
+ *   ["expr", "line('$')", -2]  =&gt;  [-2, 42]
+ *   ["ex", "call eclim#util#Echo('done')"]
+ * </pre>
+ *
+ * @author Eric Van Dewoestine
+ */
+public class VimChannelServer
+  implements Runnable
+{
+  private static final Logger logger =
+    Logger.getLogger(VimChannelServer.class);
+
+  private static VimChannelServer instance = new VimChannelServer();
+
+  private final String token = UUID.randomUUID().toString();
+  private final Map<String,Channel> channels =
+    new ConcurrentHashMap<String,Channel>();
+  private ServerSocket server;
+
+  private VimChannelServer()
+  {
+  }
+
+  /**
+   * Gets the VimChannelServer instance.
+   *
+   * @return The VimChannelServer singleton.
+   */
+  public static VimChannelServer getInstance()
+  {
+    return instance;
+  }
+
+  /**
+   * Starts the server, if not already started, listening on an ephemeral
+   * port of the loopback interface.
+   *
+   * @return The port the server is listening on.
+   */
+  public synchronized int start()
+    throws IOException
+  {
+    if (server == null || server.isClosed()){
+      server = new ServerSocket(0, 50, InetAddress.getByName(null));
+      Thread thread = new Thread(this, "eclim vim channel server");
+      thread.setDaemon(true);
+      thread.start();
+      logger.info(
+          "Listening for vim channels on port {}", server.getLocalPort());
+    }
+    return server.getLocalPort();
+  }
+
+  /**
+   * Stops the server, closing all open channels.
+   */
+  public synchronized void stop()
+  {
+    if (server != null){
+      try{
+        server.close();
+      }catch(IOException ioe){
+        logger.debug("Error closing vim channel server", ioe);
+      }
+      server = null;
+    }
+    for (Channel channel : channels.values()){
+      channel.close();
+    }
+    channels.clear();
+  }
+
+  /**
+   * Gets the token vim must supply when registering a channel.
+   *
+   * @return The token.
+   */
+  public String getToken()
+  {
+    return token;
+  }
+
+  /**
+   * Gets the open channel registered under the supplied name.
+   *
+   * @param name The name the vim instance registered with.
+   * @return The Channel or null if no open channel was registered by that
+   * name.
+   */
+  public Channel getChannel(String name)
+  {
+    Channel channel = name != null ? channels.get(name) : null;
+    if (channel != null && channel.closed){
+      channels.remove(name, channel);
+      return null;
+    }
+    return channel;
+  }
+
+  @Override
+  public void run()
+  {
+    ServerSocket server = this.server;
+    while (server != null && !server.isClosed()){
+      try{
+        Socket socket = server.accept();
+        Channel channel = new Channel(socket);
+        Thread thread = new Thread(channel, "eclim vim channel " +
+            socket.getRemoteSocketAddress());
+        thread.setDaemon(true);
+        thread.start();
+      }catch(IOException ioe){
+        if (!server.isClosed()){
+          logger.error("Error accepting vim channel", ioe);
+        }
+      }
+    }
+  }
+
+  private void register(Channel channel, String name, String token)
+  {
+    if (!this.token.equals(token)){
+      logger.warn("Rejecting vim channel registration with an invalid token.");
+      channel.close();
+      return;
+    }
+
+    logger.debug("Registered vim channel: {}", name);
+    channel.name = name;
+    Channel previous = channels.put(name, channel);
+    if (previous != null && previous != channel){
+      previous.close();
+    }
+  }
+
+  /**
+   * A single channel to a vim instance.
+   */
+  public class Channel
+    implements Runnable
+  {
+    private final Socket socket;
+    private final Writer writer;
+    private final AtomicInteger ids = new AtomicInteger();
+    private final Map<Integer,BlockingQueue<JsonElement>> pending =
+      new ConcurrentHashMap<Integer,BlockingQueue<JsonElement>>();
+
+    private String name;
+    private volatile boolean closed;
+
+    private Channel(Socket socket)
+      throws IOException
+    {
+      this.socket = socket;
+      this.writer = new BufferedWriter(
+          new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+    }
+
+    /**
+     * Evaluates the supplied expression in vim.
+     *
+     * @param expr The vim expression.
+     * @param timeout The max time, in milliseconds, to wait for the result.
+     * @return The result as a string (lists and dictionaries as json) or null
+     * if no result was received before the timeout.
+     */
+    public String expr(String expr, long timeout)
+      throws IOException
+    {
+      int id = ids.incrementAndGet();
+      BlockingQueue<JsonElement> response =
+        new ArrayBlockingQueue<JsonElement>(1);
+      pending.put(id, response);
+      try{
+        JsonArray message = new JsonArray();
+        message.add(new JsonPrimitive("expr"));
+        message.add(new JsonPrimitive(expr));
+        message.add(new JsonPrimitive(-id));
+        send(message);
+
+        JsonElement result = response.poll(timeout, TimeUnit.MILLISECONDS);
+        if (result == null){
+          if (closed){
+            throw new IOException("Vim channel closed: " + name);
+          }
+          Metrics.increment("vim.channel.timeout");
+          return null;
+        }
+        if (result.isJsonPrimitive()){
+          return result.getAsString();
+        }
+        return result.isJsonNull() ? null : result.toString();
+      }catch(InterruptedException ie){
+        Thread.currentThread().interrupt();
+        return null;
+      }finally{
+        pending.remove(id);
+      }
+    }
+
+    /**
+     * Executes the supplied ex command in vim, without waiting for it to
+     * complete.
+     *
+     * @param command The ex command (without the leading ':').
+     */
+    public void ex(String command)
+      throws IOException
+    {
+      JsonArray message = new JsonArray();
+      message.add(new JsonPrimitive("ex"));
+      message.add(new JsonPrimitive(command));
+      send(message);
+    }
+
+    /**
+     * Requests that vim redraw the screen.
+     */
+    public void redraw()
+      throws IOException
+    {
+      JsonArray message = new JsonArray();
+      message.add(new JsonPrimitive("redraw"));
+      message.add(new JsonPrimitive(""));
+      send(message);
+    }
+
+    /**
+     * Closes this channel.
+     */
+    public void close()
+    {
+      closed = true;
+      try{
+        socket.close();
+      }catch(IOException ioe){
+        logger.debug("Error closing vim channel: " + name, ioe);
+      }
+      // wake up any threads still waiting on a response.
+      for (BlockingQueue<JsonElement> response : pending.values()){
+        response.offer(JsonNull.INSTANCE);
+      }
+    }
+
+    @Override
+    public void run()
+    {
+      try{
+        JsonReader reader = new JsonReader(new BufferedReader(
+              new InputStreamReader(socket.getInputStream(), "UTF-8")));
+        reader.setLenient(true);
+        JsonParser parser = new JsonParser();
+        while (!closed){
+          try{
+            if (reader.peek() == JsonToken.END_DOCUMENT){
+              break;
+            }
+          }catch(EOFException eofe){
+            break;
+          }
+          receive(parser.parse(reader));
+        }
+      }catch(Exception e){
+        if (!closed){
+          logger.debug("Vim channel error: " + name, e);
+        }
+      }finally{
+        logger.debug("Vim channel closed: {}", name);
+        close();
+        if (name != null){
+          channels.remove(name, this);
+        }
+      }
+    }
+
+    private void send(JsonArray message)
+      throws IOException
+    {
+      if (closed){
+        throw new IOException("Vim channel closed: " + name);
+      }
+      try{
+        synchronized(writer){
+          writer.write(message.toString());
+          writer.write('\n');
+          writer.flush();
+        }
+      }catch(IOException ioe){
+        close();
+        throw ioe;
+      }
+      Metrics.increment("vim.channel.sent");
+    }
+
+    private void receive(JsonElement message)
+    {
+      if (!message.isJsonArray() || message.getAsJsonArray().size() < 2){
+        logger.debug("Ignoring vim channel message: {}", message);
+        return;
+      }
+
+      JsonArray array = message.getAsJsonArray();
+      int id = array.get(0).getAsInt();
+      JsonElement body = array.get(1);
+
+      // response to one of our requests.
+      if (id < 0){
+        BlockingQueue<JsonElement> response = pending.get(-id);
+        if (response != null){
+          response.offer(body);
+        }
+        return;
+      }
+
+      // message sent by vim (ch_sendexpr).
+      if (body.isJsonArray()){
+        JsonArray request = body.getAsJsonArray();
+        if (request.size() == 3 &&
+            "register".equals(request.get(0).getAsString()))
+        {
+          register(this, request.get(1).getAsString(),
+              request.get(2).getAsString());
+          return;
+        }
+      }
+      logger.debug("Ignoring vim channel message: {}", message);
+    }
+  }
+}
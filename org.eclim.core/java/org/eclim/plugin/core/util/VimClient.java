@@ -16,6 +16,8 @@
  */
 package org.eclim.plugin.core.util;
 
+import java.io.IOException;
+
 import java.util.Arrays;
 
 import org.eclim.logging.Logger;
@@ -24,6 +26,11 @@ import org.eclim.util.CommandExecutor;
 
 /**
  * Client to interact with VIM server instance.
+ * <p/>
+ * When the vim instance has registered a channel with eclimd (see
+ * {@link VimChannelServer}), requests are sent over that channel. Otherwise
+ * each request spawns a vim process using vim's --remote-send/--remote-expr
+ * client server support.
  */
 public class VimClient
 {
@@ -64,6 +71,18 @@ public class VimClient
   public void remoteSend(String arg)
     throws Exception
   {
+    // ex commands can be sent over the channel, anything else is sent as keys.
+    VimChannelServer.Channel channel = getChannel();
+    if (channel != null && arg.startsWith(":")){
+      try{
+        channel.ex(arg.substring(1));
+        channel.redraw();
+        return;
+      }catch(IOException ioe){
+        logger.debug("Falling back to --remote-send: " + instanceId, ioe);
+      }
+    }
+
     // redraw at end to prevent "ENTER to continue"
     //  for long commands
     String[] cmd = {
@@ -83,6 +102,15 @@ public class VimClient
 
   public String remoteExpr(String arg)
   {
+    VimChannelServer.Channel channel = getChannel();
+    if (channel != null){
+      try{
+        return channel.expr(arg, TIMEOUT_INPUT);
+      }catch(IOException ioe){
+        logger.debug("Falling back to --remote-expr: " + instanceId, ioe);
+      }
+    }
+
     String[] cmd = {
       executable,
       "--servername",
@@ -125,8 +153,25 @@ public class VimClient
         call.append(',');
       }
     }
-    call.append(')')
-        .append(" | :redraw!<cr>"); // special for func calls
+    call.append(')');
+
+    VimChannelServer.Channel channel = getChannel();
+    if (channel != null){
+      try{
+        String result = channel.expr(call.toString(), TIMEOUT_INPUT);
+        channel.redraw();
+        return result;
+      }catch(IOException ioe){
+        logger.debug("Falling back to --remote-expr: " + instanceId, ioe);
+      }
+    }
+
+    call.append(" | :redraw!<cr>"); // special for func calls
     return remoteExpr(call.toString());
   }
+
+  private VimChannelServer.Channel getChannel()
+  {
+    return VimChannelServer.getInstance().getChannel(instanceId);
+  }
 }
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared pool of worker threads for commands which split their work into
+ * parallel tasks, bounding the number of threads eclimd creates no matter how
+ * many of those commands are running at once.
+ * <p/>
+ * Tasks submitted to the pool must not themselves wait on other tasks
+ * submitted to the pool, since that could exhaust the workers; callers
+ * already running on a worker thread ({@link #isWorker()}) should do their
+ * work inline instead.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class WorkerPool
+{
+  private static final ThreadLocal<Boolean> worker = new ThreadLocal<Boolean>();
+
+  private static ThreadPoolExecutor executor;
+
+  private WorkerPool()
+  {
+  }
+
+  /**
+   * Gets the shared executor.
+   *
+   * @return The ExecutorService.
+   */
+  public static synchronized ExecutorService getExecutor()
+  {
+    if (executor == null){
+      int threads = getSize();
+      executor = new ThreadPoolExecutor(
+          threads, threads, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
+      // let the workers exit when eclimd is idle.
+      executor.allowCoreThreadTimeOut(true);
+    }
+    return executor;
+  }
+
+  /**
+   * Gets the maximum number of worker threads.
+   *
+   * @return The number of threads.
+   */
+  public static int getSize()
+  {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Determines if the current thread is one of the pool's workers.
+   *
+   * @return true if the current thread is a worker, false otherwise.
+   */
+  public static boolean isWorker()
+  {
+    return worker.get() != null;
+  }
+
+  private static class WorkerThreadFactory
+    implements ThreadFactory
+  {
+    private static final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable runnable)
+    {
+      Thread thread = new Thread(
+          new Runnable(){
+            public void run()
+            {
+              worker.set(Boolean.TRUE);
+              runnable.run();
+            }
+          },
+          "eclim worker " + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
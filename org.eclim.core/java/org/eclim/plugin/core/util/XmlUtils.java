@@ -16,38 +16,49 @@
  */
 package org.eclim.plugin.core.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.Reader;
 
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.net.URLDecoder;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
 
 import java.util.regex.Pattern;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.XMLConstants;
+
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import javax.xml.transform.stream.StreamSource;
+
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
-import org.apache.commons.lang.SystemUtils;
-
-import org.apache.commons.vfs.FileObject;
-import org.apache.commons.vfs.FileSystemManager;
-import org.apache.commons.vfs.VFS;
-
 import org.eclim.Services;
 
 import org.eclim.command.Error;
@@ -57,12 +68,15 @@ import org.eclim.logging.Logger;
 import org.eclim.plugin.core.util.ProjectUtils;
 
 import org.eclim.util.IOUtils;
+import org.eclim.util.Metrics;
 
 import org.eclim.util.file.FileUtils;
 
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
@@ -84,6 +98,20 @@ public class XmlUtils
 
   private static XPath XPATH;
 
+  private static final String SCHEMA_VALIDATION =
+    "http://apache.org/xml/features/validation/schema";
+  private static final String SCHEMA_FULL_CHECKING =
+    "http://apache.org/xml/features/validation/schema-full-checking";
+
+  // sax parser factories by configuration: [validating][schema]
+  private static final SAXParserFactory[][] PARSER_FACTORIES =
+    new SAXParserFactory[2][2];
+
+  private static XMLInputFactory PROLOG_FACTORY;
+
+  private static final ConcurrentHashMap<String,CachedSchema> SCHEMAS =
+    new ConcurrentHashMap<String,CachedSchema>();
+
   /**
    * Create an XPathExpression from the supplied xpath string.
    *
@@ -152,23 +180,8 @@ public class XmlUtils
       EntityResolver entityResolver = new EntityResolver(
           FileUtils.getFullPath(filename));
 
-      // check if the file has doctype info (would be nice to have a way to
-      // detect this without parsing the whole file).
-      DocumentBuilder builder = DocumentBuilderFactory.newInstance()
-        .newDocumentBuilder();
-      builder.setEntityResolver(entityResolver);
-      Document doc = builder.parse(new File(filename));
-
-      SAXParserFactory factory = SAXParserFactory.newInstance();
-      factory.setValidating(doc.getDoctype() != null);
-      factory.setNamespaceAware(true);
-      if(schema){
-        factory.setFeature("http://apache.org/xml/features/validation/schema", true);
-        factory.setFeature(
-            "http://apache.org/xml/features/validation/schema-full-checking", true);
-      }
-
-      SAXParser parser = factory.newSAXParser();
+      SAXParser parser = newSAXParser(
+          getParserFactory(hasDoctype(filename), schema));
 
       ErrorAggregator errorHandler = new ErrorAggregator(filename);
       parser.parse(
@@ -220,26 +233,7 @@ public class XmlUtils
       String project, String filename, String schema)
   {
     try{
-      SAXParserFactory factory = SAXParserFactory.newInstance();
-      factory.setNamespaceAware(true);
-      factory.setValidating(true);
-      factory.setFeature("http://apache.org/xml/features/validation/schema", true);
-      factory.setFeature(
-          "http://apache.org/xml/features/validation/schema-full-checking", true);
-
-      SAXParser parser = factory.newSAXParser();
-      parser.setProperty(
-          "http://java.sun.com/xml/jaxp/properties/schemaLanguage",
-          "http://www.w3.org/2001/XMLSchema");
-      if(!schema.startsWith("file:")){
-        schema = "file://" + schema;
-      }
-      parser.setProperty(
-          "http://java.sun.com/xml/jaxp/properties/schemaSource", schema);
-      parser.setProperty(
-          "http://apache.org/xml/properties/schema/" +
-          "external-noNamespaceSchemaLocation",
-          schema.replace('\\', '/'));
+      SAXParser parser = newSAXParser(getSchemaParserFactory(schema));
 
       filename = ProjectUtils.getFilePath(project, filename);
       filename = filename.replace('\\', '/');
@@ -282,6 +276,186 @@ public class XmlUtils
     }
   }
 
+  /**
+   * Gets the shared parser factory for the supplied configuration.
+   *
+   * @param validating true to validate against the document's doctype.
+   * @param schema true to validate against the schemas declared by the
+   * document.
+   * @return The SAXParserFactory.
+   */
+  private static synchronized SAXParserFactory getParserFactory(
+      boolean validating, boolean schema)
+    throws ParserConfigurationException, SAXException
+  {
+    int v = validating ? 1 : 0;
+    int s = schema ? 1 : 0;
+    if(PARSER_FACTORIES[v][s] == null){
+      SAXParserFactory factory = SAXParserFactory.newInstance();
+      factory.setValidating(validating);
+      factory.setNamespaceAware(true);
+      if(schema){
+        factory.setFeature(SCHEMA_VALIDATION, true);
+        factory.setFeature(SCHEMA_FULL_CHECKING, true);
+      }
+      PARSER_FACTORIES[v][s] = factory;
+    }
+    return PARSER_FACTORIES[v][s];
+  }
+
+  /**
+   * Creates a new parser from the supplied shared factory (factories are not
+   * guaranteed to be thread safe, so access to them is serialized).
+   */
+  private static SAXParser newSAXParser(SAXParserFactory factory)
+    throws ParserConfigurationException, SAXException
+  {
+    synchronized(factory){
+      return factory.newSAXParser();
+    }
+  }
+
+  /**
+   * Gets a parser factory validating against the supplied xsd, re-compiling
+   * the schema only when the xsd, or any xsd it imports or includes, has been
+   * modified since it was last compiled, or when a remote xsd is due to be
+   * refreshed.
+   *
+   * @param location The file path or url of the xsd.
+   * @return The SAXParserFactory.
+   */
+  private static SAXParserFactory getSchemaParserFactory(String location)
+    throws SAXException, IOException
+  {
+    location = location.replace('\\', '/');
+    if(!location.startsWith("file:") && location.indexOf("://") == -1){
+      location = "file://" + location;
+    }
+
+    CachedSchema cached = SCHEMAS.get(location);
+    if(cached == null){
+      CachedSchema created = new CachedSchema();
+      cached = SCHEMAS.putIfAbsent(location, created);
+      if(cached == null){
+        cached = created;
+      }
+    }
+
+    // concurrent validations against the same schema wait on a single
+    // compile.
+    synchronized(cached){
+      if(cached.isCurrent()){
+        Metrics.increment("xml.schema.cache.hit");
+        return cached.factory;
+      }
+
+      Metrics.increment("xml.schema.cache.miss");
+      logger.debug("Compiling schema: {}", location);
+      long start = System.currentTimeMillis();
+
+      SchemaResolver resolver = new SchemaResolver();
+      SchemaFactory schemaFactory =
+        SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+      schemaFactory.setFeature(SCHEMA_FULL_CHECKING, true);
+      schemaFactory.setResourceResolver(resolver);
+
+      byte[] bytes = resolver.load(location);
+      Schema compiled = schemaFactory.newSchema(bytes != null ?
+          new StreamSource(new ByteArrayInputStream(bytes), location) :
+          new StreamSource(location));
+
+      // validation is supplied by the schema, so the parser itself must not
+      // also attempt dtd validation.
+      SAXParserFactory factory = SAXParserFactory.newInstance();
+      factory.setNamespaceAware(true);
+      factory.setValidating(false);
+      factory.setSchema(compiled);
+
+      cached.factory = factory;
+      cached.dependencies = resolver.dependencies;
+      cached.remote = resolver.remote;
+      Metrics.add("xml.schema.compile.millis",
+          System.currentTimeMillis() - start);
+      return factory;
+    }
+  }
+
+  /**
+   * Gets the local file for the supplied file url.
+   *
+   * @param location The file url.
+   * @return The File.
+   */
+  private static File toFile(String location)
+    throws IOException
+  {
+    String path = location.substring("file:".length());
+    if(path.startsWith("//")){
+      path = path.substring(2);
+    }
+    return new File(URLDecoder.decode(path, "utf-8"));
+  }
+
+  /**
+   * Determines if the supplied xml file declares a doctype by reading only
+   * the file's prolog (everything before the root element).
+   *
+   * @param filename The path to the xml file.
+   * @return true if the file declares a doctype, false otherwise.
+   */
+  private static boolean hasDoctype(String filename)
+    throws IOException
+  {
+    InputStream in = null;
+    XMLStreamReader reader = null;
+    try{
+      in = new FileInputStream(filename);
+      reader = getPrologFactory().createXMLStreamReader(in);
+      while(reader.hasNext()){
+        switch(reader.next()){
+          case XMLStreamConstants.DTD:
+            return true;
+          case XMLStreamConstants.START_ELEMENT:
+            return false;
+        }
+      }
+      return false;
+    }catch(XMLStreamException xse){
+      // malformed prolog, let the validating parse report the error.
+      logger.debug("Unable to read xml prolog: " + filename, xse);
+      return false;
+    }finally{
+      if(reader != null){
+        try{
+          reader.close();
+        }catch(XMLStreamException ignore){
+        }
+      }
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  private static synchronized XMLInputFactory getPrologFactory()
+  {
+    if(PROLOG_FACTORY == null){
+      XMLInputFactory factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+      factory.setProperty(XMLInputFactory.IS_VALIDATING, Boolean.FALSE);
+      factory.setProperty(
+          XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+      // never load the external dtd just to find out that there is one.
+      factory.setXMLResolver(new XMLResolver(){
+        public Object resolveEntity(
+            String publicId, String systemId, String baseUri, String namespace)
+        {
+          return new ByteArrayInputStream(new byte[0]);
+        }
+      });
+      PROLOG_FACTORY = factory;
+    }
+    return PROLOG_FACTORY;
+  }
+
   /**
    * Gets the value of a named child element.
    *
@@ -495,6 +669,228 @@ public class XmlUtils
     }
   }
 
+  /**
+   * A parser factory which validates against a compiled schema, along with
+   * the files the schema was compiled from and their modification times.
+   */
+  private static class CachedSchema
+  {
+    private SAXParserFactory factory;
+    private Map<File,Long> dependencies;
+    private List<String> remote;
+
+    public boolean isCurrent()
+    {
+      if(factory == null){
+        return false;
+      }
+      for(Map.Entry<File,Long> entry : dependencies.entrySet()){
+        if(entry.getKey().lastModified() != entry.getValue().longValue()){
+          return false;
+        }
+      }
+      for(String url : remote){
+        if(EntityCache.isStale(url)){
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Resolves the xsds imported or included by a schema being compiled,
+   * loading remote xsds through the EntityCache, and records the files the
+   * schema is compiled from.
+   */
+  private static class SchemaResolver
+    implements LSResourceResolver
+  {
+    private HashMap<File,Long> dependencies = new HashMap<File,Long>();
+    private ArrayList<String> remote = new ArrayList<String>();
+
+    @Override
+    public LSInput resolveResource(
+        String type,
+        String namespaceURI,
+        String publicId,
+        String systemId,
+        String baseURI)
+    {
+      if(systemId == null){
+        return null;
+      }
+
+      String location = systemId;
+      if(baseURI != null){
+        try{
+          location = new URI(baseURI).resolve(new URI(systemId)).toString();
+        }catch(URISyntaxException use){
+          logger.debug("Unable to resolve {} against {}", systemId, baseURI);
+        }
+      }
+      if(location.startsWith("file:/") && !location.startsWith("file://")){
+        location = "file://" + location.substring("file:".length());
+      }
+
+      String cataloged = EntityCache.resolve(publicId, location);
+      if(cataloged != null){
+        logger.debug("Resolved {} from catalog: {}", location, cataloged);
+        location = cataloged;
+      }
+
+      try{
+        byte[] bytes = load(location);
+        SchemaInput input = new SchemaInput(publicId, location, baseURI);
+        if(bytes != null){
+          input.setByteStream(new ByteArrayInputStream(bytes));
+        }
+        return input;
+      }catch(IOException ioe){
+        // let the schema factory report the failure.
+        logger.debug("Unable to load schema: " + location, ioe);
+        return null;
+      }
+    }
+
+    /**
+     * Loads the contents of the supplied remote schema from the EntityCache,
+     * or for a local schema, just records it as a dependency.
+     *
+     * @param location The schema's url.
+     * @return The schema contents or null if the schema should be loaded by
+     * the schema factory.
+     */
+    public byte[] load(String location)
+      throws IOException
+    {
+      if(location.startsWith("http://") || location.startsWith("https://")){
+        byte[] bytes = EntityCache.get(location);
+        File file = EntityCache.getFile(location);
+        dependencies.put(file, file.lastModified());
+        remote.add(location);
+        return bytes;
+      }
+
+      if(location.startsWith("file:")){
+        File file = toFile(location);
+        dependencies.put(file, file.lastModified());
+      }
+      return null;
+    }
+  }
+
+  /**
+   * LSInput for a schema resolved by the SchemaResolver.
+   */
+  private static class SchemaInput
+    implements LSInput
+  {
+    private String publicId;
+    private String systemId;
+    private String baseURI;
+    private InputStream byteStream;
+
+    public SchemaInput(String publicId, String systemId, String baseURI)
+    {
+      this.publicId = publicId;
+      this.systemId = systemId;
+      this.baseURI = baseURI;
+    }
+
+    @Override
+    public Reader getCharacterStream()
+    {
+      return null;
+    }
+
+    @Override
+    public void setCharacterStream(Reader characterStream)
+    {
+    }
+
+    @Override
+    public InputStream getByteStream()
+    {
+      return byteStream;
+    }
+
+    @Override
+    public void setByteStream(InputStream byteStream)
+    {
+      this.byteStream = byteStream;
+    }
+
+    @Override
+    public String getStringData()
+    {
+      return null;
+    }
+
+    @Override
+    public void setStringData(String stringData)
+    {
+    }
+
+    @Override
+    public String getSystemId()
+    {
+      return systemId;
+    }
+
+    @Override
+    public void setSystemId(String systemId)
+    {
+      this.systemId = systemId;
+    }
+
+    @Override
+    public String getPublicId()
+    {
+      return publicId;
+    }
+
+    @Override
+    public void setPublicId(String publicId)
+    {
+      this.publicId = publicId;
+    }
+
+    @Override
+    public String getBaseURI()
+    {
+      return baseURI;
+    }
+
+    @Override
+    public void setBaseURI(String baseURI)
+    {
+      this.baseURI = baseURI;
+    }
+
+    @Override
+    public String getEncoding()
+    {
+      return null;
+    }
+
+    @Override
+    public void setEncoding(String encoding)
+    {
+    }
+
+    @Override
+    public boolean getCertifiedText()
+    {
+      return false;
+    }
+
+    @Override
+    public void setCertifiedText(boolean certifiedText)
+    {
+    }
+  }
+
   /**
    * Handler for collecting errors during parsing and validation of a xml
    * file.
@@ -587,20 +983,7 @@ public class XmlUtils
   private static class EntityResolver
     implements org.xml.sax.EntityResolver
   {
-    private static String TEMP_PREFIX =
-      "file://" + SystemUtils.JAVA_IO_TMPDIR.replace('\\', '/');
-    static{
-      if(TEMP_PREFIX.endsWith("\\") || TEMP_PREFIX.endsWith("/")){
-        TEMP_PREFIX = TEMP_PREFIX.substring(0, TEMP_PREFIX.length() - 1);
-      }
-    }
-
     private String path;
-    private String lastPath;
-
-    // cache missing sources to avoiding hitting the same url repeatedly
-    private static HashMap<String,IOException> missingSources =
-      new HashMap<String,IOException>();
 
     /**
      * Constructs a new instance.
@@ -622,62 +1005,27 @@ public class XmlUtils
       // has a single letter directory, but that is doubtful.
       location = location.replaceFirst("^file://([a-zA-Z])/", "file://$1:/");
 
-      if(location.startsWith(TEMP_PREFIX)){
-        location = location.substring(TEMP_PREFIX.length());
-        return resolveEntity(publicId, lastPath + location);
-      }else if(location.startsWith("http://")){
-        if (missingSources.containsKey(systemId)){
-          throw missingSources.get(systemId);
-        }
+      // entities relative to a cached remote entity are resolved by the parser
+      // against the cache file, so map them back to their remote location.
+      String remote = EntityCache.getUrl(location);
+      if(remote != null){
+        return resolveEntity(publicId, remote);
+      }
 
-        int index = location.indexOf('/', 8);
-        lastPath = location.substring(0, index + 1);
-        location = location.substring(index);
-
-        location = TEMP_PREFIX + location;
-
-        FileSystemManager fsManager = VFS.getManager();
-        FileObject tempFile = fsManager.resolveFile(location.replace("%", "%25"));
-
-        // check if temp file already exists.
-        if(!tempFile.exists() || tempFile.getContent().getSize() == 0){
-          InputStream in = null;
-          OutputStream out = null;
-          try{
-            if(!tempFile.exists()){
-              tempFile.createFile();
-            }
-
-            // download and save remote file.
-            URL remote = new URL(systemId);
-            URLConnection conn = remote.openConnection();
-            conn.setConnectTimeout(3000);
-            conn.setReadTimeout(5000);
-            conn.connect();
-            in = conn.getInputStream();
-            out = tempFile.getContent().getOutputStream();
-            IOUtils.copy(in, out);
-          }catch(Exception e){
-            logger.warn(e.getMessage());
-            IOUtils.closeQuietly(out);
-            try{
-              tempFile.delete();
-            }catch(Exception ignore){
-            }
-
-            IOException ex = new IOException(e.getMessage());
-            ex.initCause(e);
-            missingSources.put(systemId, ex);
-            throw ex;
-          }finally{
-            IOUtils.closeQuietly(in);
-            IOUtils.closeQuietly(out);
-          }
-        }
+      String cataloged = EntityCache.resolve(publicId, location);
+      if(cataloged != null && !cataloged.equals(location)){
+        logger.debug("Resolved {} from catalog: {}", location, cataloged);
+        location = cataloged;
+      }
 
+      if(location.startsWith("http://") || location.startsWith("https://")){
+        byte[] bytes = EntityCache.get(location);
         InputSource source =
-          new InputSource(tempFile.getContent().getInputStream());
-        source.setSystemId(location);
+          new InputSource(new ByteArrayInputStream(bytes));
+        // use the cache file as the system id so that errors in the entity
+        // point to a local file.
+        source.setSystemId("file://" + FileUtils.separatorsToUnix(
+              EntityCache.getFile(location).getAbsolutePath()));
         return source;
 
       }else if(location.startsWith("file:")){
@@ -707,7 +1055,7 @@ public class XmlUtils
         return new InputSource(location);
       }
 
-      return new InputSource(systemId);
+      return new InputSource(location);
     }
   }
 }
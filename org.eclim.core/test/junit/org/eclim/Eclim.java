@@ -106,6 +106,26 @@ public class Eclim
    * @return The result of the command execution as a string.
    */
   public static Object execute(String[] args, long timeout, boolean failOnError)
+  {
+    return execute(args, null, timeout, failOnError);
+  }
+
+  /**
+   * Executes eclim using the supplied arguments, sending the supplied input to
+   * the command on stdin.
+   * The "-command" argument will be prepended to the argument array you supply.
+   *
+   * @param args The arguments to pass to eclim.
+   * @param input The bytes to send on stdin.
+   * @return The result of the command execution as a string.
+   */
+  public static Object execute(String[] args, byte[] input)
+  {
+    return execute(args, input, -1, true);
+  }
+
+  private static Object execute(
+      String[] args, byte[] input, long timeout, boolean failOnError)
   {
     assertNotNull("Please configure property eclimd.port", PORT);
     assertNotNull("Please configure property eclipse.home", ECLIM);
@@ -123,7 +143,7 @@ public class Eclim
 
     CommandExecutor process = null;
     try{
-      process = CommandExecutor.execute(arguments, timeout);
+      process = CommandExecutor.execute(arguments, timeout, input);
     }catch(Exception e){
       throw new RuntimeException(e);
     }
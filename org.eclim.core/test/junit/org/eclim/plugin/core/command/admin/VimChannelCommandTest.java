@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.admin;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.net.Socket;
+
+import java.util.Map;
+
+import org.eclim.Eclim;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Test case for VimChannelCommand.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class VimChannelCommandTest
+{
+  private static final String NAME = "eclim_unit_test_vim";
+
+  /**
+   * Test the command.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void execute()
+    throws Exception
+  {
+    Map<String,Object> result = (Map<String,Object>)
+      Eclim.execute(new String[]{"vim_channel"});
+    int port = ((Integer)result.get("port")).intValue();
+    String token = (String)result.get("token");
+    assertTrue("Invalid port", port > 0);
+    assertNotNull("Missing token", token);
+
+    Socket socket = new Socket("localhost", port);
+    try{
+      StandInVim vim = new StandInVim(socket);
+      vim.register(NAME, token);
+      Thread thread = new Thread(vim);
+      thread.setDaemon(true);
+      thread.start();
+
+      // give the server a moment to process the registration.
+      Thread.sleep(200);
+
+      assertEquals("Wrong result", "evaluated: line('$')",
+          Eclim.execute(new String[]{
+            "vim_channel", "-v", NAME, "-e", "line('$')"}));
+      assertEquals("Wrong result", "evaluated: 1 + 1",
+          Eclim.execute(new String[]{
+            "vim_channel", "-v", NAME, "-e", "1 + 1"}));
+    }finally{
+      socket.close();
+    }
+  }
+
+  /**
+   * Stand in for a vim instance's json channel, answering each expr request
+   * with the expression prefixed with 'evaluated: '.
+   */
+  private static class StandInVim
+    implements Runnable
+  {
+    private Socket socket;
+    private Writer writer;
+
+    public StandInVim(Socket socket)
+      throws Exception
+    {
+      this.socket = socket;
+      this.writer = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+    }
+
+    public void register(String name, String token)
+      throws Exception
+    {
+      JsonArray request = new JsonArray();
+      request.add(new JsonPrimitive("register"));
+      request.add(new JsonPrimitive(name));
+      request.add(new JsonPrimitive(token));
+      JsonArray message = new JsonArray();
+      message.add(new JsonPrimitive(1));
+      message.add(request);
+      send(message);
+    }
+
+    public void run()
+    {
+      try{
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        JsonParser parser = new JsonParser();
+        String line = null;
+        while ((line = reader.readLine()) != null){
+          JsonArray request = parser.parse(line).getAsJsonArray();
+          if ("expr".equals(request.get(0).getAsString())){
+            JsonArray response = new JsonArray();
+            response.add(request.get(2));
+            response.add(new JsonPrimitive(
+                  "evaluated: " + request.get(1).getAsString()));
+            send(response);
+          }
+        }
+      }catch(Exception e){
+        // socket closed
+      }
+    }
+
+    private synchronized void send(JsonArray message)
+      throws Exception
+    {
+      writer.write(message.toString());
+      writer.write('\n');
+      writer.flush();
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.complete;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case for CodeCompleteRanking.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class CodeCompleteRankingTest
+{
+  private static final Comparator<CodeCompleteResult> COMPARATOR =
+    new Comparator<CodeCompleteResult>(){
+      public int compare(CodeCompleteResult r1, CodeCompleteResult r2)
+      {
+        return r1.compareTo(r2);
+      }
+    };
+
+  @Test
+  public void rank()
+  {
+    List<CodeCompleteResult> results =
+      results("delta", "alpha", "echo", "charlie", "bravo");
+
+    List<CodeCompleteResult> ranked =
+      CodeCompleteRanking.rank(results, COMPARATOR, 0);
+    assertEquals(
+        "[alpha, bravo, charlie, delta, echo]", completions(ranked));
+    assertEquals(
+        "[delta, alpha, echo, charlie, bravo]", completions(results));
+
+    // max larger than the number of results.
+    ranked = CodeCompleteRanking.rank(results, COMPARATOR, 10);
+    assertEquals(
+        "[alpha, bravo, charlie, delta, echo]", completions(ranked));
+  }
+
+  @Test
+  public void rankTopK()
+  {
+    List<CodeCompleteResult> results =
+      results("delta", "alpha", "echo", "charlie", "bravo");
+
+    List<CodeCompleteResult> ranked =
+      CodeCompleteRanking.rank(results, COMPARATOR, 3);
+    assertEquals("[alpha, bravo, charlie]", completions(ranked));
+
+    ranked = CodeCompleteRanking.rank(results, COMPARATOR, 1);
+    assertEquals("[alpha]", completions(ranked));
+
+    ranked = CodeCompleteRanking.rank(results, COMPARATOR, 5);
+    assertEquals(
+        "[alpha, bravo, charlie, delta, echo]", completions(ranked));
+  }
+
+  @Test
+  public void rankStable()
+  {
+    // overloaded methods compare as equal and must remain in their original
+    // order, including when the results are truncated.
+    CodeCompleteResult get1 = new CodeCompleteResult("get(", "get(int)", "");
+    CodeCompleteResult get2 =
+      new CodeCompleteResult("get(", "get(String)", "");
+    CodeCompleteResult get3 =
+      new CodeCompleteResult("get(", "get(Object)", "");
+    CodeCompleteResult add = new CodeCompleteResult("add(", "add()", "");
+    CodeCompleteResult set = new CodeCompleteResult("set(", "set()", "");
+
+    List<CodeCompleteResult> results = new ArrayList<CodeCompleteResult>();
+    results.add(set);
+    results.add(get1);
+    results.add(add);
+    results.add(get2);
+    results.add(get3);
+
+    List<CodeCompleteResult> ranked =
+      CodeCompleteRanking.rank(results, COMPARATOR, 0);
+    assertEquals(5, ranked.size());
+    assertSame(add, ranked.get(0));
+    assertSame(get1, ranked.get(1));
+    assertSame(get2, ranked.get(2));
+    assertSame(get3, ranked.get(3));
+    assertSame(set, ranked.get(4));
+
+    ranked = CodeCompleteRanking.rank(results, COMPARATOR, 3);
+    assertEquals(3, ranked.size());
+    assertSame(add, ranked.get(0));
+    assertSame(get1, ranked.get(1));
+    assertSame(get2, ranked.get(2));
+  }
+
+  private List<CodeCompleteResult> results(String... completions)
+  {
+    List<CodeCompleteResult> results = new ArrayList<CodeCompleteResult>();
+    for (String completion : completions){
+      results.add(new CodeCompleteResult(completion, completion, ""));
+    }
+    return results;
+  }
+
+  private String completions(List<CodeCompleteResult> results)
+  {
+    List<String> completions = new ArrayList<String>();
+    for (CodeCompleteResult result : results){
+      completions.add(result.getCompletion());
+    }
+    return completions.toString();
+  }
+}
@@ -16,8 +16,14 @@
  */
 package org.eclim.plugin.core.command.problems;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclim.Eclim;
 
@@ -33,14 +39,18 @@ import static org.junit.Assert.*;
 public class ProblemsCommandTest
 {
   private static final String TEST_PROJECT = "eclim_unit_test";
+  private static final String TEST_FILE =
+    "src/org/eclim/test/ProblemsDelta.java";
 
   @Test
   @SuppressWarnings("unchecked")
   public void execute()
   {
-    List<Object> results = (List<Object>)Eclim.execute(new String[]{
-      "problems", "-p", TEST_PROJECT
-    });
+    Map<String,Object> result = (Map<String,Object>)Eclim.execute(
+        new String[]{"problems", "-p", TEST_PROJECT});
+    assertTrue(result.containsKey("stale"));
+    assertTrue(result.containsKey("versions"));
+    List<Object> results = (List<Object>)result.get("problems");
 
     HashMap<String,Object> error = new HashMap<String,Object>();
     error.put("message", "ArrayList cannot be resolved to a type");
@@ -54,4 +64,111 @@ public class ProblemsCommandTest
 
     assertTrue(results.contains(error));
   }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void since()
+  {
+    Map<String,Object> results = (Map<String,Object>)Eclim.execute(
+        new String[]{"problems", "-p", TEST_PROJECT, "-s", "-1"});
+    assertTrue(results.containsKey("problems"));
+    assertTrue(((List<Object>)results.get("problems")).size() > 0);
+
+    // nothing changed, so requesting the changes since the returned version
+    // should yield none.
+    long version = getVersion(results);
+    results = (Map<String,Object>)Eclim.execute(new String[]{
+      "problems", "-p", TEST_PROJECT, "-s", TEST_PROJECT + "=" + version
+    });
+    assertFalse(results.containsKey("problems"));
+    assertEquals(version, getVersion(results));
+    assertEquals(0, ((List<Object>)results.get("added")).size());
+    assertEquals(0, ((List<Object>)results.get("removed")).size());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void addedRemoved()
+    throws Exception
+  {
+    Map<String,Object> results = (Map<String,Object>)Eclim.execute(
+        new String[]{"problems", "-p", TEST_PROJECT, "-s", "-1"});
+    long version = getVersion(results);
+
+    File file = new File(Eclim.resolveFile(TEST_PROJECT, TEST_FILE));
+    BufferedWriter out = null;
+    try{
+      out = new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(file)));
+      out.write("package org.eclim.test;\n");
+      out.write("public class ProblemsDelta {\n");
+      out.write("  private ProblemsDeltaMissing missing;\n");
+      out.write("}\n");
+    }finally{
+      try{
+        out.close();
+      }catch(Exception ignore){
+      }
+    }
+
+    try{
+      results = refresh(version);
+      assertFalse(results.containsKey("problems"));
+      List<Map<String,Object>> added =
+        (List<Map<String,Object>>)results.get("added");
+      assertEquals(1, added.size());
+      assertEquals(
+          "ProblemsDeltaMissing cannot be resolved to a type",
+          added.get(0).get("message"));
+      assertEquals(3, added.get(0).get("line"));
+      assertEquals(0, ((List<Object>)results.get("removed")).size());
+      version = getVersion(results);
+    }finally{
+      file.delete();
+    }
+
+    results = refresh(version);
+    assertFalse(results.containsKey("problems"));
+    List<Map<String,Object>> removed =
+      (List<Map<String,Object>>)results.get("removed");
+    assertEquals(1, removed.size());
+    assertEquals(
+        "ProblemsDeltaMissing cannot be resolved to a type",
+        removed.get(0).get("message"));
+    assertEquals(0, ((List<Object>)results.get("added")).size());
+  }
+
+  /**
+   * Refreshes the test file and waits for the build to finish before
+   * returning the problems changed since the supplied version.
+   */
+  @SuppressWarnings("unchecked")
+  private Map<String,Object> refresh(long version)
+    throws Exception
+  {
+    Eclim.execute(new String[]{
+      "project_refresh_file", "-p", TEST_PROJECT, "-f", TEST_FILE
+    });
+
+    Map<String,Object> results = null;
+    for (int ii = 0; ii < 50; ii++){
+      results = (Map<String,Object>)Eclim.execute(new String[]{
+        "problems", "-p", TEST_PROJECT, "-s", TEST_PROJECT + "=" + version
+      });
+      if (!Boolean.TRUE.equals(results.get("stale")) &&
+          getVersion(results) != version)
+      {
+        break;
+      }
+      Thread.sleep(100);
+    }
+    return results;
+  }
+
+  @SuppressWarnings("unchecked")
+  private long getVersion(Map<String,Object> results)
+  {
+    Map<String,Object> versions = (Map<String,Object>)results.get("versions");
+    return ((Number)versions.get(TEST_PROJECT)).longValue();
+  }
 }
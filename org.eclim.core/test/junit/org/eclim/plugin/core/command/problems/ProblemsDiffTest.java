@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.problems;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclim.command.Error;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case for ProblemsDiff.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class ProblemsDiffTest
+{
+  private static final Error ONE = new Error("one", "/a/A.java", 1, 1);
+  private static final Error TWO = new Error("two", "/a/A.java", 2, 1);
+  private static final Error THREE = new Error("three", "/a/B.java", 3, 1);
+
+  @Test
+  public void added()
+  {
+    ArrayList<Error> added = new ArrayList<Error>();
+    ArrayList<Error> removed = new ArrayList<Error>();
+    ProblemsDiff.diff(
+        Arrays.asList(ONE), Arrays.asList(ONE, TWO, THREE), added, removed);
+    assertEquals(Arrays.asList(TWO, THREE), added);
+    assertEquals(0, removed.size());
+
+    added.clear();
+    ProblemsDiff.diff(null, Arrays.asList(ONE), added, removed);
+    assertEquals(Arrays.asList(ONE), added);
+    assertEquals(0, removed.size());
+  }
+
+  @Test
+  public void removed()
+  {
+    ArrayList<Error> added = new ArrayList<Error>();
+    ArrayList<Error> removed = new ArrayList<Error>();
+    ProblemsDiff.diff(
+        Arrays.asList(ONE, TWO, THREE), Arrays.asList(TWO), added, removed);
+    assertEquals(0, added.size());
+    assertEquals(Arrays.asList(ONE, THREE), removed);
+
+    removed.clear();
+    ProblemsDiff.diff(Arrays.asList(ONE), null, added, removed);
+    assertEquals(0, added.size());
+    assertEquals(Arrays.asList(ONE), removed);
+  }
+
+  @Test
+  public void duplicates()
+  {
+    Error copy = new Error("one", "/a/A.java", 1, 1);
+    ArrayList<Error> added = new ArrayList<Error>();
+    ArrayList<Error> removed = new ArrayList<Error>();
+
+    // one of two identical problems going away is a removal, not a no-op.
+    ProblemsDiff.diff(
+        Arrays.asList(ONE, copy), Arrays.asList(ONE), added, removed);
+    assertEquals(0, added.size());
+    assertEquals(Arrays.asList(ONE), removed);
+
+    removed.clear();
+    ProblemsDiff.diff(
+        Arrays.asList(ONE), Arrays.asList(ONE, copy), added, removed);
+    assertEquals(Arrays.asList(copy), added);
+    assertEquals(0, removed.size());
+  }
+
+  @Test
+  public void severity()
+  {
+    Error warning = new Error("one", "/a/A.java", 1, 1, true);
+    ArrayList<Error> added = new ArrayList<Error>();
+    ArrayList<Error> removed = new ArrayList<Error>();
+    ProblemsDiff.diff(
+        Arrays.asList(ONE), Arrays.asList(warning), added, removed);
+    assertEquals(Arrays.asList(warning), added);
+    assertEquals(Arrays.asList(ONE), removed);
+  }
+
+  @Test
+  public void apply()
+  {
+    ProblemsDiff diff = new ProblemsDiff();
+    diff.apply(Arrays.asList(ONE, TWO), none());
+    diff.apply(none(), Arrays.asList(ONE));
+    diff.apply(none(), Arrays.asList(THREE));
+    assertEquals(Arrays.asList(TWO), diff.getAdded());
+    assertEquals(Arrays.asList(THREE), diff.getRemoved());
+
+    // a removed problem coming back nets out.
+    diff.apply(Arrays.asList(THREE), none());
+    assertEquals(Arrays.asList(TWO), diff.getAdded());
+    assertEquals(0, diff.getRemoved().size());
+  }
+
+  @Test
+  public void applyDuplicates()
+  {
+    Error copy = new Error("one", "/a/A.java", 1, 1);
+    ProblemsDiff diff = new ProblemsDiff();
+    diff.apply(Arrays.asList(ONE, copy), none());
+    diff.apply(none(), Arrays.asList(ONE));
+    assertEquals(1, diff.getAdded().size());
+    assertEquals(0, diff.getRemoved().size());
+
+    diff.apply(none(), Arrays.asList(ONE, ONE));
+    assertEquals(0, diff.getAdded().size());
+    assertEquals(1, diff.getRemoved().size());
+  }
+
+  private List<Error> none()
+  {
+    return new ArrayList<Error>();
+  }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.project;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case for OutputBatcher.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class OutputBatcherTest
+{
+  private static final int MAX_BATCH_CHARS = 200;
+
+  @Test
+  public void order()
+  {
+    Batcher batcher = new Batcher(100, true);
+    batcher.queue("out", "one");
+    batcher.queue("err", "two");
+    batcher.queue("out", "three\nfour");
+    batcher.terminate();
+    batcher.queue("out", "ignored");
+    batcher.run();
+
+    assertEquals(1, batcher.batches.size());
+    assertEquals(
+        "[[\"out\",\"one\"],[\"err\",\"two\"]," +
+        "[\"out\",\"three\\rfour\"],[\"terminated\",\"\"]]",
+        unescape(batcher.batches.get(0)));
+  }
+
+  @Test
+  public void escapedLengthCapped()
+  {
+    Batcher batcher = new Batcher(1000, true);
+    StringBuilder expected = new StringBuilder();
+    for (int ii = 0; ii < 50; ii++){
+      String line = "\"quoted\" \\path\\ " + ii;
+      batcher.queue("out", line);
+      expected.append(line);
+    }
+    batcher.terminate();
+    batcher.run();
+
+    assertTrue(batcher.batches.size() > 1);
+    StringBuilder actual = new StringBuilder();
+    for (String batch : batcher.batches){
+      assertTrue(batch.length() <= MAX_BATCH_CHARS);
+      for (String[] entry : parse(batch)){
+        if (!OutputBatcher.TERMINATED.equals(entry[0])){
+          actual.append(entry[1]);
+        }
+      }
+    }
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  @Test
+  public void largeOutputSplit()
+  {
+    Batcher batcher = new Batcher(1000, true);
+    StringBuilder text = new StringBuilder();
+    for (int ii = 0; ii < 100; ii++){
+      text.append("line \"").append(ii).append("\"\n");
+    }
+    text.append(new String(new char[500]).replace('\0', 'x'));
+    batcher.queue("out", text.toString());
+    batcher.terminate();
+    batcher.run();
+
+    StringBuilder actual = new StringBuilder();
+    for (String batch : batcher.batches){
+      assertTrue(batch.length() <= MAX_BATCH_CHARS);
+      for (String[] entry : parse(batch)){
+        if (!OutputBatcher.TERMINATED.equals(entry[0])){
+          actual.append(entry[1]);
+        }
+      }
+    }
+    // lines are only split on line boundaries, except for the single line
+    // too long to fit in a batch.
+    assertEquals(
+        text.toString().trim().replace("\n", ""),
+        actual.toString().replace("\r", ""));
+  }
+
+  @Test
+  public void dropped()
+  {
+    Batcher batcher = new Batcher(3, true);
+    for (int ii = 0; ii < 5; ii++){
+      batcher.queue("out", String.valueOf(ii));
+    }
+    batcher.terminate();
+    batcher.run();
+
+    List<String[]> entries = new ArrayList<String[]>();
+    for (String batch : batcher.batches){
+      entries.addAll(parse(batch));
+    }
+    assertEquals(5, entries.size());
+    assertEquals("0", entries.get(0)[1]);
+    assertEquals("2", entries.get(2)[1]);
+    assertEquals("err", entries.get(3)[0]);
+    assertEquals("<2 lines dropped>", entries.get(3)[1]);
+    assertEquals(OutputBatcher.TERMINATED, entries.get(4)[0]);
+  }
+
+  @Test
+  public void failed()
+  {
+    Batcher batcher = new Batcher(1000, false);
+    for (int ii = 0; ii < 100; ii++){
+      batcher.queue("out", "line " + ii);
+    }
+    batcher.terminate();
+    batcher.run();
+
+    // gives up after three consecutive failures.
+    assertEquals(3, batcher.batches.size());
+    assertTrue(batcher.isClosed());
+  }
+
+  @Test
+  public void close()
+  {
+    Batcher batcher = new Batcher(1000, true);
+    batcher.queue("out", "one");
+    batcher.close();
+    batcher.queue("out", "two");
+    batcher.run();
+
+    assertTrue(batcher.batches.isEmpty());
+  }
+
+  @Test
+  public void thread()
+    throws Exception
+  {
+    Batcher batcher = new Batcher(1000, true);
+    batcher.start("test output");
+    batcher.queue("out", "one");
+    batcher.terminate();
+
+    long start = System.currentTimeMillis();
+    while (System.currentTimeMillis() - start < 5000){
+      synchronized(batcher.batches){
+        if (batcher.batches.size() > 0 &&
+            unescape(batcher.batches.get(batcher.batches.size() - 1))
+            .endsWith("[\"terminated\",\"\"]]"))
+        {
+          return;
+        }
+      }
+      Thread.sleep(10);
+    }
+    fail("Output not flushed.");
+  }
+
+  private List<String[]> parse(String batch)
+  {
+    String[][] entries = new Gson().fromJson(unescape(batch), String[][].class);
+    List<String[]> results = new ArrayList<String[]>();
+    for (String[] entry : entries){
+      results.add(entry);
+    }
+    return results;
+  }
+
+  private String unescape(String value)
+  {
+    StringBuilder result = new StringBuilder();
+    for (int ii = 0; ii < value.length(); ii++){
+      char c = value.charAt(ii);
+      if (c == '\\'){
+        c = value.charAt(++ii);
+      }
+      result.append(c);
+    }
+    return result.toString();
+  }
+
+  private static class Batcher
+    extends OutputBatcher
+  {
+    private final boolean succeed;
+    private final List<String> batches = new ArrayList<String>();
+
+    public Batcher(int maxBacklog, boolean succeed)
+    {
+      super(10, maxBacklog, MAX_BATCH_CHARS);
+      this.succeed = succeed;
+    }
+
+    @Override
+    protected boolean send(String json)
+    {
+      synchronized(batches){
+        batches.add(json);
+      }
+      return succeed;
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.command.project;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import java.util.List;
+import java.util.Map;
+
+import org.eclim.Eclim;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case for ProjectImportBulkCommand.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class ProjectImportBulkCommandTest
+{
+  private static final String TEST_DIR = "unit_test_bulk";
+
+  private static final String[] PROJECTS = {
+    "unit_test_bulk_one", "unit_test_bulk_two", "unit_test_bulk_hidden"};
+
+  private File dir;
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    dir = new File(Eclim.getWorkspace() + "/" + TEST_DIR);
+    write(new File(dir, "one/.project"), PROJECTS[0]);
+    write(new File(dir, "nested/two/.project"), PROJECTS[1]);
+    write(new File(dir, ".hidden/.project"), PROJECTS[2]);
+  }
+
+  @After
+  public void tearDown()
+  {
+    for (String project : PROJECTS){
+      if (Eclim.projectExists(project)){
+        Eclim.execute(new String[]{"project_delete", "-p", project});
+      }
+    }
+    Eclim.deleteDirectory(dir);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void importBulk()
+    throws Exception
+  {
+    List<Map<String,Object>> results = (List<Map<String,Object>>)
+      Eclim.execute(new String[]{
+        "project_import_bulk", "-f", dir.getAbsolutePath()});
+
+    // results are sorted by .project path and hidden dirs are skipped.
+    assertEquals(2, results.size());
+    assertEquals(PROJECTS[1], results.get(0).get("project"));
+    assertEquals("imported", results.get(0).get("status"));
+    assertEquals(PROJECTS[0], results.get(1).get("project"));
+    assertEquals("imported", results.get(1).get("status"));
+
+    assertTrue(Eclim.projectExists(PROJECTS[0]));
+    assertTrue(Eclim.projectExists(PROJECTS[1]));
+    assertFalse(Eclim.projectExists(PROJECTS[2]));
+    assertEquals(
+        new File(dir, "one").getCanonicalPath().replace('\\', '/'),
+        Eclim.getProjectPath(PROJECTS[0]));
+
+    results = (List<Map<String,Object>>)
+      Eclim.execute(new String[]{
+        "project_import_bulk", "-f", dir.getAbsolutePath()});
+    assertEquals(2, results.size());
+    assertEquals("exists", results.get(0).get("status"));
+    assertEquals("exists", results.get(1).get("status"));
+  }
+
+  @Test
+  public void missingFolder()
+  {
+    File missing = new File(dir, "missing");
+    String result = (String)Eclim.execute(new String[]{
+      "project_import_bulk", "-f", missing.getAbsolutePath()});
+    assertEquals(
+        "Project directory does not exist: '" +
+        missing.getAbsolutePath() + "'", result);
+  }
+
+  private void write(File file, String name)
+    throws Exception
+  {
+    file.getParentFile().mkdirs();
+    OutputStream out = new FileOutputStream(file);
+    try{
+      out.write((
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<projectDescription>\n" +
+        "  <name>" + name + "</name>\n" +
+        "  <comment></comment>\n" +
+        "  <projects></projects>\n" +
+        "  <buildSpec></buildSpec>\n" +
+        "  <natures></natures>\n" +
+        "</projectDescription>\n").getBytes("UTF-8"));
+    }finally{
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.preference;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import java.util.Map;
+
+import org.eclim.Eclim;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case for the caching of option/preference values by Preferences.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class PreferencesTest
+{
+  private static final String TEST_PROJECT = "unit_test_preferences";
+  private static final String SETTING = "org.eclim.project.version";
+  private static final String PREFS = ".settings/org.eclim.prefs";
+
+  @Before
+  public void setUp()
+  {
+    if (!Eclim.projectExists(TEST_PROJECT)){
+      Eclim.execute(new String[]{
+        "project_create",
+        "-f", Eclim.getWorkspace() + "/" + TEST_PROJECT,
+        "-n", "none"
+      });
+    }
+  }
+
+  @After
+  public void tearDown()
+  {
+    if (Eclim.projectExists(TEST_PROJECT)){
+      Eclim.execute(new String[]{"project_delete", "-p", TEST_PROJECT});
+    }
+    Eclim.deleteDirectory(new File(Eclim.getWorkspace() + "/" + TEST_PROJECT));
+  }
+
+  @Test
+  public void setValue()
+  {
+    Eclim.setProjectSetting(TEST_PROJECT, SETTING, "1.0");
+    assertEquals("1.0", Eclim.getProjectSetting(TEST_PROJECT, SETTING));
+    Eclim.setProjectSetting(TEST_PROJECT, SETTING, "2.0");
+    assertEquals("2.0", Eclim.getProjectSetting(TEST_PROJECT, SETTING));
+  }
+
+  @Test
+  public void externalChange()
+    throws Exception
+  {
+    Eclim.setProjectSetting(TEST_PROJECT, SETTING, "1.0");
+    assertEquals("1.0", Eclim.getProjectSetting(TEST_PROJECT, SETTING));
+
+    writePrefs("3.0");
+    assertEquals("3.0", waitForSetting("3.0"));
+  }
+
+  @Test
+  public void externalChangeAfterReopen()
+    throws Exception
+  {
+    Eclim.setProjectSetting(TEST_PROJECT, SETTING, "1.0");
+    assertEquals("1.0", Eclim.getProjectSetting(TEST_PROJECT, SETTING));
+
+    // closing the project discards the preference nodes we were listening
+    // to, so changes after it is reopened must still be seen.
+    Eclim.execute(new String[]{"project_close", "-p", TEST_PROJECT});
+    Eclim.execute(new String[]{"project_open", "-p", TEST_PROJECT});
+    assertEquals("1.0", Eclim.getProjectSetting(TEST_PROJECT, SETTING));
+
+    writePrefs("4.0");
+    assertEquals("4.0", waitForSetting("4.0"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void globalChange()
+    throws Exception
+  {
+    // the project's snapshot includes the global value.
+    assertEquals("1.0", Eclim.getProjectSetting(TEST_PROJECT, SETTING));
+
+    Eclim.execute(new String[]{"metrics", "-r"});
+    try{
+      updateGlobal("5.0");
+      assertEquals("5.0", Eclim.getProjectSetting(TEST_PROJECT, SETTING));
+
+      // invalidated by the update itself and by the listener on the global
+      // preferences registered along with the project's.
+      Map<String,Object> metrics = (Map<String,Object>)
+        Eclim.execute(new String[]{"metrics"});
+      Number invalidated = (Number)
+        metrics.get("preferences.snapshot.invalidated");
+      assertNotNull(invalidated);
+      assertTrue(invalidated.intValue() >= 2);
+    }finally{
+      updateGlobal("1.0");
+    }
+    assertEquals("1.0", Eclim.getProjectSetting(TEST_PROJECT, SETTING));
+  }
+
+  /**
+   * Updates the global value of the setting.
+   */
+  private void updateGlobal(String version)
+    throws Exception
+  {
+    File settings = File.createTempFile("eclim_settings", ".json");
+    OutputStream out = null;
+    try{
+      out = new FileOutputStream(settings);
+      out.write(("{\"" + SETTING + "\": \"" + version + "\"}")
+          .getBytes("UTF-8"));
+    }finally{
+      try{
+        out.close();
+      }catch(Exception ignore){
+      }
+    }
+
+    // the command deletes the file when done.
+    Eclim.execute(new String[]{
+      "settings_update", "-s", settings.getAbsolutePath()
+    });
+  }
+
+  /**
+   * Writes the project's eclim preferences file directly (as a version
+   * control update would) and refreshes it.
+   */
+  private void writePrefs(String version)
+    throws Exception
+  {
+    String prefs =
+      "eclipse.preferences.version=1\n" + SETTING + "=" + version + "\n";
+    OutputStream out = null;
+    try{
+      out = new FileOutputStream(Eclim.resolveFile(TEST_PROJECT, PREFS));
+      out.write(prefs.getBytes("UTF-8"));
+    }finally{
+      try{
+        out.close();
+      }catch(Exception ignore){
+      }
+    }
+
+    Eclim.execute(new String[]{
+      "project_refresh_file", "-p", TEST_PROJECT, "-f", PREFS
+    });
+  }
+
+  /**
+   * The preference change is reported asynchronously, so wait a bit for the
+   * expected value to show up.
+   */
+  private String waitForSetting(String expected)
+    throws Exception
+  {
+    String value = null;
+    for (int ii = 0; ii < 50; ii++){
+      value = Eclim.getProjectSetting(TEST_PROJECT, SETTING);
+      if (expected.equals(value)){
+        break;
+      }
+      Thread.sleep(100);
+    }
+    return value;
+  }
+}
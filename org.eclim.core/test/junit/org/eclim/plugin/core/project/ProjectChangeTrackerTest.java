@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.project;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import java.util.List;
+import java.util.Map;
+
+import org.eclim.Eclim;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case for the incremental project refresh of ProjectChangeTracker.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class ProjectChangeTrackerTest
+{
+  private static final String TEST_PROJECT = "unit_test_tracker";
+
+  private File dir;
+  private File linked;
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    // mac os only has a polling watch service, so every refresh is a full
+    // one.
+    Assume.assumeTrue(
+        System.getProperty("os.name").toLowerCase().indexOf("mac") == -1);
+
+    dir = new File(Eclim.getWorkspace() + "/" + TEST_PROJECT);
+    linked = new File(Eclim.getWorkspace() + "/" + TEST_PROJECT + "_linked");
+    new File(dir, "target").mkdirs();
+    linked.mkdirs();
+    write(new File(dir, ".project"),
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<projectDescription>\n" +
+        "  <name>" + TEST_PROJECT + "</name>\n" +
+        "  <comment></comment>\n" +
+        "  <projects></projects>\n" +
+        "  <buildSpec></buildSpec>\n" +
+        "  <natures></natures>\n" +
+        "  <linkedResources>\n" +
+        "    <link>\n" +
+        "      <name>linked</name>\n" +
+        "      <type>2</type>\n" +
+        "      <location>" + linked.getAbsolutePath() + "</location>\n" +
+        "    </link>\n" +
+        "  </linkedResources>\n" +
+        "</projectDescription>\n");
+
+    Eclim.execute(new String[]{"project_import", "-f", dir.getAbsolutePath()});
+    assertTrue("Project not imported.", Eclim.projectExists(TEST_PROJECT));
+    waitForIncremental();
+  }
+
+  @After
+  public void tearDown()
+  {
+    if (Eclim.projectExists(TEST_PROJECT)){
+      Eclim.execute(new String[]{"project_delete", "-p", TEST_PROJECT});
+    }
+    if (dir != null){
+      Eclim.deleteDirectory(dir);
+      Eclim.deleteDirectory(linked);
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void incremental()
+    throws Exception
+  {
+    write(new File(dir, "changed.txt"), "changed");
+    Thread.sleep(500);
+    refresh();
+
+    Map<String,Object> metrics = (Map<String,Object>)
+      Eclim.execute(new String[]{"metrics"});
+    assertNull(metrics.get("project.refresh.full"));
+    assertEquals(1, metrics.get("project.refresh.incremental"));
+    assertTrue(getCount(metrics, "project.refresh.resources") > 0);
+    assertTrue("Changed file not refreshed.", exists("changed.txt"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void output()
+    throws Exception
+  {
+    // output directories not marked derived (generated sources written by an
+    // external build, etc.) are watched like any other directory.
+    write(new File(dir, "target/generated.txt"), "generated");
+    Thread.sleep(500);
+    refresh();
+
+    Map<String,Object> metrics = (Map<String,Object>)
+      Eclim.execute(new String[]{"metrics"});
+    assertNull(metrics.get("project.refresh.full"));
+    assertEquals(1, metrics.get("project.refresh.incremental"));
+    assertTrue(getCount(metrics, "project.refresh.resources") > 0);
+    assertTrue("Output file not refreshed.", exists("target/generated.txt"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void linked()
+    throws Exception
+  {
+    // changes to linked resources aren't seen by the watcher, so they are
+    // always refreshed in full.
+    write(new File(linked, "linked.txt"), "linked");
+    refresh();
+
+    Map<String,Object> metrics = (Map<String,Object>)
+      Eclim.execute(new String[]{"metrics"});
+    assertEquals(1, metrics.get("project.refresh.incremental"));
+    assertEquals(1, metrics.get("project.refresh.linked"));
+  }
+
+  /**
+   * The first refreshes of a project are full refreshes while the project's
+   * directories are registered with the watch service, so refresh until an
+   * incremental refresh is performed, then reset the metrics.
+   */
+  @SuppressWarnings("unchecked")
+  private void waitForIncremental()
+    throws Exception
+  {
+    for (int ii = 0; ii < 50; ii++){
+      refresh();
+      Map<String,Object> metrics = (Map<String,Object>)
+        Eclim.execute(new String[]{"metrics"});
+      if (getCount(metrics, "project.refresh.incremental") > 0){
+        Eclim.execute(new String[]{"metrics", "-r"});
+        return;
+      }
+      Thread.sleep(100);
+    }
+    fail("Project never refreshed incrementally.");
+  }
+
+  private void refresh()
+  {
+    Eclim.execute(new String[]{"project_refresh", "-p", TEST_PROJECT});
+  }
+
+  /**
+   * Determines if the file exists in the eclipse workspace (not just on disk).
+   */
+  @SuppressWarnings("unchecked")
+  private boolean exists(String path)
+  {
+    List<Map<String,Object>> results = (List<Map<String,Object>>)
+      Eclim.execute(new String[]{
+        "locate_file", "-s", "project", "-n", TEST_PROJECT,
+        "-p", path.substring(path.lastIndexOf('/') + 1).replace(".", "\\.")
+      });
+    String projectPath = "/" + TEST_PROJECT + "/" + path;
+    for (Map<String,Object> result : results){
+      if (projectPath.equals(result.get("projectPath"))){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private int getCount(Map<String,Object> metrics, String name)
+  {
+    Number count = (Number)metrics.get(name);
+    return count != null ? count.intValue() : 0;
+  }
+
+  private void write(File file, String contents)
+    throws Exception
+  {
+    OutputStream out = null;
+    try{
+      out = new FileOutputStream(file);
+      out.write(contents.getBytes("UTF-8"));
+    }finally{
+      try{
+        out.close();
+      }catch(Exception ignore){
+      }
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import java.util.List;
+import java.util.Map;
+
+import org.eclim.Eclim;
+
+import org.eclim.util.IOUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case for the DocumentCache, exercised through ant code completion.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class DocumentCacheTest
+{
+  private static final String TEST_FILE = "document_cache.xml";
+
+  private static final String CONTENTS =
+    "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+    "<project name=\"test\" default=\"none\">\n" +
+    "  <property name=\"cache.<name>.property\" value=\"Test Value\"/>\n" +
+    "  <target name=\"test\">\n" +
+    "    <mkdir dir=\"${cache.<prefix>\"/>\n" +
+    "  </target>\n" +
+    "</project>\n";
+
+  @Before
+  public void setUp()
+  {
+    assertTrue("Test project doesn't exist.",
+        Eclim.projectExists(Eclim.TEST_PROJECT));
+    close();
+    Eclim.execute(new String[]{"metrics", "-r"});
+  }
+
+  @After
+  public void tearDown()
+  {
+    close();
+    new File(Eclim.resolveFile(Eclim.TEST_PROJECT, TEST_FILE)).delete();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void sameLengthChange()
+    throws Exception
+  {
+    assertEquals("cache.one.property", complete("one", "on"));
+
+    // rewritten immediately with the same length, so the modification time
+    // and size may both be unchanged.
+    assertEquals("cache.two.property", complete("two", "tw"));
+
+    Map<String,Object> metrics = (Map<String,Object>)
+      Eclim.execute(new String[]{"metrics"});
+    assertEquals(1, metrics.get("document.cache.miss"));
+    assertNotNull(metrics.get("document.cache.hit"));
+    assertEquals(1, metrics.get("document.cache.refresh"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void bufferClose()
+    throws Exception
+  {
+    assertEquals("cache.one.property", complete("one", "on"));
+    close();
+    assertEquals("cache.one.property", complete("one", "on"));
+
+    Map<String,Object> metrics = (Map<String,Object>)
+      Eclim.execute(new String[]{"metrics"});
+    assertEquals(2, metrics.get("document.cache.miss"));
+  }
+
+  @SuppressWarnings("unchecked")
+  private String complete(String name, String prefix)
+    throws Exception
+  {
+    String contents = CONTENTS
+      .replace("<name>", name)
+      .replace("<prefix>", prefix);
+    FileOutputStream out = new FileOutputStream(
+        Eclim.resolveFile(Eclim.TEST_PROJECT, TEST_FILE));
+    try{
+      out.write(contents.getBytes("UTF-8"));
+    }finally{
+      IOUtils.closeQuietly(out);
+    }
+
+    int offset = contents.indexOf("${cache." + prefix) + prefix.length() + 8;
+    List<Map<String,Object>> results = (List<Map<String,Object>>)
+      Eclim.execute(new String[]{
+        "ant_complete", "-p", Eclim.TEST_PROJECT,
+        "-f", TEST_FILE,
+        "-o", String.valueOf(offset), "-e", "utf-8"
+      });
+    assertEquals(1, results.size());
+    return (String)results.get(0).get("completion");
+  }
+
+  private void close()
+  {
+    Eclim.execute(new String[]{
+      "buffer_close", "-p", Eclim.TEST_PROJECT, "-f", TEST_FILE});
+  }
+}
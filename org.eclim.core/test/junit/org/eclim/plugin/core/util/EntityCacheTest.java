@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.net.InetSocketAddress;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclim.Eclim;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case for EntityCache, via the validation of xml files whose dtd is
+ * served by a local http server.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class EntityCacheTest
+{
+  private static final String TEST_FILE = "xml/test_entity_cache.xml";
+  private static final String DTD =
+    "<!ELEMENT foo (bar)>\n<!ELEMENT bar EMPTY>\n";
+
+  private HttpServer server;
+  private AtomicInteger requests = new AtomicInteger();
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler(){
+      public void handle(HttpExchange exchange)
+        throws IOException
+      {
+        requests.incrementAndGet();
+        byte[] bytes = DTD.getBytes("UTF-8");
+        if (exchange.getRequestURI().getPath().endsWith("/entity.dtd")){
+          exchange.sendResponseHeaders(200, bytes.length);
+          exchange.getResponseBody().write(bytes);
+        }else{
+          exchange.sendResponseHeaders(404, -1);
+        }
+        exchange.close();
+      }
+    });
+    server.start();
+    Eclim.execute(new String[]{"metrics", "-r"});
+  }
+
+  @After
+  public void tearDown()
+  {
+    server.stop(0);
+    new File(Eclim.resolveFile(Eclim.TEST_PROJECT, TEST_FILE)).delete();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void cached()
+    throws Exception
+  {
+    // use a unique url so that no earlier run has already cached it on disk.
+    write("/" + System.currentTimeMillis() + "/entity.dtd");
+    assertEquals(0, validate().size());
+    assertEquals(0, validate().size());
+
+    assertEquals(1, requests.get());
+    Map<String,Object> metrics = (Map<String,Object>)
+      Eclim.execute(new String[]{"metrics"});
+    assertEquals(1, metrics.get("xml.entity.download"));
+    assertEquals(1, metrics.get("xml.entity.memory.hit"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void missing()
+    throws Exception
+  {
+    write("/" + System.currentTimeMillis() + "/missing.dtd");
+
+    // concurrent validations wait on, and then share, the single failed
+    // download.
+    ArrayList<Thread> threads = new ArrayList<Thread>();
+    for (int ii = 0; ii < 4; ii++){
+      Thread thread = new Thread(){
+        public void run()
+        {
+          validate();
+        }
+      };
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads){
+      thread.join();
+    }
+    assertTrue(validate().size() > 0);
+
+    assertEquals(1, requests.get());
+    Map<String,Object> metrics = (Map<String,Object>)
+      Eclim.execute(new String[]{"metrics"});
+    assertEquals(1, metrics.get("xml.entity.download"));
+    assertEquals(4, metrics.get("xml.entity.missing.hit"));
+  }
+
+  @Test
+  public void dotSegments()
+    throws Exception
+  {
+    // leading dot segments survive normalizing the url, but must not place
+    // the cached copy outside of the cache directory.
+    String name = "eclim_entity_" + System.currentTimeMillis();
+    write("/../../../../../" + name + "/entity.dtd");
+    assertEquals(0, validate().size());
+    assertEquals(1, requests.get());
+
+    String dotEclim = System.getProperty("user.home") + "/.eclim";
+    assertFalse(new File(dotEclim + "/" + name).exists());
+    assertFalse(new File(dotEclim + "/cache/" + name).exists());
+    assertTrue(new File(
+          dotEclim + "/cache/entities/v1/http/127.0.0.1_" +
+          server.getAddress().getPort() + "/" + name + "/entity.dtd").exists());
+  }
+
+  private void write(String path)
+    throws Exception
+  {
+    String url = "http://127.0.0.1:" +
+      server.getAddress().getPort() + path;
+    String xml =
+      "<?xml version=\"1.0\"?>\n" +
+      "<!DOCTYPE foo SYSTEM \"" + url + "\">\n" +
+      "<foo><bar/></foo>\n";
+
+    OutputStream out = null;
+    try{
+      out = new FileOutputStream(
+          Eclim.resolveFile(Eclim.TEST_PROJECT, TEST_FILE));
+      out.write(xml.getBytes("UTF-8"));
+    }finally{
+      try{
+        out.close();
+      }catch(Exception ignore){
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Map<String,Object>> validate()
+  {
+    return (List<Map<String,Object>>)Eclim.execute(new String[]{
+      "xml_validate", "-p", Eclim.TEST_PROJECT, "-f", TEST_FILE
+    });
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.core.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.eclim.util.IOUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case for FileStamp.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class FileStampTest
+{
+  private File file;
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    file = File.createTempFile("eclim_stamp", ".txt");
+  }
+
+  @After
+  public void tearDown()
+  {
+    file.delete();
+  }
+
+  @Test
+  public void unchanged()
+    throws Exception
+  {
+    write("one", 10000);
+    FileStamp stamp = new FileStamp(file);
+    assertFalse(stamp.changed(file));
+    assertFalse(stamp.changed(file));
+  }
+
+  @Test
+  public void sameLengthChange()
+    throws Exception
+  {
+    // rewritten with the same length and modification time, so only the
+    // checksum reveals the change.
+    write("one", 0);
+    long modified = file.lastModified();
+    FileStamp stamp = new FileStamp(file);
+    write("two", 0);
+    file.setLastModified(modified);
+    assertTrue(stamp.changed(file));
+    assertFalse(stamp.changed(file));
+  }
+
+  @Test
+  public void lengthChange()
+    throws Exception
+  {
+    write("one", 10000);
+    FileStamp stamp = new FileStamp(file);
+    write("three", 10000);
+    assertTrue(stamp.changed(file));
+  }
+
+  /**
+   * Writes the supplied contents, backdating the file's modification time by
+   * the supplied number of milliseconds.
+   */
+  private void write(String contents, long age)
+    throws Exception
+  {
+    FileOutputStream out = new FileOutputStream(file);
+    try{
+      out.write(contents.getBytes("UTF-8"));
+    }finally{
+      IOUtils.closeQuietly(out);
+    }
+    if (age > 0){
+      file.setLastModified(System.currentTimeMillis() - age);
+    }
+  }
+}
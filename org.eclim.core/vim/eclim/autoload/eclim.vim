@@ -53,6 +53,7 @@ function! eclim#Execute(command, ...) " {{{
   "       dir: directory path to use as the current dir
   "     exec: 1 to execute the command using execute instead of system.
   "     raw: 1 to get the result without evaluating as json
+  "     input: text to send to the command on stdin (not supported with exec)
   "   }
 
   if exists('g:EclimDisabled')
@@ -116,7 +117,9 @@ function! eclim#Execute(command, ...) " {{{
   endif
 
   let exec = get(options, 'exec', 0)
-  let [retcode, result] = eclim#client#nailgun#Execute(instance, command, exec)
+  let input = get(options, 'input', '')
+  let [retcode, result] =
+    \ eclim#client#nailgun#Execute(instance, command, exec, input)
   let result = substitute(result, '\n$', '', '')
 
   " an echo during startup causes an annoying issue with vim.
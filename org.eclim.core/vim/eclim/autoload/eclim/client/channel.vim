@@ -0,0 +1,74 @@
+" Author:  Eric Van Dewoestine
+"
+" License: {{{
+"
+" Copyright (C) 2005 - 2018  Eric Van Dewoestine
+"
+" This program is free software: you can redistribute it and/or modify
+" it under the terms of the GNU General Public License as published by
+" the Free Software Foundation, either version 3 of the License, or
+" (at your option) any later version.
+"
+" This program is distributed in the hope that it will be useful,
+" but WITHOUT ANY WARRANTY; without even the implied warranty of
+" MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+" GNU General Public License for more details.
+"
+" You should have received a copy of the GNU General Public License
+" along with this program.  If not, see <http://www.gnu.org/licenses/>.
+"
+" }}}
+
+" Script Variables {{{
+  let s:channel_command = '-command vim_channel'
+  " workspace -> channel
+  let s:channels = {}
+" }}}
+
+function! eclim#client#channel#ServerName(...) " {{{
+  " Gets the name eclimd should use to send requests back to this vim instance
+  " (ex. debugger updates, project_run output, async validation results).
+  " When g:EclimVimChannel is enabled, this also ensures that this vim has a
+  " channel open to the eclimd instance for the supplied (or current) project,
+  " allowing eclimd to send those requests over the channel instead of
+  " spawning a new vim process (vim --remote-expr) for each one. Vim without
+  " a servername can then still receive those requests.
+  " Optional args:
+  "   project: the project name.
+  if !g:EclimVimChannel || !has('channel')
+    return v:servername
+  endif
+
+  let name = v:servername != '' ? v:servername : 'eclim_vim_' . getpid()
+  let project = a:0 ? a:1 : eclim#project#util#GetCurrentProjectName()
+  let workspace = ''
+  if project != ''
+    let workspace = eclim#project#util#GetProjectWorkspace(project)
+    if type(workspace) != g:STRING_TYPE
+      let workspace = ''
+    endif
+  endif
+
+  if has_key(s:channels, workspace) &&
+   \ ch_status(s:channels[workspace]) == 'open'
+    return name
+  endif
+
+  let options = project != '' ? {'project': project} : {}
+  let result = eclim#Execute(s:channel_command, options)
+  if type(result) != g:DICT_TYPE
+    return v:servername
+  endif
+
+  let channel = ch_open('localhost:' . result.port,
+    \ {'mode': 'json', 'waittime': 1000})
+  if ch_status(channel) != 'open'
+    return v:servername
+  endif
+
+  call ch_sendexpr(channel, ['register', name, result.token])
+  let s:channels[workspace] = channel
+  return name
+endfunction " }}}
+
+" vim:ft=vim:fdm=marker
@@ -105,11 +105,16 @@ function! eclim#client#nailgun#GetEclimdInstances() " {{{
 endfunction " }}}
 
 function! eclim#client#nailgun#Execute(instance, command, ...) " {{{
+  " Optional args:
+  "   exec: 1 to execute the command using execute instead of system.
+  "   input: text to send to the command on stdin.
   let exec = a:0 ? a:1 : 0
+  let input = a:0 > 1 ? a:2 : ''
 
   if !exec
     if g:EclimNailgunClient == 'python' && has('python')
-      return eclim#client#python#nailgun#Execute(a:instance.port, a:command)
+      return eclim#client#python#nailgun#Execute(
+        \ a:instance.port, a:command, input)
     endif
   endif
 
@@ -128,7 +133,7 @@ function! eclim#client#nailgun#Execute(instance, command, ...) " {{{
     let eclim = '!' . eclim
   endif
 
-  let result = eclim#util#System(eclim, exec, exec)
+  let result = eclim#util#System(eclim, exec, exec, input)
   return [v:shell_error, result]
 endfunction " }}}
 
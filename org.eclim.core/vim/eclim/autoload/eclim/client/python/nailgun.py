@@ -35,12 +35,13 @@ class Nailgun(object):
     self.keepAlive = int(kwargs.get('keepAlive', 0))
     self.reconnectCounter = 0
 
-  def send(self, cmdline):
+  def send(self, cmdline, stdin=None):
     """
     Sends a complete command to the nailgun server.  Handles connecting to the
     server if not currently connected.
     @param cmdline command, which is sent to server, for instance
       "-command ping".
+    @param stdin optional text sent to the command on stdin.
     @return tuple consisting of:
       - retcode from server (0 for success, non-0 for failure)
       - string response from server
@@ -65,6 +66,10 @@ class Nailgun(object):
 
         self.sendChunk("C", "org.eclim.command.Main")
 
+        if stdin is not None:
+          self.sendChunk("0", stdin)
+          self.sendChunk(".")
+
         (retcode, result) = self.processResponse()
         if self.keepAlive and retcode:
           # force reconnect on error (may not be necessary)
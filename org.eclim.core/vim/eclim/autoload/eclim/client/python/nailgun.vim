@@ -26,19 +26,22 @@
   let s:python_dir = expand("<sfile>:h")
 " }}}
 
-" Execute(port, command) {{{
-" Sends to the eclimd server command, supplied as argument string.
+" Execute(port, command, [input]) {{{
+" Sends to the eclimd server command, supplied as argument string, along with
+" any optional input to be sent on the command's stdin.
 " Returns server's respond.
-function! eclim#client#python#nailgun#Execute(port, command)
+function! eclim#client#python#nailgun#Execute(port, command, ...)
   call s:InitClient(a:port)
   let result_viml = ""
   let retcode = 0
+  let input = a:0 ? a:1 : ''
 
   let begin = localtime()
   try
 python << PYTHONEOF
 command = vim.eval('a:command')
-(retcode, result) = client.send(command)
+stdin = vim.eval('input') or None
+(retcode, result) = client.send(command, stdin)
 vim.command('let retcode = %i' % retcode)
 vim.command("let result = '%s'" % result.replace("'", "''"))
 PYTHONEOF
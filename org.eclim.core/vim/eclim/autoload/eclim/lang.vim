@@ -23,6 +23,11 @@
   let s:update_command = '-command <lang>_src_update -p "<project>" -f "<file>"'
   let s:validate_command = '-command <type>_validate -p "<project>" -f "<file>"'
   let s:undoredo_command = '-command refactor_<operation>'
+  let s:validate_async_command = '-command validate_async ' .
+    \ '-p "<project>" -f "<file>" -v "<vim_servername>" -x "<vim_executable>"'
+  let s:buffer_close_command = '-command buffer_close -p "<project>" -f "<file>"'
+  let s:completion_info_command = '-command completion_info -h "<handle>"'
+  let s:buffer_close_filetypes = {}
 " }}}
 
 function! eclim#lang#CodeComplete(command, findstart, base, ...) " {{{
@@ -34,6 +39,8 @@ function! eclim#lang#CodeComplete(command, findstart, base, ...) " {{{
   "     layout: passed through to the eclimd completion for languages that
   "             support this (typically decides how overloaded method names are
   "             presented in the completion list).
+  "     lazyinfo: 1 if the completion command supports resolving the info of
+  "               each result on demand (-i), 0 otherwise.
 
   if !eclim#project#util#IsCurrentFileInProject(0)
     return a:findstart ? -1 : []
@@ -76,6 +83,9 @@ function! eclim#lang#CodeComplete(command, findstart, base, ...) " {{{
     if has_key(options, 'layout')
       let command = substitute(command, '<layout>', options.layout, '')
     endif
+    if get(options, 'lazyinfo', 0)
+      let command .= eclim#lang#CompletionLazyInfo()
+    endif
 
     let completions = []
     let results = eclim#Execute(command)
@@ -83,6 +93,19 @@ function! eclim#lang#CodeComplete(command, findstart, base, ...) " {{{
       return
     endif
 
+    " eclimd holds on to the document of the file being completed, so notify
+    " it when buffers of this filetype are unloaded (java buffers are already
+    " released by java_src_close).
+    if &ft != 'java' && !has_key(s:buffer_close_filetypes, &ft)
+      let s:buffer_close_filetypes[&ft] = 1
+      augroup eclim_buffer_close
+        exec 'autocmd BufUnload * ' .
+          \ 'if getbufvar(str2nr(expand("<abuf>")), "&ft") == "' . &ft . '" |' .
+          \ '  call eclim#lang#BufferClose(expand("<afile>:p")) |' .
+          \ 'endif'
+      augroup END
+    endif
+
     let open_paren = getline('.') =~ '\%' . col('.') . 'c\s*('
     let close_paren = getline('.') =~ '\%' . col('.') . 'c\s*(\s*)'
 
@@ -109,6 +132,9 @@ function! eclim#lang#CodeComplete(command, findstart, base, ...) " {{{
           \ 'info': info,
           \ 'dup': 1
         \ }
+      if has_key(result, 'handle')
+        let dict.user_data = result.handle
+      endif
 
       call add(completions, dict)
     endfor
@@ -117,6 +143,73 @@ function! eclim#lang#CodeComplete(command, findstart, base, ...) " {{{
   endif
 endfunction " }}}
 
+function! eclim#lang#CompletionLazyInfo() " {{{
+  " Returns the completion argument requesting that the info of each result be
+  " resolved on demand, or an empty string if that isn't enabled or supported
+  " by this vim. When enabled, the info of the selected completion is fetched
+  " from eclimd and displayed in the (hidden) popup info window.
+
+  if !g:EclimCompletionLazyInfo ||
+   \ !exists('##CompleteChanged') || !exists('*popup_findinfo')
+    return ''
+  endif
+
+  if !exists('b:eclim_completion_info')
+    let b:eclim_completion_info = 1
+    augroup eclim_completion_info
+      autocmd! CompleteChanged <buffer>
+      autocmd CompleteChanged <buffer> call eclim#lang#CompletionInfo()
+    augroup END
+  endif
+
+  return ' -i'
+endfunction " }}}
+
+function! eclim#lang#CompletionInfo() " {{{
+  " Resolves the info of the completion currently selected in the popup menu
+  " using the handle eclimd returned with it.
+  let item = v:event.completed_item
+  let handle = get(item, 'user_data', '')
+  if type(handle) != g:STRING_TYPE || handle == '' ||
+   \ get(item, 'info', '') != ''
+    return
+  endif
+
+  let id = popup_findinfo()
+  if !id
+    return
+  endif
+
+  let command = substitute(s:completion_info_command, '<handle>', handle, '')
+  let result = eclim#Execute(command)
+  if type(result) != g:DICT_TYPE || result.info == ''
+    call popup_hide(id)
+    return
+  endif
+
+  call popup_settext(id, split(eclim#html#util#HtmlToText(result.info), "\n"))
+  call popup_show(id)
+endfunction " }}}
+
+function! eclim#lang#BufferClose(file) " {{{
+  " Notifies eclimd that the supplied file has been closed so that the document
+  " held for it can be released.
+  if a:file == '' || exists('g:eclim_leaving') || !eclim#EclimAvailable(0)
+    return
+  endif
+
+  let project = eclim#project#util#GetProject(a:file)
+  if !len(project)
+    return
+  endif
+
+  let file = eclim#project#util#GetProjectRelativeFilePath(a:file)
+  let command = s:buffer_close_command
+  let command = substitute(command, '<project>', project.name, '')
+  let command = substitute(command, '<file>', file, '')
+  call eclim#Execute(command, {'project': project.name})
+endfunction " }}}
+
 function! eclim#lang#Search(command, singleResultAction, argline) " {{{
   let argline = a:argline
   "if argline == ''
@@ -275,9 +368,17 @@ function! eclim#lang#UpdateSrcFile(lang, ...) " {{{
     let command = substitute(command, '<project>', project, '')
     let command = substitute(command, '<file>', file, '')
     if validate && !eclim#util#WillWrittenBufferClose()
+      let build = eclim#project#problems#IsProblemsList() &&
+        \ g:EclimProjectProblemsUpdateOnSave
+      " the async validation can't also trigger a build, so only use it when
+      " no build is required (in which case there is also no problems list
+      " to update).
+      if !build && s:ValidateAsync(project, file)
+        return
+      endif
+
       let command = command . ' -v'
-      if eclim#project#problems#IsProblemsList() &&
-       \ g:EclimProjectProblemsUpdateOnSave
+      if build
         let command = command . ' -b'
       endif
     endif
@@ -300,6 +401,82 @@ function! eclim#lang#UpdateSrcFile(lang, ...) " {{{
   endif
 endfunction " }}}
 
+function! s:ValidateAsync(project, file) " {{{
+  " Requests that the supplied file be validated in the background, with the
+  " results later pushed back to this vim instance. Returns 0 if async
+  " validation is disabled or unavailable for the file.
+  if !g:EclimValidateAsync
+    return 0
+  endif
+
+  let servername = eclim#client#channel#ServerName(a:project)
+  if servername == ''
+    return 0
+  endif
+
+  let command = s:validate_async_command
+  let command = substitute(command, '<project>', a:project, '')
+  let command = substitute(command, '<file>', a:file, '')
+  let command = substitute(command, '<vim_servername>', servername, '')
+  let command = substitute(command, '<vim_executable>',
+    \ substitute(exepath(v:progpath), '\', '/', 'g'), '')
+  let result = eclim#Execute(command)
+  if type(result) != g:NUMBER_TYPE || !result
+    return 0
+  endif
+
+  " remember which file this buffer's pending results will be for.
+  let b:eclim_validate_async = a:project . ':' . a:file
+  return 1
+endfunction " }}}
+
+function! eclim#lang#ValidateAsyncResults(project, file, results) " {{{
+  " Invoked by eclimd (via --remote-expr) when a background validation
+  " requested by s:ValidateAsync has completed.
+  let key = a:project . ':' . a:file
+  for bufnr in range(1, bufnr('$'))
+    if getbufvar(bufnr, 'eclim_validate_async') == key
+      call setbufvar(bufnr, 'eclim_validate_async_results', eval(a:results))
+      if bufnr == bufnr('%')
+        call s:ApplyAsyncResults()
+      else
+        " apply the results once the user returns to the buffer.
+        augroup eclim_validate_async
+          exec 'autocmd! BufEnter <buffer=' . bufnr . '>'
+          exec 'autocmd BufEnter <buffer=' . bufnr . '> ' .
+            \ 'call eclim#lang#ApplyAsyncResults()'
+        augroup END
+      endif
+      break
+    endif
+  endfor
+  return ''
+endfunction " }}}
+
+function! eclim#lang#ApplyAsyncResults() " {{{
+  augroup eclim_validate_async
+    autocmd! BufEnter <buffer>
+  augroup END
+  call s:ApplyAsyncResults()
+endfunction " }}}
+
+function! s:ApplyAsyncResults() " {{{
+  if !exists('b:eclim_validate_async_results')
+    return
+  endif
+
+  let results = b:eclim_validate_async_results
+  unlet b:eclim_validate_async_results
+  if len(results) > 0
+    let errors = eclim#util#ParseLocationEntries(
+      \ results, g:EclimValidateSortResults)
+    call eclim#util#SetLocationList(errors)
+  else
+    call eclim#util#ClearLocationList('global')
+  endif
+  redraw
+endfunction " }}}
+
 " Validate(type, on_save, [filter]) {{{
 " Validates the current file. Used by languages which are not validated via
 " UpdateSrcFile (pretty much all the xml dialects and wst langs).
@@ -374,6 +551,17 @@ function! eclim#lang#SilentUpdate(...) " {{{
   return file
 endfunction " }}}
 
+function! eclim#lang#BufferContents() " {{{
+  " Gets the contents of the current buffer as they would be written to disk,
+  " to be sent to commands which accept the unsaved contents on stdin.
+  let line_ending = &ff == 'dos' ? "\r\n" : "\n"
+  let contents = join(getline(1, '$'), line_ending) . line_ending
+  if &fileencoding != '' && &encoding != '' && &fileencoding != &encoding
+    let contents = iconv(contents, &encoding, &fileencoding)
+  endif
+  return contents
+endfunction " }}}
+
 " Refactor(command) {{{
 " Executes the supplied refactoring command handle error response and
 " reloading files that have changed.
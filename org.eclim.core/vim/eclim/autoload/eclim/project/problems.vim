@@ -21,6 +21,10 @@
 
 " Script variables {{{
   let s:problems_command = '-command problems -p "<project>"'
+  " the last set of problems retrieved, along with the version of each
+  " project's problems, allowing subsequent requests to only retrieve what
+  " changed.
+  let s:problems = {}
 " }}}
 
 function! eclim#project#problems#Problems(project, open, bang) " {{{
@@ -38,11 +42,46 @@ function! eclim#project#problems#Problems(project, open, bang) " {{{
   if a:bang != ""
     let command .= ' -e'
   endif
+
+  let cached = get(s:problems, 'project', '') == project &&
+    \ get(s:problems, 'bang', '') == a:bang
+  if cached && len(s:problems.versions)
+    let command .= ' -s'
+    for [name, version] in items(s:problems.versions)
+      let command .= ' "' . name . '=' . version . '"'
+    endfor
+  else
+    let command .= ' -s -1'
+  endif
+
   let result = eclim#Execute(command)
+  let problems = []
+  if type(result) == g:DICT_TYPE
+    if has_key(result, 'problems')
+      let problems = result.problems
+    else
+      let problems = s:ApplyChanges(
+        \ project, s:problems.results, result.added, result.removed)
+    endif
+    let s:problems = {
+        \ 'project': project,
+        \ 'bang': a:bang,
+        \ 'versions': result.versions,
+        \ 'results': problems,
+      \ }
+  else
+    let s:problems = {}
+  endif
+
   let errors = []
-  if type(result) == g:LIST_TYPE && len(result) > 0
+  if len(problems) > 0
     let errors = eclim#util#ParseLocationEntries(
-      \ result, g:EclimValidateSortResults)
+      \ problems, g:EclimValidateSortResults)
+  endif
+
+  if type(result) == g:DICT_TYPE && get(result, 'stale', 0)
+    call eclim#util#EchoWarning(
+      \ 'Build still running, problems list may be incomplete.')
   endif
 
   let action = eclim#project#problems#IsProblemsList() ? 'r' : ' '
@@ -112,6 +151,60 @@ function! eclim#project#problems#IsProblemsList() " {{{
   return 0
 endfunction " }}}
 
+function! s:ApplyChanges(project, problems, added, removed) " {{{
+  if len(a:added) == 0 && len(a:removed) == 0
+    return a:problems
+  endif
+
+  " the same problem may be reported more than once, so only drop as many
+  " occurrences as were removed.
+  let removed = {}
+  for problem in a:removed
+    let key = s:ProblemKey(problem)
+    let removed[key] = get(removed, key, 0) + 1
+  endfor
+
+  let problems = []
+  for problem in a:problems
+    let key = s:ProblemKey(problem)
+    if get(removed, key, 0) > 0
+      let removed[key] -= 1
+      continue
+    endif
+    call add(problems, problem)
+  endfor
+  call extend(problems, a:added)
+
+  " mirror the server's ordering: problems in the project first, followed by
+  " those in related projects, each by file (compared byte wise, which for
+  " utf-8 matches the server's code point ordering), line, and column.
+  let s:problems_root = eclim#project#util#GetProjectRoot(a:project) . '/'
+  return sort(problems, 's:CompareProblems')
+endfunction " }}}
+
+function! s:ProblemKey(problem) " {{{
+  let p = a:problem
+  return p.filename . ':' . p.line . ':' . p.column . ':' .
+    \ p.warning . ':' . p.message
+endfunction " }}}
+
+function! s:CompareProblems(p1, p2) " {{{
+  let in1 = stridx(a:p1.filename, s:problems_root) == 0
+  let in2 = stridx(a:p2.filename, s:problems_root) == 0
+  if in1 != in2
+    return in1 ? -1 : 1
+  endif
+
+  if a:p1.filename != a:p2.filename
+    return a:p1.filename <# a:p2.filename ? -1 : 1
+  endif
+
+  if a:p1.line != a:p2.line
+    return a:p1.line - a:p2.line
+  endif
+  return a:p1.column - a:p2.column
+endfunction " }}}
+
 function! s:QuickfixSignature() " {{{
   let qflist = getqflist()
   let len = len(qflist)
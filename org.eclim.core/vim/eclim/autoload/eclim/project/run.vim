@@ -116,7 +116,8 @@ function! eclim#project#run#ProjectRun(...) " {{{
   let vim_exe = substitute(exepath(v:progpath), '\', '/', 'g')
   let command = substitute(command, '<project>', project, '')
   let command = substitute(command, '<config>', config, '')
-  let command = substitute(command, '<vim_servername>', v:servername, '')
+  let command = substitute(command, '<vim_servername>',
+    \ eclim#client#channel#ServerName(project), '')
   let command = substitute(command, '<vim_executable>', vim_exe, '')
   let result = eclim#Execute(command, {'project': project})
   call eclim#util#EchoError(result)
@@ -253,4 +254,30 @@ function! eclim#project#run#onOutput(bufnum, type, line) " {{{
   endif
 endfunction " }}}
 
+function! eclim#project#run#onOutputBatch(bufnum, lines) " {{{
+  " Invoked by eclimd with a batch of output lines, a list of [type, line]
+  " pairs in the order they were received. Returns 1 once the lines have been
+  " appended.
+  if !has('python')
+    return ''
+  endif
+
+  " append consecutive lines of the same type together.
+  let type = ''
+  let lines = []
+  for [ltype, line] in eval(a:lines) + [['', '']]
+    if "terminated" == ltype
+      let ltype = 'out'
+      let line = '<terminated>'
+    endif
+    if ltype != type && len(lines)
+      call s:append(a:bufnum, type, join(lines, "\r"))
+      let lines = []
+    endif
+    let type = ltype
+    call add(lines, line)
+  endfor
+  return '1'
+endfunction " }}}
+
 " vim:ft=vim:fdm=marker
@@ -52,6 +52,7 @@ let s:command_create_name = ' -p "<name>"'
 let s:command_create_natures = ' -n <natures>'
 let s:command_create_depends = ' -d <depends>'
 let s:command_import = '-command project_import -f "<folder>"'
+let s:command_import_bulk = '-command project_import_bulk -f "<folder>"'
 let s:command_delete = '-command project_delete -p "<project>"'
 let s:command_rename = '-command project_rename -p "<project>" -n "<name>"'
 let s:command_move = '-command project_move -p "<project>" -d "<dir>"'
@@ -59,6 +60,7 @@ let s:command_refresh = '-command project_refresh -p "<project>"'
 let s:command_refresh_file =
   \ '-command project_refresh_file -p "<project>" -f "<file>"'
 let s:command_build = '-command project_build -p "<project>"'
+let s:command_validate_files = '-command validate_files -p "<project>" -s'
 let s:command_projects = '-command projects'
 let s:command_project_list = '-command project_list'
 let s:command_project_by_resource = '-command project_by_resource -f "<file>"'
@@ -186,6 +188,42 @@ function! eclim#project#util#ProjectImportDiscover(arg) " {{{
   call eclim#util#Echo("Imported " . len(projects) . " projects.")
 endfunction " }}}
 
+function! eclim#project#util#ProjectImportBulk(arg) " {{{
+  " Imports all the projects found under the given directory in a single
+  " eclimd request (nature import hooks are not run).
+  let folder = fnamemodify(expand(a:arg), ':p')
+  let folder = substitute(folder, '\', '/', 'g')
+  let command = substitute(s:command_import_bulk, '<folder>', folder, '')
+  let results = eclim#Execute(command, {'dir': folder})
+  if type(results) != g:LIST_TYPE
+    call eclim#util#EchoError(results)
+    return
+  endif
+
+  if len(results) == 0
+    call eclim#util#Echo("No projects found")
+    return
+  endif
+
+  call eclim#project#util#ClearProjectsCache()
+
+  let imported = 0
+  let errors = []
+  for result in results
+    if result.status == 'imported'
+      let imported += 1
+    elseif result.status == 'failed'
+      call add(errors, result.message)
+    endif
+  endfor
+
+  call eclim#util#Echo(
+    \ "Imported " . imported . " of " . len(results) . " projects.")
+  if len(errors)
+    call eclim#util#EchoError(errors)
+  endif
+endfunction " }}}
+
 function! eclim#project#util#ProjectImport(arg) " {{{
   let folder = fnamemodify(expand(a:arg), ':p')
   let folder = substitute(folder, '\', '/', 'g')
@@ -429,6 +467,57 @@ function! eclim#project#util#ProjectBuild(...) " {{{
   call eclim#util#Echo(result)
 endfunction " }}}
 
+function! eclim#project#util#ProjectValidate(...) " {{{
+  " Validates the supplied files (absolute, project relative, or glob
+  " patterns), populating the quickfix list with the results.
+  if !eclim#project#util#IsCurrentFileInProject()
+    return
+  endif
+  let project = eclim#project#util#GetCurrentProjectName()
+  let root = eclim#project#util#GetProjectRoot(project)
+
+  let files = []
+  for arg in a:000
+    let paths = split(expand(arg), "\n")
+    if len(paths) == 0 || (len(paths) == 1 && paths[0] == arg)
+      " possibly a project relative path or pattern.
+      let paths = split(globpath(root, arg), "\n")
+    endif
+    for path in paths
+      if isdirectory(path)
+        continue
+      endif
+      let path = substitute(fnamemodify(path, ':p'), '\', '/', 'g')
+      if stridx(path, root . '/') == 0
+        let path = path[len(root) + 1:]
+      endif
+      call add(files, path)
+    endfor
+  endfor
+
+  if len(files) == 0
+    call eclim#util#EchoWarning('No files found to validate.')
+    return
+  endif
+
+  call eclim#util#Echo(printf('Validating %s file(s)...', len(files)))
+  let command = substitute(s:command_validate_files, '<project>', project, '')
+  let result = eclim#Execute(
+    \ command, {'project': project, 'input': join(files, "\n")})
+  if type(result) != g:LIST_TYPE
+    return
+  endif
+
+  let errors = []
+  if len(result) > 0
+    let errors = eclim#util#ParseLocationEntries(
+      \ result, g:EclimValidateSortResults)
+  endif
+  call eclim#util#SetQuickfixList(errors)
+  call eclim#util#Echo(printf(
+    \ 'Validated %s file(s): %s problem(s) found.', len(files), len(errors)))
+endfunction " }}}
+
 function! eclim#project#util#ProjectInfo(project) " {{{
   let project = a:project
   if project == ''
@@ -1328,11 +1328,12 @@ function! eclim#util#Simplify(file) " {{{
   return file
 endfunction " }}}
 
-" System(cmd, [exec, exec_results]) {{{
+" System(cmd, [exec, exec_results, input]) {{{
 " Executes system() accounting for possibly disruptive vim options.
 " exec (0 or 1): whether or not to use exec instead of system
 " exec_results (0, 1, or 2): 0 to not return the results of an exec, 1 to
 "   return the results, or 2 to return the filename containing the results.
+" input: text to send to the command's stdin (only supported w/out exec).
 function! eclim#util#System(cmd, ...)
   let saveshell = &shell
   let saveshellcmdflag = &shellcmdflag
@@ -1386,7 +1387,8 @@ function! eclim#util#System(cmd, ...)
       let begin = localtime()
       let cmd = a:cmd
       try
-        let result = system(cmd)
+        let input = len(a:000) > 2 ? a:000[2] : ''
+        let result = input != '' ? system(cmd, input) : system(cmd)
       finally
         call eclim#util#EchoTrace('system: ' . cmd, localtime() - begin)
       endtry
@@ -84,10 +84,35 @@ call eclim#AddVimSetting(
   \ 'Core', 'g:EclimTempFilesEnable', 0,
   \ 'Should eclim ever use temp files for code completion, etc.',
   \ '\(0\|1\)')
+call eclim#AddVimSetting(
+  \ 'Core', 'g:EclimStdinEnable', 0,
+  \ "When supported by the command (java completion, correction), send the\n" .
+  \ "current buffer contents to eclimd instead of first writing the file.",
+  \ '\(0\|1\)')
+call eclim#AddVimSetting(
+  \ 'Core', 'g:EclimCompletionLazyInfo', 0,
+  \ "When supported by the language and vim (popup windows), only fetch the\n" .
+  \ "info of a completion result once it is selected in the completion\n" .
+  \ "popup. Requires 'popuphidden' in your 'completeopt'.",
+  \ '\(0\|1\)')
 call eclim#AddVimSetting(
   \ 'Core', 'g:EclimFileTypeValidate', 1,
   \ "Allows you to disable all eclim lang validators at once.",
   \ '\(0\|1\)')
+call eclim#AddVimSetting(
+  \ 'Core', 'g:EclimValidateAsync', 0,
+  \ "When enabled, and vim is running with a servername, files are validated\n" .
+  \ "in the background after saving and the results are added to the\n" .
+  \ "location list once available.",
+  \ '\(0\|1\)')
+call eclim#AddVimSetting(
+  \ 'Core', 'g:EclimVimChannel', 0,
+  \ "When enabled, and vim has channel support, vim opens a channel to\n" .
+  \ "eclimd which eclimd uses to send requests back to vim (debugger\n" .
+  \ "updates, project run output, etc.) instead of spawning a vim client\n" .
+  \ "process for each one. Vim also no longer needs to be started with a\n" .
+  \ "servername to receive them.",
+  \ '\(0\|1\)')
 call eclim#AddVimSetting(
   \ 'Core', 'g:EclimRefactorDiffOrientation', 'vertical',
   \ "When viewing a diff for a refactoring, should the diff split be\n" .
@@ -383,6 +408,13 @@ endif
 " }}}
 
 " Auto Commands{{{
+" lets BufUnload handlers skip releasing per file state held by eclimd when vim
+" is exiting and all buffers are being unloaded.
+augroup eclim_leave
+  autocmd!
+  autocmd VimLeavePre * let g:eclim_leaving = 1
+augroup END
+
 augroup eclim_archive_read
   autocmd!
   if exists('#archive_read')
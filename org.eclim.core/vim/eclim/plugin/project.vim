@@ -132,6 +132,8 @@ if !exists(":ProjectCreate")
     \ ProjectImportDiscover :call eclim#project#util#ProjectImportDiscover('<args>')
   command -nargs=1 -complete=dir
     \ ProjectImport :call eclim#project#util#ProjectImport('<args>')
+  command -nargs=1 -complete=dir
+    \ ProjectImportBulk :call eclim#project#util#ProjectImportBulk('<args>')
   command -nargs=1
     \ -complete=customlist,eclim#project#util#CommandCompleteProject
     \ ProjectDelete :call eclim#project#util#ProjectDelete('<args>')
@@ -182,6 +184,12 @@ if !exists(":ProjectProblems")
     \ ProjectProblems :call eclim#project#problems#Problems('<args>', 1, '<bang>')
 endif
 
+if !exists(":ProjectValidate")
+  command -nargs=+
+    \ -complete=customlist,eclim#project#util#CommandCompleteProjectRelative
+    \ ProjectValidate :call eclim#project#util#ProjectValidate(<f-args>)
+endif
+
 if !exists(":ProjectTree")
   command -nargs=*
     \ -complete=customlist,eclim#project#util#CommandCompleteProjectOrDirectory
@@ -21,13 +21,17 @@ import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Locale;
 
+import org.apache.commons.lang.StringUtils;
+
 import org.eclim.command.CommandLine;
 import org.eclim.command.Options;
 
 import org.eclim.plugin.core.command.AbstractCommand;
 
+import org.eclim.plugin.core.command.complete.CodeCompleteProposals;
 import org.eclim.plugin.core.command.complete.CodeCompleteResult;
 
 import org.eclim.plugin.core.util.ProjectUtils;
@@ -75,15 +79,22 @@ public abstract class AbstractCodeCompleteCommand
     IScriptCompletionProposal[] proposals =
       collector.getScriptCompletionProposals();
 
-    ArrayList<CodeCompleteResult> results = new ArrayList<CodeCompleteResult>();
+    boolean lazy = commandLine.hasOption(Options.LAZY_INFO_OPTION);
+    CodeCompleteProposals.newSession();
+
+    ArrayList<CodeCompleteResult> results =
+      new ArrayList<CodeCompleteResult>(proposals.length);
+    HashSet<CodeCompleteResult> seen = new HashSet<CodeCompleteResult>();
     for (IScriptCompletionProposal proposal : proposals){
       CodeCompleteResult ccresult = new CodeCompleteResult(
           getCompletion(document, offset, proposal),
           getMenu(proposal),
-          getInfo(proposal));
+          lazy ? StringUtils.EMPTY : getInfo(proposal));
       ccresult.setRelevance(proposal.getRelevance());
 
-      if(!results.contains(ccresult)){
+      if(seen.add(ccresult)){
+        ccresult.setHandle(
+            CodeCompleteProposals.add(new ProposalInfo(proposal)));
         results.add(ccresult);
       }
     }
@@ -153,6 +164,32 @@ public abstract class AbstractCodeCompleteCommand
     return info;
   }
 
+  /**
+   * Lazily resolves the info for a proposal using this command.
+   */
+  private class ProposalInfo
+    implements CodeCompleteProposals.Info
+  {
+    private IScriptCompletionProposal proposal;
+
+    public ProposalInfo(IScriptCompletionProposal proposal)
+    {
+      this.proposal = proposal;
+    }
+
+    @Override
+    public String getInfo()
+    {
+      return AbstractCodeCompleteCommand.this.getInfo(proposal);
+    }
+
+    @Override
+    public String getJavaDocURI()
+    {
+      return StringUtils.EMPTY;
+    }
+  }
+
   private class CodeCompleteResultComparator
     implements Comparator<CodeCompleteResult>
   {
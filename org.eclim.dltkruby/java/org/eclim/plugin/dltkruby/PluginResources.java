@@ -20,6 +20,8 @@ import org.eclim.Services;
 
 import org.eclim.plugin.AbstractPluginResources;
 
+import org.eclim.plugin.core.command.validate.ValidateFilesCommand;
+
 import org.eclim.plugin.core.project.ProjectManagement;
 import org.eclim.plugin.core.project.ProjectNatureFactory;
 
@@ -53,6 +55,8 @@ public class PluginResources
     ProjectNatureFactory.addNature("ruby", RubyNature.NATURE_ID);
     ProjectManagement.addProjectManager(
         RubyNature.NATURE_ID, new RubyProjectManager());
+    ValidateFilesCommand.addValidator(
+        RubyNature.NATURE_ID, "ruby_src_update", false, "rb");
 
     DltkUtils.addDltkNature(RubyNature.NATURE_ID);
     DltkInterpreterTypeManager.addInterpreterType(
@@ -45,7 +45,8 @@ import org.eclipse.jface.text.IDocument;
     "REQUIRED p project ARG," +
     "REQUIRED f file ARG," +
     "REQUIRED o offset ARG," +
-    "REQUIRED e encoding ARG"
+    "REQUIRED e encoding ARG," +
+    "OPTIONAL i lazyinfo NOARG"
 )
 public class CodeCompleteCommand
   extends AbstractCodeCompleteCommand
@@ -30,7 +30,8 @@
 " CodeComplete(findstart, base) {{{
 " Handles code completion.
 function! eclim#ruby#complete#CodeComplete(findstart, base)
-  return eclim#lang#CodeComplete(s:complete_command, a:findstart, a:base)
+  return eclim#lang#CodeComplete(
+    \ s:complete_command, a:findstart, a:base, {'lazyinfo': 1})
 endfunction " }}}
 
 " vim:ft=vim:fdm=marker
@@ -20,6 +20,8 @@ import org.codehaus.jdt.groovy.model.GroovyNature;
 
 import org.eclim.plugin.AbstractPluginResources;
 
+import org.eclim.plugin.core.command.validate.ValidateFilesCommand;
+
 import org.eclim.plugin.core.project.ProjectManagement;
 import org.eclim.plugin.core.project.ProjectNatureFactory;
 
@@ -51,6 +53,8 @@ public final class PluginResources
       JavaCore.NATURE_ID,
     });
     ProjectManagement.addProjectManager(NATURE, new GroovyProjectManager());
+    ValidateFilesCommand.addValidator(
+        NATURE, "groovy_src_update", true, "groovy");
   }
 
   @Override
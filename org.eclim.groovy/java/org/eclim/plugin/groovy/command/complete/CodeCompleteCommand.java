@@ -30,6 +30,8 @@ import org.eclim.annotation.Command;
 
 import org.eclim.command.CommandLine;
 import org.eclim.command.Options;
+
+import org.eclim.plugin.core.command.complete.CodeCompleteProposals;
 import org.eclim.plugin.core.command.complete.CodeCompleteResult;
 
 import org.eclim.plugin.core.util.ProjectUtils;
@@ -82,6 +84,15 @@ public final class CodeCompleteCommand
     return results;
   }
 
+  @Override
+  protected CodeCompleteProposals.Info getProposalInfo(
+      ICompletionProposal proposal)
+  {
+    // the proposals are bound to an editor which is closed once the results
+    // have been computed, so their info can't be resolved later.
+    return null;
+  }
+
   @Override
   protected List<CodeCompleteResult> getCompletionResults(
       CommandLine commandLine, String project, String file, int offset)
@@ -128,7 +139,6 @@ public final class CodeCompleteCommand
       results.add(createCompletionResult(
             (IJavaCompletionProposal)proposal, javaDocEnabled));
     }
-    Collections.sort(results, COMPLETION_COMPARATOR);
 
     return results;
   }
@@ -16,6 +16,8 @@
  */
 package org.eclim.plugin.ant.command.complete;
 
+import org.apache.commons.lang.StringUtils;
+
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
@@ -44,7 +46,8 @@ import org.eclipse.jface.text.contentassist.IContentAssistProcessor;
     "REQUIRED p project ARG," +
     "REQUIRED f file ARG," +
     "REQUIRED o offset ARG," +
-    "REQUIRED e encoding ARG"
+    "REQUIRED e encoding ARG," +
+    "OPTIONAL i lazyinfo NOARG"
 )
 public class CodeCompleteCommand
   extends AbstractCodeCompleteCommand
@@ -53,8 +56,12 @@ public class CodeCompleteCommand
   protected CodeCompleteResult createCodeCompletionResult(
       ICompletionProposal proposal)
   {
-    return new AntCodeCompleteResult(
-        getCompletion(proposal), getMenu(proposal), getInfo(proposal));
+    CodeCompleteResult result = new AntCodeCompleteResult(
+        getCompletion(proposal),
+        getMenu(proposal),
+        isLazyInfo() ? StringUtils.EMPTY : getInfo(proposal));
+    result.setProposal(getProposalInfo(proposal));
+    return result;
   }
 
   @Override
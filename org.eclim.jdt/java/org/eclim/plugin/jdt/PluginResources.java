@@ -36,6 +36,8 @@ import org.eclim.logging.Logger;
 
 import org.eclim.plugin.AbstractPluginResources;
 
+import org.eclim.plugin.core.command.validate.ValidateFilesCommand;
+
 import org.eclim.plugin.core.preference.PreferenceFactory;
 import org.eclim.plugin.core.preference.Preferences;
 
@@ -108,6 +110,7 @@ public class PluginResources
     Preferences.addOptionHandler("org.eclipse.jdt", new OptionHandler());
     ProjectNatureFactory.addNature("java", NATURE);
     ProjectManagement.addProjectManager(NATURE, new JavaProjectManager());
+    ValidateFilesCommand.addValidator(NATURE, "java_src_update", false, "java");
 
     PreferenceFactory.addPreferences(NATURE,
       "JDT org.eclim.java.logging.impl commons-logging " +
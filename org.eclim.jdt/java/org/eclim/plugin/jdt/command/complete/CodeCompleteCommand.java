@@ -20,9 +20,10 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclim.annotation.Command;
 
@@ -33,6 +34,7 @@ import org.eclim.plugin.core.command.complete.AbstractCodeCompleteCommand;
 import org.eclim.plugin.core.command.complete.CodeCompleteResult;
 
 import org.eclim.plugin.jdt.util.JavaUtils;
+import org.eclim.plugin.jdt.util.WorkingCopyManager;
 
 import org.eclipse.core.runtime.CoreException;
 
@@ -50,6 +52,8 @@ import org.eclipse.jdt.internal.ui.viewsupport.JavaElementLinks;
 
 import org.eclipse.jdt.ui.text.java.IJavaCompletionProposal;
 
+import org.eclipse.jface.text.contentassist.ICompletionProposal;
+
 /**
  * Command to handle java code completion requests.
  *
@@ -62,15 +66,17 @@ import org.eclipse.jdt.ui.text.java.IJavaCompletionProposal;
     "REQUIRED f file ARG," +
     "REQUIRED o offset ARG," +
     "REQUIRED e encoding ARG," +
-    "REQUIRED l layout ARG"
+    "REQUIRED l layout ARG," +
+    "OPTIONAL i lazyinfo NOARG," +
+    "OPTIONAL s stdin NOARG"
 )
 public class CodeCompleteCommand
   extends AbstractCodeCompleteCommand
 {
   private static final Logger logger = Logger.getLogger(CodeCompleteCommand.class);
 
-  protected static final Comparator<CodeCompleteResult> COMPLETION_COMPARATOR =
-    new CompletionComparator();
+  private static final Map<String,Method> methods =
+    new ConcurrentHashMap<String,Method>();
 
   private ThreadLocal<CompletionProposalCollector> collector =
     new ThreadLocal<CompletionProposalCollector>();
@@ -79,32 +85,55 @@ public class CodeCompleteCommand
   protected Object getResponse(List<CodeCompleteResult> results)
   {
     CompletionProposalCollector collector = this.collector.get();
+    // no collector when the results were served from the completion cache.
+    if (collector == null){
+      return new CodeCompleteResponse(results, null, null);
+    }
     return new CodeCompleteResponse(
         results, collector.getError(), collector.getImports());
   }
 
+  @Override
+  protected boolean isCacheable(List<CodeCompleteResult> results)
+  {
+    CompletionProposalCollector collector = this.collector.get();
+    return collector != null &&
+      collector.getError() == null &&
+      collector.getImports() == null;
+  }
+
   @Override
   protected List<CodeCompleteResult> getCompletionResults(
       CommandLine commandLine, String project, String file, int offset)
   {
     ICompilationUnit src = JavaUtils.getCompilationUnit(project, file);
 
+    // complete against the unsaved buffer contents, if supplied, using the
+    // file's in memory working copy.
+    String contents = getStdinContents(commandLine);
+    ICompilationUnit workingCopy = null;
+    if (contents != null){
+      src = workingCopy = WorkingCopyManager.acquire(src, contents);
+    }
+
     CompletionProposalCollector collector =
       new CompletionProposalCollector(src);
+    ArrayList<CodeCompleteResult> results = null;
     try{
       src.codeComplete(offset, collector);
+
+      IJavaCompletionProposal[] proposals =
+        collector.getJavaCompletionProposals();
+      results = new ArrayList<CodeCompleteResult>(proposals.length);
+      for(IJavaCompletionProposal proposal : proposals){
+        results.add(createCompletionResult(proposal));
+      }
     }catch(CoreException ce){
       throw new RuntimeException(ce);
+    }finally{
+      WorkingCopyManager.release(workingCopy);
     }
 
-    IJavaCompletionProposal[] proposals =
-      collector.getJavaCompletionProposals();
-    ArrayList<CodeCompleteResult> results = new ArrayList<CodeCompleteResult>();
-    for(IJavaCompletionProposal proposal : proposals){
-      results.add(createCompletionResult(proposal));
-    }
-    Collections.sort(results, COMPLETION_COMPARATOR);
-
     this.collector.set(collector);
 
     return results;
@@ -157,9 +186,8 @@ public class CodeCompleteCommand
       offset = lazy.getReplacementOffset();
       CompletionProposal cproposal = null;
       try{
-        Method getProposal = LazyJavaCompletionProposal.class
-          .getDeclaredMethod("getProposal");
-        getProposal.setAccessible(true);
+        Method getProposal = getDeclaredMethod(
+            LazyJavaCompletionProposal.class, "getProposal");
         cproposal = (CompletionProposal)getProposal.invoke(lazy);
       }catch(NoSuchMethodException nsme){
         throw new RuntimeException(nsme);
@@ -226,14 +254,22 @@ public class CodeCompleteCommand
         break;
     }
 
-    // TODO:
-    // hopefully Bram will take my advice to add lazy retrieval of
-    // completion 'info' so that I can provide this text without the
-    // overhead involved with retrieving it for every completion regardless
-    // of whether the user ever views it.
-    /*return new CodeCompleteResult(
-        kind, completion, menu, proposal.getAdditionalProposalInfo());*/
-    return new CodeCompleteResult(completion, menu, menu, type, offset, javaDocURI);
+    // the full info (proposal.getAdditionalProposalInfo()) is too expensive to
+    // retrieve for every completion, so it is only resolved on demand via the
+    // result's handle (see CompletionInfoCommand).
+    CodeCompleteResult result = new CodeCompleteResult(
+        completion, menu, isLazyInfo() ? "" : menu, type, offset, javaDocURI);
+    result.setProposal(getProposalInfo(proposal));
+    return result;
+  }
+
+  @Override
+  protected String getJavaDocURI(ICompletionProposal proposal)
+  {
+    if (proposal instanceof IJavaCompletionProposal){
+      return getJavaDocLink((IJavaCompletionProposal)proposal);
+    }
+    return "";
   }
 
   private String getJavaDocLink(IJavaCompletionProposal proposal)
@@ -280,10 +316,8 @@ public class CodeCompleteCommand
           " so a javaDoc link cannot be created.");
       return null;
     }
-    Method getProposal = AbstractJavaCompletionProposal.class
-        .getDeclaredMethod("getProposalInfo");
-
-    getProposal.setAccessible(true);
+    Method getProposal = getDeclaredMethod(
+        AbstractJavaCompletionProposal.class, "getProposalInfo");
     ProposalInfo proposalInfo = (ProposalInfo)getProposal
       .invoke((AbstractJavaCompletionProposal) proposal);
     if (proposalInfo != null) {
@@ -291,4 +325,25 @@ public class CodeCompleteCommand
     }
     return null;
   }
+
+  /**
+   * Gets the accessible, non-public method of the supplied class, looking it up
+   * only once since it is needed for every proposal.
+   *
+   * @param type The class declaring the method.
+   * @param name The method name.
+   * @return The Method.
+   */
+  private static Method getDeclaredMethod(Class<?> type, String name)
+    throws NoSuchMethodException
+  {
+    String key = type.getName() + '#' + name;
+    Method method = methods.get(key);
+    if (method == null){
+      method = type.getDeclaredMethod(name);
+      method.setAccessible(true);
+      methods.put(key, method);
+    }
+    return method;
+  }
 }
@@ -36,6 +36,7 @@ import org.eclim.plugin.core.command.refactoring.ResourceChangeListener;
 import org.eclim.plugin.jdt.command.include.ImportUtils;
 
 import org.eclim.plugin.jdt.util.JavaUtils;
+import org.eclim.plugin.jdt.util.WorkingCopyManager;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IWorkspace;
@@ -93,7 +94,8 @@ import org.eclipse.text.edits.TextEdit;
     "REQUIRED l line ARG," +
     "REQUIRED o offset ARG," +
     "OPTIONAL e encoding ARG," +
-    "OPTIONAL a apply ARG"
+    "OPTIONAL a apply ARG," +
+    "OPTIONAL s stdin NOARG"
 )
 public class CodeCorrectCommand
   extends AbstractCommand
@@ -125,27 +127,42 @@ public class CodeCorrectCommand
     // JavaUtils refreshes the file when getting it.
     ICompilationUnit src = JavaUtils.getCompilationUnit(projectName, file);
 
-    IProblem problem = getProblem(src, line, offset);
-    if(problem == null){
-      String message = Services.getMessage("error.not.found", file, line);
-      if(commandLine.hasOption(Options.APPLY_OPTION)){
-        throw new RuntimeException(message);
+    // when only listing the available corrections, the unsaved buffer
+    // contents may be supplied and are used via the file's in memory working
+    // copy (applying a correction always operates on the saved file).
+    ICompilationUnit workingCopy = null;
+    if(!commandLine.hasOption(Options.APPLY_OPTION)){
+      String contents = getStdinContents(commandLine);
+      if (contents != null){
+        src = workingCopy = WorkingCopyManager.acquire(src, contents);
       }
-      return message;
     }
 
-    List<ChangeCorrectionProposal> proposals = getProposals(src, problem);
-    if(commandLine.hasOption(Options.APPLY_OPTION)){
-      ChangeCorrectionProposal proposal =
-        proposals.get(commandLine.getIntValue(Options.APPLY_OPTION));
-      return apply(src, proposal);
-    }
+    try{
+      IProblem problem = getProblem(src, line, offset);
+      if(problem == null){
+        String message = Services.getMessage("error.not.found", file, line);
+        if(commandLine.hasOption(Options.APPLY_OPTION)){
+          throw new RuntimeException(message);
+        }
+        return message;
+      }
 
-    HashMap<String,Object> result = new HashMap<String,Object>();
-    result.put("message", problem.getMessage());
-    result.put("offset", problem.getSourceStart());
-    result.put("corrections", getCorrections(proposals));
-    return result;
+      List<ChangeCorrectionProposal> proposals = getProposals(src, problem);
+      if(commandLine.hasOption(Options.APPLY_OPTION)){
+        ChangeCorrectionProposal proposal =
+          proposals.get(commandLine.getIntValue(Options.APPLY_OPTION));
+        return apply(src, proposal);
+      }
+
+      HashMap<String,Object> result = new HashMap<String,Object>();
+      result.put("message", problem.getMessage());
+      result.put("offset", problem.getSourceStart());
+      result.put("corrections", getCorrections(proposals));
+      return result;
+    }finally{
+      WorkingCopyManager.release(workingCopy);
+    }
   }
 
   /**
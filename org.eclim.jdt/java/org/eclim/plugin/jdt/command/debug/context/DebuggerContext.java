@@ -34,6 +34,7 @@ import org.eclim.plugin.jdt.command.debug.ui.ViewUtils;
 import org.eclim.plugin.jdt.util.JavaUtils;
 
 import org.eclim.util.CollectionUtils;
+import org.eclim.util.Metrics;
 
 import org.eclipse.core.resources.IProject;
 
@@ -58,6 +59,9 @@ import org.eclipse.jdt.internal.launching.SocketAttachConnector;
 
 import org.eclipse.jdt.launching.sourcelookup.JavaSourceLocator;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonPrimitive;
+
 /**
  * Maintains the state of currently active debug session and exposes methods to
  * interact with it.
@@ -87,6 +91,12 @@ public class DebuggerContext
   private final ThreadView threadView;
   private final VariableView varView;
 
+  /**
+   * Generation of the variable view last sent to vim, which vim checks before
+   * applying changes to the view.
+   */
+  private int variableViewGeneration;
+
   /**
    * Debug target for currently active session.
    */
@@ -314,12 +324,13 @@ public class DebuggerContext
         String.valueOf(threadId), kind, concatenateList(results));
   }
 
-  public void updateVariableView(List<String> results)
+  public synchronized void updateVariableView(List<String> results)
     throws Exception
   {
+    variableViewGeneration++;
     vimClient.remoteFunctionCall(
         "eclim#java#debug#VariableViewUpdate",
-        concatenateList(results));
+        concatenateList(results), String.valueOf(variableViewGeneration));
 
     // Hack to force VIM to execute the previous remote send command.
     // In some cases, VIM seems to buffer the command and not execute
@@ -327,6 +338,70 @@ public class DebuggerContext
     vimClient.remoteSend(":echo ' '");
   }
 
+  /**
+   * Updates the variable view with the variables of the thread being stepped
+   * through. When the same stack frame is still being viewed, only the rows
+   * which changed are sent. If vim can't apply those changes (the variable
+   * window is closed, or isn't showing the rows the changes are relative to),
+   * the whole view is sent instead.
+   *
+   * @throws Exception on failure.
+   */
+  public synchronized void refreshVariableView()
+    throws Exception
+  {
+    List<Object[]> changes = varView.getChanges();
+    if (changes == null) {
+      Metrics.increment("debug.variables.full");
+      updateVariableView(varView.get());
+    } else if (!changes.isEmpty()) {
+      if (patchVariableView(changes)) {
+        Metrics.increment("debug.variables.patch");
+      } else {
+        Metrics.increment("debug.variables.patch.rejected");
+        updateVariableView(varView.get());
+      }
+    } else {
+      Metrics.increment("debug.variables.unchanged");
+    }
+  }
+
+  /**
+   * Applies the supplied hunks, as returned by VariableView.getChanges(), to
+   * the variable view. Vim only applies them if it is still showing the
+   * generation of the view they were computed against.
+   *
+   * @return true if vim applied the changes, false otherwise.
+   */
+  private boolean patchVariableView(List<Object[]> changes)
+    throws Exception
+  {
+    JsonArray hunks = new JsonArray();
+    for (Object[] change : changes) {
+      JsonArray hunk = new JsonArray();
+      hunk.add(new JsonPrimitive((Integer) change[0]));
+      hunk.add(new JsonPrimitive((Integer) change[1]));
+      JsonArray lines = new JsonArray();
+      for (Object line : (List<?>) change[2]) {
+        lines.add(new JsonPrimitive((String) line));
+      }
+      hunk.add(lines);
+      hunks.add(hunk);
+    }
+
+    int generation = variableViewGeneration + 1;
+    String result = vimClient.remoteExpr(
+        "eclim#java#debug#VariableViewPatch(\"" + hunks.toString()
+        .replace("\\", "\\\\")
+        .replace("\"", "\\\"") + "\", " +
+        variableViewGeneration + ", " + generation + ")");
+    if (result == null || !"1".equals(result.trim())) {
+      return false;
+    }
+    variableViewGeneration = generation;
+    return true;
+  }
+
   /**
    * Returns a string by concatenating all the given entries using <eol> as
    * delimiter.
@@ -81,14 +81,14 @@ public class ThreadEventHandler extends DebugEventHandler
             ViewUtils.MODIFY_NODE,
             ctx.getThreadView().get(thread));
 
-        ctx.updateVariableView(ctx.getVariableView().get());
+        ctx.refreshVariableView();
       } else if (detail == DebugEvent.CLIENT_REQUEST) {
         ctx.getThreadContext().update(thread);
         ctx.updateThreadView(threadId,
             ViewUtils.MODIFY_NODE,
             ctx.getThreadView().get(thread));
 
-        ctx.updateVariableView(ctx.getVariableView().get());
+        ctx.refreshVariableView();
       }
     } else if (kind == DebugEvent.CREATE) {
       ctx.getThreadContext().update(thread);
@@ -111,7 +111,15 @@ public class ThreadEventHandler extends DebugEventHandler
           ViewUtils.MODIFY_NODE,
           ctx.getThreadView().get(thread));
 
-      if (ctx.getVariableView().isViewingThread(thread)) {
+      // Leave the variable view in place while stepping (or evaluating), so
+      // that only the variables which change need to be sent when the thread
+      // suspends again.
+      boolean stepping =
+        detail == DebugEvent.STEP_INTO ||
+        detail == DebugEvent.STEP_OVER ||
+        detail == DebugEvent.STEP_RETURN ||
+        detail == DebugEvent.EVALUATION_IMPLICIT;
+      if (!stepping && ctx.getVariableView().isViewingThread(thread)) {
         ctx.getVariableView().clear();
         // TODO If we send this remote command, then in some cases
         // it causes the next remote command to update variable window
@@ -18,13 +18,17 @@ package org.eclim.plugin.jdt.command.debug.ui;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclim.logging.Logger;
 
 import org.eclim.plugin.jdt.command.debug.context.ThreadContext;
 
+import org.eclim.plugin.jdt.command.debug.ui.VariableViewDiff.Row;
+
 import org.eclipse.debug.core.DebugException;
 
 import org.eclipse.debug.core.model.IStackFrame;
@@ -36,6 +40,7 @@ import org.eclipse.jdt.debug.core.IJavaArray;
 import org.eclipse.jdt.debug.core.IJavaFieldVariable;
 import org.eclipse.jdt.debug.core.IJavaObject;
 import org.eclipse.jdt.debug.core.IJavaReferenceType;
+import org.eclipse.jdt.debug.core.IJavaStackFrame;
 import org.eclipse.jdt.debug.core.IJavaThread;
 import org.eclipse.jdt.debug.core.IJavaType;
 import org.eclipse.jdt.debug.core.IJavaValue;
@@ -53,6 +58,14 @@ import org.eclipse.osgi.util.NLS;
  * UI model for displaying variables.
  *
  * <p>
+ * The view keeps a model of the rows last sent to vim, along with the
+ * expandable values shown in them keyed by their JDI unique id, so that after
+ * a step in the same stack frame only the rows which were changed, added, or
+ * removed need to be sent (see {@link #getChanges()}). Child variables are
+ * only fetched for values the user has expanded, and the model is discarded
+ * whenever the frame being viewed changes.
+ *
+ * <p>
  * The formatting code is borrowed from Eclipse JDT UI.
  * @see org.eclipse.jdt.internal.debug.ui.JDIModelPresentation
  */
@@ -84,7 +97,19 @@ public class VariableView
   private IJavaThread viewingThread;
 
   /**
-   * Expanded variable map for the thread being shown in UI.
+   * Key of the stack frame being shown in UI.
+   */
+  private String viewingFrame;
+
+  /**
+   * Rows currently shown in UI, or null if the UI has not been populated from
+   * this model.
+   */
+  private List<Row> rows;
+
+  /**
+   * Expandable variable map, keyed by value id, for the values currently
+   * shown in UI.
    */
   private Map<Long, ExpandableVar> expandableVarMap =
     new HashMap<Long, ExpandableVar>();
@@ -109,10 +134,16 @@ public class VariableView
      */
     private int depth;
 
-    public ExpandableVar(IJavaValue value, int depth)
+    /**
+     * Key of the row showing this variable.
+     */
+    private String key;
+
+    public ExpandableVar(IJavaValue value, int depth, String key)
     {
       this.value = value;
       this.depth = depth;
+      this.key = key;
     }
   }
 
@@ -124,30 +155,94 @@ public class VariableView
   /**
    * Returns the variable view for the thread currently being stepped through.
    * If there is no such thread, then a <code>null</code> is returned.
+   * <p>
+   * Values expanded in the previous view of the same stack frame remain
+   * expanded.
    *
    * @return List of variables.
    * @throws DebugException on failure.
    */
-  public List<String> get()
+  public synchronized List<String> get()
+    throws DebugException
+  {
+    List<Row> rows = load();
+    if (rows == null) {
+      return null;
+    }
+
+    List<String> results = new ArrayList<String>(rows.size());
+    for (Row row : rows) {
+      results.add(row.text);
+    }
+    return results;
+  }
+
+  /**
+   * Returns the changes to the variable view since it was last returned by
+   * {@link #get()} or this method, as a list of hunks relative to the rows
+   * last returned. Each hunk is an array containing the 0 based index of the
+   * first row it replaces, the number of rows it replaces, and the list of
+   * new row text.
+   * <p>
+   * If the view can't be updated incrementally (nothing has been shown yet,
+   * or the thread or stack frame has changed), <code>null</code> is
+   * returned and {@link #get()} should be used to reload the whole view.
+   *
+   * @return List of hunks or null.
+   * @throws DebugException on failure.
+   */
+  public synchronized List<Object[]> getChanges()
     throws DebugException
   {
     IJavaThread thread = threadCtx.getSteppingThread();
+    if (rows == null || rows.isEmpty() || thread == null ||
+        !isViewingThread(thread) ||
+        !getFrameKey(thread).equals(viewingFrame))
+    {
+      return null;
+    }
 
-    // Since the view is being reloaded, we can clear existing entries
-    clear();
+    List<Row> previous = rows;
+    List<Row> current = load();
+    if (current == null) {
+      return null;
+    }
+    return VariableViewDiff.diff(previous, current);
+  }
 
+  /**
+   * Rebuilds the model for the top stack frame of the thread currently being
+   * stepped through.
+   */
+  private List<Row> load()
+    throws DebugException
+  {
+    IJavaThread thread = threadCtx.getSteppingThread();
     if (thread == null) {
+      clear();
       return null;
     }
+
+    // values only stay expanded while stepping through the same frame.
+    String frame = getFrameKey(thread);
+    Map<Long, ExpandableVar> previous = expandableVarMap;
+    if (viewingThread == null || !isViewingThread(thread) ||
+        !frame.equals(viewingFrame))
+    {
+      previous = new HashMap<Long, ExpandableVar>();
+    }
+
     this.viewingThread = thread;
-    List<String> results = new ArrayList<String>();
+    this.viewingFrame = frame;
+    this.expandableVarMap = new HashMap<Long, ExpandableVar>();
+    List<Row> results = new ArrayList<Row>();
 
     // Protect against variable information unavailable for native
     // methods
     try {
       IStackFrame stackFrame = thread.getTopStackFrame();
       if (stackFrame != null) {
-        process(thread.getTopStackFrame().getVariables(), results, ROOT_DEPTH);
+        process(stackFrame.getVariables(), results, ROOT_DEPTH, "", previous);
       }
     } catch (DebugException e) {
       // Suppress exception as it is possible to get an error when the current
@@ -157,10 +252,11 @@ public class VariableView
         logger.debug("Unable to get variables", e);
       }
     }
+    this.rows = results;
     return results;
   }
 
-  public List<String> expandValue(long valueId)
+  public synchronized List<String> expandValue(long valueId)
   {
     ExpandableVar expandableVar = expandableVarMap.get(valueId);
 
@@ -171,40 +267,97 @@ public class VariableView
       return null;
     }
 
-    // If variable is already expanded, just return.
+    // If variable is already expanded, there are no new rows to add.
     if (expandableVar.expanded) {
-      return null;
+      return new ArrayList<String>();
+    }
+
+    // The UI expands the first row showing the value, replacing the child
+    // placeholder following it with the children, so do the same in the
+    // model.
+    String marker = "(id=" + valueId + ")";
+    int index = -1;
+    String key = expandableVar.key;
+    int depth = expandableVar.depth;
+    if (rows != null) {
+      for (int ii = 0; ii < rows.size(); ii++) {
+        Row row = rows.get(ii);
+        if (row.text.indexOf(marker) != -1) {
+          index = ii;
+          key = row.key;
+          depth = row.depth;
+          break;
+        }
+      }
     }
 
     IJavaValue value = expandableVar.value;
+    List<Row> children = new ArrayList<Row>();
     List<String> results = new ArrayList<String>();
     // Suppress any exception. No point in letting it propagate
     try {
-      process(value.getVariables(), results, expandableVar.depth + 1);
+      process(value.getVariables(), children, depth + 1, key, null);
 
       // Mark as expanded.
       expandableVar.expanded = true;
     } catch (DebugException e) {
       logger.error("Unable to get variables", e);
+      return results;
+    }
+
+    if (index != -1) {
+      if (index + 1 < rows.size() &&
+          rows.get(index + 1).key.equals(key + '/'))
+      {
+        rows.remove(index + 1);
+      }
+      rows.addAll(index + 1, children);
+    }
+
+    for (Row row : children) {
+      results.add(row.text);
     }
     return results;
   }
 
-  public void clear()
+  public synchronized void clear()
     throws DebugException
   {
     viewingThread = null;
+    viewingFrame = null;
+    rows = null;
     expandableVarMap.clear();
   }
 
   public boolean isViewingThread(IJavaThread thread)
     throws DebugException
   {
+    IJavaThread viewingThread = this.viewingThread;
     return viewingThread != null &&
       (thread.getThreadObject().getUniqueId() ==
        viewingThread.getThreadObject().getUniqueId());
   }
 
+  /**
+   * Returns a key identifying the top stack frame of the supplied thread, used
+   * to determine if a step has left the frame being viewed.
+   */
+  private String getFrameKey(IJavaThread thread)
+    throws DebugException
+  {
+    StringBuilder key = new StringBuilder()
+      .append(thread.getThreadObject().getUniqueId());
+    IStackFrame frame = thread.getTopStackFrame();
+    if (frame instanceof IJavaStackFrame) {
+      IJavaStackFrame jframe = (IJavaStackFrame) frame;
+      key.append(':').append(thread.getStackFrames().length)
+        .append(':').append(jframe.getDeclaringTypeName())
+        .append('.').append(jframe.getMethodName())
+        .append(jframe.getSignature());
+    }
+    return key.toString();
+  }
+
   /**
    * Process the variables and adds them to the result set.
    * Some variables may be excluded because they are not important for
@@ -212,17 +365,26 @@ public class VariableView
    * @see #ignoreVar method.
    *
    * @param vars variables
-   * @param results final results containing the variable text
+   * @param results final results containing the variable rows
    * @param depth current nesting depth in the tree hierarchy
+   * @param parentKey key of the row containing the variables
+   * @param previous expandable variables of the previous view of the same
+   * frame, whose expanded values are expanded again, or null.
    * @throws DebugException on failure.
    */
-  private void process(IVariable[] vars, List<String> results, int depth)
+  private void process(
+      IVariable[] vars,
+      List<Row> results,
+      int depth,
+      String parentKey,
+      Map<Long, ExpandableVar> previous)
     throws DebugException
   {
     if (vars == null) {
       return;
     }
 
+    Set<String> keys = new HashSet<String>();
     for (IVariable var : vars) {
       if (var instanceof JDIVariable) {
         JDIVariable jdivar = (JDIVariable) var;
@@ -245,8 +407,14 @@ public class VariableView
       // Treat String as leaf node even though it has child variables
       isLeafNode = isLeafNode || ViewUtils.isStringValue(value);
 
+      // Shadowed fields share a name, so make the key unique among siblings.
+      String key = parentKey + '/' + var.getName();
+      for (int ii = 1; !keys.add(key); ii++) {
+        key = parentKey + '/' + var.getName() + '#' + ii;
+      }
+
       String prefix = getIndentation(depth, isLeafNode);
-      results.add(prefix + getVariableText(jvar));
+      results.add(new Row(key, prefix + getVariableText(jvar), depth));
 
       // Keep track of this value as it is shown in UI and could be expanded
       if (!isLeafNode) {
@@ -255,14 +423,22 @@ public class VariableView
         // to prevent infinite recursion and also to not change the node depth
         // of the previously seen value. This case is normal for enum.
         if (!expandableVarMap.containsKey(valueId)) {
-          expandableVarMap.put(valueId,
-              new ExpandableVar(value, depth));
+          ExpandableVar expandableVar = new ExpandableVar(value, depth, key);
+          expandableVarMap.put(valueId, expandableVar);
+
+          // Only re-fetch the children of values the user had expanded.
+          ExpandableVar seen = previous != null ? previous.get(valueId) : null;
+          if (seen != null && seen.expanded) {
+            expandableVar.expanded = true;
+            process(value.getVariables(), results, depth + 1, key, previous);
+            continue;
+          }
         }
 
         // Hack: Add an empty line so that VIM will think there are child nodes
         // and fold correctly.
         String childPrefix = getIndentation(depth + 1, true);
-        results.add(childPrefix);
+        results.add(new Row(key + '/', childPrefix, depth + 1));
       }
     }
   }
@@ -277,7 +453,11 @@ public class VariableView
   public String getDetail(long valueId)
     throws DebugException
   {
-    ExpandableVar expandableVar = expandableVarMap.get(valueId);
+    // don't hold the lock while evaluating toString() in the debug vm.
+    ExpandableVar expandableVar;
+    synchronized (this) {
+      expandableVar = expandableVarMap.get(valueId);
+    }
 
     if (expandableVar == null) {
       if (logger.isDebugEnabled()) {
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.jdt.command.debug.ui;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Computes the changes between two versions of the variable view, as a list
+ * of hunks that vim applies to the rows it last received.
+ */
+public class VariableViewDiff
+{
+  private VariableViewDiff()
+  {
+  }
+
+  /**
+   * A single line in the UI.
+   */
+  public static class Row
+  {
+    /**
+     * Path of the variable (or child placeholder) shown by this row, used to
+     * match up rows between refreshes.
+     */
+    final String key;
+    final String text;
+    final int depth;
+
+    public Row(String key, String text, int depth)
+    {
+      this.key = key;
+      this.text = text;
+      this.depth = depth;
+    }
+  }
+
+  /**
+   * Computes the hunks required to turn the previous rows into the current
+   * rows, matching rows up by key. Each hunk is an array containing the 0
+   * based index (into the previous rows) of the first row it replaces, the
+   * number of rows it replaces, and the list of new row text.
+   *
+   * @param previous The rows last sent.
+   * @param current The rows now shown.
+   * @return List of hunks, in ascending row order.
+   */
+  public static List<Object[]> diff(List<Row> previous, List<Row> current)
+  {
+    // keys of the rows not yet visited in each list.
+    Set<String> previousKeys = new HashSet<String>();
+    for (Row row : previous) {
+      previousKeys.add(row.key);
+    }
+    Set<String> currentKeys = new HashSet<String>();
+    for (Row row : current) {
+      currentKeys.add(row.key);
+    }
+
+    List<Object[]> hunks = new ArrayList<Object[]>();
+    Object[] hunk = null;
+    int ii = 0;
+    int jj = 0;
+    while (ii < previous.size() || jj < current.size()) {
+      Row prev = ii < previous.size() ? previous.get(ii) : null;
+      Row curr = jj < current.size() ? current.get(jj) : null;
+
+      if (prev != null && curr != null && prev.key.equals(curr.key)) {
+        previousKeys.remove(prev.key);
+        currentKeys.remove(curr.key);
+        if (prev.text.equals(curr.text)) {
+          hunk = null;
+        } else {
+          hunk = hunk(hunks, hunk, ii);
+          hunk[1] = (Integer) hunk[1] + 1;
+          getLines(hunk).add(curr.text);
+        }
+        ii++;
+        jj++;
+      } else if (prev != null &&
+          (curr == null || !currentKeys.contains(prev.key) ||
+           previousKeys.contains(curr.key)))
+      {
+        // removed (or moved, in which case it will be re-added).
+        previousKeys.remove(prev.key);
+        hunk = hunk(hunks, hunk, ii);
+        hunk[1] = (Integer) hunk[1] + 1;
+        ii++;
+      } else {
+        currentKeys.remove(curr.key);
+        hunk = hunk(hunks, hunk, ii);
+        getLines(hunk).add(curr.text);
+        jj++;
+      }
+    }
+    return hunks;
+  }
+
+  /**
+   * Returns the supplied hunk if it ends at the supplied row, otherwise starts
+   * a new hunk at that row.
+   */
+  private static Object[] hunk(List<Object[]> hunks, Object[] hunk, int row)
+  {
+    if (hunk == null || (Integer) hunk[0] + (Integer) hunk[1] != row) {
+      hunk = new Object[]{row, 0, new ArrayList<String>()};
+      hunks.add(hunk);
+    }
+    return hunk;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<String> getLines(Object[] hunk)
+  {
+    return (List<String>) hunk[2];
+  }
+}
@@ -17,6 +17,9 @@
 package org.eclim.plugin.jdt.command.hierarchy;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 
 import org.eclim.annotation.Command;
@@ -27,14 +30,18 @@ import org.eclim.command.Options;
 import org.eclim.plugin.core.command.AbstractCommand;
 
 import org.eclim.plugin.jdt.util.JavaUtils;
-import org.eclim.plugin.jdt.util.TypeInfo;
 import org.eclim.plugin.jdt.util.TypeUtils;
 
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.ITypeHierarchy;
 
 /**
  * Command to retrieve the hierarchy of a class or interface.
+ * <p/>
+ * By default the supertypes of the focus type are returned, but the subtypes
+ * may be requested instead, in which case the number of nodes returned can be
+ * limited.
  *
  * @author Eric Van Dewoestine
  */
@@ -44,11 +51,26 @@ import org.eclipse.jdt.core.IType;
     "REQUIRED p project ARG," +
     "REQUIRED f file ARG," +
     "REQUIRED o offset ARG," +
-    "REQUIRED e encoding ARG"
+    "REQUIRED e encoding ARG," +
+    "OPTIONAL s subtypes NOARG," +
+    "OPTIONAL l limit ARG"
 )
 public class HierarchyCommand
   extends AbstractCommand
 {
+  private static final String SUBTYPES_OPTION = "s";
+  private static final String LIMIT_OPTION = "l";
+  private static final String JLO = "java.lang.Object";
+  private static final int DEFAULT_LIMIT = 500;
+
+  private static final Comparator<IType> TYPE_COMPARATOR =
+    new Comparator<IType>(){
+      public int compare(IType o1, IType o2)
+      {
+        return o1.getFullyQualifiedName().compareTo(o2.getFullyQualifiedName());
+      }
+    };
+
   @Override
   public Object execute(CommandLine commandLine)
     throws Exception
@@ -64,33 +86,71 @@ public class HierarchyCommand
 
     IType type = TypeUtils.getType(src, offset);
 
-    HierarchyNode hierarchy = new HierarchyNode(type, createChildNodes(type));
+    if (commandLine.hasOption(SUBTYPES_OPTION)){
+      int limit = DEFAULT_LIMIT;
+      if (commandLine.hasOption(LIMIT_OPTION)){
+        limit = commandLine.getIntValue(LIMIT_OPTION);
+      }
+      ITypeHierarchy hierarchy = TypeHierarchyCache.getTypeHierarchy(type);
+      int[] remaining = new int[]{limit};
+      return new HierarchyNode(
+          type, createSubtypeNodes(hierarchy, type, remaining));
+    }
 
-    return hierarchy;
+    ITypeHierarchy hierarchy = TypeHierarchyCache.getSupertypeHierarchy(type);
+    return new HierarchyNode(type, createChildNodes(
+          hierarchy, type, new HashMap<IType,HierarchyNode>()));
   }
 
-  private List<HierarchyNode> createChildNodes(IType type)
+  private List<HierarchyNode> createChildNodes(
+      ITypeHierarchy hierarchy, IType type, HashMap<IType,HierarchyNode> seen)
     throws Exception
   {
     ArrayList<HierarchyNode> nodes = new ArrayList<HierarchyNode>();
 
-    TypeInfo parentClassInfo = TypeUtils.getSuperClass(type);
-    String jlo = "java.lang.Object";
-    if (parentClassInfo != null){
-      IType parentClass = parentClassInfo.getType();
-      if(!jlo.equals(JavaUtils.getFullyQualifiedName(parentClass))){
-        nodes.add(new HierarchyNode(parentClass, createChildNodes(parentClass)));
-      }
+    IType parentClass = hierarchy.getSuperclass(type);
+    if (parentClass != null &&
+        !JLO.equals(JavaUtils.getFullyQualifiedName(parentClass)))
+    {
+      nodes.add(createNode(hierarchy, parentClass, seen));
     }
 
-    IType[] parentInterfaces = TypeUtils.getSuperInterfaces(type);
-    if(parentInterfaces.length != 0){
-      for(IType parentInterface : parentInterfaces){
-        nodes.add(new HierarchyNode(
-              parentInterface, createChildNodes(parentInterface)));
-      }
+    for(IType parentInterface : hierarchy.getSuperInterfaces(type)){
+      nodes.add(createNode(hierarchy, parentInterface, seen));
+    }
+
+    return nodes;
+  }
+
+  private HierarchyNode createNode(
+      ITypeHierarchy hierarchy, IType type, HashMap<IType,HierarchyNode> seen)
+    throws Exception
+  {
+    // interfaces shared by several types in the hierarchy (diamonds) only need
+    // to be built once.
+    HierarchyNode node = seen.get(type);
+    if (node == null){
+      node = new HierarchyNode(type, createChildNodes(hierarchy, type, seen));
+      seen.put(type, node);
     }
+    return node;
+  }
 
+  private List<HierarchyNode> createSubtypeNodes(
+      ITypeHierarchy hierarchy, IType type, int[] remaining)
+    throws Exception
+  {
+    ArrayList<HierarchyNode> nodes = new ArrayList<HierarchyNode>();
+    IType[] subtypes = hierarchy.getSubtypes(type);
+    Arrays.sort(subtypes, TYPE_COMPARATOR);
+    for(IType subtype : subtypes){
+      if (remaining[0] <= 0){
+        break;
+      }
+      remaining[0]--;
+      nodes.add(new HierarchyNode(
+            subtype, createSubtypeNodes(hierarchy, subtype, remaining)));
+    }
     return nodes;
   }
 }
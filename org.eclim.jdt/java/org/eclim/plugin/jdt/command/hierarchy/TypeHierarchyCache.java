@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.jdt.command.hierarchy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclim.logging.Logger;
+
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.ITypeHierarchy;
+import org.eclipse.jdt.core.ITypeHierarchyChangedListener;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Cache of type hierarchies keyed by the focus type.
+ * <p/>
+ * Each cached hierarchy is registered with a
+ * {@link ITypeHierarchyChangedListener} so that changes to the java model only
+ * mark the hierarchy as stale, which is then refreshed in place the next time
+ * it is requested rather than being rebuilt from scratch.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class TypeHierarchyCache
+{
+  private static final Logger logger =
+    Logger.getLogger(TypeHierarchyCache.class);
+
+  private static final int MAX_ENTRIES = 50;
+
+  private static final Map<String,Entry> entries =
+    new LinkedHashMap<String,Entry>(16, .75f, true){
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String,Entry> eldest)
+      {
+        if (size() > MAX_ENTRIES){
+          eldest.getValue().dispose();
+          return true;
+        }
+        return false;
+      }
+    };
+
+  private TypeHierarchyCache()
+  {
+  }
+
+  /**
+   * Gets the supertype hierarchy for the supplied type, creating it if
+   * necessary.
+   *
+   * @param type The focus type.
+   * @return The ITypeHierarchy.
+   */
+  public static ITypeHierarchy getSupertypeHierarchy(IType type)
+    throws JavaModelException
+  {
+    return getHierarchy(type, false);
+  }
+
+  /**
+   * Gets the full (supertypes and subtypes) hierarchy for the supplied type,
+   * creating it if necessary.
+   *
+   * @param type The focus type.
+   * @return The ITypeHierarchy.
+   */
+  public static ITypeHierarchy getTypeHierarchy(IType type)
+    throws JavaModelException
+  {
+    return getHierarchy(type, true);
+  }
+
+  /**
+   * Removes all cached hierarchies.
+   */
+  public static synchronized void clear()
+  {
+    for (Entry entry : entries.values()){
+      entry.dispose();
+    }
+    entries.clear();
+  }
+
+  private static ITypeHierarchy getHierarchy(IType type, boolean subtypes)
+    throws JavaModelException
+  {
+    String handle = type.getHandleIdentifier();
+
+    Entry entry = null;
+    synchronized(TypeHierarchyCache.class){
+      // a full hierarchy can satisfy a supertype request as well.
+      entry = entries.get(handle + ":true");
+      if (entry == null && !subtypes){
+        entry = entries.get(handle + ":false");
+      }
+
+      if (entry == null){
+        entry = new Entry();
+        entries.put(handle + ":" + subtypes, entry);
+      }
+    }
+
+    return entry.get(type, subtypes);
+  }
+
+  private static class Entry
+    implements ITypeHierarchyChangedListener
+  {
+    private ITypeHierarchy hierarchy;
+    private volatile boolean stale;
+    private boolean disposed;
+
+    public synchronized ITypeHierarchy get(IType type, boolean subtypes)
+      throws JavaModelException
+    {
+      // evicted while the request was in flight, so don't register a listener
+      // which nothing would ever remove.
+      if (disposed){
+        return subtypes ?
+          type.newTypeHierarchy(null) :
+          type.newSupertypeHierarchy(null);
+      }
+
+      if (hierarchy == null){
+        logger.debug("Creating type hierarchy for: {}",
+            type.getFullyQualifiedName());
+        hierarchy = subtypes ?
+          type.newTypeHierarchy(null) :
+          type.newSupertypeHierarchy(null);
+        hierarchy.addTypeHierarchyChangedListener(this);
+        stale = false;
+      }else if (stale || !hierarchy.exists()){
+        logger.debug("Refreshing type hierarchy for: {}",
+            type.getFullyQualifiedName());
+        stale = false;
+        hierarchy.refresh(null);
+      }
+      return hierarchy;
+    }
+
+    @Override
+    public void typeHierarchyChanged(ITypeHierarchy typeHierarchy)
+    {
+      stale = true;
+    }
+
+    public synchronized void dispose()
+    {
+      disposed = true;
+      if (hierarchy != null){
+        hierarchy.removeTypeHierarchyChangedListener(this);
+        hierarchy = null;
+      }
+    }
+  }
+}
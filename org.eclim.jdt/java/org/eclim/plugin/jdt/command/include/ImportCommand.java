@@ -29,6 +29,7 @@ import org.eclim.plugin.core.command.AbstractCommand;
 import org.eclim.plugin.core.util.ProjectUtils;
 
 import org.eclim.plugin.jdt.util.JavaUtils;
+import org.eclim.plugin.jdt.util.WorkingCopyManager;
 
 import org.eclim.util.file.Position;
 
@@ -56,8 +57,6 @@ import org.eclipse.jdt.internal.corext.codemanipulation.StubUtility;
 
 import org.eclipse.jdt.internal.corext.util.JavaModelUtil;
 
-import org.eclipse.jdt.ui.SharedASTProvider;
-
 import org.eclipse.text.edits.InsertEdit;
 import org.eclipse.text.edits.MultiTextEdit;
 import org.eclipse.text.edits.TextEdit;
@@ -93,8 +92,7 @@ public class ImportCommand
     TextEdit edits = null;
     int oldLength = src.getBuffer().getLength();
     if (type != null){
-      CompilationUnit astRoot = SharedASTProvider
-        .getAST(src, SharedASTProvider.WAIT_YES, null);
+      CompilationUnit astRoot = WorkingCopyManager.getAST(src);
 
       edits = new MultiTextEdit();
       ImportRewrite importRewrite = StubUtility.createImportRewrite(astRoot, true);
@@ -148,8 +146,7 @@ public class ImportCommand
           src.getJavaProject().getProject(),
           "org.eclim.java.import.package_separation_level");
     String lineDelim = src.findRecommendedLineSeparator();
-    CompilationUnit astRoot = SharedASTProvider
-      .getAST(src, SharedASTProvider.WAIT_YES, null);
+    CompilationUnit astRoot = WorkingCopyManager.getAST(src);
     ASTNode node = NodeFinder.perform(astRoot, offset, 1);
     MultiTextEdit edit = new MultiTextEdit();
     if (node != null && node.getNodeType() == ASTNode.IMPORT_DECLARATION){
@@ -32,6 +32,7 @@ import org.eclim.plugin.core.command.AbstractCommand;
 import org.eclim.plugin.core.util.ProjectUtils;
 
 import org.eclim.plugin.jdt.util.JavaUtils;
+import org.eclim.plugin.jdt.util.WorkingCopyManager;
 
 import org.eclim.util.file.Position;
 
@@ -52,8 +53,6 @@ import org.eclipse.jdt.internal.corext.util.JavaModelUtil;
 
 import org.eclipse.jdt.internal.ui.preferences.JavaPreferencesSettings;
 
-import org.eclipse.jdt.ui.SharedASTProvider;
-
 import org.eclipse.text.edits.TextEdit;
 
 /**
@@ -86,8 +85,7 @@ public class ImportOrganizeCommand
     ICompilationUnit src = JavaUtils.getCompilationUnit(projectName, file);
     IProject project = src.getJavaProject().getProject();
     int oldLength = src.getBuffer().getLength();
-    CompilationUnit astRoot = SharedASTProvider
-      .getAST(src, SharedASTProvider.WAIT_YES, null);
+    CompilationUnit astRoot = WorkingCopyManager.getAST(src);
 
     String[] typeNames = types != null ? StringUtils.split(types, ',') : null;
     ChooseImports query = new ChooseImports(project, typeNames);
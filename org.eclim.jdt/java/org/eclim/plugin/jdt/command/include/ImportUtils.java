@@ -23,6 +23,8 @@ import org.apache.commons.lang.StringUtils;
 
 import org.eclim.plugin.core.preference.Preferences;
 
+import org.eclim.plugin.jdt.util.WorkingCopyManager;
+
 import org.eclipse.core.resources.IProject;
 
 import org.eclipse.jdt.core.ICompilationUnit;
@@ -30,8 +32,6 @@ import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.ImportDeclaration;
 
-import org.eclipse.jdt.ui.SharedASTProvider;
-
 import org.eclipse.text.edits.InsertEdit;
 import org.eclipse.text.edits.MultiTextEdit;
 import org.eclipse.text.edits.TextEdit;
@@ -107,8 +107,7 @@ public class ImportUtils
     int separationLevel = preferences.getIntValue(
           src.getJavaProject().getProject(),
           "org.eclim.java.import.package_separation_level");
-    CompilationUnit astRoot = SharedASTProvider
-      .getAST(src, SharedASTProvider.WAIT_YES, null);
+    CompilationUnit astRoot = WorkingCopyManager.getAST(src);
 
     @SuppressWarnings("unchecked")
     List<ImportDeclaration> imports = astRoot.imports();
@@ -27,7 +27,9 @@ import org.eclim.command.Options;
 import org.eclim.plugin.core.command.AbstractCommand;
 
 import org.eclim.plugin.jdt.util.JavaUtils;
+import org.eclim.plugin.jdt.util.WorkingCopyManager;
 
+import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IMember;
 import org.eclipse.jdt.core.JavaModelException;
@@ -50,12 +52,18 @@ public class OutlineCommand
   public Object execute(CommandLine commandLine)
     throws Exception
   {
-    return extractOutlineFromElements(
-        JavaUtils
-        .getCompilationUnit(
-          commandLine.getValue(Options.PROJECT_OPTION),
-          commandLine.getValue(Options.FILE_OPTION))
-        .getChildren());
+    ICompilationUnit src = JavaUtils.getCompilationUnit(
+        commandLine.getValue(Options.PROJECT_OPTION),
+        commandLine.getValue(Options.FILE_OPTION));
+
+    // use the file's shared working copy, whose structure is kept in sync with
+    // the file, rather than re-opening the compilation unit.
+    ICompilationUnit workingCopy = WorkingCopyManager.acquire(src);
+    try{
+      return extractOutlineFromElements(workingCopy.getChildren());
+    }finally{
+      WorkingCopyManager.release(workingCopy);
+    }
   }
 
   private List<OutlineNode> extractOutlineFromElements(
@@ -18,16 +18,30 @@ package org.eclim.plugin.jdt.command.src;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 
 import java.net.URL;
 import java.net.URLClassLoader;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.eclim.Services;
 
 import org.eclim.annotation.Command;
@@ -43,10 +57,12 @@ import org.eclim.plugin.core.command.AbstractCommand;
 import org.eclim.plugin.core.preference.Preferences;
 
 import org.eclim.plugin.core.util.ProjectUtils;
+import org.eclim.plugin.core.util.WorkerPool;
 
 import org.eclim.plugin.jdt.util.JavaUtils;
 
 import org.eclim.util.IOUtils;
+import org.eclim.util.Metrics;
 import org.eclim.util.StringUtils;
 
 import org.eclim.util.file.FileUtils;
@@ -55,8 +71,12 @@ import org.eclipse.core.resources.IProject;
 
 import org.eclipse.core.runtime.IPath;
 
+import org.eclipse.jdt.core.ElementChangedEvent;
 import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElementDelta;
 import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
 
 import com.puppycrawl.tools.checkstyle.Checker;
@@ -69,7 +89,12 @@ import com.puppycrawl.tools.checkstyle.api.Configuration;
 import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
 
 /**
- * Command which invokes checkstyle on the specified file.
+ * Command which invokes checkstyle on the specified file(s).
+ * <p/>
+ * The loaded checkstyle configuration and project class loader are cached per
+ * project, along with configured Checker instances, and are only reloaded when
+ * the config or properties file is modified or a project classpath changes.
+ * Multiple files are checked in parallel on the shared {@link WorkerPool}.
  *
  * @author Eric Van Dewoestine
  */
@@ -77,7 +102,7 @@ import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
   name = "java_checkstyle",
   options =
     "REQUIRED p project ARG," +
-    "REQUIRED f file ARG"
+    "REQUIRED f file ANY"
 )
 public class CheckstyleCommand
   extends AbstractCommand
@@ -85,38 +110,162 @@ public class CheckstyleCommand
   private static final Logger logger =
     Logger.getLogger(CheckstyleCommand.class);
 
+  private static final Map<String,CachedChecker> checkers =
+    new ConcurrentHashMap<String,CachedChecker>();
+
+  // incremented whenever any java project's classpath changes, invalidating
+  // the cached project class loaders.
+  private static final AtomicLong classpathVersion = new AtomicLong();
+  private static boolean listening;
+
   @Override
   public Object execute(CommandLine commandLine)
     throws Exception
   {
     String name = commandLine.getValue(Options.PROJECT_OPTION);
-    String file = commandLine.getValue(Options.FILE_OPTION);
+    String[] files = commandLine.getValues(Options.FILE_OPTION);
 
     IProject project = ProjectUtils.getProject(name, true);
-    Preferences prefs = getPreferences();
 
+    long start = System.currentTimeMillis();
+    CachedChecker cached = getChecker(project);
+    try{
+      return check(project, files, cached, start);
+    }finally{
+      cached.release();
+    }
+  }
+
+  private List<Error> check(
+      IProject project, String[] files, CachedChecker cached, long start)
+    throws Exception
+  {
+    long configured = System.currentTimeMillis();
+    Metrics.add("checkstyle.config.millis", configured - start);
+
+    // split the files between workers, each with its own checker instance
+    // (a Checker isn't thread safe).
+    int threads = Math.min(files.length, WorkerPool.getSize());
+    List<List<File>> batches = new ArrayList<List<File>>();
+    for (int ii = 0; ii < threads; ii++){
+      batches.add(new ArrayList<File>());
+    }
+    for (int ii = 0; ii < files.length; ii++){
+      batches.get(ii % threads).add(
+          new File(ProjectUtils.getFilePath(project, files[ii])));
+    }
+
+    List<Error> errors = null;
+    if (threads == 1){
+      errors = cached.check(batches.get(0));
+    }else{
+      errors = new ArrayList<Error>();
+      for (List<Error> result : check(cached, batches)){
+        errors.addAll(result);
+      }
+
+      // order the errors by the order the files were supplied in.
+      final HashMap<String,Integer> order = new HashMap<String,Integer>();
+      for (int ii = 0; ii < files.length; ii++){
+        File file = batches.get(ii % threads).get(ii / threads);
+        order.put(file.getAbsolutePath().replace('\\', '/'), ii);
+      }
+      Collections.sort(errors, new Comparator<Error>(){
+        public int compare(Error e1, Error e2)
+        {
+          return getIndex(e1) - getIndex(e2);
+        }
+
+        private int getIndex(Error error)
+        {
+          Integer index = order.get(error.getFilename());
+          return index != null ? index.intValue() : Integer.MAX_VALUE;
+        }
+      });
+    }
+
+    long checked = System.currentTimeMillis();
+    Metrics.add("checkstyle.check.millis", checked - configured);
+    logger.debug("checkstyle: files: {} config: {}ms check: {}ms",
+        files.length, configured - start, checked - configured);
+
+    return errors;
+  }
+
+  private List<List<Error>> check(
+      final CachedChecker cached, List<List<File>> batches)
+    throws Exception
+  {
+    List<List<Error>> results = new ArrayList<List<Error>>();
+
+    // already running on a worker (invoked by another command), so check
+    // inline rather than waiting on the pool we're a part of.
+    if (WorkerPool.isWorker()){
+      for (List<File> batch : batches){
+        results.add(cached.check(batch));
+      }
+      return results;
+    }
+
+    ExecutorService executor = WorkerPool.getExecutor();
+    List<Future<List<Error>>> futures = new ArrayList<Future<List<Error>>>();
+    try{
+      for (final List<File> batch : batches){
+        futures.add(executor.submit(new Callable<List<Error>>(){
+          public List<Error> call()
+            throws Exception
+          {
+            return cached.check(batch);
+          }
+        }));
+      }
+
+      for (Future<List<Error>> future : futures){
+        try{
+          results.add(future.get());
+        }catch(ExecutionException ee){
+          if (ee.getCause() instanceof Exception){
+            throw (Exception)ee.getCause();
+          }
+          throw ee;
+        }
+      }
+      return results;
+    }finally{
+      // the pool is shared, so only cancel our own outstanding batches (if
+      // one of them failed).
+      for (Future<List<Error>> future : futures){
+        future.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Gets the cached checker configuration for the supplied project, creating
+   * a new one if the checkstyle config, properties, or the project classpath
+   * has changed since it was cached. The caller must release the returned
+   * checker when done with it.
+   */
+  private CachedChecker getChecker(IProject project)
+    throws Exception
+  {
+    listen();
+
+    Preferences prefs = getPreferences();
     String configFile =
       prefs.getValue(project, "org.eclim.java.checkstyle.config");
     String propsFile =
       prefs.getValue(project, "org.eclim.java.checkstyle.properties");
 
-    Properties properties = System.getProperties();
+    File pfile = null;
     if (propsFile != null && !propsFile.equals(StringUtils.EMPTY)){
-      FileInputStream fis = null;
-      try{
-        File pfile = new File(propsFile);
+      pfile = new File(propsFile);
+      if(!pfile.exists()){
+        pfile = new File(ProjectUtils.getFilePath(project, propsFile));
         if(!pfile.exists()){
-          pfile = new File(ProjectUtils.getFilePath(project, propsFile));
-          if(!pfile.exists()){
-            throw new RuntimeException(
-                Services.getMessage("file.not.found", configFile));
-          }
+          throw new RuntimeException(
+              Services.getMessage("file.not.found", propsFile));
         }
-        fis = new FileInputStream(pfile);
-        properties = new Properties();
-        properties.load(fis);
-      }finally{
-        IOUtils.closeQuietly(fis);
       }
     }
 
@@ -129,27 +278,159 @@ public class CheckstyleCommand
       configFile = projectConfigFile;
     }
 
-    Configuration config = ConfigurationLoader.loadConfiguration(
-        configFile, new PropertiesExpander(properties));
-    ClassLoader moduleClassLoader = new ProjectClassLoader(
-        JavaUtils.getJavaProject(project),
-        Checker.class.getClassLoader());
-    Checker checker = new Checker();
-    CheckstyleListener listener = new CheckstyleListener();
+    String key = configFile + ':' + new File(configFile).lastModified();
+    if (pfile != null){
+      key += ':' + pfile.getPath() + ':' + pfile.lastModified();
+    }
+    key += ':' + classpathVersion.get();
+
+    String name = project.getName();
+    synchronized(checkers){
+      CachedChecker cached = checkers.get(name);
+      if (cached != null && cached.key.equals(key)){
+        Metrics.increment("checkstyle.cache.hit");
+        cached.acquire();
+        return cached;
+      }
 
-    try{
-      List<File> files = new ArrayList<File>();
-      files.add(new File(ProjectUtils.getFilePath(project, file)));
+      Metrics.increment("checkstyle.cache.miss");
+      if (cached != null){
+        cached.dispose();
+      }
 
-      checker.setModuleClassLoader(moduleClassLoader);
-      checker.configure(config);
-      checker.addListener(listener);
-      checker.process(files);
-    }finally{
-      checker.destroy();
+      Properties properties = System.getProperties();
+      if (pfile != null){
+        FileInputStream fis = null;
+        try{
+          fis = new FileInputStream(pfile);
+          properties = new Properties();
+          properties.load(fis);
+        }finally{
+          IOUtils.closeQuietly(fis);
+        }
+      }
+
+      Configuration config = ConfigurationLoader.loadConfiguration(
+          configFile, new PropertiesExpander(properties));
+      URLClassLoader moduleClassLoader = new ProjectClassLoader(
+          JavaUtils.getJavaProject(project),
+          Checker.class.getClassLoader());
+      cached = new CachedChecker(key, config, moduleClassLoader);
+      checkers.put(name, cached);
+      cached.acquire();
+      return cached;
     }
+  }
 
-    return listener.getErrors();
+  private static synchronized void listen()
+  {
+    if (listening){
+      return;
+    }
+
+    JavaCore.addElementChangedListener(new IElementChangedListener(){
+      public void elementChanged(ElementChangedEvent event)
+      {
+        int flags = IJavaElementDelta.F_CLASSPATH_CHANGED |
+          IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED;
+        for (IJavaElementDelta delta : event.getDelta().getAffectedChildren()){
+          if ((delta.getFlags() & flags) != 0 ||
+              delta.getKind() != IJavaElementDelta.CHANGED)
+          {
+            classpathVersion.incrementAndGet();
+            return;
+          }
+        }
+      }
+    }, ElementChangedEvent.POST_CHANGE);
+    listening = true;
+  }
+
+  /**
+   * Holds the loaded configuration and class loader for a project along with
+   * a pool of configured Checker instances ready for use.
+   * <p/>
+   * The class loader is closed once the instance has been replaced and the
+   * last command using it has released it.
+   */
+  private static class CachedChecker
+  {
+    private String key;
+    private Configuration config;
+    private URLClassLoader moduleClassLoader;
+    private ConcurrentLinkedQueue<Checker> idle =
+      new ConcurrentLinkedQueue<Checker>();
+    private volatile boolean disposed;
+    private int active;
+
+    public CachedChecker(
+        String key, Configuration config, URLClassLoader moduleClassLoader)
+    {
+      this.key = key;
+      this.config = config;
+      this.moduleClassLoader = moduleClassLoader;
+    }
+
+    public List<Error> check(List<File> files)
+      throws Exception
+    {
+      Checker checker = idle.poll();
+      if (checker == null){
+        checker = new Checker();
+        checker.setModuleClassLoader(moduleClassLoader);
+        checker.configure(config);
+      }
+
+      CheckstyleListener listener = new CheckstyleListener();
+      boolean reuse = false;
+      try{
+        checker.addListener(listener);
+        checker.process(files);
+        reuse = true;
+      }finally{
+        checker.removeListener(listener);
+        if (reuse && !disposed){
+          idle.offer(checker);
+        }else{
+          checker.destroy();
+        }
+      }
+      return listener.getErrors();
+    }
+
+    public synchronized void acquire()
+    {
+      active++;
+    }
+
+    public synchronized void release()
+    {
+      active--;
+      if (disposed && active == 0){
+        close();
+      }
+    }
+
+    public synchronized void dispose()
+    {
+      disposed = true;
+      Checker checker = null;
+      while ((checker = idle.poll()) != null){
+        checker.destroy();
+      }
+      if (active == 0){
+        close();
+      }
+    }
+
+    private void close()
+    {
+      try{
+        moduleClassLoader.close();
+      }catch(IOException ioe){
+        logger.debug("Error closing checkstyle class loader.", ioe);
+      }
+    }
   }
 
   private static class CheckstyleListener
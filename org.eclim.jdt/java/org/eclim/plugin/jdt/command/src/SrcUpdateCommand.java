@@ -16,6 +16,8 @@
  */
 package org.eclim.plugin.jdt.command.src;
 
+import java.io.ByteArrayInputStream;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -32,8 +34,10 @@ import org.eclim.plugin.core.command.AbstractCommand;
 import org.eclim.plugin.core.util.ProjectUtils;
 
 import org.eclim.plugin.jdt.util.JavaUtils;
+import org.eclim.plugin.jdt.util.WorkingCopyManager;
 
 import org.eclim.util.file.FileOffsets;
+import org.eclim.util.file.FileUtils;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IncrementalProjectBuilder;
@@ -56,7 +60,9 @@ import org.eclipse.jdt.core.compiler.IProblem;
     "REQUIRED p project ARG," +
     "REQUIRED f file ARG," +
     "OPTIONAL v validate NOARG," +
-    "OPTIONAL b build NOARG"
+    "OPTIONAL b build NOARG," +
+    "OPTIONAL e encoding ARG," +
+    "OPTIONAL s stdin NOARG"
 )
 public class SrcUpdateCommand
   extends AbstractCommand
@@ -80,13 +86,34 @@ public class SrcUpdateCommand
       // JavaUtils refreshes the file when getting it.
       IJavaProject javaProject = JavaUtils.getJavaProject(project);
       ICompilationUnit src = JavaUtils.getCompilationUnit(javaProject, file);
+      String filename = src.getResource()
+        .getLocation().toOSString().replace('\\', '/');
 
-      IProblem[] problems = JavaUtils.getProblems(src);
+      // validate the unsaved buffer contents, if supplied, using the file's
+      // in memory working copy.
+      IProblem[] problems = null;
+      FileOffsets offsets = null;
+      String contents = getStdinContents(commandLine);
+      if (contents != null){
+        ICompilationUnit workingCopy =
+          WorkingCopyManager.acquire(src, contents);
+        try{
+          problems = JavaUtils.getProblems(workingCopy);
+        }finally{
+          WorkingCopyManager.release(workingCopy);
+        }
+        String encoding = commandLine.getValue(Options.ENCODING_OPTION);
+        if (encoding == null){
+          encoding = FileUtils.UTF8;
+        }
+        offsets = FileOffsets.compile(
+            new ByteArrayInputStream(contents.getBytes(encoding)), encoding);
+      }else{
+        problems = JavaUtils.getProblems(src);
+        offsets = FileOffsets.compile(filename);
+      }
 
       ArrayList<Error> errors = new ArrayList<Error>();
-      String filename = src.getResource()
-        .getLocation().toOSString().replace('\\', '/');
-      FileOffsets offsets = FileOffsets.compile(filename);
       for(IProblem problem : problems){
         // exclude TODO, etc
         if (problem.getID() == IProblem.Task){
@@ -21,9 +21,14 @@ import java.io.FileInputStream;
 import java.io.IOException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -38,6 +43,7 @@ import org.eclim.command.Options;
 import org.eclim.plugin.core.project.ProjectManager;
 
 import org.eclim.plugin.core.util.ProjectUtils;
+import org.eclim.plugin.core.util.WorkerPool;
 import org.eclim.plugin.core.util.XmlUtils;
 
 import org.eclim.plugin.jdt.PluginResources;
@@ -50,6 +56,7 @@ import org.eclim.plugin.jdt.project.classpath.Parser;
 import org.eclim.plugin.jdt.util.JavaUtils;
 
 import org.eclim.util.IOUtils;
+import org.eclim.util.Metrics;
 
 import org.eclim.util.file.FileOffsets;
 import org.eclim.util.file.FileUtils;
@@ -96,6 +103,9 @@ public class JavaProjectManager
   private static final String CLASSPATH_XSD =
     "/resources/schema/eclipse/classpath.xsd";
 
+  // minimum number of entries per thread when validating the classpath.
+  private static final int VALIDATE_BATCH_SIZE = 25;
+
   private static final HashMap<String, Parser> PARSERS =
     new HashMap<String, Parser>();
   static{
@@ -347,12 +357,12 @@ public class JavaProjectManager
     try{
       FileOffsets offsets = FileOffsets.compile(classpath);
       String classpathValue = IOUtils.toString(new FileInputStream(classpath));
-      for(IClasspathEntry entry : entries){
-        IJavaModelStatus status = JavaConventions
-          .validateClasspathEntry(javaProject, entry, true);
-        if(!status.isOK()){
+      IJavaModelStatus[] statuses = validateEntries(javaProject, entries);
+      for(int ii = 0; ii < entries.length; ii++){
+        if(!statuses[ii].isOK()){
           errors.add(createErrorForEntry(
-                javaProject, entry, status, offsets, classpath, classpathValue));
+                javaProject, entries[ii], statuses[ii],
+                offsets, classpath, classpathValue));
         }
       }
 
@@ -362,8 +372,14 @@ public class JavaProjectManager
       // always set the classpathValue anyways, so that the user can correct the
       // file.
       //if(status.isOK() && errors.isEmpty()){
-        javaProject.setRawClasspath(entries, null);
-        javaProject.makeConsistent(null);
+        // setting the classpath triggers a re-resolve of the whole classpath
+        // and a rebuild, so avoid it when nothing has changed.
+        if (!Arrays.equals(entries, javaProject.getRawClasspath())){
+          javaProject.setRawClasspath(entries, null);
+          javaProject.makeConsistent(null);
+        }else{
+          Metrics.increment("classpath.unchanged");
+        }
       //}
 
       if(!status.isOK()){
@@ -377,6 +393,57 @@ public class JavaProjectManager
     return errors;
   }
 
+  /**
+   * Validates the supplied classpath entries. Validating an entry checks that
+   * the artifacts it references exist, so for large classpaths the entries are
+   * validated in parallel on the shared {@link WorkerPool}.
+   *
+   * @param javaProject The project.
+   * @param entries The classpath entries.
+   * @return The status of each entry, in the same order as the entries.
+   */
+  protected IJavaModelStatus[] validateEntries(
+      final IJavaProject javaProject, final IClasspathEntry[] entries)
+  {
+    final IJavaModelStatus[] statuses = new IJavaModelStatus[entries.length];
+    int threads = Math.min(
+        entries.length / VALIDATE_BATCH_SIZE, WorkerPool.getSize());
+    if (threads < 2 || WorkerPool.isWorker()){
+      for(int ii = 0; ii < entries.length; ii++){
+        statuses[ii] = JavaConventions
+          .validateClasspathEntry(javaProject, entries[ii], true);
+      }
+      return statuses;
+    }
+
+    ExecutorService executor = WorkerPool.getExecutor();
+    ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+    try{
+      for(int ii = 0; ii < entries.length; ii++){
+        final int index = ii;
+        futures.add(executor.submit(new Runnable(){
+          public void run()
+          {
+            statuses[index] = JavaConventions
+              .validateClasspathEntry(javaProject, entries[index], true);
+          }
+        }));
+      }
+      for (Future<?> future : futures){
+        future.get();
+      }
+    }catch(InterruptedException ie){
+      throw new RuntimeException(ie);
+    }catch(ExecutionException ee){
+      throw new RuntimeException(ee.getCause());
+    }finally{
+      for (Future<?> future : futures){
+        future.cancel(true);
+      }
+    }
+    return statuses;
+  }
+
   /**
    * Creates an Error from the supplied IJavaModelStatus.
    *
@@ -19,33 +19,65 @@ package org.eclim.plugin.jdt.project.classpath;
 import java.io.File;
 import java.io.IOException;
 
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
+import org.eclim.util.Metrics;
+
 import org.w3c.dom.Document;
 
 import org.xml.sax.SAXException;
 
 /**
  * Abstract base class for parsers that work with xml files.
+ * <p/>
+ * The dependencies parsed from a file are cached until the file's
+ * modification time or length changes.
  *
  * @author Eric Van Dewoestine
  */
 public abstract class AbstractXmlParser
   implements Parser
 {
-  private static DocumentBuilderFactory factory;
+  private static final DocumentBuilderFactory factory =
+    DocumentBuilderFactory.newInstance();
+
+  private final Map<String,Entry> cache = new ConcurrentHashMap<String,Entry>();
 
   @Override
   public Dependency[] parse(String filename)
   {
-    if(factory == null){
-      factory = DocumentBuilderFactory.newInstance();
+    // checked on every parse, since the cached dependencies are only valid
+    // while the variable is set.
+    checkClasspathVar();
+
+    File file = new File(filename);
+    String key = file.getAbsolutePath();
+    long modified = file.lastModified();
+    long length = file.length();
+
+    Entry entry = cache.get(key);
+    if (entry != null && entry.modified == modified && entry.length == length){
+      Metrics.increment("classpath.buildfile.cache.hit");
+      return entry.dependencies.clone();
     }
 
+    Metrics.increment("classpath.buildfile.cache.miss");
     try{
-      Document document = factory.newDocumentBuilder().parse(new File(filename));
-      return parse(document);
+      Document document = null;
+      synchronized(factory){
+        document = factory.newDocumentBuilder().parse(file);
+      }
+      entry = new Entry();
+      entry.modified = modified;
+      entry.length = length;
+      entry.dependencies = parse(document);
+      cache.put(key, entry);
+      return entry.dependencies.clone();
     }catch(IOException ioe){
       throw new RuntimeException(ioe);
     }catch(SAXException se){
@@ -55,6 +87,14 @@ public abstract class AbstractXmlParser
     }
   }
 
+  /**
+   * Ensures that the classpath variable the dependencies are relative to is
+   * defined.
+   *
+   * @throws IllegalStateException if the variable is not set.
+   */
+  protected abstract void checkClasspathVar();
+
   /**
    * Parse the dependencies from the supplied document.
    *
@@ -62,4 +102,11 @@ public abstract class AbstractXmlParser
    * @return The array of Dependency.
    */
   public abstract Dependency[] parse(Document document);
+
+  private static class Entry
+  {
+    public long modified;
+    public long length;
+    public Dependency[] dependencies;
+  }
 }
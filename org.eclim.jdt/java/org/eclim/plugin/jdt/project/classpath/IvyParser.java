@@ -55,6 +55,15 @@ public class IvyParser
     return IVY_REPO;
   }
 
+  @Override
+  protected void checkClasspathVar()
+  {
+    if(JavaCore.getClasspathVariable(IVY_REPO) == null){
+      throw new IllegalStateException(
+          Services.getMessage("ivy.repo.not.set", IVY_REPO));
+    }
+  }
+
   @Override
   public Dependency[] parse(Document document)
   {
@@ -63,10 +72,6 @@ public class IvyParser
           "/ivy-module/dependencies/dependency");
     }
 
-    if(JavaCore.getClasspathVariable(IVY_REPO) == null){
-      throw new IllegalStateException(
-          Services.getMessage("ivy.repo.not.set", IVY_REPO));
-    }
     IPath path = new Path(IVY_REPO);
 
     NodeList results = null;
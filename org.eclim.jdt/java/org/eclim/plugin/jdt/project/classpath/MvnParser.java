@@ -57,6 +57,15 @@ public class MvnParser
     return MVN_REPO;
   }
 
+  @Override
+  protected void checkClasspathVar()
+  {
+    if(JavaCore.getClasspathVariable(MVN_REPO) == null){
+      throw new IllegalStateException(
+          Services.getMessage("mvn.repo.not.set", MVN_REPO));
+    }
+  }
+
   @Override
   public Dependency[] parse(Document document)
   {
@@ -65,10 +74,6 @@ public class MvnParser
           "/project/dependencies/dependency");
     }
 
-    if(JavaCore.getClasspathVariable(MVN_REPO) == null){
-      throw new IllegalStateException(
-          Services.getMessage("mvn.repo.not.set", MVN_REPO));
-    }
     IPath path = new Path(MVN_REPO);
 
     NodeList results = null;
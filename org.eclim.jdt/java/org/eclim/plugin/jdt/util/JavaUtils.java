@@ -736,18 +736,11 @@ public class JavaUtils
    */
   public static IProblem[] getProblems(ICompilationUnit src, int[] ids)
   {
+    // the problems are computed by reconciling the file's managed working
+    // copy, which is shared with other commands operating on the same file.
     ProblemRequestor requestor = new ProblemRequestor(ids);
-    try{
-      ICompilationUnit workingCopy = src.getWorkingCopy(null);
-
-      try{
-        workingCopy.discardWorkingCopy();
-        workingCopy.becomeWorkingCopy(requestor, null);
-      }finally{
-        workingCopy.discardWorkingCopy();
-      }
-    }catch(CoreException ce){
-      throw new RuntimeException(ce);
+    for (IProblem problem : WorkingCopyManager.getProblems(src)){
+      requestor.acceptProblem(problem);
     }
     List<IProblem> problems = requestor.getProblems();
     return (IProblem[])problems.toArray(new IProblem[problems.size()]);
@@ -0,0 +1,587 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.jdt.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclim.logging.Logger;
+
+import org.eclim.util.Metrics;
+
+import org.eclipse.core.resources.IResource;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IBuffer;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IProblemRequestor;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.WorkingCopyOwner;
+
+import org.eclipse.jdt.core.compiler.IProblem;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
+
+/**
+ * Manages long lived, in memory working copies for the java files open in the
+ * editor, so that validation, correction, import, etc. can share a single
+ * reconciled AST and set of problems per file instead of each building their
+ * own from scratch.
+ * <p/>
+ * A working copy tracks either the saved file (re-synced whenever the file's
+ * modification stamp changes) or the unsaved contents last supplied by the
+ * client. The AST and problems are only recomputed, via an incremental
+ * reconcile, when those contents change or when something else in the java
+ * model (outside of the managed working copies) has changed since the last
+ * reconcile.
+ * <p/>
+ * Callers using a working copy directly must {@link #acquire acquire} it and
+ * {@link #release release} it once done. Working copies are discarded when
+ * the client closes the file, and the number kept alive is capped by
+ * discarding the least recently used, but never while still in use.
+ * <p/>
+ * Each working copy is synced, reconciled, and discarded while holding its
+ * own lock, and the lock guarding the bookkeeping of the managed working
+ * copies is only held briefly, so work on one file never waits on work on
+ * another.
+ * <p/>
+ * Files which aren't already managed (bulk validation of a project, etc.) are
+ * validated using a short lived working copy, so that they don't evict the
+ * working copies of the files the user is editing.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class WorkingCopyManager
+{
+  private static final Logger logger =
+    Logger.getLogger(WorkingCopyManager.class);
+
+  private static final int MAX_ENTRIES = 10;
+
+  private static final int RECONCILE_FLAGS =
+    ICompilationUnit.FORCE_PROBLEM_DETECTION |
+    ICompilationUnit.ENABLE_STATEMENTS_RECOVERY |
+    ICompilationUnit.ENABLE_BINDINGS_RECOVERY;
+
+  // access ordered, so iteration starts with the least recently used. guards
+  // (via synchronized(entries)) the bookkeeping of both maps and each entry's
+  // refs and closed flag, but is never held while using a working copy.
+  private static final LinkedHashMap<String,Entry> entries =
+    new LinkedHashMap<String,Entry>(16, .75f, true);
+
+  private static final IdentityHashMap<ICompilationUnit,Entry> acquired =
+    new IdentityHashMap<ICompilationUnit,Entry>();
+
+  private static final AtomicLong modelVersion = new AtomicLong();
+  private static boolean listening;
+
+  private WorkingCopyManager()
+  {
+  }
+
+  /**
+   * Acquires the managed working copy for the supplied compilation unit,
+   * synced with the saved contents of the file. The working copy must be
+   * released via {@link #release(ICompilationUnit)} once no longer needed.
+   *
+   * @param src The compilation unit.
+   * @return The working copy.
+   */
+  public static ICompilationUnit acquire(ICompilationUnit src)
+  {
+    return acquire(src, null);
+  }
+
+  /**
+   * Acquires the managed working copy for the supplied compilation unit,
+   * synced with the supplied unsaved contents. The working copy must be
+   * released via {@link #release(ICompilationUnit)} once no longer needed.
+   *
+   * @param src The compilation unit.
+   * @param contents The current (unsaved) contents of the file, or null to
+   * sync with the saved file.
+   * @return The working copy.
+   */
+  public static ICompilationUnit acquire(
+      ICompilationUnit src, String contents)
+  {
+    Entry entry = pin(src);
+    boolean success = false;
+    try{
+      synchronized(entry){
+        entry.open();
+        if (contents != null){
+          entry.syncWithContents(contents);
+        }else{
+          entry.syncWithFile();
+        }
+      }
+      success = true;
+    }catch(JavaModelException jme){
+      throw new RuntimeException(jme);
+    }finally{
+      if (!success){
+        unpin(entry);
+      }
+    }
+
+    synchronized(entries){
+      acquired.put(entry.workingCopy, entry);
+    }
+    return entry.workingCopy;
+  }
+
+  /**
+   * Releases a working copy previously obtained via one of the acquire
+   * methods.
+   *
+   * @param workingCopy The working copy (null is ignored).
+   */
+  public static void release(ICompilationUnit workingCopy)
+  {
+    Entry entry;
+    synchronized(entries){
+      entry = workingCopy != null ? acquired.get(workingCopy) : null;
+    }
+    if (entry != null){
+      unpin(entry);
+    }
+  }
+
+  /**
+   * Gets the reconciled AST, with bindings resolved, for the supplied
+   * compilation unit. If the supplied unit is not a working copy obtained from
+   * this manager, the AST will reflect the saved contents of the file.
+   * <p/>
+   * The returned AST is shared, so callers must not modify it.
+   *
+   * @param src The compilation unit or managed working copy.
+   * @return The AST.
+   */
+  public static CompilationUnit getAST(ICompilationUnit src)
+  {
+    Entry entry = pin(src);
+    try{
+      synchronized(entry){
+        reconcile(entry, src);
+        return entry.ast;
+      }
+    }finally{
+      unpin(entry);
+    }
+  }
+
+  /**
+   * Gets the problems for the supplied compilation unit. If the supplied unit
+   * is not a working copy obtained from this manager, the problems will
+   * reflect the saved contents of the file.
+   *
+   * @param src The compilation unit or managed working copy.
+   * @return The problems.
+   */
+  public static IProblem[] getProblems(ICompilationUnit src)
+  {
+    Entry entry;
+    synchronized(entries){
+      entry = acquired.get(src);
+      if (entry == null){
+        entry = entries.get(getKey(src));
+      }
+      if (entry != null){
+        entry.refs++;
+      }
+    }
+
+    // not a file being edited, so don't evict one that is.
+    if (entry == null){
+      Metrics.increment("jdt.working_copy.transient");
+      entry = new Entry(src.getPrimary());
+      try{
+        synchronized(entry){
+          entry.open();
+          entry.syncWithFile();
+          entry.reconcile();
+          return entry.problems;
+        }
+      }catch(JavaModelException jme){
+        throw new RuntimeException(jme);
+      }finally{
+        entry.discard();
+      }
+    }
+
+    try{
+      synchronized(entry){
+        reconcile(entry, src);
+        return entry.problems;
+      }
+    }finally{
+      unpin(entry);
+    }
+  }
+
+  /**
+   * Discards the working copy, if any, for the supplied compilation unit once
+   * it is no longer in use.
+   *
+   * @param src The compilation unit.
+   */
+  public static void close(ICompilationUnit src)
+  {
+    Entry entry;
+    synchronized(entries){
+      entry = entries.remove(getKey(src));
+      if (entry == null){
+        return;
+      }
+      entry.closed = true;
+      if (entry.refs > 0){
+        return;
+      }
+    }
+    entry.discard();
+  }
+
+  /**
+   * Discards all managed working copies once they are no longer in use.
+   */
+  public static void clear()
+  {
+    ArrayList<Entry> unused = new ArrayList<Entry>();
+    synchronized(entries){
+      for (Entry entry : entries.values()){
+        entry.closed = true;
+        if (entry.refs == 0){
+          unused.add(entry);
+        }
+      }
+      entries.clear();
+    }
+    discard(unused);
+  }
+
+  /**
+   * Gets (creating if necessary) the entry for the supplied compilation unit
+   * or managed working copy, marking it as in use so that it won't be
+   * discarded until {@link #unpin(Entry)} is called.
+   */
+  private static Entry pin(ICompilationUnit src)
+  {
+    List<Entry> evicted = new ArrayList<Entry>();
+    Entry entry;
+    synchronized(entries){
+      if (!listening){
+        JavaCore.addElementChangedListener(new IElementChangedListener(){
+          public void elementChanged(ElementChangedEvent event)
+          {
+            if (isRelevant(event.getDelta())){
+              modelVersion.incrementAndGet();
+            }
+          }
+        }, ElementChangedEvent.POST_CHANGE);
+        listening = true;
+      }
+
+      entry = acquired.get(src);
+      if (entry == null){
+        String key = getKey(src);
+        entry = entries.get(key);
+        if (entry == null){
+          entry = new Entry(src.getPrimary());
+          entries.put(key, entry);
+          entry.refs++;
+          evicted = trim();
+        }else{
+          entry.refs++;
+        }
+      }else{
+        entry.refs++;
+      }
+    }
+    discard(evicted);
+    return entry;
+  }
+
+  /**
+   * Marks the supplied entry as no longer in use by the caller, discarding it
+   * if it has been closed or evicting the least recently used entries if
+   * there are too many.
+   */
+  private static void unpin(Entry entry)
+  {
+    List<Entry> unused;
+    synchronized(entries){
+      entry.refs--;
+      if (entry.refs > 0){
+        return;
+      }
+      if (entry.workingCopy != null){
+        acquired.remove(entry.workingCopy);
+      }
+      if (entry.closed){
+        unused = new ArrayList<Entry>();
+        unused.add(entry);
+      }else{
+        unused = trim();
+      }
+    }
+    discard(unused);
+  }
+
+  /**
+   * Removes the least recently used entries not currently in use until no
+   * more than the max are being held, returning those removed so they can be
+   * discarded once the map lock has been released.
+   */
+  private static List<Entry> trim()
+  {
+    ArrayList<Entry> evicted = new ArrayList<Entry>();
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (entries.size() > MAX_ENTRIES && iterator.hasNext()){
+      Entry entry = iterator.next();
+      if (entry.refs == 0){
+        iterator.remove();
+        entry.closed = true;
+        evicted.add(entry);
+        Metrics.increment("jdt.working_copy.evicted");
+      }
+    }
+    return evicted;
+  }
+
+  private static void discard(List<Entry> entries)
+  {
+    for (Entry entry : entries){
+      entry.discard();
+    }
+  }
+
+  /**
+   * Reconciles the supplied entry, first syncing it with the saved file if
+   * the caller isn't using the working copy itself. Must be called while
+   * holding the entry's lock.
+   */
+  private static void reconcile(Entry entry, ICompilationUnit src)
+  {
+    try{
+      entry.open();
+      if (entry.workingCopy != src){
+        entry.syncWithFile();
+      }
+      entry.reconcile();
+    }catch(JavaModelException jme){
+      throw new RuntimeException(jme);
+    }
+  }
+
+  /**
+   * Determines if the supplied delta could affect the AST or problems of
+   * another file. Changes to working copies other than the primary ones (like
+   * the managed working copies, which are created, discarded, and reconciled
+   * here) are only visible to their owner, so they can be ignored.
+   */
+  private static boolean isRelevant(IJavaElementDelta delta)
+  {
+    IJavaElement element = delta.getElement();
+    if (element instanceof ICompilationUnit){
+      return ((ICompilationUnit)element).getOwner() == null;
+    }
+
+    IJavaElementDelta[] children = delta.getAffectedChildren();
+    if (children.length == 0){
+      return true;
+    }
+    for (IJavaElementDelta child : children){
+      if (isRelevant(child)){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String getKey(ICompilationUnit src)
+  {
+    return src.getPath().toString();
+  }
+
+  /**
+   * A managed working copy. The working copy itself is only created, used,
+   * and discarded while holding the entry's lock, so work on one file never
+   * waits on work on another.
+   */
+  private static class Entry
+  {
+    private final ICompilationUnit src;
+    private volatile ICompilationUnit workingCopy;
+    private Requestor requestor = new Requestor();
+
+    // guarded by the entries map.
+    private int refs;
+    private boolean closed;
+
+    private long stamp = IResource.NULL_STAMP;
+    private boolean dirty = true;
+    private long reconciledVersion = -1;
+
+    private CompilationUnit ast;
+    private IProblem[] problems;
+
+    public Entry(ICompilationUnit src)
+    {
+      this.src = src;
+    }
+
+    /**
+     * Creates the working copy if it hasn't been already.
+     */
+    public void open()
+      throws JavaModelException
+    {
+      if (workingCopy != null){
+        return;
+      }
+
+      logger.debug("Creating working copy: {}", src.getPath());
+      Metrics.increment("jdt.working_copy.created");
+      final Requestor requestor = this.requestor;
+      WorkingCopyOwner owner = new WorkingCopyOwner(){
+        @Override
+        @SuppressWarnings("deprecation")
+        public IProblemRequestor getProblemRequestor(ICompilationUnit unit)
+        {
+          return requestor;
+        }
+      };
+      workingCopy = src.getWorkingCopy(owner, null);
+
+      IResource resource = workingCopy.getResource();
+      if (resource != null){
+        stamp = resource.getModificationStamp();
+      }
+    }
+
+    /**
+     * Re-syncs the working copy with the saved file if it is currently holding
+     * unsaved contents or the file has changed since it was last synced.
+     */
+    public void syncWithFile()
+      throws JavaModelException
+    {
+      IResource resource = workingCopy.getResource();
+      long current = resource != null ?
+        resource.getModificationStamp() : IResource.NULL_STAMP;
+      if (stamp == IResource.NULL_STAMP || stamp != current){
+        logger.debug("Syncing working copy: {}", workingCopy.getPath());
+        workingCopy.restore();
+        stamp = current;
+        dirty = true;
+      }
+    }
+
+    public void syncWithContents(String contents)
+      throws JavaModelException
+    {
+      IBuffer buffer = workingCopy.getBuffer();
+      if (!contents.equals(buffer.getContents())){
+        buffer.setContents(contents);
+        dirty = true;
+      }
+      // force a re-sync with the file the next time the saved contents are
+      // requested.
+      stamp = IResource.NULL_STAMP;
+    }
+
+    public void reconcile()
+      throws JavaModelException
+    {
+      long version = modelVersion.get();
+      if (!dirty && ast != null && reconciledVersion == version){
+        return;
+      }
+
+      logger.debug("Reconciling working copy: {}", workingCopy.getPath());
+      Metrics.increment("jdt.working_copy.reconcile");
+      requestor.problems.clear();
+      ast = workingCopy.reconcile(
+          ASTProvider.SHARED_AST_LEVEL, RECONCILE_FLAGS, null, null);
+      problems = requestor.problems.toArray(
+          new IProblem[requestor.problems.size()]);
+      dirty = false;
+      reconciledVersion = version;
+    }
+
+    public synchronized void discard()
+    {
+      if (workingCopy == null){
+        return;
+      }
+
+      logger.debug("Discarding working copy: {}", workingCopy.getPath());
+      ast = null;
+      problems = null;
+      try{
+        workingCopy.discardWorkingCopy();
+      }catch(JavaModelException jme){
+        logger.error("Unable to discard working copy", jme);
+      }
+    }
+  }
+
+  /**
+   * Collects the problems reported during a reconcile (having an active
+   * requestor also ensures the reconciled AST has its bindings resolved).
+   */
+  private static class Requestor
+    implements IProblemRequestor
+  {
+    private ArrayList<IProblem> problems = new ArrayList<IProblem>();
+
+    @Override
+    public void acceptProblem(IProblem problem)
+    {
+      problems.add(problem);
+    }
+
+    @Override
+    public void beginReporting()
+    {
+      problems.clear();
+    }
+
+    @Override
+    public void endReporting()
+    {
+    }
+
+    @Override
+    public boolean isActive()
+    {
+      return true;
+    }
+  }
+}
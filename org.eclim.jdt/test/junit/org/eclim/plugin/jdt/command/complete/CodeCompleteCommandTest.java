@@ -103,6 +103,123 @@ public class CodeCompleteCommandTest
     assertEquals(result.get("type"), "f");
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void completionLazyInfo()
+  {
+    Map<String,Object> results = (Map<String,Object>)
+      Eclim.execute(new String[]{
+        "java_complete", "-p", Jdt.TEST_PROJECT,
+        "-f", TEST_FILE,
+        "-o", "266", "-e", "utf-8", "-l", "standard", "-i"
+      });
+    List<Map<String,Object>> completions = (List<Map<String,Object>>)
+      results.get("completions");
+
+    Map<String,Object> result = completions.get(0);
+    assertEquals(result.get("completion"), "add(");
+    assertEquals(result.get("menu"), "add(int index, Object element) : void - List");
+    assertEquals(result.get("info"), "");
+    assertNotNull(result.get("handle"));
+
+    Map<String,Object> info = (Map<String,Object>)
+      Eclim.execute(new String[]{
+        "completion_info", "-h", (String)result.get("handle")
+      });
+    assertTrue("Missing info.", ((String)info.get("info")).length() > 0);
+    assertTrue("Wrong javadoc uri.",
+        ((String)info.get("javaDocURI")).startsWith("eclipse-javadoc:"));
+
+    // starting a new completion session discards the old handles.
+    Eclim.execute(new String[]{
+      "java_complete", "-p", Jdt.TEST_PROJECT,
+      "-f", TEST_FILE,
+      "-o", "184", "-e", "utf-8", "-l", "standard", "-i"
+    });
+    Object expired = Eclim.execute(new String[]{
+      "completion_info", "-h", (String)result.get("handle")
+    });
+    assertEquals(expired,
+        "Completion proposal '" + result.get("handle") +
+        "' is no longer available.");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void completionCache()
+  {
+    String[] args = new String[]{
+      "java_complete", "-p", Jdt.TEST_PROJECT,
+      "-f", TEST_FILE,
+      "-o", "266", "-e", "utf-8", "-l", "standard"
+    };
+
+    // discard any results cached by the other tests.
+    Eclim.execute(new String[]{
+      "buffer_close", "-p", Jdt.TEST_PROJECT, "-f", TEST_FILE});
+    Eclim.execute(new String[]{"metrics", "-r"});
+
+    Map<String,Object> results = (Map<String,Object>)Eclim.execute(args);
+    Map<String,Object> metrics = (Map<String,Object>)
+      Eclim.execute(new String[]{"metrics"});
+    assertEquals(1, metrics.get("completion.cache.miss"));
+    assertNull(metrics.get("completion.cache.hit"));
+
+    // same file and offset, so the cached results are used.
+    Map<String,Object> cached = (Map<String,Object>)Eclim.execute(args);
+    assertEquals(results.get("completions"), cached.get("completions"));
+    metrics = (Map<String,Object>)Eclim.execute(new String[]{"metrics"});
+    assertEquals(1, metrics.get("completion.cache.hit"));
+    assertEquals(1, metrics.get("completion.cache.miss"));
+
+    // completing a different token invalidates the entry.
+    Eclim.execute(new String[]{
+      "java_complete", "-p", Jdt.TEST_PROJECT,
+      "-f", TEST_FILE,
+      "-o", "184", "-e", "utf-8", "-l", "standard"
+    });
+    metrics = (Map<String,Object>)Eclim.execute(new String[]{"metrics", "-r"});
+    assertEquals(1, metrics.get("completion.cache.hit"));
+    assertEquals(2, metrics.get("completion.cache.miss"));
+    assertEquals(1, metrics.get("completion.cache.invalidated"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void completionStdin()
+    throws Exception
+  {
+    Map<String,Object> expected = (Map<String,Object>)
+      Eclim.execute(new String[]{
+        "java_complete", "-p", Jdt.TEST_PROJECT,
+        "-f", TEST_FILE,
+        "-o", "184", "-e", "utf-8", "-l", "standard"
+      });
+
+    // unsaved contents with a new line of 17 chars (19 utf-8 bytes) before
+    // the completion point.
+    String contents = Eclim.fileToString(Jdt.TEST_PROJECT, TEST_FILE)
+      .replace("  public void test ()",
+          "  // h\u00e9llo w\u00f6rld\n  public void test ()");
+
+    // the offset from vim is a byte offset.
+    Map<String,Object> results = (Map<String,Object>)
+      Eclim.execute(new String[]{
+        "java_complete", "-p", Jdt.TEST_PROJECT,
+        "-f", TEST_FILE,
+        "-o", "203", "-e", "utf-8", "-l", "standard", "-s"
+      }, contents.getBytes("utf-8"));
+    assertEquals(expected.get("completions"), results.get("completions"));
+
+    results = (Map<String,Object>)
+      Eclim.execute(new String[]{
+        "java_complete", "-p", Jdt.TEST_PROJECT,
+        "-f", TEST_FILE,
+        "-o", "201", "-e", "iso-8859-1", "-l", "standard", "-s"
+      }, contents.getBytes("iso-8859-1"));
+    assertEquals(expected.get("completions"), results.get("completions"));
+  }
+
   @Test
   @SuppressWarnings("unchecked")
   public void completionMissingImport()
@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.jdt.command.debug.ui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclim.plugin.jdt.command.debug.ui.VariableViewDiff.Row;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case for VariableViewDiff.
+ */
+public class VariableViewDiffTest
+{
+  @Test
+  public void unchanged()
+  {
+    List<Row> rows = rows("/a", "a = 1", "/b", "b = 2");
+    assertEquals(0, VariableViewDiff.diff(rows, rows).size());
+  }
+
+  @Test
+  public void changedText()
+  {
+    List<Row> previous = rows("/a", "a = 1", "/b", "b = 2", "/c", "c = 3");
+    List<Row> current = rows("/a", "a = 1", "/b", "b = 4", "/c", "c = 3");
+    List<Object[]> hunks = VariableViewDiff.diff(previous, current);
+    assertEquals(1, hunks.size());
+    assertHunk(hunks.get(0), 1, 1, "b = 4");
+    assertApplied(previous, current, hunks);
+  }
+
+  @Test
+  public void insert()
+  {
+    List<Row> previous = rows("/a", "a = 1", "/c", "c = 3");
+    List<Row> current = rows("/a", "a = 1", "/b", "b = 2", "/c", "c = 3");
+    List<Object[]> hunks = VariableViewDiff.diff(previous, current);
+    assertEquals(1, hunks.size());
+    assertHunk(hunks.get(0), 1, 0, "b = 2");
+    assertApplied(previous, current, hunks);
+
+    // appended at the end.
+    current = rows("/a", "a = 1", "/c", "c = 3", "/d", "d = 4");
+    hunks = VariableViewDiff.diff(previous, current);
+    assertEquals(1, hunks.size());
+    assertHunk(hunks.get(0), 2, 0, "d = 4");
+    assertApplied(previous, current, hunks);
+  }
+
+  @Test
+  public void remove()
+  {
+    List<Row> previous = rows(
+        "/a", "a = 1", "/b", "b = 2", "/c", "c = 3", "/d", "d = 4");
+    List<Row> current = rows("/a", "a = 1", "/d", "d = 4");
+    List<Object[]> hunks = VariableViewDiff.diff(previous, current);
+    assertEquals(1, hunks.size());
+    assertHunk(hunks.get(0), 1, 2);
+    assertApplied(previous, current, hunks);
+
+    current = rows();
+    hunks = VariableViewDiff.diff(previous, current);
+    assertEquals(1, hunks.size());
+    assertHunk(hunks.get(0), 0, 4);
+    assertApplied(previous, current, hunks);
+  }
+
+  @Test
+  public void move()
+  {
+    List<Row> previous = rows("/a", "a = 1", "/b", "b = 2", "/c", "c = 3");
+    List<Row> current = rows("/c", "c = 3", "/a", "a = 1", "/b", "b = 2");
+    assertApplied(previous, current, VariableViewDiff.diff(previous, current));
+
+    current = rows("/b", "b = 2", "/c", "c = 5", "/a", "a = 1");
+    assertApplied(previous, current, VariableViewDiff.diff(previous, current));
+  }
+
+  @Test
+  public void mixed()
+  {
+    List<Row> previous = rows(
+        "/a", "a = 1",
+        "/b", "b = 2",
+        "/b/", "  ",
+        "/c", "c = 3",
+        "/e", "e = 5");
+    List<Row> current = rows(
+        "/a", "a = 0",
+        "/b", "b = 2",
+        "/b/x", "  x = 1",
+        "/b/y", "  y = 2",
+        "/d", "d = 4",
+        "/e", "e = 6",
+        "/f", "f = 7");
+    assertApplied(previous, current, VariableViewDiff.diff(previous, current));
+  }
+
+  @Test
+  public void shadowedNames()
+  {
+    // shadowed fields share a name, but are given unique keys among their
+    // siblings.
+    List<Row> previous = rows(
+        "/this", "this = Child",
+        "/this/name", "  name (Child) = \"a\"",
+        "/this/name#1", "  name (Person) = \"b\"");
+    List<Row> current = rows(
+        "/this", "this = Child",
+        "/this/name", "  name (Child) = \"a\"",
+        "/this/name#1", "  name (Person) = \"c\"");
+    List<Object[]> hunks = VariableViewDiff.diff(previous, current);
+    assertEquals(1, hunks.size());
+    assertHunk(hunks.get(0), 2, 1, "  name (Person) = \"c\"");
+    assertApplied(previous, current, hunks);
+  }
+
+  private List<Row> rows(String... values)
+  {
+    List<Row> rows = new ArrayList<Row>();
+    for (int ii = 0; ii < values.length; ii += 2) {
+      rows.add(new Row(values[ii], values[ii + 1], 0));
+    }
+    return rows;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void assertHunk(Object[] hunk, int line, int count, String... lines)
+  {
+    assertEquals(line, hunk[0]);
+    assertEquals(count, hunk[1]);
+    assertEquals(Arrays.asList(lines), (List<String>) hunk[2]);
+  }
+
+  /**
+   * Applies the hunks the same way vim does (from the bottom up) and checks
+   * that the result matches the current rows.
+   */
+  @SuppressWarnings("unchecked")
+  private void assertApplied(
+      List<Row> previous, List<Row> current, List<Object[]> hunks)
+  {
+    List<String> lines = new ArrayList<String>();
+    for (Row row : previous) {
+      lines.add(row.text);
+    }
+
+    int last = Integer.MAX_VALUE;
+    for (int ii = hunks.size() - 1; ii >= 0; ii--) {
+      Object[] hunk = hunks.get(ii);
+      int line = (Integer) hunk[0];
+      int count = (Integer) hunk[1];
+      assertTrue("Hunks out of order or overlapping.", line + count <= last);
+      last = line;
+      for (int jj = 0; jj < count; jj++) {
+        lines.remove(line);
+      }
+      lines.addAll(line, (List<String>) hunk[2]);
+    }
+
+    List<String> expected = new ArrayList<String>();
+    for (Row row : current) {
+      expected.add(row.text);
+    }
+    assertEquals(expected, lines);
+  }
+}
@@ -36,6 +36,8 @@ public class HierarchyCommandTest
 {
   private static final String TEST_FILE =
     "src/org/eclim/test/hierarchy/TestHierarchy.java";
+  private static final String SUBTYPES_FILE =
+    "src/org/eclim/test/search/implementors/TestInterface.java";
 
   @Test
   @SuppressWarnings("unchecked")
@@ -131,5 +133,45 @@ public class HierarchyCommandTest
     assertEquals(result.get("qualified"), "org.eclim.test.hierarchy.TestHierarchy");
     assertEquals(((List<Object>)result.get("children")).size(), 0);
   }
-}
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSubtypes()
+  {
+    Map<String,Object> result = (Map<String,Object>)
+      Eclim.execute(new String[]{
+        "java_hierarchy", "-p", Jdt.TEST_PROJECT,
+        "-f", SUBTYPES_FILE, "-o", "62", "-e", "utf-8", "-s"
+      });
+
+    assertEquals(result.get("name"), "public interface TestInterface");
+    assertEquals(result.get("qualified"),
+        "org.eclim.test.search.implementors.TestInterface");
+
+    List<Map<String,Object>> children = (List<Map<String,Object>>)
+      result.get("children");
+    assertEquals(children.size(), 2);
+
+    Map<String,Object> child = children.get(0);
+    assertEquals(child.get("name"), "public class TestImplementor1");
+    assertEquals(((List<Object>)child.get("children")).size(), 0);
+
+    child = children.get(1);
+    assertEquals(child.get("name"), "public abstract class TestImplementorAbstract");
+
+    children = (List<Map<String,Object>>)child.get("children");
+    assertEquals(children.size(), 1);
+    child = children.get(0);
+    assertEquals(child.get("name"), "public class TestImplementor2");
+
+    // limit the number of nodes returned
+    result = (Map<String,Object>)
+      Eclim.execute(new String[]{
+        "java_hierarchy", "-p", Jdt.TEST_PROJECT,
+        "-f", SUBTYPES_FILE, "-o", "62", "-e", "utf-8", "-s", "-l", "1"
+      });
+    children = (List<Map<String,Object>>)result.get("children");
+    assertEquals(children.size(), 1);
+    assertEquals(((List<Object>)children.get(0).get("children")).size(), 0);
+  }
+}
@@ -74,4 +74,46 @@ public class SrcUpdateCommandTest
     assertEquals(error.get("column"), 10);
     assertEquals(error.get("warning"), false);
   }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void updateStdin()
+    throws Exception
+  {
+    assertTrue("Java project doesn't exist.",
+        Eclim.projectExists(Jdt.TEST_PROJECT));
+
+    // validate unsaved contents containing multi-byte characters, with the
+    // second error moved to line 13.
+    String contents = Eclim.fileToString(Jdt.TEST_PROJECT, TEST_FILE)
+      .replace("    list.a();",
+          "    // \u00e9t\u00e9\n\n    /* \u00e9 */ list.a();");
+
+    List<Map<String,Object>> results = (List<Map<String,Object>>)
+      Eclim.execute(new String[]{
+        "java_src_update", "-p", Jdt.TEST_PROJECT, "-f", TEST_FILE,
+        "-v", "-e", "utf-8", "-s"
+      }, contents.getBytes("utf-8"));
+
+    assertEquals("Wrong number of errors.", 3, results.size());
+
+    Map<String,Object> error = results.get(2);
+    assertTrue(((String)error.get("message")).indexOf("The method a() is undefined") != -1);
+    assertEquals(error.get("line"), 13);
+    // vim columns are byte based: 'a' is the 18th char, but the 19th byte.
+    assertEquals(error.get("column"), 19);
+    assertEquals(error.get("warning"), false);
+
+    // the same contents in a single byte encoding.
+    results = (List<Map<String,Object>>)
+      Eclim.execute(new String[]{
+        "java_src_update", "-p", Jdt.TEST_PROJECT, "-f", TEST_FILE,
+        "-v", "-e", "iso-8859-1", "-s"
+      }, contents.getBytes("iso-8859-1"));
+
+    assertEquals("Wrong number of errors.", 3, results.size());
+    error = results.get(2);
+    assertEquals(error.get("line"), 13);
+    assertEquals(error.get("column"), 18);
+  }
 }
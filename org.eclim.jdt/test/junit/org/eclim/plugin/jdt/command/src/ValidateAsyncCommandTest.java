@@ -0,0 +1,229 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.jdt.command.src;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.util.List;
+import java.util.Map;
+
+import org.eclim.Eclim;
+
+import org.eclim.plugin.jdt.Jdt;
+
+import org.eclim.util.IOUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case for the validate_async command when validating java files.
+ * <p/>
+ * Rather than a running vim instance, results are delivered to a script
+ * standing in for the vim executable, which records the expression it was
+ * asked to evaluate.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class ValidateAsyncCommandTest
+{
+  private static final String TEST_FILE =
+    "src/org/eclim/test/src/TestSrc.java";
+  private static final String SUPERSEDED_FILE =
+    "src/org/eclim/test/src/TestAsync.java";
+  private static final String SERVER = "eclim_validate_async_test";
+
+  private File script;
+  private File output;
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    output = File.createTempFile("eclim_validate_async", ".out");
+    output.delete();
+    script = File.createTempFile("eclim_validate_async", ".sh");
+    OutputStream out = null;
+    try{
+      out = new FileOutputStream(script);
+      out.write(("#!/bin/sh\necho \"$@\" >> '" +
+            output.getAbsolutePath() + "'\n").getBytes("UTF-8"));
+    }finally{
+      IOUtils.closeQuietly(out);
+    }
+    script.setExecutable(true);
+
+    Eclim.execute(new String[]{"metrics", "-r"});
+  }
+
+  @After
+  public void tearDown()
+  {
+    script.delete();
+    output.delete();
+    new File(Eclim.resolveFile(Jdt.TEST_PROJECT, SUPERSEDED_FILE)).delete();
+  }
+
+  @Test
+  public void unsupported()
+  {
+    assertEquals(Boolean.FALSE, Eclim.execute(new String[]{
+      "validate_async", "-p", Jdt.TEST_PROJECT, "-f", "README",
+      "-v", SERVER, "-x", script.getAbsolutePath(),
+    }));
+  }
+
+  @Test
+  public void execute()
+    throws Exception
+  {
+    assertTrue("Java project doesn't exist.",
+        Eclim.projectExists(Jdt.TEST_PROJECT));
+
+    assertEquals(Boolean.TRUE, validate(TEST_FILE));
+    assertEquals(1, waitForRuns(1));
+
+    List<String> calls = readCalls();
+    assertEquals(1, calls.size());
+    String result = calls.get(0);
+    assertTrue(result, result.indexOf(
+          "--servername " + SERVER + " --remote-expr " +
+          "eclim#lang#ValidateAsyncResults(") != -1);
+    assertTrue(result, result.indexOf(TEST_FILE) != -1);
+    assertTrue(result, result.indexOf("The method a() is undefined") != -1);
+  }
+
+  @Test
+  public void superseded()
+    throws Exception
+  {
+    assertTrue("Java project doesn't exist.",
+        Eclim.projectExists(Jdt.TEST_PROJECT));
+
+    // the first save's validation is delivered only if it completed before
+    // the second save came in (otherwise it's cancelled or discarded), but the
+    // results of the last save are always delivered, exactly once.
+    write(SUPERSEDED_FILE, "first");
+    assertEquals(Boolean.TRUE, validate(SUPERSEDED_FILE));
+    write(SUPERSEDED_FILE, "second");
+    assertEquals(Boolean.TRUE, validate(SUPERSEDED_FILE));
+    int delivered = waitForRuns(2);
+
+    List<String> calls = readCalls();
+    assertEquals(delivered, calls.size());
+    assertEquals(1, count(calls, "The method second() is undefined"));
+    assertEquals(
+        delivered - 1, count(calls, "The method first() is undefined"));
+    String last = calls.get(calls.size() - 1);
+    assertTrue(last, last.indexOf("The method second() is undefined") != -1);
+  }
+
+  private Object validate(String file)
+  {
+    return Eclim.execute(new String[]{
+      "validate_async", "-p", Jdt.TEST_PROJECT, "-f", file,
+      "-v", SERVER, "-x", script.getAbsolutePath(),
+    });
+  }
+
+  /**
+   * Writes a class to the supplied file which calls the undefined method of
+   * the supplied name.
+   */
+  private void write(String file, String method)
+    throws Exception
+  {
+    String contents =
+      "package org.eclim.test.src;\n\n" +
+      "public class TestAsync\n{\n" +
+      "  public void test()\n  {\n" +
+      "    " + method + "();\n" +
+      "  }\n}\n";
+    OutputStream out = null;
+    try{
+      out = new FileOutputStream(Eclim.resolveFile(Jdt.TEST_PROJECT, file));
+      out.write(contents.getBytes("UTF-8"));
+    }finally{
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  /**
+   * Reads the expressions the vim stand in was asked to evaluate, one per
+   * delivered validation.
+   */
+  private List<String> readCalls()
+    throws Exception
+  {
+    InputStream in = null;
+    try{
+      in = new FileInputStream(output);
+      return IOUtils.readLines(in);
+    }finally{
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  private int count(List<String> calls, String message)
+  {
+    int count = 0;
+    for (String call : calls){
+      if (call.indexOf(message) != -1){
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Waits for the supplied number of validations to complete, returning how
+   * many of them were delivered.
+   */
+  @SuppressWarnings("unchecked")
+  private int waitForRuns(int count)
+    throws Exception
+  {
+    for (int ii = 0; ii < 100; ii++){
+      Map<String,Object> metrics = (Map<String,Object>)
+        Eclim.execute(new String[]{"metrics"});
+      int delivered = getCount(metrics, "validate.async.delivered");
+      int total = delivered +
+        getCount(metrics, "validate.async.cancelled") +
+        getCount(metrics, "validate.async.discarded");
+      if (total >= count){
+        assertEquals(count, total);
+        return delivered;
+      }
+      Thread.sleep(100);
+    }
+    fail("Timed out waiting on validate_async.");
+    return 0;
+  }
+
+  private int getCount(Map<String,Object> metrics, String name)
+  {
+    Number count = (Number)metrics.get(name);
+    return count != null ? count.intValue() : 0;
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.jdt.command.src;
+
+import java.util.List;
+import java.util.Map;
+
+import org.eclim.Eclim;
+
+import org.eclim.plugin.jdt.Jdt;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case for the validate_files command when validating java files.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class ValidateFilesCommandTest
+{
+  private static final String TEST_FILE =
+    "src/org/eclim/test/src/TestSrc.java";
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void execute()
+  {
+    assertTrue("Java project doesn't exist.",
+        Eclim.projectExists(Jdt.TEST_PROJECT));
+
+    // README has no registered validator, so it should be ignored.
+    List<Map<String,Object>> results = (List<Map<String,Object>>)
+      Eclim.execute(new String[]{
+        "validate_files", "-p", Jdt.TEST_PROJECT, "-f", TEST_FILE, "README"
+      });
+    assertErrors(results);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void executeStdin()
+    throws Exception
+  {
+    assertTrue("Java project doesn't exist.",
+        Eclim.projectExists(Jdt.TEST_PROJECT));
+
+    String files = TEST_FILE + "\nREADME\n" + TEST_FILE + "\n";
+    List<Map<String,Object>> results = (List<Map<String,Object>>)
+      Eclim.execute(new String[]{
+        "validate_files", "-p", Jdt.TEST_PROJECT, "-s"
+      }, files.getBytes("UTF-8"));
+
+    // the duplicate file is only validated once.
+    assertErrors(results);
+  }
+
+  private void assertErrors(List<Map<String,Object>> results)
+  {
+    assertEquals("Wrong number of errors.", 3, results.size());
+
+    String file = Eclim.resolveFile(Jdt.TEST_PROJECT, TEST_FILE);
+    for (Map<String,Object> error : results){
+      assertEquals(file, error.get("filename"));
+    }
+
+    Map<String,Object> error = results.get(2);
+    assertTrue(((String)error.get("message"))
+        .indexOf("The method a() is undefined") != -1);
+    assertEquals(11, error.get("line"));
+    assertEquals(10, error.get("column"));
+    assertEquals(false, error.get("warning"));
+  }
+}
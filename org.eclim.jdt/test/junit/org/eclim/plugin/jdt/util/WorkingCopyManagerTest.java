@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.jdt.util;
+
+import java.util.Map;
+
+import org.eclim.Eclim;
+
+import org.eclim.plugin.jdt.Jdt;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case for WorkingCopyManager.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class WorkingCopyManagerTest
+{
+  private static final String TEST_FILE =
+    "src/org/eclim/test/src/TestSrc.java";
+
+  private static final String[] OTHER_FILES = {
+    "src/org/eclim/test/src/TestCheckstyle.java",
+    "src/org/eclim/test/src/TestException.java",
+    "src/org/eclim/test/src/TestFormat.java",
+    "src/org/eclim/test/src/TestPrototype.java",
+    "src/org/eclim/test/hierarchy/TestHierarchy.java",
+    "src/org/eclim/test/hierarchy/TestCallHierarchy.java",
+  };
+
+  @Before
+  public void setUp()
+  {
+    assertTrue("Java project doesn't exist.",
+        Eclim.projectExists(Jdt.TEST_PROJECT));
+
+    // release any working copy left by the other tests.
+    Eclim.execute(new String[]{
+      "java_src_close", "-p", Jdt.TEST_PROJECT, "-f", TEST_FILE});
+    Eclim.execute(new String[]{"metrics", "-r"});
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void reconcileOnlyWhenChanged()
+    throws Exception
+  {
+    String contents = Eclim.fileToString(Jdt.TEST_PROJECT, TEST_FILE);
+    validate(contents);
+    validate(contents);
+
+    // creating and reconciling our own working copy must not be seen as a
+    // change requiring another reconcile.
+    Map<String,Object> metrics = (Map<String,Object>)
+      Eclim.execute(new String[]{"metrics"});
+    assertEquals(1, metrics.get("jdt.working_copy.created"));
+    assertEquals(1, metrics.get("jdt.working_copy.reconcile"));
+
+    validate(contents + "\n");
+    metrics = (Map<String,Object>)Eclim.execute(new String[]{"metrics"});
+    assertEquals(1, metrics.get("jdt.working_copy.created"));
+    assertEquals(2, metrics.get("jdt.working_copy.reconcile"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void bulkValidationKeepsWorkingCopies()
+    throws Exception
+  {
+    String contents = Eclim.fileToString(Jdt.TEST_PROJECT, TEST_FILE);
+    validate(contents);
+
+    String[] args = new String[OTHER_FILES.length + 4];
+    args[0] = "validate_files";
+    args[1] = "-p";
+    args[2] = Jdt.TEST_PROJECT;
+    args[3] = "-f";
+    System.arraycopy(OTHER_FILES, 0, args, 4, OTHER_FILES.length);
+    Eclim.execute(args);
+
+    validate(contents);
+
+    // the other files were validated with short lived working copies, so
+    // the working copy of the file being edited was neither evicted nor
+    // reconciled again.
+    Map<String,Object> metrics = (Map<String,Object>)
+      Eclim.execute(new String[]{"metrics"});
+    assertEquals(OTHER_FILES.length, metrics.get("jdt.working_copy.transient"));
+    assertEquals(1 + OTHER_FILES.length,
+        metrics.get("jdt.working_copy.created"));
+    assertNull(metrics.get("jdt.working_copy.evicted"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void close()
+    throws Exception
+  {
+    String contents = Eclim.fileToString(Jdt.TEST_PROJECT, TEST_FILE);
+    validate(contents);
+    Eclim.execute(new String[]{
+      "java_src_close", "-p", Jdt.TEST_PROJECT, "-f", TEST_FILE});
+    validate(contents);
+
+    Map<String,Object> metrics = (Map<String,Object>)
+      Eclim.execute(new String[]{"metrics"});
+    assertEquals(2, metrics.get("jdt.working_copy.created"));
+    assertEquals(2, metrics.get("jdt.working_copy.reconcile"));
+  }
+
+  private void validate(String contents)
+    throws Exception
+  {
+    Eclim.execute(new String[]{
+      "java_src_update", "-p", Jdt.TEST_PROJECT, "-f", TEST_FILE,
+      "-v", "-e", "utf-8", "-s"
+    }, contents.getBytes("utf-8"));
+  }
+}
@@ -77,6 +77,7 @@ function! eclim#java#ant#complete#CodeComplete(findstart, base)
     let command = substitute(command, '<file>', file, '')
     let command = substitute(command, '<offset>', offset, '')
     let command = substitute(command, '<encoding>', eclim#util#GetEncoding(), '')
+    let command .= eclim#lang#CompletionLazyInfo()
 
     let completions = []
     let results = eclim#Execute(command)
@@ -103,6 +104,9 @@ function! eclim#java#ant#complete#CodeComplete(findstart, base)
       let info = eclim#html#util#HtmlToText(result.info)
 
       let dict = {'word': word, 'menu': menu, 'info': info}
+      if has_key(result, 'handle')
+        let dict.user_data = result.handle
+      endif
 
       call add(completions, dict)
     endfor
@@ -31,7 +31,9 @@ function! eclim#java#complete#CodeComplete(findstart, base) " {{{
   endif
 
   if a:findstart
-    call eclim#lang#SilentUpdate(1)
+    if !g:EclimStdinEnable
+      call eclim#lang#SilentUpdate(1)
+    endif
 
     " locate the start of the word
     let line = getline('.')
@@ -51,7 +53,14 @@ function! eclim#java#complete#CodeComplete(findstart, base) " {{{
   else
     let offset = eclim#util#GetOffset() + len(a:base)
     let project = eclim#project#util#GetCurrentProjectName()
-    let file = eclim#lang#SilentUpdate(1, 0)
+    let options = {}
+    if g:EclimStdinEnable
+      " send the unsaved buffer contents instead of writing the file.
+      let file = eclim#project#util#GetProjectRelativeFilePath()
+      let options.input = eclim#lang#BufferContents()
+    else
+      let file = eclim#lang#SilentUpdate(1, 0)
+    endif
     if file == ''
       return []
     endif
@@ -62,9 +71,13 @@ function! eclim#java#complete#CodeComplete(findstart, base) " {{{
     let command = substitute(command, '<offset>', offset, '')
     let command = substitute(command, '<encoding>', eclim#util#GetEncoding(), '')
     let command = substitute(command, '<layout>', g:EclimJavaCompleteLayout, '')
+    if has_key(options, 'input')
+      let command .= ' -s'
+    endif
+    let command .= eclim#lang#CompletionLazyInfo()
 
     let completions = []
-    let response = eclim#Execute(command)
+    let response = eclim#Execute(command, options)
     if type(response) != g:DICT_TYPE
       return
     endif
@@ -142,6 +155,9 @@ function! eclim#java#complete#CodeComplete(findstart, base) " {{{
           \ 'dup': 1,
           \ 'icase': !g:EclimJavaCompleteCaseSensitive,
         \ }
+      if has_key(result, 'handle')
+        let dict.user_data = result.handle
+      endif
 
       call add(completions, dict)
     endfor
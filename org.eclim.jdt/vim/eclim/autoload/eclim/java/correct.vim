@@ -39,7 +39,13 @@ function! eclim#java#correct#Correct()
     return
   endif
 
-  call eclim#lang#SilentUpdate()
+  let options = {}
+  if g:EclimStdinEnable
+    " send the unsaved buffer contents instead of writing the file.
+    let options.input = eclim#lang#BufferContents()
+  else
+    call eclim#lang#SilentUpdate()
+  endif
 
   let project = eclim#project#util#GetCurrentProjectName()
   let file = eclim#project#util#GetProjectRelativeFilePath()
@@ -55,7 +61,10 @@ function! eclim#java#correct#Correct()
   let filename = expand('%:p')
   call eclim#util#TempWindowClear(window_name)
 
-  let result = eclim#Execute(command)
+  if has_key(options, 'input')
+    let command .= ' -s'
+  endif
+  let result = eclim#Execute(command, options)
 
   " error executing the command.
   if type(result) != g:DICT_TYPE && type(result) != g:STRING_TYPE
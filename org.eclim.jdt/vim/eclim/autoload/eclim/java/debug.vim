@@ -39,6 +39,10 @@ let s:variable_buf_name = 'Debug Variables'
 let s:thread_buf_name = 'Debug Threads'
 let s:breakpoint_buf_name = 'Debug Breakpoints'
 
+" generation of the variable view, as sent by eclimd, that the variable window
+" is showing (-1 if the window was populated some other way).
+let s:variable_generation = -1
+
 let s:command_start =
   \ '-command java_debug_start -p "<project>" ' .
   \ '-h "<host>" -n "<port>" -v "<vim_servername>"'
@@ -141,7 +145,8 @@ function! eclim#java#debug#DebugStart(...) " {{{
     return
   endif
 
-  if v:servername == ''
+  let servername = eclim#client#channel#ServerName()
+  if servername == ''
     call eclim#util#EchoError(
       \ "Error: To debug, VIM must be running in server mode.\n" .
       \ "Example: vim --servername <name>")
@@ -168,7 +173,7 @@ function! eclim#java#debug#DebugStart(...) " {{{
   let command = substitute(command, '<project>', project, '')
   let command = substitute(command, '<host>', host, '')
   let command = substitute(command, '<port>', port, '')
-  let command = substitute(command, '<vim_servername>', v:servername, '')
+  let command = substitute(command, '<vim_servername>', servername, '')
   let result = eclim#Execute(command)
 
   call eclim#util#Echo(result)
@@ -181,6 +186,7 @@ function! eclim#java#debug#DebugStop() " {{{
   " Auto close the debug status window
   call eclim#util#DeleteBuffer(s:variable_buf_name)
   call eclim#util#DeleteBuffer(s:thread_buf_name)
+  let s:variable_generation = -1
 
   " Remove the sign from previous location
   if (s:debug_step_prev_line != '' && s:debug_step_prev_file != '')
@@ -528,6 +534,7 @@ function! s:CreateStatusWindow(project, threads, vars) " {{{
     \ 'height': g:EclimJavaDebugStatusWinHeight
   \ }
   call eclim#util#TempWindow(s:variable_buf_name, a:vars, var_win_opts) 
+  let s:variable_generation = -1
   setlocal foldmethod=expr
   setlocal foldexpr=eclim#display#fold#GetTreeFold(v:lnum)
   setlocal foldtext=eclim#display#fold#TreeFoldText()
@@ -565,6 +572,17 @@ function! s:VariableExpand() " {{{
 
   let id = s:GetIdUnderCursor()
   if (id != "")
+    " eclimd adds the children under the first row showing the value, so
+    " expand that row to keep the window in sync with it.
+    let pattern = substitute(s:id_search_by_value, '<value>', id, '')
+    let pos = getpos('.')
+    call cursor(1, 1)
+    let node_line = search('\V' . pattern, 'cnW')
+    call setpos('.', pos)
+    if node_line > 0 && node_line != line('.')
+      call cursor(node_line, 1)
+    endif
+
     let command = s:command_variable_expand
     let command = substitute(command, '<value_id>', id, '')
 
@@ -771,13 +789,57 @@ function! eclim#java#debug#SessionTerminated() " {{{
   call cursor(cur_line, cur_col)
 
   call eclim#util#TempWindowClear(s:variable_buf_name)
+  let s:variable_generation = -1
 endfunction " }}}
 
-function! eclim#java#debug#VariableViewUpdate(value) " {{{
+function! eclim#java#debug#VariableViewUpdate(value, ...) " {{{
   " Updates the variable window with new set of values.
+  " Optional args:
+  "   generation: the generation of the view being sent.
   call eclim#util#Echo("Refreshing ...")
   call eclim#util#TempWindowClear(s:variable_buf_name, split(a:value, "<eol>"))
+  let s:variable_generation = a:0 > 0 ? str2nr(a:1) : -1
   call eclim#util#Echo(" ")
 endfunction " }}}
 
+function! eclim#java#debug#VariableViewPatch(changes, base, generation) " {{{
+  " Applies the changes to the variable window since its last update. The
+  " changes are a list of [line, count, lines] hunks, relative to the base
+  " generation of the view, where the count lines following line are replaced
+  " with the supplied lines. Returns 1 if the changes were applied, or 0 if the
+  " window is missing or not showing the base generation, in which case eclimd
+  " sends the whole view instead.
+  let winnr = bufwinnr(eclim#util#EscapeBufferName(s:variable_buf_name))
+  if winnr == -1 || s:variable_generation != a:base
+    return '0'
+  endif
+
+  let curwinnr = winnr()
+  exec winnr . 'winc w'
+  setlocal modifiable
+  setlocal noreadonly
+
+  let undolevels = &undolevels
+  set undolevels=-1
+  " apply from the bottom up so the line numbers of the remaining hunks are
+  " unaffected.
+  for [lnum, cnt, lines] in reverse(eval(a:changes))
+    if cnt > 0
+      silent exec (lnum + 1) . ',' . (lnum + cnt) . 'delete _'
+    endif
+    if len(lines)
+      call append(lnum, lines)
+    endif
+  endfor
+  let &undolevels = undolevels
+  let s:variable_generation = a:generation
+
+  setlocal nomodified
+  setlocal nomodifiable
+  setlocal readonly
+  exec curwinnr . 'winc w'
+  redraw
+  return '1'
+endfunction " }}}
+
 " vim:ft=vim:fdm=marker
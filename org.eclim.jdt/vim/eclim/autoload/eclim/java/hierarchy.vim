@@ -25,7 +25,9 @@ let s:command_hierarchy =
 
 " }}}
 
-function! eclim#java#hierarchy#Hierarchy() " {{{
+function! eclim#java#hierarchy#Hierarchy(...) " {{{
+  " Optional args:
+  "   bang: '!' to view the subtypes of the type instead of its supertypes.
   if !eclim#project#util#IsCurrentFileInProject()
     return
   endif
@@ -37,6 +39,9 @@ function! eclim#java#hierarchy#Hierarchy() " {{{
   let command = substitute(command, '<file>', file, '')
   let command = substitute(command, '<offset>', eclim#util#GetOffset(), '')
   let command = substitute(command, '<encoding>', eclim#util#GetEncoding(), '')
+  if a:0 > 0 && a:1 == '!'
+    let command .= ' -s'
+  endif
   let result = eclim#Execute(command)
   if type(result) != g:DICT_TYPE
     return
@@ -24,6 +24,7 @@
     \ '-command java_format -p "<project>" -f "<file>" ' .
     \ '-h <hoffset> -t <toffset> -e <encoding>'
   let s:checkstyle_command = '-command java_checkstyle -p "<project>" -f "<file>"'
+  let s:close_command = '-command java_src_close -p "<project>" -f "<file>"'
 " }}}
 
 function! eclim#java#src#Format(first, last) " {{{
@@ -85,4 +86,23 @@ function! eclim#java#src#Checkstyle() " {{{
   endif
 endfunction " }}}
 
+function! eclim#java#src#Close(file) " {{{
+  " Notifies eclimd that the supplied file has been closed so that any working
+  " copy held for it can be released (not needed when vim is exiting).
+  if a:file == '' || exists('g:eclim_leaving') || !eclim#EclimAvailable(0)
+    return
+  endif
+
+  let project = eclim#project#util#GetProject(a:file)
+  if !len(project)
+    return
+  endif
+
+  let file = eclim#project#util#GetProjectRelativeFilePath(a:file)
+  let command = s:close_command
+  let command = substitute(command, '<project>', project.name, '')
+  let command = substitute(command, '<file>', file, '')
+  call eclim#Execute(command, {'project': project.name})
+endfunction " }}}
+
 " vim:ft=vim:fdm=marker
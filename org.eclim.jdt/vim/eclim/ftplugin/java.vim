@@ -89,6 +89,8 @@ if &ft == 'java'
   augroup eclim_java
     autocmd! BufWritePost <buffer>
     autocmd BufWritePost <buffer> call eclim#lang#UpdateSrcFile('java')
+    autocmd! BufUnload <buffer>
+    autocmd BufUnload <buffer> call eclim#java#src#Close(expand('<afile>:p'))
   augroup END
 endif
 
@@ -187,7 +189,8 @@ if !exists(":JavaCallHierarchy")
 endif
 
 if !exists(":JavaHierarchy")
-  command -buffer -range JavaHierarchy :call eclim#java#hierarchy#Hierarchy()
+  command -buffer -range -bang JavaHierarchy
+    \ :call eclim#java#hierarchy#Hierarchy('<bang>')
 endif
 
 if !exists(":JavaRename")
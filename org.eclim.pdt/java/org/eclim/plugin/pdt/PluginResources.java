@@ -22,6 +22,8 @@ import org.eclim.logging.Logger;
 
 import org.eclim.plugin.AbstractPluginResources;
 
+import org.eclim.plugin.core.command.validate.ValidateFilesCommand;
+
 import org.eclim.plugin.core.preference.PreferenceFactory;
 import org.eclim.plugin.core.preference.Preferences;
 
@@ -59,6 +61,8 @@ public class PluginResources
 
     ProjectNatureFactory.addNature("php", PHPNature.ID);
     ProjectManagement.addProjectManager(PHPNature.ID, new PhpProjectManager());
+    ValidateFilesCommand.addValidator(
+        PHPNature.ID, "php_src_update", false, "php");
 
     Preferences.addOptionHandler("org.eclipse.php", new OptionHandler());
     PreferenceFactory.addOptions("org.eclipse.php.core.PHPNature",
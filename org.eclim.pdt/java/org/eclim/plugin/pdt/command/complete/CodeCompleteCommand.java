@@ -46,7 +46,8 @@ import org.eclipse.php.internal.ui.editor.contentassist.PHPCompletionProposalCol
     "REQUIRED p project ARG," +
     "REQUIRED f file ARG," +
     "REQUIRED o offset ARG," +
-    "REQUIRED e encoding ARG"
+    "REQUIRED e encoding ARG," +
+    "OPTIONAL i lazyinfo NOARG"
 )
 public class CodeCompleteCommand
   extends AbstractCodeCompleteCommand
@@ -16,9 +16,10 @@
  */
 package org.eclim.plugin.pdt.util;
 
+import org.eclim.plugin.core.CorePlugin;
+
 import org.eclipse.core.resources.ResourcesPlugin;
 
-import org.eclipse.core.runtime.jobs.IJobManager;
 import org.eclipse.core.runtime.jobs.Job;
 
 /**
@@ -28,6 +29,8 @@ import org.eclipse.core.runtime.jobs.Job;
  */
 public class PhpUtils
 {
+  private static final long BUILD_TIMEOUT = 1000;
+
   /**
    * Big hack which forces the current operation to wait on any pending auto
    * build jobs which the pdt checks for and returns no results in its selection
@@ -36,27 +39,17 @@ public class PhpUtils
    * The offending pdt code is located at the following 2 places:
    * org.eclipse.php.internal.core.codeassist.PHPSelectionEngine.select
    * org.eclipse.php.internal.core.codeassist.PHPCompletionEngine.complete
+   *
+   * Gives up after a short timeout, in which case the engines may still return
+   * no results.
    */
   public static void waitOnBuild()
   {
-    IJobManager manager = Job.getJobManager();
-    Job[] jobs = manager.find(ResourcesPlugin.FAMILY_AUTO_BUILD);
-
-    if(jobs != null && jobs.length > 0){
-      // force the jobs that are holding us up to execute.
-      for (Job job : jobs){
-        job.wakeUp();
-      }
-
-      int tries = 0;
-      while(tries < 10 && jobs != null && jobs.length > 0){
-        try{
-          Thread.sleep(100);
-        }catch(Exception ignore){
-        }
-        jobs = manager.find(ResourcesPlugin.FAMILY_AUTO_BUILD);
-        tries++;
-      }
+    // force the jobs that are holding us up to execute.
+    Job[] jobs = Job.getJobManager().find(ResourcesPlugin.FAMILY_AUTO_BUILD);
+    for (Job job : jobs){
+      job.wakeUp();
     }
+    CorePlugin.getDefault().waitOnBuild(BUILD_TIMEOUT);
   }
 }
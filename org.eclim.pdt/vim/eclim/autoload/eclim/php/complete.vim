@@ -37,6 +37,7 @@ function! eclim#php#complete#CodeComplete(findstart, base)
   return eclim#lang#CodeComplete(s:complete_command, a:findstart, a:base, {
     \   'temp': 0,
     \   'regex': '\(\w\|\$\)',
+    \   'lazyinfo': 1,
     \ })
 endfunction " }}}
 
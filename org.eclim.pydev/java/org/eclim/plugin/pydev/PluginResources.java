@@ -25,6 +25,8 @@ import org.eclim.logging.Logger;
 
 import org.eclim.plugin.AbstractPluginResources;
 
+import org.eclim.plugin.core.command.validate.ValidateFilesCommand;
+
 import org.eclim.plugin.core.preference.PreferenceFactory;
 import org.eclim.plugin.core.preference.Preferences;
 import org.eclim.plugin.core.preference.PreferencesOptionHandler;
@@ -76,6 +78,8 @@ public class PluginResources
     ProjectNatureFactory.addNature("python", PythonNature.PYTHON_NATURE_ID);
     ProjectManagement.addProjectManager(
         PythonNature.PYTHON_NATURE_ID, new PydevProjectManager());
+    ValidateFilesCommand.addValidator(
+        PythonNature.PYTHON_NATURE_ID, "python_src_update", true, "py");
 
     PreferenceFactory.addPreferences(PythonNature.PYTHON_NATURE_ID,
     //  "PYDEV org.eclim.python.builtins {} JSON{}\n" +
@@ -72,7 +72,8 @@ import org.python.pydev.ui.ColorAndStyleCache;
     "REQUIRED p project ARG," +
     "REQUIRED f file ARG," +
     "REQUIRED o offset ARG," +
-    "REQUIRED e encoding ARG"
+    "REQUIRED e encoding ARG," +
+    "OPTIONAL i lazyinfo NOARG"
 )
 public class CodeCompleteCommand
   extends AbstractCodeCompleteCommand
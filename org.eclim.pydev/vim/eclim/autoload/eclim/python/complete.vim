@@ -26,7 +26,8 @@
 " }}}
 
 function! eclim#python#complete#CodeComplete(findstart, base) " {{{
-  return eclim#lang#CodeComplete(s:complete_command, a:findstart, a:base)
+  return eclim#lang#CodeComplete(
+    \ s:complete_command, a:findstart, a:base, {'lazyinfo': 1})
 endfunction " }}}
 
 " vim:ft=vim:fdm=marker
@@ -20,6 +20,8 @@ import org.eclim.Services;
 
 import org.eclim.plugin.AbstractPluginResources;
 
+import org.eclim.plugin.core.command.validate.ValidateFilesCommand;
+
 import org.eclim.plugin.core.project.ProjectNatureFactory;
 
 import org.eclipse.wst.jsdt.core.JavaScriptCore;
@@ -49,6 +51,8 @@ public class PluginResources
     super.initialize(name);
 
     ProjectNatureFactory.addNature("javascript", JAVASCRIPT_NATURE);
+    ValidateFilesCommand.addValidator(
+        JAVASCRIPT_NATURE, "javascript_src_update", false, "js");
   }
 
   @Override
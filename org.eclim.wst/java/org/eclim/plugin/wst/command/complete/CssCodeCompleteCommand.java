@@ -58,7 +58,8 @@ import org.eclipse.wst.sse.ui.internal.StructuredTextViewer;
     "REQUIRED p project ARG," +
     "REQUIRED f file ARG," +
     "REQUIRED o offset ARG," +
-    "REQUIRED e encoding ARG"
+    "REQUIRED e encoding ARG," +
+    "OPTIONAL i lazyinfo NOARG"
 )
 public class CssCodeCompleteCommand
   extends WstCodeCompleteCommand
@@ -40,7 +40,8 @@ import org.eclipse.wst.sse.ui.internal.contentassist.CustomCompletionProposal;
     "REQUIRED p project ARG," +
     "REQUIRED f file ARG," +
     "REQUIRED o offset ARG," +
-    "REQUIRED e encoding ARG"
+    "REQUIRED e encoding ARG," +
+    "OPTIONAL i lazyinfo NOARG"
 )
 public class HtmlCodeCompleteCommand
   extends WstCodeCompleteCommand
@@ -40,7 +40,8 @@ import org.eclipse.wst.xml.ui.internal.contentassist.XMLContentAssistProcessor;
     "REQUIRED p project ARG," +
     "REQUIRED f file ARG," +
     "REQUIRED o offset ARG," +
-    "REQUIRED e encoding ARG"
+    "REQUIRED e encoding ARG," +
+    "OPTIONAL i lazyinfo NOARG"
 )
 public class XmlCodeCompleteCommand
   extends WstCodeCompleteCommand
@@ -17,6 +17,7 @@
 package org.eclim.plugin.wst.command.validate;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -24,9 +25,7 @@ import org.eclim.Services;
 
 import org.eclim.annotation.Command;
 
-import org.eclim.command.CommandLine;
 import org.eclim.command.Error;
-import org.eclim.command.Options;
 
 import org.eclim.plugin.core.util.ProjectUtils;
 
@@ -51,31 +50,46 @@ import org.w3c.css.util.Warning;
   name = "css_validate",
   options =
     "REQUIRED p project ARG," +
-    "REQUIRED f file ARG"
+    "OPTIONAL f file ARG," +
+    "OPTIONAL d dir ARG"
 )
 public class CssValidateCommand
   extends WstValidateCommand
 {
   private static final String URI_PREFIX = "file:/";
 
+  private static final String[] EXTENSIONS = new String[]{"css"};
+
+  // possible css versions: css1, css2, css21, css3, svg, svgbasic, svgtiny
+  private static final String CSS_VERSION = "css3";
+  // possible mediums: all, aural, braille, embossed, handheld, print,
+  // projection, screen, tty, tv, presentation
+  private static final String MEDIUM = "all";
+
+  @Override
+  protected String[] getExtensions()
+  {
+    return EXTENSIONS;
+  }
+
   @Override
-  public Object execute(CommandLine commandLine)
+  protected List<Error> validate(String projectName, String file)
     throws Exception
   {
-    String projectName = commandLine.getValue(Options.PROJECT_OPTION);
     IProject project = ProjectUtils.getProject(projectName);
     if (!project.exists()){
       throw new RuntimeException(
           Services.getMessage("project.not.found", projectName));
     }
-    String uri = toUri(projectName, commandLine.getValue(Options.FILE_OPTION));
+    String uri = toUri(projectName, file);
 
+    // the context accumulates state from the document being parsed (its
+    // uri, encoding, imported style sheets, etc.), so it can't be reused
+    // across files. the validator's message bundles are loaded once
+    // regardless, which leaves little to be saved by reusing it anyway.
     ApplContext context = new ApplContext("en");
-    // possible values: css1, css2, css21, css3, svg, svgbasic, svgtiny
-    context.setCssVersion("css3");
-    // possible values: all, aural, braille, embossed, handheld, print,
-    // projection, screen, tty, tv, presentation
-    context.setMedium("all");
+    context.setCssVersion(CSS_VERSION);
+    context.setMedium(MEDIUM);
 
     ArrayList<Error> errors = new ArrayList<Error>();
     try{
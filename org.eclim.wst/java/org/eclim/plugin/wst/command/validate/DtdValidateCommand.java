@@ -17,14 +17,13 @@
 package org.eclim.plugin.wst.command.validate;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import org.eclim.annotation.Command;
 
 //import org.eclipse.wst.dtd.core.internal.validation.DTDValidator;
 
-import org.eclim.command.CommandLine;
 import org.eclim.command.Error;
-import org.eclim.command.Options;
 
 import org.eclipse.wst.dtd.core.internal.validation.eclipse.DTDValidator;
 
@@ -40,20 +39,26 @@ import org.eclipse.wst.xml.core.internal.validation.core.ValidationReport;
   name = "dtd_validate",
   options =
     "REQUIRED p project ARG," +
-    "REQUIRED f file ARG"
+    "OPTIONAL f file ARG," +
+    "OPTIONAL d dir ARG"
 )
 public class DtdValidateCommand
   extends WstValidateCommand
 {
   //private DTDValidator validator = new DTDValidator();
 
+  private static final String[] EXTENSIONS = new String[]{"dtd"};
+
   @Override
-  public Object execute(CommandLine commandLine)
-    throws Exception
+  protected String[] getExtensions()
   {
-    String project = commandLine.getValue(Options.PROJECT_OPTION);
-    String file = commandLine.getValue(Options.FILE_OPTION);
+    return EXTENSIONS;
+  }
 
+  @Override
+  protected List<Error> validate(String project, String file)
+    throws Exception
+  {
     ArrayList<Error> results = new ArrayList<Error>();
     DTDValidator validator = DTDValidator.getInstance();
     ValidationReport result = validator.validate(toUri(project, file));
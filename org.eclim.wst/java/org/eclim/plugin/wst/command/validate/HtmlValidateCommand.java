@@ -16,19 +16,21 @@
  */
 package org.eclim.plugin.wst.command.validate;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
 import java.io.FileInputStream;
+import java.io.InputStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
 
 import org.eclim.annotation.Command;
 
-import org.eclim.command.CommandLine;
 import org.eclim.command.Error;
-import org.eclim.command.Options;
 
 import org.eclim.plugin.core.util.ProjectUtils;
 
@@ -62,18 +64,40 @@ import org.w3c.tidy.Tidy;
   name = "html_validate",
   options =
     "REQUIRED p project ARG," +
-    "REQUIRED f file ARG"
+    "OPTIONAL f file ARG," +
+    "OPTIONAL d dir ARG"
 )
 public class HtmlValidateCommand
   extends WstValidateCommand
 {
+  private static final String[] EXTENSIONS = new String[]{"html", "htm"};
+
+  private static final String CONFIG = "emacs,onlyErrors,quiet";
+
+  private static final ValidatorPool<Tidy> tidies = new ValidatorPool<Tidy>(){
+    @Override
+    protected Tidy create(String config)
+    {
+      List<String> settings = Arrays.asList(StringUtils.split(config, ','));
+      Tidy tidy = new Tidy();
+      tidy.setEmacs(settings.contains("emacs"));
+      tidy.setOnlyErrors(settings.contains("onlyErrors"));
+      tidy.setQuiet(settings.contains("quiet"));
+      return tidy;
+    }
+  };
+
+  @Override
+  protected String[] getExtensions()
+  {
+    return EXTENSIONS;
+  }
+
   @Override
-  public Object execute(CommandLine commandLine)
+  protected List<Error> validate(String project, String filename)
     throws Exception
   {
-    String project = commandLine.getValue(Options.PROJECT_OPTION);
-    final String file = ProjectUtils.getFilePath(
-        project, commandLine.getValue(Options.FILE_OPTION));
+    final String file = ProjectUtils.getFilePath(project, filename);
 
     // eclipse wst html valiation... currently not very good.
     /*IProject iproject = ProjectUtils.getProject(project, true);
@@ -111,19 +135,15 @@ public class HtmlValidateCommand
     }*/
 
     // jtidy validation, currently better than wst version.
-    Tidy tidy = new Tidy();
-    tidy.setEmacs(true);
-    tidy.setOnlyErrors(true);
-    tidy.setQuiet(true);
-    FileInputStream in = new FileInputStream(file);
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
-    PrintWriter writer = new PrintWriter(out, true);
+    Tidy tidy = tidies.get(CONFIG);
+    InputStream in = new BufferedInputStream(new FileInputStream(file));
+    StringWriter out = new StringWriter();
     try{
-      tidy.setErrout(writer);
-      tidy.parse(in, out);
+      tidy.setErrout(new PrintWriter(out, true));
+      // only errors are reported, so no need for an output stream.
+      tidy.parse(in, null);
     }finally{
       IOUtils.closeQuietly(in);
-      IOUtils.closeQuietly(out);
     }
 
     ArrayList<Error> results = new ArrayList<Error>();
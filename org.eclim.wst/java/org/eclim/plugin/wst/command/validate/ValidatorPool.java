@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.plugin.wst.command.validate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per thread pool of configured validator instances (validators, tidy
+ * instances, etc.) keyed by their configuration, so that
+ * an instance is only created and configured once per thread and
+ * configuration rather than once per validated file.
+ * <p/>
+ * Instances are never shared between threads, so they need not be thread
+ * safe, but they must be reusable from one file to the next: anything which
+ * holds state from the file it last validated must not be pooled.
+ *
+ * @author Eric Van Dewoestine
+ */
+public abstract class ValidatorPool<T>
+{
+  private final ThreadLocal<Map<String,T>> instances =
+    new ThreadLocal<Map<String,T>>(){
+      @Override
+      protected Map<String,T> initialValue()
+      {
+        return new HashMap<String,T>();
+      }
+    };
+
+  /**
+   * Gets this thread's instance for the supplied configuration, creating it
+   * if necessary.
+   *
+   * @param config The configuration key.
+   * @return The instance.
+   */
+  public T get(String config)
+  {
+    Map<String,T> map = instances.get();
+    T instance = map.get(config);
+    if (instance == null){
+      instance = create(config);
+      map.put(config, instance);
+    }
+    return instance;
+  }
+
+  /**
+   * Creates and configures a new instance for the supplied configuration.
+   *
+   * @param config The configuration key.
+   * @return The new instance.
+   */
+  protected abstract T create(String config);
+}
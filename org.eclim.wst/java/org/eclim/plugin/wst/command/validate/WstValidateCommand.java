@@ -18,12 +18,44 @@ package org.eclim.plugin.wst.command.validate;
 
 import java.net.URLDecoder;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.eclim.Services;
+
+import org.eclim.command.CommandLine;
+import org.eclim.command.Error;
+import org.eclim.command.Options;
+
 import org.eclim.plugin.core.command.AbstractCommand;
 
 import org.eclim.plugin.core.util.ProjectUtils;
+import org.eclim.plugin.core.util.WorkerPool;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceVisitor;
+
+import org.eclipse.core.runtime.CoreException;
 
 /**
  * Abstract super class for wst based validators.
+ * <p/>
+ * Validates either the single file supplied via -f, or, when a project
+ * relative directory is supplied via -d, all the files in that directory (and
+ * its sub directories) with one of the validator's extensions. Directories are
+ * validated in parallel on the shared {@link WorkerPool} and the errors are
+ * returned grouped by file.
  *
  * @author Eric Van Dewoestine
  */
@@ -33,6 +65,149 @@ public abstract class WstValidateCommand
   // eclipse looks for 3 leading slashes on every os, so 3 are necessary here.
   private static final String URI_PREFIX = "file:///";
 
+  @Override
+  public Object execute(CommandLine commandLine)
+    throws Exception
+  {
+    String project = commandLine.getValue(Options.PROJECT_OPTION);
+    String file = commandLine.getValue(Options.FILE_OPTION);
+    String dir = commandLine.getValue(Options.DIR_OPTION);
+    if (dir != null){
+      return validateDir(project, dir);
+    }
+    if (file == null){
+      throw new RuntimeException(
+          Services.getMessage("validate.arg.required"));
+    }
+    return validate(project, file);
+  }
+
+  /**
+   * Validates the supplied file.
+   *
+   * @param project The project name.
+   * @param file The project relative file path.
+   * @return The possibly empty list of errors.
+   */
+  protected abstract List<Error> validate(String project, String file)
+    throws Exception;
+
+  /**
+   * Gets the extensions (without the '.') of the files this validator
+   * validates when validating a directory.
+   *
+   * @return Array of extensions.
+   */
+  protected abstract String[] getExtensions();
+
+  /**
+   * Validates all the files under the supplied directory in parallel.
+   *
+   * @param projectName The project name.
+   * @param dir The project relative directory.
+   * @return Map of absolute file path to the possibly empty list of errors for
+   * that file, in file path order.
+   */
+  protected Map<String,List<Error>> validateDir(
+      final String projectName, String dir)
+    throws Exception
+  {
+    IProject project = ProjectUtils.getProject(projectName, true);
+    IContainer container = dir.length() == 0 || dir.equals(".") ?
+      project : project.getFolder(dir);
+    if (!container.exists()){
+      throw new RuntimeException(
+          Services.getMessage("file.not.found", dir));
+    }
+
+    final String[] extensions = getExtensions();
+    final ArrayList<String> files = new ArrayList<String>();
+    container.accept(new IResourceVisitor(){
+      public boolean visit(IResource resource)
+        throws CoreException
+      {
+        if (resource.isDerived() || resource.isTeamPrivateMember()){
+          return false;
+        }
+        if (resource.getType() == IResource.FILE){
+          String ext = ((IFile)resource).getFileExtension();
+          for (String extension : extensions){
+            if (extension.equalsIgnoreCase(ext)){
+              files.add(resource.getProjectRelativePath().toString());
+              break;
+            }
+          }
+        }
+        return true;
+      }
+    });
+    Collections.sort(files);
+
+    LinkedHashMap<String,List<Error>> results =
+      new LinkedHashMap<String,List<Error>>();
+
+    // already running on a worker (invoked by another command), so validate
+    // inline rather than waiting on the pool we're a part of.
+    if (WorkerPool.isWorker()){
+      for (String file : files){
+        List<Error> errors = null;
+        try{
+          errors = validate(projectName, file);
+        }catch(Exception e){
+          errors = toErrors(projectName, file, e);
+        }
+        results.put(ProjectUtils.getFilePath(projectName, file), errors);
+      }
+      return results;
+    }
+
+    ArrayList<Future<List<Error>>> futures =
+      new ArrayList<Future<List<Error>>>();
+    try{
+      ExecutorService executor = WorkerPool.getExecutor();
+      for (final String file : files){
+        futures.add(executor.submit(new Callable<List<Error>>(){
+          public List<Error> call()
+            throws Exception
+          {
+            return validate(projectName, file);
+          }
+        }));
+      }
+
+      for (int ii = 0; ii < files.size(); ii++){
+        String file = files.get(ii);
+        List<Error> errors = null;
+        try{
+          errors = futures.get(ii).get();
+        }catch(ExecutionException ee){
+          errors = toErrors(projectName, file, ee.getCause());
+        }
+        results.put(ProjectUtils.getFilePath(projectName, file), errors);
+      }
+    }finally{
+      // the pool is shared, so only cancel our own outstanding files (if
+      // we were interrupted part way through).
+      for (Future<List<Error>> future : futures){
+        future.cancel(true);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Reports the failure to validate a file as an error on that file.
+   */
+  private List<Error> toErrors(String project, String file, Throwable cause)
+  {
+    String message = cause.getMessage() != null ?
+      cause.getMessage() : cause.toString();
+    List<Error> errors = new ArrayList<Error>();
+    errors.add(new Error(
+          message, ProjectUtils.getFilePath(project, file), 1, 1, false));
+    return errors;
+  }
+
   /**
    * Converts the supplied file name to a uri if necessary.
    *
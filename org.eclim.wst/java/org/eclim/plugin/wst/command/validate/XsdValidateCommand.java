@@ -17,12 +17,11 @@
 package org.eclim.plugin.wst.command.validate;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import org.eclim.annotation.Command;
 
-import org.eclim.command.CommandLine;
 import org.eclim.command.Error;
-import org.eclim.command.Options;
 
 import org.eclipse.wst.xml.core.internal.validation.core.ValidationMessage;
 import org.eclipse.wst.xml.core.internal.validation.core.ValidationReport;
@@ -38,18 +37,24 @@ import org.eclipse.wst.xsd.core.internal.validation.eclipse.XSDValidator;
   name = "xsd_validate",
   options =
     "REQUIRED p project ARG," +
-    "REQUIRED f file ARG"
+    "OPTIONAL f file ARG," +
+    "OPTIONAL d dir ARG"
 )
 public class XsdValidateCommand
   extends WstValidateCommand
 {
+  private static final String[] EXTENSIONS = new String[]{"xsd"};
+
   @Override
-  public Object execute(CommandLine commandLine)
-    throws Exception
+  protected String[] getExtensions()
   {
-    String project = commandLine.getValue(Options.PROJECT_OPTION);
-    String file = commandLine.getValue(Options.FILE_OPTION);
+    return EXTENSIONS;
+  }
 
+  @Override
+  protected List<Error> validate(String project, String file)
+    throws Exception
+  {
     ArrayList<Error> results = new ArrayList<Error>();
     XSDValidator validator = XSDValidator.getInstance();
     ValidationReport result = validator.validate(toUri(project, file));
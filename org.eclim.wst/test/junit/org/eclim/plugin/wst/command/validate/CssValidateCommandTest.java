@@ -68,4 +68,33 @@ public class CssValidateCommandTest
     assertEquals(error.get("column"), 1);
     assertEquals(error.get("warning"), false);
   }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void validateDir()
+  {
+    assertTrue("Project doesn't exist.",
+        Eclim.projectExists(Wst.TEST_PROJECT));
+
+    Map<String,List<Map<String,Object>>> results =
+      (Map<String,List<Map<String,Object>>>)Eclim.execute(new String[]{
+        "css_validate", "-p", Wst.TEST_PROJECT, "-d", "css"
+      });
+
+    String file = Eclim.resolveFile(Wst.TEST_PROJECT, TEST_FILE);
+    assertTrue("Missing validated file.", results.containsKey(file));
+    assertTrue("Missing validated file.", results.containsKey(
+          Eclim.resolveFile(Wst.TEST_PROJECT, "css/complete.css")));
+
+    List<Map<String,Object>> errors = results.get(file);
+    assertEquals("Wrong number of errors.", 2, errors.size());
+    assertEquals(errors.get(0).get("filename"), file);
+    assertEquals(errors.get(0).get("line"), 2);
+    assertEquals(errors.get(1).get("line"), 6);
+
+    // nothing from one run (or file) should leak into the next.
+    assertEquals(results, Eclim.execute(new String[]{
+      "css_validate", "-p", Wst.TEST_PROJECT, "-d", "css"
+    }));
+  }
 }
@@ -60,6 +60,7 @@ function! eclim#css#complete#CodeComplete(findstart, base)
     let command = substitute(command, '<file>', file, '')
     let command = substitute(command, '<offset>', offset, '')
     let command = substitute(command, '<encoding>', eclim#util#GetEncoding(), '')
+    let command .= eclim#lang#CompletionLazyInfo()
 
     let completions = []
     let results = eclim#Execute(command)
@@ -79,6 +80,9 @@ function! eclim#css#complete#CodeComplete(findstart, base)
       let info = result.info
 
       let dict = {'word': tolower(word), 'menu': menu, 'info': info}
+      if has_key(result, 'handle')
+        let dict.user_data = result.handle
+      endif
 
       call add(completions, dict)
     endfor
@@ -52,7 +52,8 @@ function! eclim#html#complete#CodeComplete(findstart, base)
 
     return start
   else
-    return eclim#lang#CodeComplete(s:complete_command, a:findstart, a:base)
+    return eclim#lang#CodeComplete(
+      \ s:complete_command, a:findstart, a:base, {'lazyinfo': 1})
   endif
 endfunction " }}}
 
@@ -59,6 +59,7 @@ public class Options
   public static final String ENCODING_OPTION = "e";
   public static final String EXCLUDES_OPTION = "e";
   public static final String ERRORS_OPTION = "e";
+  public static final String EXPRESSION_OPTION = "e";
   public static final String FAMILY_OPTION = "f";
   public static final String FILE_OPTION = "f";
   public static final String FOLDER_OPTION = "f";
@@ -71,6 +72,7 @@ public class Options
   public static final String INDEXED_OPTION = "i";
   public static final String JARS_OPTION = "j";
   public static final String JAVA_DOC_OPTION = "j";
+  public static final String LAZY_INFO_OPTION = "i";
   public static final String LANG_OPTION = "l";
   public static final String LAUNCH_ID_OPTION = "l";
   public static final String LAYOUT_OPTION = "l";
@@ -95,7 +97,10 @@ public class Options
   public static final String SEARCH_OPTION = "s";
   public static final String SETTINGS_OPTION = "s";
   public static final String SETTING_OPTION = "s";
+  public static final String SINCE_OPTION = "s";
   public static final String SOURCE_OPTION = "s";
+  public static final String STDIN_OPTION = "s";
+  public static final String STREAM_OPTION = "l";
   public static final String SUPERTYPE_OPTION = "s";
   public static final String TEMPLATE_OPTION = "t";
   public static final String TEST_OPTION = "t";
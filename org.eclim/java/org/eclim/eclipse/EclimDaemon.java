@@ -50,8 +50,10 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
 import org.eclipse.core.runtime.jobs.IJobManager;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.FrameworkEvent;
@@ -140,17 +142,7 @@ public class EclimDaemon
       // headless
       if (EclimApplication.isEnabled()){
         logger.info("Waiting on running jobs before starting eclimd...");
-        long timeout = System.currentTimeMillis() + (30 * 1000);
-        IJobManager manager = Job.getJobManager();
-        while(System.currentTimeMillis() < timeout &&
-          jobsRunning(manager))
-        {
-          try{
-            Thread.sleep(1000);
-          }catch(InterruptedException ie){
-            // ignore
-          }
-        }
+        waitOnJobs(30 * 1000);
       }
 
       starting = false;
@@ -416,6 +408,44 @@ public class EclimDaemon
     }
   }
 
+  /**
+   * Waits for all running jobs to complete, or until the supplied timeout
+   * elapses, re-checking whenever a job finishes rather than polling.
+   */
+  private void waitOnJobs(long timeout)
+  {
+    final Object lock = new Object();
+    JobChangeAdapter listener = new JobChangeAdapter(){
+      @Override
+      public void done(IJobChangeEvent event)
+      {
+        synchronized(lock){
+          lock.notifyAll();
+        }
+      }
+    };
+
+    IJobManager manager = Job.getJobManager();
+    manager.addJobChangeListener(listener);
+    try{
+      long end = System.currentTimeMillis() + timeout;
+      synchronized(lock){
+        while(jobsRunning(manager)){
+          long remaining = end - System.currentTimeMillis();
+          if (remaining <= 0){
+            logger.info("Timed out waiting on jobs.");
+            break;
+          }
+          lock.wait(remaining);
+        }
+      }
+    }catch(InterruptedException ie){
+      Thread.currentThread().interrupt();
+    }finally{
+      manager.removeJobChangeListener(listener);
+    }
+  }
+
   private boolean jobsRunning(IJobManager manager)
   {
     Job[] jobs = manager.find(null);
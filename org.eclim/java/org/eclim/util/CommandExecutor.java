@@ -18,6 +18,7 @@ package org.eclim.util;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Runs an external process.
@@ -29,6 +30,7 @@ public class CommandExecutor
 {
   private int returnCode = -1;
   private String[] cmd;
+  private byte[] input;
   private String result;
   private String error;
   private Process process;
@@ -62,8 +64,25 @@ public class CommandExecutor
    * process.
    */
   public static CommandExecutor execute(String[] cmd, long timeout)
+  {
+    return execute(cmd, timeout, null);
+  }
+
+  /**
+   * Execute the supplied command, writing the supplied input to the process'
+   * stdin.
+   *
+   * @param cmd The command to execute.
+   * @param timeout Timeout in milliseconds.
+   * @param input The bytes to write to the process' stdin (may be null).
+   * @return The CommandExecutor instance containing the ending state of the
+   * process.
+   */
+  public static CommandExecutor execute(
+      String[] cmd, long timeout, byte[] input)
   {
     CommandExecutor executor = new CommandExecutor(cmd);
+    executor.input = input;
 
     Thread thread = new Thread(executor);
     thread.start();
@@ -117,6 +136,15 @@ public class CommandExecutor
       };
       errThread.start();
 
+      if (input != null){
+        OutputStream in = process.getOutputStream();
+        try{
+          in.write(input);
+        }finally{
+          IOUtils.closeQuietly(in);
+        }
+      }
+
       returnCode = process.waitFor();
       outThread.join(1000);
       errThread.join(1000);
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2018  Eric Van Dewoestine
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.eclim.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simple registry of named counters used to expose internal statistics (cache
+ * hit rates, refresh counts, etc.) to clients.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class Metrics
+{
+  private static final ConcurrentHashMap<String,AtomicLong> counters =
+    new ConcurrentHashMap<String,AtomicLong>();
+
+  private Metrics()
+  {
+  }
+
+  /**
+   * Increments the named counter by one.
+   *
+   * @param name The counter name.
+   */
+  public static void increment(String name)
+  {
+    add(name, 1);
+  }
+
+  /**
+   * Adds the supplied value to the named counter.
+   *
+   * @param name The counter name.
+   * @param value The value to add.
+   */
+  public static void add(String name, long value)
+  {
+    AtomicLong counter = counters.get(name);
+    if (counter == null){
+      AtomicLong created = new AtomicLong();
+      counter = counters.putIfAbsent(name, created);
+      if (counter == null){
+        counter = created;
+      }
+    }
+    counter.addAndGet(value);
+  }
+
+  /**
+   * Gets the current value of the named counter.
+   *
+   * @param name The counter name.
+   * @return The counter value, or 0 if the counter has never been incremented.
+   */
+  public static long get(String name)
+  {
+    AtomicLong counter = counters.get(name);
+    return counter != null ? counter.get() : 0;
+  }
+
+  /**
+   * Gets a sorted snapshot of all the counters.
+   *
+   * @return Map of counter name to value.
+   */
+  public static Map<String,Long> getAll()
+  {
+    TreeMap<String,Long> values = new TreeMap<String,Long>();
+    for (Map.Entry<String,AtomicLong> entry : counters.entrySet()){
+      values.put(entry.getKey(), entry.getValue().get());
+    }
+    return values;
+  }
+
+  /**
+   * Resets all counters.
+   */
+  public static void reset()
+  {
+    counters.clear();
+  }
+}
@@ -18,6 +18,7 @@ package org.eclim.util.file;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
 
 import java.util.ArrayList;
 
@@ -39,6 +40,7 @@ public class FileOffsets
 {
   private Integer[] offsets;
   private String[] multiByteLines;
+  private String encoding;
 
   private FileOffsets ()
   {
@@ -77,8 +79,22 @@ public class FileOffsets
    * @return The FileOffsets instance.
    */
   public static FileOffsets compile(InputStream in)
+  {
+    return compile(in, null);
+  }
+
+  /**
+   * Reads the supplied input stream, using the supplied encoding, and compiles
+   * a list of offsets.
+   *
+   * @param in The InputStream to compile a list of offsets for.
+   * @param encoding The encoding of the stream (null for the platform default).
+   * @return The FileOffsets instance.
+   */
+  public static FileOffsets compile(InputStream in, String encoding)
   {
     FileOffsets offsets = new FileOffsets();
+    offsets.encoding = encoding;
     offsets.compileOffsets(in);
     return offsets;
   }
@@ -92,7 +108,8 @@ public class FileOffsets
   {
     BufferedReader reader = null;
     try{
-      reader = new BufferedReader(new InputStreamReader(in));
+      reader = new BufferedReader(encoding != null ?
+          new InputStreamReader(in, encoding) : new InputStreamReader(in));
 
       ArrayList<Integer> lines = new ArrayList<Integer>();
       lines.add(new Integer(0));
@@ -104,7 +121,7 @@ public class FileOffsets
       while((line = reader.readLine()) != null){
         offset += line.length();
         lines.add(new Integer(offset));
-        if (line.length() != line.getBytes().length){
+        if (line.length() != getBytes(line).length){
           byteLines.add(line);
         }else{
           byteLines.add(null);
@@ -150,11 +167,23 @@ public class FileOffsets
     int column = 1 + offset - offsets[top].intValue();
     String value = multiByteLines.length > line ? multiByteLines[line] : null;
     if (value != null){
-      column = value.substring(0, column).getBytes().length;
+      column = getBytes(value.substring(0, column)).length;
     }
     return new int[]{line, column};
   }
 
+  private byte[] getBytes(String value)
+  {
+    if (encoding == null){
+      return value.getBytes();
+    }
+    try{
+      return value.getBytes(encoding);
+    }catch(UnsupportedEncodingException uee){
+      throw new RuntimeException(uee);
+    }
+  }
+
   /**
    * Gets the offset where the supplied line starts.
    *